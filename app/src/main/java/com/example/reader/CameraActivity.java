@@ -19,8 +19,10 @@ import com.example.reader.camera.CameraManager;
 import com.example.reader.detection.DocumentAlignmentDetector;
 import com.example.reader.detection.MRZDetectionHandler;
 import com.example.reader.mrz.MrzParserManager;
+import com.example.reader.utils.AndroidLogSink;
 import com.example.reader.utils.BitmapUtils;
 import com.example.reader.utils.Constants;
+import com.example.reader.utils.FramePool;
 
 import org.opencv.android.OpenCVLoader;
 
@@ -45,6 +47,7 @@ public class CameraActivity extends AppCompatActivity {
     private DocumentAlignmentDetector alignmentDetector;
     private MrzParserManager mrzParserManager;
     private ExecutorService cameraExecutor;
+    private FramePool framePool;
 
     @Override
     protected void onCreate(Bundle savedInstanceState)     {
@@ -86,15 +89,18 @@ public class CameraActivity extends AppCompatActivity {
 
     private void initializeManagers() {
         cameraExecutor = Executors.newSingleThreadExecutor();
+        AndroidLogSink.install();
         mrzParserManager = new MrzParserManager();
 
         Configuration config = DocumentReaderSDK.getInstance().getConfiguration();
+        framePool = new FramePool();
 
         // Step 1: Create alignment detector (no dependencies)
         alignmentDetector = new DocumentAlignmentDetector(
                 guidanceOverlay,
                 previewView,
-                config
+                config,
+                framePool
         );
 
         // Step 2: Create camera manager WITHOUT detection handler
@@ -114,7 +120,8 @@ public class CameraActivity extends AppCompatActivity {
                 mrzParserManager,
                 alignmentDetector,
                 cameraManager,
-                config.processInterval
+                config.processInterval,
+                framePool
         );
 
         // Step 4: Now inject the detection handler into camera manager
@@ -153,11 +160,19 @@ public class CameraActivity extends AppCompatActivity {
         if (cameraManager != null) {
             cameraManager.cleanup();
         }
+        if (detectionHandler != null && cameraExecutor != null) {
+            // Queued behind the last frame, so it runs after the analyzer is done
+            detectionHandler.cleanup(cameraExecutor);
+        }
+        if (alignmentDetector != null && cameraExecutor != null) {
+            // Its Mats are used by the analyzer, so they are released on the same thread
+            cameraExecutor.execute(alignmentDetector::cleanup);
+        }
         if (cameraExecutor != null) {
             cameraExecutor.shutdown();
         }
-        if (detectionHandler != null) {
-            detectionHandler.cleanup();
+        if (framePool != null) {
+            framePool.clear();
         }
     }
 }
\ No newline at end of file
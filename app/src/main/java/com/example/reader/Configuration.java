@@ -18,6 +18,9 @@ public class Configuration {
     public double maxContourAreaRatio = 0.95;
     public double cornerEpsilonFactor = 0.02;
 
+    // Check alignment on the Y plane only; RGB conversion is left to frames that need it
+    public boolean lumaAnalysis = true;
+
     // MRZDetectionHandler settings
     public long processInterval = 0;
 
@@ -78,6 +81,11 @@ public class Configuration {
             return this;
         }
 
+        public Builder setLumaAnalysis(boolean enabled) {
+            config.lumaAnalysis = enabled;
+            return this;
+        }
+
         public Builder setProcessInterval(long interval) {
             config.processInterval = interval;
             return this;
@@ -97,6 +105,7 @@ public class Configuration {
             Log.d(TAG, "  minContourAreaRatio: " + config.minContourAreaRatio);
             Log.d(TAG, "  maxContourAreaRatio: " + config.maxContourAreaRatio);
             Log.d(TAG, "  cornerEpsilonFactor: " + config.cornerEpsilonFactor);
+            Log.d(TAG, "  lumaAnalysis: " + config.lumaAnalysis);
 
             return config;
         }
@@ -23,6 +23,8 @@
     //    private Activity activity;
         private UniversalDocumentReader nfcReader;
         private NfcHelper nfcHelper;
+        // A reader-mode session was requested and should resume with the activity
+        private boolean nfcSessionActive = false;
     //    private DocumentReaderCallback callback;
 
         // Stored MRZ data
@@ -30,6 +32,7 @@
         private String dateOfBirth;
         private String dateOfExpiry;
         private DocumentData.DocumentType documentType;
+        private String issuingCountry;
 
         public static final int REQUEST_CODE_SCAN = 1001;
 
@@ -82,6 +85,10 @@
     //        this.activity = activity;
             this.activityRef = new WeakReference<>(activity);
             this.configuration = config != null ? config : new Configuration();
+            if (nfcReader != null) {
+                // Re-init: don't leave the previous reader's worker behind
+                nfcReader.shutdown();
+            }
             this.nfcReader = new UniversalDocumentReader(activity);
             this.nfcHelper = new NfcHelper(activity);
             setupNfcReaderCallback();
@@ -119,6 +126,7 @@
                 documentNumber = data.getStringExtra(Constants.EXTRA_DOC_NUM);
                 dateOfBirth = data.getStringExtra(Constants.EXTRA_DOB);
                 dateOfExpiry = data.getStringExtra(Constants.EXTRA_EXPIRY);
+                issuingCountry = data.getStringExtra(Constants.EXTRA_ISSUING_COUNTRY);
 
                 String typeStr = data.getStringExtra(Constants.EXTRA_DOC_TYPE);
                 if (typeStr != null) {
@@ -158,30 +166,45 @@
                 return;
             }
 
-            nfcHelper.enableForegroundDispatch();
+            // The chip does not show whether it is a passport or an EEP
+            if (documentType == null) {
+                if (callback != null) callback.onError(ErrorType.INVALID_MRZ, "Document type unknown, scan document again");
+                return;
+            }
+
+            // Reader mode: the tag comes straight to us, no onNewIntent round trip
+            nfcSessionActive = true;
+            nfcHelper.enableReaderMode(this::readTag);
         }
 
         public void stopNfcReading() {
-            nfcHelper.disableForegroundDispatch();
+            nfcSessionActive = false;
+            if (nfcHelper != null) {
+                nfcHelper.disableReaderMode();
+            }
         }
 
-        // Call this from your Activity's onNewIntent
+        /**
+         * Only needed by hosts that still run their own foreground dispatch;
+         * startNfcReading() delivers tags without it.
+         */
         public void handleNfcIntent(Intent intent) {
-            Tag tag = nfcHelper.getTagFromIntent(intent);
-            if (tag != null && documentNumber != null) {
-                DocumentAuthData authData = new DocumentAuthData(documentNumber, dateOfBirth, dateOfExpiry);
-                nfcReader.readDocument(tag, authData, documentType);
-            }
+            readTag(nfcHelper.getTagFromIntent(intent));
         }
 
         // ==================== LIFECYCLE ====================
 
         public void onResume() {
-            // Re-enable NFC if it was active
+            // Reader mode ends with the activity's pause; pick the session back up
+            if (nfcSessionActive && nfcHelper != null) {
+                nfcHelper.enableReaderMode(this::readTag);
+            }
         }
 
         public void onPause() {
-            stopNfcReading();
+            if (nfcHelper != null) {
+                nfcHelper.disableReaderMode();
+            }
         }
 
         public void onDestroy() {
@@ -191,17 +214,29 @@
 
         public void release() {
             if (nfcReader != null) {
-                nfcReader.cancelRead();
-            }
-            if (nfcHelper != null) {
-                nfcHelper.disableForegroundDispatch();
+                nfcReader.shutdown();
             }
+            stopNfcReading();
             activityRef = null;
             callbackRef = null;
             nfcReader = null;
             nfcHelper = null;
         }
         // ==================== INTERNAL ====================
+        private void readTag(Tag tag) {
+            UniversalDocumentReader reader = nfcReader;
+            if (tag != null && documentType == null) {
+                DocumentReaderCallback callback = getCallback();
+                if (callback != null) callback.onError(ErrorType.INVALID_MRZ, "Document type unknown, scan document again");
+                return;
+            }
+            if (tag != null && reader != null && documentNumber != null) {
+                DocumentAuthData authData = new DocumentAuthData(documentNumber, dateOfBirth, dateOfExpiry);
+                authData.setIssuingState(issuingCountry);
+                reader.readDocument(tag, authData, documentType);
+            }
+        }
+
         private Activity getActivity() {
             Activity activity = activityRef != null ? activityRef.get() : null;
             return (activity != null && !activity.isFinishing()) ? activity : null;
@@ -0,0 +1,159 @@
+package com.example.reader;
+
+import android.nfc.Tag;
+import android.nfc.tech.IsoDep;
+import android.util.Log;
+
+import com.example.reader.models.DocumentData;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handle to one read started by {@link UniversalDocumentReader#readDocumentAsync}.
+ *
+ * Cancelling it, or the read timing out, closes the tag's IsoDep connection so
+ * the APDU in flight fails at once and the RF session is released, then
+ * interrupts the worker. A cancelled or timed-out read never reports success.
+ */
+public class ReadHandle implements Future<DocumentData> {
+
+    private static final String TAG = "@@>> ReadHandle";
+
+    private final Tag tag;
+    private final CompletableFuture<DocumentData> result = new CompletableFuture<>();
+    private volatile Future<?> task;
+    private volatile Future<?> watchdog;
+    private final AtomicBoolean finishClaimed = new AtomicBoolean();
+
+    ReadHandle(Tag tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * A read that was refused before it started
+     */
+    static ReadHandle failed(Exception e) {
+        ReadHandle handle = new ReadHandle(null);
+        handle.result.completeExceptionally(e);
+        return handle;
+    }
+
+    void attach(Future<?> task, Future<?> watchdog) {
+        this.task = task;
+        this.watchdog = watchdog;
+        // Cancelled before the futures were attached
+        if (result.isDone()) {
+            stopWatchdog();
+            if (result.isCancelled() || result.isCompletedExceptionally()) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Exactly one of the worker and a cancel that stops the task before it runs
+     * wins this, and that one releases the reader's slot
+     */
+    boolean claimFinish() {
+        return finishClaimed.compareAndSet(false, true);
+    }
+
+    /**
+     * @return false if the read was already cancelled or timed out
+     */
+    boolean complete(DocumentData data) {
+        stopWatchdog();
+        return result.complete(data);
+    }
+
+    /**
+     * @return false if the read was already cancelled or timed out
+     */
+    boolean fail(Exception e) {
+        stopWatchdog();
+        return result.completeExceptionally(e);
+    }
+
+    /**
+     * @return the timeout exception, or null if the read had already finished
+     */
+    TimeoutException timeOut(long timeoutMs) {
+        TimeoutException e = new TimeoutException("Read timed out after " + timeoutMs + " ms");
+        if (!result.completeExceptionally(e)) {
+            return null;
+        }
+        Log.w(TAG, "⏱️ " + e.getMessage() + ", closing the connection");
+        abort(true);
+        return e;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!result.cancel(false)) {
+            return false;
+        }
+        Log.d(TAG, "🛑 Read cancelled, closing the connection");
+        abort(mayInterruptIfRunning);
+        return true;
+    }
+
+    private void abort(boolean interrupt) {
+        stopWatchdog();
+        closeIsoDep();
+        Future<?> running = task;
+        if (running != null) {
+            running.cancel(interrupt);
+        }
+    }
+
+    private void stopWatchdog() {
+        Future<?> timer = watchdog;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Any IsoDep of the same Tag shares its connection, so closing one here makes
+     * the reader's transceive fail
+     */
+    private void closeIsoDep() {
+        if (tag == null) {
+            return;
+        }
+        try {
+            IsoDep isoDep = IsoDep.get(tag);
+            if (isoDep != null) {
+                isoDep.close();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Closing IsoDep failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    @Override
+    public DocumentData get() throws ExecutionException, InterruptedException {
+        return result.get();
+    }
+
+    @Override
+    public DocumentData get(long timeout, TimeUnit unit)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return result.get(timeout, unit);
+    }
+}
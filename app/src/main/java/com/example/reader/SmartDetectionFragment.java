@@ -1,12 +1,9 @@
 package com.example.reader;
 
 import android.app.Activity;
-import android.app.PendingIntent;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.nfc.NfcAdapter;
 import android.nfc.Tag;
-import android.nfc.tech.IsoDep;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -26,6 +23,7 @@ import com.example.reader.models.EepData;
 import com.example.reader.models.PassportData;
 import com.example.reader.readers.DocumentAuthData;
 import com.example.reader.utils.Constants;
+import com.example.reader.utils.NfcHelper;
 import com.google.android.material.textfield.TextInputEditText;
 
 import java.util.ArrayList;
@@ -49,15 +47,16 @@ public class SmartDetectionFragment extends Fragment {
 
     // Document reading
     private UniversalDocumentReader documentReader;
-    private boolean waitingForNfc = false;
+    private volatile boolean waitingForNfc = false;
 
     // NFC Components
-    private NfcAdapter nfcAdapter;
-    private PendingIntent pendingIntent;
-    private boolean nfcEnabled = false;
+    private NfcHelper nfcHelper;
+    // Captured when reading starts; tags arrive on an NFC binder thread
+    private volatile DocumentAuthData pendingAuthData;
 
     // Detected document type
     private DocumentData.DocumentType detectedDocumentType = null;
+    private String detectedIssuingCountry = null;
     private int mrzLineCount = 0;
 
     @Nullable
@@ -106,9 +105,9 @@ public class SmartDetectionFragment extends Fragment {
     private void initializeNfc() {
         if (getActivity() == null) return;
 
-        nfcAdapter = NfcAdapter.getDefaultAdapter(getActivity());
+        nfcHelper = new NfcHelper(getActivity());
 
-        if (nfcAdapter == null) {
+        if (!nfcHelper.isNfcAvailable()) {
             Toast.makeText(getContext(), "NFC not supported on this device", Toast.LENGTH_LONG).show();
             if (btnReadNfc != null) {
                 btnReadNfc.setEnabled(false);
@@ -116,48 +115,30 @@ public class SmartDetectionFragment extends Fragment {
             return;
         }
 
-        if (!nfcAdapter.isEnabled()) {
+        if (!nfcHelper.isNfcEnabled()) {
             Toast.makeText(getContext(), "Please enable NFC in settings", Toast.LENGTH_LONG).show();
         }
-
-        Intent intent = new Intent(getActivity(), getActivity().getClass());
-        intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-        pendingIntent = PendingIntent.getActivity(
-                getActivity(),
-                0,
-                intent,
-                PendingIntent.FLAG_MUTABLE
-        );
     }
 
-    private void enableNfcForegroundDispatch() {
-        if (getActivity() == null || nfcAdapter == null || nfcEnabled) {
+    private void enableNfcReaderMode() {
+        if (nfcHelper == null || nfcHelper.isReaderModeEnabled()) {
             return;
         }
 
-        try {
-            String[][] techList = new String[][]{{IsoDep.class.getName()}};
-            nfcAdapter.enableForegroundDispatch(getActivity(), pendingIntent, null, techList);
-            nfcEnabled = true;
-            Log.d(TAG, "NFC foreground dispatch enabled");
-        } catch (Exception e) {
-            Log.e(TAG, "Error enabling NFC: " + e.getMessage());
+        if (nfcHelper.enableReaderMode(this::onTagDiscovered)) {
+            Log.d(TAG, "NFC reader mode enabled");
+        } else {
             Toast.makeText(getContext(), "Error enabling NFC", Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void disableNfcForegroundDispatch() {
-        if (getActivity() == null || nfcAdapter == null || !nfcEnabled) {
+    private void disableNfcReaderMode() {
+        if (nfcHelper == null || !nfcHelper.isReaderModeEnabled()) {
             return;
         }
 
-        try {
-            nfcAdapter.disableForegroundDispatch(getActivity());
-            nfcEnabled = false;
-            Log.d(TAG, "NFC foreground dispatch disabled");
-        } catch (Exception e) {
-            Log.e(TAG, "Error disabling NFC: " + e.getMessage());
-        }
+        nfcHelper.disableReaderMode();
+        Log.d(TAG, "NFC reader mode disabled");
     }
 
     private void setupDocumentReaderCallback() {
@@ -189,7 +170,7 @@ public class SmartDetectionFragment extends Fragment {
                         displayDocumentData(data);
                         btnReadNfc.setEnabled(true);
                         waitingForNfc = false;
-                        disableNfcForegroundDispatch();
+                        disableNfcReaderMode();
                         Toast.makeText(getContext(), "✅ Read complete!", Toast.LENGTH_SHORT).show();
                     });
                 }
@@ -203,7 +184,7 @@ public class SmartDetectionFragment extends Fragment {
                         Toast.makeText(getContext(), "Read failed: " + errorMessage, Toast.LENGTH_LONG).show();
                         btnReadNfc.setEnabled(true);
                         waitingForNfc = false;
-                        disableNfcForegroundDispatch();
+                        disableNfcReaderMode();
                     });
                 }
             }
@@ -237,26 +218,48 @@ public class SmartDetectionFragment extends Fragment {
             return;
         }
 
-        if (nfcAdapter == null) {
+        if (nfcHelper == null || !nfcHelper.isNfcAvailable()) {
             Toast.makeText(getContext(), "NFC is not supported on this device", Toast.LENGTH_LONG).show();
             return;
         }
 
-        if (!nfcAdapter.isEnabled()) {
+        if (!nfcHelper.isNfcEnabled()) {
             Toast.makeText(getContext(), "Please enable NFC in settings", Toast.LENGTH_LONG).show();
             return;
         }
 
+        DocumentAuthData authData = new DocumentAuthData(docNum, birthDate, expiryDate);
+        authData.setIssuingState(detectedIssuingCountry);
+        pendingAuthData = authData;
         waitingForNfc = true;
         String docTypeName = getDocumentTypeName(detectedDocumentType);
         tvStatus.setText("📱 NFC Activated! Tap " + docTypeName + " to back of phone...");
         tvResult.setText("");
         imageFace.setImageBitmap(null);
 
-        enableNfcForegroundDispatch();
+        enableNfcReaderMode();
         Toast.makeText(getContext(), "NFC ready - Tap your " + docTypeName + " now", Toast.LENGTH_LONG).show();
     }
 
+    /**
+     * Reader-mode delivery, on an NFC binder thread: straight to the document reader
+     */
+    private void onTagDiscovered(Tag tag) {
+        DocumentAuthData authData = pendingAuthData;
+        DocumentData.DocumentType documentType = detectedDocumentType;
+        if (!waitingForNfc || authData == null || documentType == null || documentReader.isReading()) {
+            return;
+        }
+
+        // Use the detected document type for reading
+        Log.d(TAG, "Reading document with detected type: " + documentType);
+        documentReader.readDocument(tag, authData, documentType);
+    }
+
+    /**
+     * For hosts that still forward NFC intents from onNewIntent; reader mode
+     * delivers tags without this
+     */
     public void handleNfcIntent(Intent intent) {
         if (!waitingForNfc) {
             Toast.makeText(getContext(), "Please click 'Read NFC' button first", Toast.LENGTH_SHORT).show();
@@ -268,18 +271,9 @@ public class SmartDetectionFragment extends Fragment {
             return;
         }
 
-        if (NfcAdapter.ACTION_TECH_DISCOVERED.equals(intent.getAction())) {
-            Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
-
-            String docNum = edDocNum.getText().toString().trim();
-            String birthDate = edBirthDate.getText().toString().trim();
-            String expiryDate = edExpiryDate.getText().toString().trim();
-
-            DocumentAuthData authData = new DocumentAuthData(docNum, birthDate, expiryDate);
-
-            // Use the detected document type for reading
-            Log.d(TAG, "Reading document with detected type: " + detectedDocumentType);
-            documentReader.readDocument(tag, authData, detectedDocumentType);
+        Tag tag = nfcHelper != null ? nfcHelper.getTagFromIntent(intent) : null;
+        if (tag != null) {
+            onTagDiscovered(tag);
         }
     }
 
@@ -299,6 +293,7 @@ public class SmartDetectionFragment extends Fragment {
 
             mrzLineCount = data.getIntExtra(Constants.EXTRA_MRZ_LINES, 0);
             String docTypeCode = data.getStringExtra(Constants.EXTRA_DOC_TYPE);
+            detectedIssuingCountry = data.getStringExtra(Constants.EXTRA_ISSUING_COUNTRY);
 
             // Determine document type based on MRZ lines or doc type code
 //            detectedDocumentType = determineDocumentType(mrzLineCount, docTypeCode);
@@ -1028,26 +1023,26 @@ public class SmartDetectionFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        if (nfcAdapter == null) {
+        if (nfcHelper == null) {
             initializeNfc();
         }
         if (waitingForNfc) {
-            enableNfcForegroundDispatch();
+            enableNfcReaderMode();
         }
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        disableNfcForegroundDispatch();
+        disableNfcReaderMode();
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
         if (documentReader != null) {
-            documentReader.cancelRead();
+            documentReader.shutdown();
         }
-        disableNfcForegroundDispatch();
+        disableNfcReaderMode();
     }
 }
\ No newline at end of file
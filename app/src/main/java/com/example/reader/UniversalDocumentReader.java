@@ -1,41 +1,119 @@
 package com.example.reader;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.nfc.Tag;
+import android.nfc.tech.IsoDep;
 import android.util.Log;
 
 import com.example.reader.models.DocumentData;
+import com.example.reader.probe.ChipFingerprint;
+import com.example.reader.probe.ChipProfile;
 import com.example.reader.readers.DocumentAuthData;
+import com.example.reader.readers.EfCache;
 import com.example.reader.readers.EepDocumentReader;
+import com.example.reader.readers.EncryptedEfDiskStore;
 import com.example.reader.readers.IDocumentReader;
+import com.example.reader.readers.PaceParameterCache;
 import com.example.reader.readers.PassportDocumentReader;
+import com.example.reader.readers.ReadProfile;
+import com.example.reader.readers.ReadProgress;
+import com.example.reader.readers.ReadTrace;
+import com.example.reader.readers.transcript.TranscriptRecorder;
+import com.example.reader.utils.AndroidLogSink;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Universal document reader manager
  * Supports multiple document types and automatically selects the right reader
+ *
+ * Reads run one at a time on a single worker thread. A tap while a read is in
+ * progress is rejected rather than queued, and every read has a timeout after
+ * which its connection is closed. A cancelled or timed-out read counts as in
+ * progress until its worker has returned, so no tap queues up behind it.
+ *
+ * Nothing a chip shows before authentication tells a passport from an EEP, so
+ * the reader is the first registered one for the expected document type (or,
+ * without a type, the first that accepts the tag). The chip is fingerprinted
+ * ({@link ChipFingerprint}) once connected, and the reader gets the
+ * {@link ChipProfile} for its transport settings and its choice of PACE or BAC.
  */
 public class UniversalDocumentReader {
 
     private static final String TAG = "@@>> UniversalDocReader";
 
+    public static final long DEFAULT_READ_TIMEOUT_MS = 60_000;
+
     public interface DocumentReadCallback {
         void onReadStart(DocumentData.DocumentType expectedType);
         void onReadProgress(String message, int progress);
         void onReadSuccess(DocumentData data);
         void onReadError(String errorMessage, Exception exception);
+
+        /**
+         * Partial result: a data group is available before the whole document,
+         * e.g. DG1 for a watchlist lookup while DG2 is still being read.
+         * See {@link IDocumentReader.ProgressCallback#onDataGroupRead}.
+         */
+        default void onDataGroupRead(int dgNumber, Object dataGroup) {}
+
+        /**
+         * Partial result: a face/finger/iris image has been decoded. Called on an
+         * image decode thread.
+         */
+        default void onImageDecoded(int dgNumber, Bitmap image) {}
+
+        /**
+         * A security check has completed, see {@link IDocumentReader.ProgressCallback#onVerification}
+         */
+        default void onVerification(ReadProfile.Check check, boolean passed) {}
+
+        /**
+         * Byte-level progress of the chip transfer: bytes read of the planned total,
+         * throughput and ETA. {@link ReadProgress#getIdleMs()} tells a stuck read
+         * from a slow one.
+         */
+        default void onTransferProgress(ReadProgress progress) {}
     }
 
     private Context context;
-    private DocumentReadCallback callback;
-    private boolean isReading = false;
+    private volatile DocumentReadCallback callback;
+    private final AtomicReference<ReadHandle> currentRead = new AtomicReference<>();
+    private final ExecutorService readExecutor =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "DocumentRead"));
+    private final ScheduledExecutorService watchdog =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "DocumentReadWatchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private volatile long readTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
     private List<IDocumentReader> readers;
+    private final EfCache efCache = new EfCache();
+    private final PaceParameterCache paceCache = new PaceParameterCache();
+    private ReadTrace.Listener traceListener;
+    private PassportDocumentReader passportReader;
+    private EepDocumentReader eepReader;
 
     public UniversalDocumentReader(Context context) {
         this.context = context;
         this.readers = new ArrayList<>();
+        AndroidLogSink.install();
+
+        if (context != null) {
+            paceCache.setPreferences(context.getSharedPreferences("pace_parameter_cache", Context.MODE_PRIVATE));
+        }
 
         // Register all available readers
         registerDefaultReaders();
@@ -43,8 +121,17 @@ public class UniversalDocumentReader {
 
     private void registerDefaultReaders() {
         // Add passport reader
-        readers.add(new PassportDocumentReader());
-        readers.add(new EepDocumentReader());
+        passportReader = new PassportDocumentReader();
+        passportReader.setEfCache(efCache);
+        passportReader.setPaceParameterCache(paceCache);
+        passportReader.setReadTraceListener(this::dispatchReadTrace);
+        readers.add(passportReader);
+
+        eepReader = new EepDocumentReader();
+        eepReader.setEfCache(efCache);
+        eepReader.setPaceParameterCache(paceCache);
+        eepReader.setReadTraceListener(this::dispatchReadTrace);
+        readers.add(eepReader);
 
         // Future: Add more readers
         // readers.add(new IdCardReader());
@@ -68,18 +155,85 @@ public class UniversalDocumentReader {
         readers.remove(reader);
     }
 
+    /**
+     * EF cache shared by the default readers, so a re-tap only fetches the SOD
+     */
+    public EfCache getEfCache() {
+        return efCache;
+    }
+
+    /**
+     * PACE parameters that worked per chip profile, tried first on the next read
+     */
+    public PaceParameterCache getPaceParameterCache() {
+        return paceCache;
+    }
+
+    /**
+     * Persist cached EFs in the app cache directory, encrypted with a Keystore key
+     */
+    public void enableEncryptedDiskCache() {
+        efCache.setDiskStore(new EncryptedEfDiskStore(context));
+    }
+
+    /**
+     * Receive the APDU timing report of every read by the default readers
+     */
+    public void setReadTraceListener(ReadTrace.Listener traceListener) {
+        this.traceListener = traceListener;
+    }
+
+    /**
+     * Record the APDU transcript of every tap by the default readers into the given
+     * directory, for replay with ReplayCardService (null disables recording).
+     * A recorded tap uses no EF cache, PACE cache or checkpoint, so it is always a
+     * cold read that replays into a fresh reader.
+     * Debug builds only: transcripts hold the personal data in recoverable form.
+     *
+     * @return the recorder, or null when disabled or in a release build
+     */
+    public TranscriptRecorder enableTranscriptRecording(File directory) {
+        if (directory != null && !BuildConfig.DEBUG) {
+            Log.w(TAG, "⚠️ APDU transcript recording is not available in release builds");
+            directory = null;
+        }
+        TranscriptRecorder recorder = directory != null ? new TranscriptRecorder(directory) : null;
+        passportReader.setTranscriptRecorder(recorder);
+        eepReader.setTranscriptRecorder(recorder);
+        return recorder;
+    }
+
+    private void dispatchReadTrace(ReadTrace trace) {
+        ReadTrace.Listener listener = traceListener;
+        if (listener != null) {
+            listener.onReadTrace(trace);
+        }
+    }
+
     public void setCallback(DocumentReadCallback callback) {
         this.callback = callback;
     }
 
     public boolean isReading() {
-        return isReading;
+        return currentRead.get() != null;
+    }
+
+    /**
+     * Per-read timeout; the connection is closed and onReadError reports a
+     * TimeoutException when a read takes longer
+     */
+    public void setReadTimeout(long timeoutMs) {
+        this.readTimeoutMs = timeoutMs;
     }
 
     /**
-     * Read any supported document
-     * Automatically detects document type
+     * Read any supported document with the first registered reader that accepts
+     * the tag. The chip does not show whether it is a passport or an EEP, so with
+     * the default readers this reads every eMRTD as a passport.
+     *
+     * @deprecated pass the document type from the MRZ scan
      */
+    @Deprecated
     public void readDocument(Tag tag, DocumentAuthData authData) {
         readDocument(tag, authData, null);
     }
@@ -88,20 +242,39 @@ public class UniversalDocumentReader {
      * Read specific document type
      */
     public void readDocument(Tag tag, DocumentAuthData authData, DocumentData.DocumentType expectedType) {
+        readDocument(tag, authData, expectedType, ReadProfile.FULL);
+    }
+
+    /**
+     * Read specific document type, fetching only what the read profile names
+     */
+    public void readDocument(Tag tag, DocumentAuthData authData, DocumentData.DocumentType expectedType,
+                             ReadProfile readProfile) {
+        readDocumentAsync(tag, authData, expectedType, readProfile);
+    }
+
+    /**
+     * Start a read on the worker thread. The callback reports it as before; the
+     * handle cancels it (closing the connection) or waits for the result.
+     *
+     * @return the read's handle; already failed if the inputs are invalid or
+     * another read is in progress (the callback is not told about a rejected tap)
+     */
+    public ReadHandle readDocumentAsync(Tag tag, DocumentAuthData authData,
+                                        DocumentData.DocumentType expectedType, ReadProfile readProfile) {
 
         // Validate inputs
         if (tag == null) {
             notifyError("No NFC tag detected", null);
-            return;
+            return ReadHandle.failed(new IllegalArgumentException("No NFC tag detected"));
         }
 
         if (authData == null || !authData.isValid()) {
             notifyError("Invalid authentication data", null);
-            return;
+            return ReadHandle.failed(new IllegalArgumentException("Invalid authentication data"));
         }
 
-        // Find appropriate reader
-        IDocumentReader selectedReader = null;
+        IDocumentReader selectedReader;
 
         if (expectedType != null) {
             // Find reader for specific type
@@ -113,41 +286,104 @@ public class UniversalDocumentReader {
 
         if (selectedReader == null) {
             notifyError("No compatible reader found for this document", null);
-            return;
+            return ReadHandle.failed(new IllegalArgumentException("No compatible reader found for this document"));
+        }
+
+        ReadHandle handle = new ReadHandle(tag);
+        if (!currentRead.compareAndSet(null, handle)) {
+            Log.w(TAG, "Read already in progress, rejecting tap");
+            return ReadHandle.failed(new IllegalStateException("A read is already in progress"));
         }
 
         // Start reading
         final IDocumentReader reader = selectedReader;
-        isReading = true;
+        final ReadProfile profile = readProfile != null ? readProfile : ReadProfile.FULL;
 
-        if (callback != null) {
+        DocumentReadCallback cb = callback;
+        if (cb != null) {
             DocumentData.DocumentType type = expectedType != null ? expectedType :
                     (reader.getSupportedTypes().length > 0 ? reader.getSupportedTypes()[0] : DocumentData.DocumentType.UNKNOWN);
-            callback.onReadStart(type);
+            cb.onReadStart(type);
+        }
+
+        long timeoutMs = readTimeoutMs;
+        FutureTask<Void> task = new FutureTask<Void>(() -> runRead(handle, reader, tag, authData, profile), null) {
+            @Override
+            protected void done() {
+                // Cancelled before the worker picked it up: runRead will not release the slot
+                if (isCancelled() && handle.claimFinish()) {
+                    currentRead.compareAndSet(handle, null);
+                }
+            }
+        };
+        readExecutor.execute(task);
+        Future<?> timer = watchdog.schedule(() -> {
+            // Only aborts: the slot stays taken until the worker has left the chip
+            TimeoutException timeout = handle.timeOut(timeoutMs);
+            if (timeout != null) {
+                notifyError(timeout.getMessage(), timeout);
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        handle.attach(task, timer);
+
+        return handle;
+    }
+
+    private void runRead(ReadHandle handle, IDocumentReader reader, Tag tag,
+                         DocumentAuthData authData, ReadProfile profile) {
+        if (!handle.claimFinish()) {
+            // Cancelled while queued; the cancel released the slot
+            return;
+        }
+        if (handle.isDone()) {
+            currentRead.compareAndSet(handle, null);
+            return;
         }
 
-        new Thread(() -> {
-            try {
-                Log.d(TAG, "Starting document read with: " + reader.getReaderName());
+        IsoDep isoDep = null;
+        try {
+            isoDep = IsoDep.get(tag);
+            ChipProfile chip = ChipFingerprint.fingerprint(isoDep);
+            if (!chip.isEmrtd()) {
+                // Not fatal: authentication decides whether the chip can be read
+                Log.w(TAG, String.format("⚠️ eMRTD application SELECT returned SW=%04X, reading anyway",
+                        chip.selectAidSw));
+            }
 
-                IDocumentReader.ProgressCallback progressCallback = this::notifyProgress;
+            Log.d(TAG, "Starting document read with: " + reader.getReaderName());
 
-                DocumentData result = reader.readDocument(tag, authData, progressCallback);
+            IDocumentReader.ProgressCallback progressCallback = new ReadEvents(handle);
 
-                Log.d(TAG, "Document read completed: " + result.getSummary());
+            // The fingerprint's IsoDep holds the connection; another IsoDep.get(tag) could not connect
+            DocumentData result = reader.readDocument(isoDep, chip, authData, profile, progressCallback);
 
-                isReading = false;
+            Log.d(TAG, "Document read completed: " + result.getSummary());
 
-                if (callback != null) {
-                    callback.onReadSuccess(result);
-                }
+            DocumentReadCallback cb = callback;
+            if (handle.complete(result) && cb != null) {
+                cb.onReadSuccess(result);
+            }
 
-            } catch (Exception e) {
+        } catch (Exception e) {
+            if (handle.fail(e)) {
                 Log.e(TAG, "Error reading document: " + e.getMessage(), e);
-                isReading = false;
                 notifyError(e.getMessage(), e);
+            } else {
+                // Cancelled or timed out: the connection was closed under the reader
+                Log.d(TAG, "Read aborted: " + e.getMessage());
             }
-        }).start();
+        } finally {
+            // The fingerprint leaves the connection open; the reader closes it too, but not if it never got it
+            if (isoDep != null) {
+                try {
+                    isoDep.close();
+                } catch (Exception ignored) {
+                    // Ignore close errors
+                }
+            }
+            // Only now is the RF field free for the next tap
+            currentRead.compareAndSet(handle, null);
+        }
     }
 
     /**
@@ -155,10 +391,8 @@ public class UniversalDocumentReader {
      */
     private IDocumentReader findReaderForType(DocumentData.DocumentType type, Tag tag) {
         for (IDocumentReader reader : readers) {
-            for (DocumentData.DocumentType supportedType : reader.getSupportedTypes()) {
-                if (supportedType == type && reader.canRead(tag)) {
-                    return reader;
-                }
+            if (supports(reader, type) && reader.canRead(tag)) {
+                return reader;
             }
         }
         return null;
@@ -177,12 +411,32 @@ public class UniversalDocumentReader {
         return null;
     }
 
+    private static boolean supports(IDocumentReader reader, DocumentData.DocumentType type) {
+        for (DocumentData.DocumentType supportedType : reader.getSupportedTypes()) {
+            if (supportedType == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Cancel ongoing read operation
      */
     public void cancelRead() {
-        isReading = false;
-        // Thread interruption logic can be added here
+        ReadHandle handle = currentRead.get();
+        if (handle != null) {
+            handle.cancel(true);
+        }
+    }
+
+    /**
+     * Cancel any read and stop the worker threads; the reader cannot be used afterwards
+     */
+    public void shutdown() {
+        cancelRead();
+        readExecutor.shutdownNow();
+        watchdog.shutdownNow();
     }
 
     /**
@@ -200,15 +454,68 @@ public class UniversalDocumentReader {
         return types;
     }
 
+    /**
+     * Forwards the reader's progress and partial results to the callback until
+     * the read is cancelled or times out
+     */
+    private class ReadEvents implements IDocumentReader.ProgressCallback {
+        private final ReadHandle handle;
+
+        ReadEvents(ReadHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void onProgress(String message, int progress) {
+            if (!handle.isDone()) {
+                notifyProgress(message, progress);
+            }
+        }
+
+        @Override
+        public void onDataGroupRead(int dgNumber, Object dataGroup) {
+            DocumentReadCallback cb = callback;
+            if (cb != null && !handle.isDone()) {
+                cb.onDataGroupRead(dgNumber, dataGroup);
+            }
+        }
+
+        @Override
+        public void onImageDecoded(int dgNumber, Bitmap image) {
+            DocumentReadCallback cb = callback;
+            if (cb != null && !handle.isDone()) {
+                cb.onImageDecoded(dgNumber, image);
+            }
+        }
+
+        @Override
+        public void onVerification(ReadProfile.Check check, boolean passed) {
+            DocumentReadCallback cb = callback;
+            if (cb != null && !handle.isDone()) {
+                cb.onVerification(check, passed);
+            }
+        }
+
+        @Override
+        public void onTransferProgress(ReadProgress progress) {
+            DocumentReadCallback cb = callback;
+            if (cb != null && !handle.isDone()) {
+                cb.onTransferProgress(progress);
+            }
+        }
+    }
+
     private void notifyProgress(String message, int progress) {
-        if (callback != null) {
-            callback.onReadProgress(message, progress);
+        DocumentReadCallback cb = callback;
+        if (cb != null) {
+            cb.onReadProgress(message, progress);
         }
     }
 
     private void notifyError(String message, Exception e) {
-        if (callback != null) {
-            callback.onReadError(message, e);
+        DocumentReadCallback cb = callback;
+        if (cb != null) {
+            cb.onReadError(message, e);
         }
     }
 }
\ No newline at end of file
@@ -26,6 +26,7 @@ public class CameraManager {
     private final ExecutorService executor;
     private MRZDetectionHandler detectionHandler;
     private ImageCapture imageCapture;
+    private ImageAnalysis imageAnalysis;
 
     public CameraManager(LifecycleOwner lifecycleOwner, PreviewView previewView,
                          ExecutorService executor) {
@@ -72,7 +73,7 @@ public class CameraManager {
         preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
         // Optimized ImageAnalysis for faster processing
-        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+        imageAnalysis = new ImageAnalysis.Builder()
                 .setTargetAspectRatio(AspectRatio.RATIO_4_3)
                 .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                 .setTargetRotation(rotation)
@@ -100,7 +101,14 @@ public class CameraManager {
         return imageCapture;
     }
 
+    /**
+     * Stop delivering frames to the detection handler. A frame already being
+     * analyzed finishes on the executor.
+     */
     public void cleanup() {
         Log.d(TAG, "🧹 CameraManager cleanup");
+        if (imageAnalysis != null) {
+            imageAnalysis.clearAnalyzer();
+        }
     }
 }
\ No newline at end of file
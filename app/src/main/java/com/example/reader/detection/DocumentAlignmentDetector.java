@@ -1,18 +1,20 @@
 package com.example.reader.detection;
 
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.graphics.Point;
 import android.graphics.RectF;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import androidx.camera.core.ImageProxy;
 import androidx.camera.view.PreviewView;
 
 import com.example.reader.Configuration;
 import com.example.reader.MRZGuidanceOverlay;
 import com.example.reader.utils.BitmapUtils;
+import com.example.reader.utils.FrameOrientation;
+import com.example.reader.utils.FramePool;
 import com.google.android.gms.tasks.Tasks;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.objects.DetectedObject;
@@ -21,7 +23,6 @@ import com.google.mlkit.vision.objects.ObjectDetector;
 import com.google.mlkit.vision.objects.defaults.ObjectDetectorOptions;
 
 import org.opencv.android.Utils;
-import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
@@ -54,12 +55,15 @@ public class DocumentAlignmentDetector {
     private double MIN_CONTOUR_AREA_RATIO = 0.3;
     private double MAX_CONTOUR_AREA_RATIO = 0.95;
     private double CORNER_EPSILON_FACTOR = 0.02;
+    private boolean LUMA_ANALYSIS = true;
 
     private final MRZGuidanceOverlay guidanceOverlay;
     private final PreviewView previewView;
     private final Handler mainHandler;
     private final ObjectDetector objectDetector;
     private final ExecutorService executorService;
+    private final FramePool framePool;
+    private final Mat dilateKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
 
     private int consecutiveAlignmentCount = 0;
     private Point[] lastValidCorners = null;
@@ -71,10 +75,24 @@ public class DocumentAlignmentDetector {
 
     private boolean wasAlignedLastFrame = false;
 
+    // Pooled buffers for the luminance path: the guidance crop (sensor orientation) and its NV21 copy for ML Kit
+    private final Mat lumaCrop = new Mat();
+    private byte[] nv21Buffer;
+
+    private FrameOrientation frameOrientation;
+
     public DocumentAlignmentDetector(MRZGuidanceOverlay guidanceOverlay,
                                      PreviewView previewView,
                                      Configuration config) {
+        this(guidanceOverlay, previewView, config, new FramePool());
+    }
+
+    public DocumentAlignmentDetector(MRZGuidanceOverlay guidanceOverlay,
+                                     PreviewView previewView,
+                                     Configuration config,
+                                     FramePool framePool) {
         this.guidanceOverlay = guidanceOverlay;
+        this.framePool = framePool;
         this.previewView = previewView;
         this.mainHandler = new Handler(Looper.getMainLooper());
         this.executorService = Executors.newSingleThreadExecutor();
@@ -89,6 +107,7 @@ public class DocumentAlignmentDetector {
         this.MIN_CONTOUR_AREA_RATIO = config.minContourAreaRatio;
         this.MAX_CONTOUR_AREA_RATIO = config.maxContourAreaRatio;
         this.CORNER_EPSILON_FACTOR = config.cornerEpsilonFactor;
+        this.LUMA_ANALYSIS = config.lumaAnalysis;
 
         ObjectDetectorOptions options = new ObjectDetectorOptions.Builder()
                 .setDetectorMode(ObjectDetectorOptions.SINGLE_IMAGE_MODE)
@@ -124,11 +143,20 @@ public class DocumentAlignmentDetector {
         return checkAlignment(bitmap, 0);
     }
 
-    public AlignmentResult checkAlignment(Bitmap bitmap, int rotationDegrees) {
-        if (bitmap == null || guidanceOverlay == null || previewView == null) {
-            return AlignmentResult.notReady();
-        }
+    /**
+     * Whether frames should be checked with {@link #checkAlignment(ImageProxy)}
+     * instead of being converted to RGB first
+     */
+    public boolean usesLumaAnalysis() {
+        return LUMA_ANALYSIS;
+    }
 
+    /**
+     * Cooldown and preview-size gate shared by both paths
+     *
+     * @return the result to report without analysing this frame, or null to analyse it
+     */
+    private AlignmentResult skipFrame() {
         long currentTime = System.currentTimeMillis();
         if (currentTime - lastDetectionTime < DETECTION_COOLDOWN_MS) {
             if (lastValidCorners != null) {
@@ -144,15 +172,33 @@ public class DocumentAlignmentDetector {
                 cachedGuideBox == null || cachedGuideBox.isEmpty()) {
             return AlignmentResult.notReady();
         }
+        return null;
+    }
+
+    /**
+     * Alignment check on a frame still in sensor orientation. Only the guidance
+     * area is cropped and nothing is rotated: the guidance box goes to sensor
+     * coordinates, the detected corners come back through the same cached transform.
+     */
+    public AlignmentResult checkAlignment(Bitmap bitmap, int rotationDegrees) {
+        if (bitmap == null || guidanceOverlay == null || previewView == null) {
+            return AlignmentResult.notReady();
+        }
 
-        Bitmap orientedBitmap = bitmap;
-        if (rotationDegrees != 0) {
-            orientedBitmap = rotateBitmap(bitmap, rotationDegrees);
+        AlignmentResult skipped = skipFrame();
+        if (skipped != null) {
+            return skipped;
         }
 
-        RectF guidanceRect = BitmapUtils.getGuidanceBoxInBitmapCoords(orientedBitmap, guidanceOverlay, previewView);
+        FrameOrientation orientation = orientationFor(bitmap.getWidth(), bitmap.getHeight(), rotationDegrees);
+        android.graphics.Rect guideCrop = guidanceCrop(orientation);
+        if (guideCrop == null) {
+            return new AlignmentResult(false, false, 0, "Crop failed", null);
+        }
+        android.graphics.Rect sensorCrop = toSensor(orientation, guideCrop);
 
-        Bitmap croppedBitmap = BitmapUtils.cropToGuidanceArea(orientedBitmap, guidanceRect);
+        Bitmap croppedBitmap = BitmapUtils.cropInto(bitmap, sensorCrop.left, sensorCrop.top,
+                sensorCrop.width(), sensorCrop.height(), framePool);
 
         if (croppedBitmap == null) {
             return new AlignmentResult(false, false, 0, "Crop failed", null);
@@ -162,151 +208,306 @@ public class DocumentAlignmentDetector {
         Log.d(TAG, "🔍 HYBRID ML + OPENCV ALIGNMENT CHECK");
 
         try {
-            // STEP 1: ML Object Detection (rough box) - on CROPPED image
-            RectF roughBoxInCropped = detectDocumentML(croppedBitmap);
+            // STEP 1: ML Object Detection (rough box) - on the crop, upright via the rotation tag
+            RectF roughBox = detectDocumentML(InputImage.fromBitmap(croppedBitmap, rotationDegrees),
+                    guideCrop.width(), guideCrop.height());
 
-            if (roughBoxInCropped == null) {
+            if (roughBox == null) {
                 Log.d(TAG, "⚠️ No document detected by ML");
                 consecutiveAlignmentCount = 0;
                 lastValidCorners = null;
-                if (croppedBitmap != orientedBitmap) {
-                    croppedBitmap.recycle();
-                }
                 return AlignmentResult.noDocument();
             }
 
-            Log.d(TAG, "📦 ML rough box (in cropped): " + rectToString(roughBoxInCropped));
-
-            // STEP 2: Crop ROI from the cropped bitmap
-            Bitmap roiBitmap = cropROI(croppedBitmap, roughBoxInCropped);
+            Log.d(TAG, "📦 ML rough box (in cropped): " + rectToString(roughBox));
+            roughBox.offset(guideCrop.left, guideCrop.top);
 
-            if (roiBitmap == null) {
-                Log.d(TAG, "⚠️ Failed to crop ROI");
-                if (croppedBitmap != orientedBitmap) {
-                    croppedBitmap.recycle();
+            // STEPS 2-3: ROI crop + OpenCV edge detection, in sensor space
+            Point[] refinedCorners = refineInSensorSpace(orientation, roughBox, sensorCrop, roi -> {
+                Bitmap roiBitmap = BitmapUtils.cropInto(croppedBitmap, roi.left, roi.top,
+                        roi.width(), roi.height(), framePool);
+                if (roiBitmap == null) {
+                    Log.d(TAG, "⚠️ Failed to crop ROI");
+                    return null;
                 }
-                return AlignmentResult.noDocument();
-            }
+                try {
+                    return refineWithOpenCV(roiBitmap);
+                } finally {
+                    framePool.release(roiBitmap);
+                }
+            });
 
-            // STEP 3: OpenCV edge detection + contour finding for refined corners
-            Point[] refinedCornersInROI = refineWithOpenCV(roiBitmap);
-
-            // STEP 4: Map corners from ROI → Cropped → Full Bitmap
-            Point[] cornersInCropped;
-            if (refinedCornersInROI != null) {
-                cornersInCropped = mapCornersFromROI(refinedCornersInROI, roughBoxInCropped);
-                Log.d(TAG, "✅ OpenCV refined 4 corners found");
-            } else {
-                // Fallback to rough box corners
-                cornersInCropped = boundsToCorners(roughBoxInCropped);
-                Log.d(TAG, "⚠️ OpenCV refinement failed, using ML box corners");
-            }
+            return finishAlignment(roughBox, refinedCorners,
+                    orientation.getUprightWidth(), orientation.getUprightHeight());
 
-            // Recycle ROI bitmap
-            if (roiBitmap != croppedBitmap && roiBitmap != orientedBitmap) {
-                roiBitmap.recycle();
-            }
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Alignment check error", e);
+            return AlignmentResult.error();
+        } finally {
+            // Only the pooled crop goes back; the caller's frame is left alone
+            framePool.release(croppedBitmap);
+            Log.d(TAG, "═══════════════════════════════════════\n");
+        }
+    }
 
-            // **KEY FIX**: Map corners from cropped bitmap to full bitmap coordinates
-            Point[] cornersInFullBitmap = mapCornersFromCroppedToFull(cornersInCropped, guidanceRect);
+    /**
+     * Luminance-only alignment check. Works on a Mat view of the frame's Y plane:
+     * only the guidance area is copied (in sensor orientation, one byte per pixel)
+     * and no RGB conversion happens. The caller still owns and closes the ImageProxy.
+     */
+    public AlignmentResult checkAlignment(ImageProxy imageProxy) {
+        if (imageProxy == null || guidanceOverlay == null || previewView == null) {
+            return AlignmentResult.notReady();
+        }
 
-            Log.d(TAG, "🗺️ Corners in full bitmap:");
-            for (int i = 0; i < cornersInFullBitmap.length; i++) {
-                Log.d(TAG, "   Corner " + i + ": " + cornersInFullBitmap[i]);
-            }
+        AlignmentResult skipped = skipFrame();
+        if (skipped != null) {
+            return skipped;
+        }
 
-            // STEP 5: Map corners from full bitmap to preview coordinates
-            Point[] cornersInPreview = mapCornersToPreview(
-                    cornersInFullBitmap,
-                    orientedBitmap.getWidth(),
-                    orientedBitmap.getHeight()
-            );
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        FrameOrientation orientation = orientationFor(imageProxy.getWidth(), imageProxy.getHeight(), rotation);
+        android.graphics.Rect guideCrop = guidanceCrop(orientation);
+        if (guideCrop == null) {
+            return new AlignmentResult(false, false, 0, "Crop failed", null);
+        }
+        android.graphics.Rect sensorCrop = toSensor(orientation, guideCrop);
 
-            Log.d(TAG, "🗺️ Corners in preview:");
-            for (int i = 0; i < cornersInPreview.length; i++) {
-                Log.d(TAG, "   Corner " + i + ": " + cornersInPreview[i]);
-            }
+        Log.d(TAG, "═══════════════════════════════════════");
+        Log.d(TAG, "🔍 HYBRID ML + OPENCV ALIGNMENT CHECK (luma)");
 
-            lastValidCorners = cornersInPreview;
+        try {
+            cropLuma(imageProxy.getPlanes()[0], orientation, sensorCrop);
 
-            // STEP 6: Create bounding rect from corners for alignment check
-            RectF documentBoundsInPreview = cornersToRect(cornersInPreview);
+            // STEP 1: ML Object Detection (rough box) - on the cropped luminance
+            RectF roughBox = detectDocumentML(lumaToInputImage(rotation),
+                    guideCrop.width(), guideCrop.height());
 
-            Log.d(TAG, "🔍 DEBUG - Size Comparison:");
-            Log.d(TAG, "   Doc bounds: " + rectToString(documentBoundsInPreview));
-            Log.d(TAG, "   Guide box: " + rectToString(cachedGuideBox));
-            Log.d(TAG, "   Width ratio: " + (documentBoundsInPreview.width() / cachedGuideBox.width()));
-            Log.d(TAG, "   Height ratio: " + (documentBoundsInPreview.height() / cachedGuideBox.height()));
+            if (roughBox == null) {
+                Log.d(TAG, "⚠️ No document detected by ML");
+                consecutiveAlignmentCount = 0;
+                lastValidCorners = null;
+                return AlignmentResult.noDocument();
+            }
 
-            // STEP 7: Analyze alignment with guide box
-            AlignmentAnalysis analysis = analyzeAlignment(documentBoundsInPreview, cachedGuideBox);
+            Log.d(TAG, "📦 ML rough box (in cropped): " + rectToString(roughBox));
+            roughBox.offset(guideCrop.left, guideCrop.top);
 
-            Log.d(TAG, "📊 Alignment Analysis:");
-            Log.d(TAG, "   IoU: " + String.format("%.2f", analysis.iou));
-            Log.d(TAG, "   Position OK: " + analysis.positionOk);
-            Log.d(TAG, "   Size OK: " + analysis.sizeOk);
-            Log.d(TAG, "   Message: " + analysis.message);
+            // STEPS 2-3: ROI as a view into the crop + OpenCV edge detection
+            Point[] refinedCorners = refineInSensorSpace(orientation, roughBox, sensorCrop, roi -> {
+                Mat roiMat = lumaCrop.submat(roi.top, roi.bottom, roi.left, roi.right);
+                try {
+                    return refineGray(roiMat);
+                } finally {
+                    roiMat.release();
+                }
+            });
 
-            return processAnalysis(analysis, cornersInPreview);
+            return finishAlignment(roughBox, refinedCorners,
+                    orientation.getUprightWidth(), orientation.getUprightHeight());
 
         } catch (Exception e) {
             Log.e(TAG, "❌ Alignment check error", e);
             return AlignmentResult.error();
         } finally {
-            if (croppedBitmap != orientedBitmap && croppedBitmap != null) {
-                croppedBitmap.recycle();
-            }
-            if (orientedBitmap != bitmap && orientedBitmap != null) {
-                orientedBitmap.recycle();
-            }
             Log.d(TAG, "═══════════════════════════════════════\n");
         }
     }
 
     /**
-     * **NEW METHOD**: Map corners from cropped bitmap coordinates to full bitmap coordinates
+     * Sensor-to-upright transform for this frame geometry; rebuilt only when the
+     * frame size or rotation changes
      */
-    private Point[] mapCornersFromCroppedToFull(Point[] cornersInCropped, RectF guidanceRect) {
-        Point[] cornersInFull = new Point[4];
-
-        int offsetX = (int) guidanceRect.left;
-        int offsetY = (int) guidanceRect.top;
+    private FrameOrientation orientationFor(int sensorWidth, int sensorHeight, int rotationDegrees) {
+        if (frameOrientation == null || !frameOrientation.matches(sensorWidth, sensorHeight, rotationDegrees)) {
+            frameOrientation = new FrameOrientation(sensorWidth, sensorHeight, rotationDegrees);
+            Log.d(TAG, "🧭 Frame orientation: " + sensorWidth + "x" + sensorHeight +
+                    " rotated " + rotationDegrees + "°");
+        }
+        return frameOrientation;
+    }
 
-        for (int i = 0; i < 4; i++) {
-            cornersInFull[i] = new Point(
-                    cornersInCropped[i].x + offsetX,
-                    cornersInCropped[i].y + offsetY
-            );
+    /**
+     * Guidance area in upright frame coordinates. Same bounds as cropToGuidanceArea,
+     * trimmed to even sizes for NV21.
+     */
+    private android.graphics.Rect guidanceCrop(FrameOrientation orientation) {
+        int uprightWidth = orientation.getUprightWidth();
+        int uprightHeight = orientation.getUprightHeight();
+        RectF guidanceRect = BitmapUtils.getGuidanceBoxInBitmapCoords(
+                uprightWidth, uprightHeight, guidanceOverlay, previewView);
+
+        int x = Math.max(0, (int) guidanceRect.left);
+        int y = Math.max(0, (int) guidanceRect.top);
+        int width = (int) (guidanceRect.right - guidanceRect.left) & ~1;
+        int height = (int) (guidanceRect.bottom - guidanceRect.top) & ~1;
+
+        if (width <= 0 || height <= 0 || x + width > uprightWidth || y + height > uprightHeight) {
+            return null;
         }
+        return new android.graphics.Rect(x, y, x + width, y + height);
+    }
 
-        return cornersInFull;
+    private android.graphics.Rect toSensor(FrameOrientation orientation, android.graphics.Rect upright) {
+        RectF sensor = orientation.toSensor(new RectF(upright));
+        return new android.graphics.Rect(Math.round(sensor.left), Math.round(sensor.top),
+                Math.round(sensor.right), Math.round(sensor.bottom));
     }
 
     /**
-     * STEP 2: Crop ROI from bitmap based on ML detection
+     * Copy the guidance area of the Y plane into lumaCrop, as the sensor delivered
+     * it. The plane itself is wrapped, not copied.
      */
-    private Bitmap cropROI(Bitmap source, RectF box) {
+    private void cropLuma(ImageProxy.PlaneProxy yPlane, FrameOrientation orientation,
+                          android.graphics.Rect sensorCrop) {
+        Mat luma = new Mat(orientation.sensorHeight, orientation.sensorWidth, CvType.CV_8UC1,
+                yPlane.getBuffer(), yPlane.getRowStride());
+        Mat region = luma.submat(sensorCrop.top, sensorCrop.bottom, sensorCrop.left, sensorCrop.right);
         try {
-            // Add padding to ensure we capture edges
-            float padding = Math.min(box.width(), box.height()) * 0.1f;
+            // Contiguous copy, so it can be handed to ML Kit as NV21
+            region.copyTo(lumaCrop);
+        } finally {
+            region.release();
+            luma.release();
+        }
+    }
 
-            int left = Math.max(0, (int) (box.left - padding));
-            int top = Math.max(0, (int) (box.top - padding));
-            int right = Math.min(source.getWidth(), (int) (box.right + padding));
-            int bottom = Math.min(source.getHeight(), (int) (box.bottom + padding));
+    /**
+     * lumaCrop as an NV21 InputImage with neutral chroma, for the object detector.
+     * ML Kit applies the rotation and reports boxes upright.
+     */
+    private InputImage lumaToInputImage(int rotationDegrees) {
+        int width = lumaCrop.cols();
+        int height = lumaCrop.rows();
+        int lumaSize = width * height;
+        int size = lumaSize + lumaSize / 2;
+
+        if (nv21Buffer == null || nv21Buffer.length != size) {
+            nv21Buffer = new byte[size];
+            Arrays.fill(nv21Buffer, lumaSize, size, (byte) 128);
+        }
+        // Only the luminance part is written; the chroma stays neutral grey
+        lumaCrop.get(0, 0, nv21Buffer);
 
-            int width = right - left;
-            int height = bottom - top;
+        return InputImage.fromByteArray(nv21Buffer, width, height, rotationDegrees, InputImage.IMAGE_FORMAT_NV21);
+    }
 
-            if (width <= 0 || height <= 0) {
-                return null;
-            }
+    /**
+     * Refines corners over the sensor-oriented crop of one of the two paths
+     */
+    private interface RoiRefiner {
+        /**
+         * @param roi region of the crop, in crop (sensor) coordinates
+         * @return 4 corners in ROI coordinates, or null
+         */
+        Point[] refine(android.graphics.Rect roi);
+    }
 
-            return Bitmap.createBitmap(source, left, top, width, height);
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Failed to crop ROI", e);
+    /**
+     * STEPS 2-3, shared by both paths. The upright rough box is padded, mapped onto
+     * the unrotated crop and refined there; only the four corners are rotated back.
+     *
+     * @return corners in upright frame coordinates (TL, TR, BR, BL), or null
+     */
+    private Point[] refineInSensorSpace(FrameOrientation orientation, RectF roughBox,
+                                        android.graphics.Rect sensorCrop, RoiRefiner refiner) {
+        android.graphics.Rect roiUpright = roiBounds(roughBox,
+                orientation.getUprightWidth(), orientation.getUprightHeight());
+        if (roiUpright == null) {
+            return null;
+        }
+
+        android.graphics.Rect roi = toSensor(orientation, roiUpright);
+        roi.offset(-sensorCrop.left, -sensorCrop.top);
+        if (!roi.intersect(0, 0, sensorCrop.width(), sensorCrop.height())) {
+            Log.d(TAG, "⚠️ Failed to crop ROI");
+            return null;
+        }
+
+        Point[] cornersInROI = refiner.refine(roi);
+        if (cornersInROI == null) {
+            return null;
+        }
+
+        Point[] cornersInSensor = new Point[cornersInROI.length];
+        for (int i = 0; i < cornersInROI.length; i++) {
+            cornersInSensor[i] = new Point(cornersInROI[i].x + roi.left + sensorCrop.left,
+                    cornersInROI[i].y + roi.top + sensorCrop.top);
+        }
+        // Rotation moves which corner is top-left, so order again upright
+        return orderCorners(orientation.toUpright(cornersInSensor));
+    }
+
+    /**
+     * STEPS 4-7, shared by both paths: map corners to the preview and analyse alignment
+     *
+     * @param roughBox       ML box in upright frame coordinates
+     * @param refinedCorners OpenCV corners in upright frame coordinates, or null
+     */
+    private AlignmentResult finishAlignment(RectF roughBox, Point[] refinedCorners,
+                                            int orientedWidth, int orientedHeight) {
+        // STEP 4: Corners in full (upright) frame coordinates
+        Point[] cornersInFullBitmap;
+        if (refinedCorners != null) {
+            cornersInFullBitmap = refinedCorners;
+            Log.d(TAG, "✅ OpenCV refined 4 corners found");
+        } else {
+            // Fallback to rough box corners
+            cornersInFullBitmap = boundsToCorners(roughBox);
+            Log.d(TAG, "⚠️ OpenCV refinement failed, using ML box corners");
+        }
+
+        Log.d(TAG, "🗺️ Corners in full bitmap:");
+        for (int i = 0; i < cornersInFullBitmap.length; i++) {
+            Log.d(TAG, "   Corner " + i + ": " + cornersInFullBitmap[i]);
+        }
+
+        // STEP 5: Map corners from full bitmap to preview coordinates
+        Point[] cornersInPreview = mapCornersToPreview(cornersInFullBitmap, orientedWidth, orientedHeight);
+
+        Log.d(TAG, "🗺️ Corners in preview:");
+        for (int i = 0; i < cornersInPreview.length; i++) {
+            Log.d(TAG, "   Corner " + i + ": " + cornersInPreview[i]);
+        }
+
+        lastValidCorners = cornersInPreview;
+
+        // STEP 6: Create bounding rect from corners for alignment check
+        RectF documentBoundsInPreview = cornersToRect(cornersInPreview);
+
+        Log.d(TAG, "🔍 DEBUG - Size Comparison:");
+        Log.d(TAG, "   Doc bounds: " + rectToString(documentBoundsInPreview));
+        Log.d(TAG, "   Guide box: " + rectToString(cachedGuideBox));
+        Log.d(TAG, "   Width ratio: " + (documentBoundsInPreview.width() / cachedGuideBox.width()));
+        Log.d(TAG, "   Height ratio: " + (documentBoundsInPreview.height() / cachedGuideBox.height()));
+
+        // STEP 7: Analyze alignment with guide box
+        AlignmentAnalysis analysis = analyzeAlignment(documentBoundsInPreview, cachedGuideBox);
+
+        Log.d(TAG, "📊 Alignment Analysis:");
+        Log.d(TAG, "   IoU: " + String.format("%.2f", analysis.iou));
+        Log.d(TAG, "   Position OK: " + analysis.positionOk);
+        Log.d(TAG, "   Size OK: " + analysis.sizeOk);
+        Log.d(TAG, "   Message: " + analysis.message);
+
+        return processAnalysis(analysis, cornersInPreview);
+    }
+
+    /**
+     * ML box padded by 10% to ensure we capture edges, clamped to the image
+     */
+    private android.graphics.Rect roiBounds(RectF box, int imageWidth, int imageHeight) {
+        float padding = Math.min(box.width(), box.height()) * 0.1f;
+
+        int left = Math.max(0, (int) (box.left - padding));
+        int top = Math.max(0, (int) (box.top - padding));
+        int right = Math.min(imageWidth, (int) (box.right + padding));
+        int bottom = Math.min(imageHeight, (int) (box.bottom + padding));
+
+        if (right - left <= 0 || bottom - top <= 0) {
             return null;
         }
+        return new android.graphics.Rect(left, top, right, bottom);
     }
 
     /**
@@ -314,34 +515,41 @@ public class DocumentAlignmentDetector {
      * Returns 4 refined corner points in ROI coordinates
      */
     private Point[] refineWithOpenCV(Bitmap roiBitmap) {
-        Mat src = null;
-        Mat gray = null;
+        Mat src = framePool.acquireMat(roiBitmap.getHeight(), roiBitmap.getWidth(), CvType.CV_8UC4);
+        Mat gray = framePool.acquireMat(roiBitmap.getHeight(), roiBitmap.getWidth(), CvType.CV_8UC1);
+        try {
+            Utils.bitmapToMat(roiBitmap, src);
+            Imgproc.cvtColor(src, gray, Imgproc.COLOR_RGBA2GRAY);
+            return refineGray(gray);
+        } catch (Exception e) {
+            Log.e(TAG, "❌ OpenCV refinement error", e);
+            return null;
+        } finally {
+            framePool.release(src);
+            framePool.release(gray);
+        }
+    }
+
+    /**
+     * STEP 3 on a grayscale Mat (owned by the caller)
+     */
+    private Point[] refineGray(Mat gray) {
         Mat blurred = null;
         Mat edges = null;
         Mat dilated = null;
 
         try {
-            // Convert bitmap to Mat
-            src = new Mat();
-            Utils.bitmapToMat(roiBitmap, src);
-
-            // Convert to grayscale
-            gray = new Mat();
-            Imgproc.cvtColor(src, gray, Imgproc.COLOR_RGBA2GRAY);
-
             // Apply Gaussian blur to reduce noise
-            blurred = new Mat();
+            blurred = framePool.acquireMat(gray.rows(), gray.cols(), CvType.CV_8UC1);
             Imgproc.GaussianBlur(gray, blurred, new Size(5, 5), 0);
 
             // Canny edge detection
-            edges = new Mat();
+            edges = framePool.acquireMat(gray.rows(), gray.cols(), CvType.CV_8UC1);
             Imgproc.Canny(blurred, edges, CANNY_THRESHOLD_LOW, CANNY_THRESHOLD_HIGH);
 
             // Dilate to close gaps in edges
-            dilated = new Mat();
-            Mat kernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
-            Imgproc.dilate(edges, dilated, kernel);
-            kernel.release();
+            dilated = framePool.acquireMat(gray.rows(), gray.cols(), CvType.CV_8UC1);
+            Imgproc.dilate(edges, dilated, dilateKernel);
 
             // Find contours
             List<MatOfPoint> contours = new ArrayList<>();
@@ -356,7 +564,7 @@ public class DocumentAlignmentDetector {
             }
 
             // Find the best quadrilateral contour
-            double imageArea = roiBitmap.getWidth() * roiBitmap.getHeight();
+            double imageArea = gray.cols() * gray.rows();
             double minArea = imageArea * MIN_CONTOUR_AREA_RATIO;
             double maxArea = imageArea * MAX_CONTOUR_AREA_RATIO;
 
@@ -430,11 +638,9 @@ public class DocumentAlignmentDetector {
             return null;
         } finally {
             // Release all Mats
-            if (src != null) src.release();
-            if (gray != null) gray.release();
-            if (blurred != null) blurred.release();
-            if (edges != null) edges.release();
-            if (dilated != null) dilated.release();
+            framePool.release(blurred);
+            framePool.release(edges);
+            framePool.release(dilated);
         }
     }
 
@@ -475,54 +681,40 @@ public class DocumentAlignmentDetector {
      */
     private Point[] orderCorners(MatOfPoint2f quad) {
         org.opencv.core.Point[] pts = quad.toArray();
+        Point[] corners = new Point[pts.length];
+        for (int i = 0; i < pts.length; i++) {
+            corners[i] = new Point((int) pts[i].x, (int) pts[i].y);
+        }
+        return orderCorners(corners);
+    }
+
+    private Point[] orderCorners(Point[] corners) {
+        Point[] pts = corners.clone();
 
         // Sort by y-coordinate first
-        Arrays.sort(pts, Comparator.comparingDouble(p -> p.y));
+        Arrays.sort(pts, Comparator.comparingInt(p -> p.y));
 
         // Top two points (smallest y)
-        org.opencv.core.Point[] topTwo = {pts[0], pts[1]};
+        Point[] topTwo = {pts[0], pts[1]};
         // Bottom two points (largest y)
-        org.opencv.core.Point[] bottomTwo = {pts[2], pts[3]};
+        Point[] bottomTwo = {pts[2], pts[3]};
 
         // Sort top two by x (left to right)
         if (topTwo[0].x > topTwo[1].x) {
-            org.opencv.core.Point temp = topTwo[0];
+            Point temp = topTwo[0];
             topTwo[0] = topTwo[1];
             topTwo[1] = temp;
         }
 
         // Sort bottom two by x (left to right)
         if (bottomTwo[0].x > bottomTwo[1].x) {
-            org.opencv.core.Point temp = bottomTwo[0];
+            Point temp = bottomTwo[0];
             bottomTwo[0] = bottomTwo[1];
             bottomTwo[1] = temp;
         }
 
         // Order: TL, TR, BR, BL
-        return new Point[]{
-                new Point((int) topTwo[0].x, (int) topTwo[0].y),      // Top-Left
-                new Point((int) topTwo[1].x, (int) topTwo[1].y),      // Top-Right
-                new Point((int) bottomTwo[1].x, (int) bottomTwo[1].y), // Bottom-Right
-                new Point((int) bottomTwo[0].x, (int) bottomTwo[0].y)  // Bottom-Left
-        };
-    }
-
-    /**
-     * STEP 4: Map corners from ROI coordinates back to cropped bitmap coordinates
-     */
-    private Point[] mapCornersFromROI(Point[] roiCorners, RectF roughBox) {
-        float padding = Math.min(roughBox.width(), roughBox.height()) * 0.1f;
-        int offsetX = (int) (roughBox.left - padding);
-        int offsetY = (int) (roughBox.top - padding);
-
-        Point[] croppedCorners = new Point[4];
-        for (int i = 0; i < 4; i++) {
-            croppedCorners[i] = new Point(
-                    roiCorners[i].x + offsetX,
-                    roiCorners[i].y + offsetY
-            );
-        }
-        return croppedCorners;
+        return new Point[]{topTwo[0], topTwo[1], bottomTwo[1], bottomTwo[0]};
     }
 
     /**
@@ -593,16 +785,15 @@ public class DocumentAlignmentDetector {
     /**
      * ML Kit Object Detection (rough box)
      */
-    private RectF detectDocumentML(Bitmap bitmap) {
+    private RectF detectDocumentML(InputImage image, int imageWidth, int imageHeight) {
         try {
-            InputImage image = InputImage.fromBitmap(bitmap, 0);
             List<DetectedObject> results = Tasks.await(objectDetector.process(image));
 
             if (results.isEmpty()) {
                 return null;
             }
 
-            float imageArea = bitmap.getWidth() * bitmap.getHeight();
+            float imageArea = imageWidth * imageHeight;
             DetectedObject bestDocument = null;
             float bestScore = 0;
 
@@ -624,8 +815,8 @@ public class DocumentAlignmentDetector {
                 float aspectScore = 1f - Math.abs(aspectRatio - 1.586f) / 1.0f;
                 score += Math.max(0, aspectScore) * 0.4f;
 
-                float centerX = bounds.centerX() / (float) bitmap.getWidth();
-                float centerY = bounds.centerY() / (float) bitmap.getHeight();
+                float centerX = bounds.centerX() / (float) imageWidth;
+                float centerY = bounds.centerY() / (float) imageHeight;
                 float centerScore = 1f - (Math.abs(centerX - 0.5f) + Math.abs(centerY - 0.5f));
                 score += centerScore * 0.3f;
 
@@ -780,18 +971,6 @@ public class DocumentAlignmentDetector {
         }
     }
 
-    private Bitmap rotateBitmap(Bitmap source, int degrees) {
-        if (degrees == 0) return source;
-        Matrix matrix = new Matrix();
-        matrix.postRotate(degrees);
-        try {
-            return Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(), matrix, true);
-        } catch (OutOfMemoryError e) {
-            Log.e(TAG, "❌ OOM rotating bitmap", e);
-            return source;
-        }
-    }
-
     private String rectToString(RectF r) {
         return String.format("[%.0f,%.0f - %.0f,%.0f] (%.0fx%.0f)",
                 r.left, r.top, r.right, r.bottom, r.width(), r.height());
@@ -810,6 +989,9 @@ public class DocumentAlignmentDetector {
     public void cleanup() {
         objectDetector.close();
         executorService.shutdown();
+        lumaCrop.release();
+        dilateKernel.release();
+        nv21Buffer = null;
     }
 
     // ═══════════════════════════════════════════════════════════════════════════
@@ -24,6 +24,9 @@ import com.example.reader.ocr.OCRProcessor;
 import com.example.reader.ui.UIUpdater;
 import com.example.reader.utils.BitmapUtils;
 import com.example.reader.utils.Constants;
+import com.example.reader.utils.FramePool;
+import com.example.reader.utils.MrzLineLexer;
+import com.example.reader.utils.YuvConverter;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.text.Text;
 import com.google.mlkit.vision.text.TextRecognition;
@@ -32,12 +35,14 @@ import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
 
 import org.opencv.android.Utils;
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.CLAHE;
 import org.opencv.imgproc.Imgproc;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 public class MRZDetectionHandler {
     private static final String TAG = "MRZDetectionHandler";
@@ -47,9 +52,12 @@ public class MRZDetectionHandler {
     private final TextRecognizer recognizer;
     private final OCRProcessor ocrProcessor;
     private final MRZProcessor mrzProcessor;
+    private final MrzLineLexer lineLexer = new MrzLineLexer();
+    private final YuvConverter yuvConverter = new YuvConverter();
     private final UIUpdater uiUpdater;
     private final DocumentAlignmentDetector alignmentDetector;
     private final CameraManager cameraManager;
+    private final FramePool framePool;
 
     private long lastProcessTime = 0;
     private volatile boolean isProcessing = false;
@@ -66,7 +74,19 @@ public class MRZDetectionHandler {
                                DocumentAlignmentDetector alignmentDetector,
                                CameraManager cameraManager,
                                long processInterval) {
+        this(context, guidanceOverlay, instructionLabel, documentTypeLabel, resultLabel,
+                mrzParserManager, alignmentDetector, cameraManager, processInterval, new FramePool());
+    }
+
+    public MRZDetectionHandler(Context context, MRZGuidanceOverlay guidanceOverlay,
+                               TextView instructionLabel, TextView documentTypeLabel,
+                               TextView resultLabel, MrzParserManager mrzParserManager,
+                               DocumentAlignmentDetector alignmentDetector,
+                               CameraManager cameraManager,
+                               long processInterval,
+                               FramePool framePool) {
         this.context = context;
+        this.framePool = framePool;
         this.recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
         this.alignmentDetector = alignmentDetector;
         this.guidanceOverlay = guidanceOverlay;
@@ -128,7 +148,15 @@ public class MRZDetectionHandler {
                 rotationDegrees
         );
 
-        Bitmap bitmap = BitmapUtils.inputImageToBitmap(image, imageProxy);
+        if (alignmentDetector.usesLumaAnalysis()) {
+            // Alignment reads the Y plane directly; nothing is converted to RGB
+            processWithAlignment(image, imageProxy);
+            return;
+        }
+
+        // Pooled by the converter: valid until the next frame, never recycled here.
+        // Left in sensor orientation; the detector rotates coordinates, not pixels.
+        Bitmap bitmap = yuvConverter.toBitmap(imageProxy, 0);
 
         if (bitmap != null) {
             Log.d(TAG, "🖼️  Bitmap created: " + bitmap.getWidth() + "x" + bitmap.getHeight());
@@ -142,15 +170,15 @@ public class MRZDetectionHandler {
     }
 
     private void updateCapturedBitmap(Bitmap newBitmap) {
-        if (capturedBitmap != null && capturedBitmap != newBitmap) {
-            capturedBitmap.recycle();
-        }
         capturedBitmap = newBitmap;
     }
 
     private void processWithAlignment(InputImage image, ImageProxy imageProxy) {
         DocumentAlignmentDetector.AlignmentResult alignmentResult =
-                alignmentDetector.checkAlignment(capturedBitmap);
+                alignmentDetector.usesLumaAnalysis()
+                        ? alignmentDetector.checkAlignment(imageProxy)
+                        : alignmentDetector.checkAlignment(capturedBitmap,
+                                imageProxy.getImageInfo().getRotationDegrees());
 
         uiUpdater.updateAlignmentUI(alignmentResult);
 
@@ -188,9 +216,9 @@ public class MRZDetectionHandler {
 
     private boolean hasPotentialMRZ(List<OCRProcessor.MRZCandidate> candidates) {
         for (OCRProcessor.MRZCandidate candidate : candidates) {
-            String cleaned = candidate.text.replaceAll("\\s", "");
-            if (cleaned.length() >= 28 && cleaned.length() <= 46) {
-                if (cleaned.contains("<") || cleaned.matches(".*[A-Z]{10,}.*")) {
+            int length = lineLexer.scan(candidate.text, MrzLineLexer.MODE_COMPACT);
+            if (length >= 28 && length <= 46) {
+                if (lineLexer.getFillerCount() > 0 || lineLexer.getLongestLetterRun() >= 10) {
                     return true;
                 }
             }
@@ -215,7 +243,9 @@ public class MRZDetectionHandler {
                         Log.d(TAG, "📷 High-res capture success: " +
                                 highResImage.getWidth() + "x" + highResImage.getHeight());
 
-                        Bitmap highRes = BitmapUtils.imageProxyToBitmap(highResImage);
+                        // Decoded as captured; only the guidance crop gets rotated
+                        int rotation = highResImage.getImageInfo().getRotationDegrees();
+                        Bitmap highRes = BitmapUtils.imageProxyToBitmap(highResImage, false);
                         highResImage.close();
 
                         if (highRes == null) {
@@ -224,7 +254,7 @@ public class MRZDetectionHandler {
                             return;
                         }
 
-                        processHighResImage(highRes);
+                        processHighResImage(highRes, rotation);
                     }
 
                     @Override
@@ -235,15 +265,15 @@ public class MRZDetectionHandler {
                 });
     }
 
-    private void processHighResImage(Bitmap highRes) {
-        Bitmap cropped = BitmapUtils.cropToGuidanceOverlay(highRes, guidanceOverlay, previewView);
+    private void processHighResImage(Bitmap highRes, int rotationDegrees) {
+        Bitmap cropped = BitmapUtils.cropToGuidanceOverlay(highRes, rotationDegrees, guidanceOverlay, previewView);
 
         if (lastHighResBitmap != null) {
             lastHighResBitmap.recycle();
         }
         lastHighResBitmap = BitmapUtils.copyBitmap(cropped);
 
-        Bitmap preprocessed = preprocessForOCR(cropped);
+        Bitmap preprocessed = preprocessForOCR(cropped, framePool);
 
         InputImage ocrInput = InputImage.fromBitmap(preprocessed, 0);
 
@@ -259,7 +289,7 @@ public class MRZDetectionHandler {
                 .addOnCompleteListener(task -> {
                     highRes.recycle();
                     cropped.recycle();
-                    preprocessed.recycle();
+                    framePool.release(preprocessed);
 
                     if (!mrzProcessor.hasScanned()) {
                         isCapturingHighRes = false;
@@ -288,30 +318,37 @@ public class MRZDetectionHandler {
         }
     }
 
-    public static Bitmap preprocessForOCR(Bitmap input) {
-        Mat src = new Mat();
-        Utils.bitmapToMat(input, src);
-
-        Mat gray = new Mat();
-        Imgproc.cvtColor(src, gray, Imgproc.COLOR_RGBA2GRAY);
-
-        CLAHE clahe = Imgproc.createCLAHE(2.0, new Size(8, 8));
-        Mat enhanced = new Mat();
-        clahe.apply(gray, enhanced);
-
-        Mat sharpened = new Mat();
-        Imgproc.GaussianBlur(enhanced, sharpened, new Size(0, 0), 3);
-        Core.addWeighted(enhanced, 1.5, sharpened, -0.5, 0, sharpened);
-
-        Bitmap result = Bitmap.createBitmap(input.getWidth(), input.getHeight(), Bitmap.Config.ARGB_8888);
-        Utils.matToBitmap(sharpened, result);
-
-        src.release();
-        gray.release();
-        enhanced.release();
-        sharpened.release();
-
-        return result;
+    /**
+     * CLAHE + unsharp mask for OCR, with all buffers borrowed from the pool.
+     * The caller gives the result back with {@link FramePool#release(Bitmap)}.
+     */
+    public static Bitmap preprocessForOCR(Bitmap input, FramePool pool) {
+        int rows = input.getHeight();
+        int cols = input.getWidth();
+
+        Mat src = pool.acquireMat(rows, cols, CvType.CV_8UC4);
+        Mat gray = pool.acquireMat(rows, cols, CvType.CV_8UC1);
+        Mat enhanced = pool.acquireMat(rows, cols, CvType.CV_8UC1);
+        Mat sharpened = pool.acquireMat(rows, cols, CvType.CV_8UC1);
+        try {
+            Utils.bitmapToMat(input, src);
+            Imgproc.cvtColor(src, gray, Imgproc.COLOR_RGBA2GRAY);
+
+            CLAHE clahe = Imgproc.createCLAHE(2.0, new Size(8, 8));
+            clahe.apply(gray, enhanced);
+
+            Imgproc.GaussianBlur(enhanced, sharpened, new Size(0, 0), 3);
+            Core.addWeighted(enhanced, 1.5, sharpened, -0.5, 0, sharpened);
+
+            Bitmap result = pool.acquireBitmap(cols, rows, Bitmap.Config.ARGB_8888);
+            Utils.matToBitmap(sharpened, result);
+            return result;
+        } finally {
+            pool.release(src);
+            pool.release(gray);
+            pool.release(enhanced);
+            pool.release(sharpened);
+        }
     }
 
     private void handleSuccessfulScan(MRZProcessor.DetectionResult result) {
@@ -334,33 +371,36 @@ public class MRZDetectionHandler {
         sendResultAndFinish(activity, result);
     }
 
+    /**
+     * The only place parsed MRZ fields become Intent extras
+     */
     private void sendResultAndFinish(Activity activity, MRZProcessor.DetectionResult result) {
         Intent resultIntent = new Intent();
 
         if (result.getMrzInfo() != null) {
             var mrzInfo = result.getMrzInfo();
 
-            resultIntent.putExtra(Constants.EXTRA_DOC_NUM, mrzInfo.documentNumber);
-            resultIntent.putExtra(Constants.EXTRA_DOB, mrzInfo.dateOfBirth);
-            resultIntent.putExtra(Constants.EXTRA_EXPIRY, mrzInfo.expiryDate);
+            resultIntent.putExtra(Constants.EXTRA_DOC_NUM, mrzInfo.getDocumentNumber());
+            resultIntent.putExtra(Constants.EXTRA_DOB, mrzInfo.getDateOfBirth());
+            resultIntent.putExtra(Constants.EXTRA_EXPIRY, mrzInfo.getDateOfExpiry());
             resultIntent.putExtra(Constants.EXTRA_MRZ_LINES, result.getMrzLineCount());
 
-            if (mrzInfo.documentCode != null && !mrzInfo.documentCode.isEmpty()) {
-                resultIntent.putExtra(Constants.EXTRA_DOC_TYPE, mrzInfo.documentCode);
+            if (mrzInfo.getDocumentType() != null && !mrzInfo.getDocumentType().isEmpty()) {
+                resultIntent.putExtra(Constants.EXTRA_DOC_TYPE, mrzInfo.getDocumentType());
             }
 
-            resultIntent.putExtra("FIRST_NAME", mrzInfo.givenNames);
-            resultIntent.putExtra("LAST_NAME", mrzInfo.surname);
-            resultIntent.putExtra("NATIONALITY", mrzInfo.nationality);
-            resultIntent.putExtra("ISSUING_COUNTRY", mrzInfo.issuingCountry);
-            resultIntent.putExtra("GENDER", mrzInfo.sex);
+            resultIntent.putExtra("FIRST_NAME", mrzInfo.getGivenNames());
+            resultIntent.putExtra("LAST_NAME", mrzInfo.getSurname());
+            resultIntent.putExtra("NATIONALITY", mrzInfo.getNationality());
+            resultIntent.putExtra(Constants.EXTRA_ISSUING_COUNTRY, mrzInfo.getIssuingCountry());
+            resultIntent.putExtra("GENDER", mrzInfo.getSex());
 
             Log.d(TAG, "📤 Sending result to activity:");
-            Log.d(TAG, "   ├─ Document Number: " + mrzInfo.documentNumber);
-            Log.d(TAG, "   ├─ DOB: " + mrzInfo.dateOfBirth);
-            Log.d(TAG, "   ├─ Expiry: " + mrzInfo.expiryDate);
+            Log.d(TAG, "   ├─ Document Number: " + mrzInfo.getDocumentNumber());
+            Log.d(TAG, "   ├─ DOB: " + mrzInfo.getDateOfBirth());
+            Log.d(TAG, "   ├─ Expiry: " + mrzInfo.getDateOfExpiry());
             Log.d(TAG, "   ├─ MRZ Lines: " + result.getMrzLineCount());
-            Log.d(TAG, "   └─ Doc Type: " + mrzInfo.documentCode);
+            Log.d(TAG, "   └─ Doc Type: " + mrzInfo.getDocumentType());
         }
 
         uiUpdater.showSuccess();
@@ -374,20 +414,31 @@ public class MRZDetectionHandler {
     private void finalizeImageProcessing(ImageProxy imageProxy) {
         imageProxy.close();
         isProcessing = false;
+        framePool.endFrame();
         Log.d(TAG, "🏁 Frame processing complete");
     }
 
+    /**
+     * Last preview frame converted to RGB, in sensor orientation; null in
+     * luminance analysis mode
+     */
     public Bitmap getCapturedBitmap() {
         return capturedBitmap;
     }
 
-    public void cleanup() {
+    /**
+     * Release resources. Call once the analyzer has been cleared from the ImageAnalysis:
+     * the frame converter is released on the analysis executor, after any frame still
+     * in {@link #analyzeImage}.
+     */
+    public void cleanup(Executor analysisExecutor) {
         Log.d(TAG, "🧹 Cleaning up resources...");
         recognizer.close();
-        if (capturedBitmap != null) {
-            capturedBitmap.recycle();
+        analysisExecutor.execute(() -> {
             capturedBitmap = null;
-        }
+            yuvConverter.release();
+            Log.d(TAG, "🧹 Frame converter released");
+        });
         if (lastHighResBitmap != null) {
             lastHighResBitmap.recycle();
             lastHighResBitmap = null;
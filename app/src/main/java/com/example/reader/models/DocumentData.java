@@ -1,6 +1,9 @@
 package com.example.reader.models;
 
 import android.graphics.Bitmap;
+
+import com.example.reader.readers.ReadTrace;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -48,6 +51,11 @@ public abstract class DocumentData {
     public String authenticationMethod;
     public List<String> securityFeatures = new ArrayList<>();
 
+    // Chip transport
+    public boolean extendedLengthApdu;
+    public int readBinaryBlockSize;
+    public ReadTrace readTrace;
+
     // Additional data storage for extensibility
     public Map<String, Object> additionalData = new HashMap<>();
 
@@ -59,6 +59,7 @@ public class PassportData extends DocumentData {
     // DG14 - Security Options
     public boolean hasTerminalAuthentication;
     public String chipAuthAlgorithm;
+    public String activeAuthSignatureAlgorithm;
 
     // DG15 - Active Authentication
     public PublicKey activeAuthPublicKey;
@@ -1,6 +1,5 @@
 package com.example.reader.mrz;
 
-import android.content.Intent;
 import android.util.Log;
 
 import com.example.reader.ocr.OCRProcessor;
@@ -16,6 +15,8 @@ public class MRZProcessor {
     private static final float HIGH_CONFIDENCE_THRESHOLD = 0.7f;
 
     private final MrzParserManager parserManager;
+    private final CheckDigitCorrector corrector = new CheckDigitCorrector();
+    private final MrzConsensus consensus = new MrzConsensus();
 
     private int consecutiveDetectionCount = 0;
     private String lastStableMRZ = null;
@@ -52,13 +53,31 @@ public class MRZProcessor {
             return DetectionResult.partial(candidates.size());
         }
 
+        // A frame whose check digits single out one reading needs no confirmation
+        CheckDigitCorrector.Result corrected = corrector.correct(extractedMRZ, docType, avgConfidence);
+        boolean verified = corrected != null && corrected.verified;
+        if (verified) {
+            if (corrected.cost > 0) {
+                Log.d(TAG, "Check digits corrected MRZ to: " + corrected.mrz + " (cost " + corrected.cost + ")");
+            }
+            extractedMRZ = corrected.mrz;
+        }
+
+        // Every frame votes; the consensus can validate where no single frame does
+        String consensusMRZ = consensus.add(extractedMRZ, docType, avgConfidence);
+        if (!verified && consensusMRZ != null) {
+            Log.d(TAG, "Consensus MRZ validated after " + consensus.getFrameCount() + " frames");
+            extractedMRZ = consensusMRZ;
+            verified = true;
+        }
+
         updateDetectionState(extractedMRZ, docType, avgConfidence);
 
-        boolean shouldAccept = !hasScanned && shouldAcceptResult(avgConfidence);
+        boolean shouldAccept = !hasScanned && (verified || shouldAcceptResult(avgConfidence));
         if (shouldAccept) {
             hasScanned = true;
             // Parse the MRZ using MrzParserManager
-            MRZInfo mrzInfo = parseMRZ(extractedMRZ, docType);
+            MrzFields mrzInfo = parseMRZ(extractedMRZ, docType);
 
             if (mrzInfo == null) {
                 Log.w(TAG, "MRZ parsing returned null info");
@@ -66,7 +85,7 @@ public class MRZProcessor {
                         detectedDocumentType, lastConfidence, consecutiveDetectionCount,
                         REQUIRED_CONSECUTIVE_DETECTIONS, false, mrzInfo);
             } else {
-                Log.d(TAG, "MRZ parsed successfully: DocNum=" + mrzInfo.documentNumber);
+                Log.d(TAG, "MRZ parsed successfully: DocNum=" + mrzInfo.getDocumentNumber());
             }
 
             return new DetectionResult(true, candidates.size(), extractedMRZ,
@@ -99,37 +118,15 @@ public class MRZProcessor {
     /**
      * Parse MRZ text using the MrzParserManager
      */
-    private MRZInfo parseMRZ(String mrzText, String docType) {
+    private MrzFields parseMRZ(String mrzText, String docType) {
         try {
             Log.d(TAG, "Parsing MRZ with type hint: " + docType);
-            Intent parsedIntent = parserManager.parseMrz(mrzText, docType);
-
-            if (parsedIntent != null) {
-                // Extract data from Intent
-                String documentNumber = parsedIntent.getStringExtra("DOC_NUM");
-                String dateOfBirth = parsedIntent.getStringExtra("DOB");
-                String expiryDate = parsedIntent.getStringExtra("EXPIRY");
-                String givenNames = parsedIntent.getStringExtra("FIRST_NAME");
-                String surname = parsedIntent.getStringExtra("LAST_NAME");
-                String nationality = parsedIntent.getStringExtra("NATIONALITY");
-                String issuingCountry = parsedIntent.getStringExtra("ISSUING_COUNTRY");
-                String sex = parsedIntent.getStringExtra("SEX");
-                String documentCode = parsedIntent.getStringExtra("DOC_TYPE");
-
-                Log.d(TAG, "Successfully parsed MRZ - DocNum: " + documentNumber +
-                        ", Type: " + documentCode);
-
-                return new MRZInfo(
-                        documentNumber,
-                        dateOfBirth,
-                        expiryDate,
-                        givenNames,
-                        surname,
-                        nationality,
-                        issuingCountry,
-                        sex,
-                        documentCode
-                );
+            MrzFields parsed = parserManager.parseMrz(mrzText, docType);
+
+            if (parsed != null) {
+                Log.d(TAG, "Successfully parsed MRZ - DocNum: " + parsed.getDocumentNumber() +
+                        ", Type: " + parsed.getDocumentType());
+                return parsed;
             } else {
                 Log.w(TAG, "Parser returned null result");
             }
@@ -142,41 +139,13 @@ public class MRZProcessor {
     public void resetDetection() {
         consecutiveDetectionCount = 0;
         lastStableMRZ = null;
+        consensus.reset();
     }
 
     public boolean hasScanned() {
         return hasScanned;
     }
 
-    /**
-     * Structured MRZ information extracted from Intent
-     */
-    public static class MRZInfo {
-        public final String documentNumber;
-        public final String dateOfBirth;
-        public final String expiryDate;
-        public final String givenNames;
-        public final String surname;
-        public final String nationality;
-        public final String issuingCountry;
-        public final String sex;
-        public final String documentCode;
-
-        public MRZInfo(String documentNumber, String dateOfBirth, String expiryDate,
-                       String givenNames, String surname, String nationality,
-                       String issuingCountry, String sex, String documentCode) {
-            this.documentNumber = documentNumber;
-            this.dateOfBirth = dateOfBirth;
-            this.expiryDate = expiryDate;
-            this.givenNames = givenNames;
-            this.surname = surname;
-            this.nationality = nationality;
-            this.issuingCountry = issuingCountry;
-            this.sex = sex;
-            this.documentCode = documentCode;
-        }
-    }
-
     public static class DetectionResult {
         public final boolean mrzFound;
         public final int lineCount;
@@ -186,12 +155,12 @@ public class MRZProcessor {
         public final int consecutiveCount;
         public final int requiredCount;
         private final boolean shouldAccept;
-        private final MRZInfo mrzInfo;
+        private final MrzFields mrzInfo;
 
         DetectionResult(boolean mrzFound, int lineCount, String mrzText,
                         String documentType, float confidence,
                         int consecutiveCount, int requiredCount, boolean shouldAccept,
-                        MRZInfo mrzInfo) {
+                        MrzFields mrzInfo) {
             this.mrzFound = mrzFound;
             this.lineCount = lineCount;
             this.mrzText = mrzText;
@@ -210,7 +179,7 @@ public class MRZProcessor {
         /**
          * Get the parsed MRZ information
          */
-        public MRZInfo getMrzInfo() {
+        public MrzFields getMrzInfo() {
             return mrzInfo;
         }
 
@@ -1,15 +1,22 @@
 package com.example.reader.ocr;
 
+import com.example.reader.utils.Constants;
 import com.example.reader.utils.MRZUtils;
+import com.example.reader.utils.MrzLineLexer;
 import com.google.mlkit.vision.text.Text;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class OCRProcessor {
 
+    // Reused for every OCR line; extraction runs on the analyzer thread only
+    private final MrzLineLexer lexer = new MrzLineLexer();
+
     public List<MRZCandidate> extractMRZCandidates(Text text, int viewHeight) {
         List<MRZCandidate> candidates = new ArrayList<>();
         if (viewHeight == 0) viewHeight = 1;
@@ -19,12 +26,13 @@ public class OCRProcessor {
 
         for (Text.TextBlock block : text.getTextBlocks()) {
             for (Text.Line line : block.getLines()) {
-                String lineText = line.getText().replace(" ", "").toUpperCase();
-                if (lineText.length() >= 20) {
+                // Whitespace, case and MRZ shape in one pass; only kept lines become Strings
+                int length = lexer.scan(line.getText(), MrzLineLexer.MODE_COMPACT);
+                if (length >= 30 && lexer.looksLikeMrz()) {
                     float conf = getLineConfidence(line);
                     float y = line.getBoundingBox() != null ?
                             line.getBoundingBox().exactCenterY() : viewHeight / 2f;
-                    allLines.add(new LineInfo(lineText, y, conf));
+                    allLines.add(new LineInfo(lexer.toString(), lexer.classify(), y, conf));
                 }
             }
         }
@@ -32,18 +40,10 @@ public class OCRProcessor {
         // Sort by Y position (top to bottom)
         allLines.sort(Comparator.comparing(l -> l.y));
 
-        // Find MRZ lines (usually at bottom, look for << pattern or digits pattern)
+        // MRZ lines (usually at bottom) were picked by filler or data line pattern above
         for (LineInfo line : allLines) {
-            boolean looksLikeMRZ = line.text.contains("<<") ||
-                    line.text.contains("<") ||
-                    MRZUtils.isQuickMRZCheck(line.text) ||
-                    MRZUtils.isQuickEEPCheck(line.text) ||
-                    line.text.matches(".*[A-Z]{3}\\d{6}[MF<]\\d{6}.*"); // Data line pattern
-
-            if (looksLikeMRZ && line.text.length() >= 30) {
-                float yPos = 1.0f - (line.y / viewHeight);
-                candidates.add(new MRZCandidate(line.text, yPos, line.conf));
-            }
+            float yPos = 1.0f - (line.y / viewHeight);
+            candidates.add(new MRZCandidate(line.text, line.lineType, yPos, line.conf));
         }
 
         return rankAndFilterCandidates(candidates);
@@ -51,10 +51,12 @@ public class OCRProcessor {
 
     private static class LineInfo {
         String text;
+        String lineType;
         float y;
         float conf;
-        LineInfo(String text, float y, float conf) {
+        LineInfo(String text, String lineType, float y, float conf) {
             this.text = text;
+            this.lineType = lineType;
             this.y = y;
             this.conf = conf;
         }
@@ -72,10 +74,11 @@ public class OCRProcessor {
         float yPos = line.getBoundingBox() != null ?
                 1.0f - (line.getBoundingBox().exactCenterY() / viewHeight) : 0.5f;
 
-        String quickClean = lineText.replace(" ", "").toUpperCase();
+        lexer.scan(lineText, MrzLineLexer.MODE_COMPACT);
+        String quickClean = lexer.toString();
 
         if (MRZUtils.isQuickEEPCheck(quickClean) || MRZUtils.isQuickMRZCheck(quickClean)) {
-            return new MRZCandidate(lineText, yPos, confidence);
+            return new MRZCandidate(lineText, lexer.classify(), yPos, confidence);
         }
 
         return null;
@@ -90,23 +93,104 @@ public class OCRProcessor {
         }
     }
 
+    /**
+     * Lines of one MRZ share a format, so the lines are grouped by it and the
+     * group most likely to be the MRZ goes first: one with all the format's
+     * lines, then the most lines, then the highest total confidence. If it
+     * is short of lines, the best remaining lines fill up to three, as OCR can
+     * drop or add characters and put a line in another format. Returned top to
+     * bottom.
+     */
     private List<MRZCandidate> rankAndFilterCandidates(List<MRZCandidate> candidates) {
-        return candidates.stream()
-                .sorted(Comparator
-                        .comparing((MRZCandidate c) -> c.confidence).reversed()
-                        .thenComparing(c -> c.yPosition, Comparator.reverseOrder()))
-                .limit(3)
+        Comparator<MRZCandidate> byConfidence = Comparator
+                .comparing((MRZCandidate c) -> c.confidence).reversed()
+                .thenComparing(c -> c.yPosition, Comparator.reverseOrder());
+
+        Map<String, List<MRZCandidate>> groups = new LinkedHashMap<>();
+        for (MRZCandidate candidate : candidates) {
+            String format = lineFormat(candidate.lineType);
+            if (format != null) {
+                groups.computeIfAbsent(format, k -> new ArrayList<>()).add(candidate);
+            }
+        }
+
+        List<MRZCandidate> best = null;
+        int bestExpected = 3;
+        boolean bestComplete = false;
+        int bestLines = 0;
+        float bestConfidence = 0f;
+        for (Map.Entry<String, List<MRZCandidate>> group : groups.entrySet()) {
+            List<MRZCandidate> lines = group.getValue();
+            lines.sort(byConfidence);
+            int expected = Constants.DOC_TYPE_TD1.equals(group.getKey()) ? 3 : 2;
+            if (lines.size() > expected) {
+                lines.subList(expected, lines.size()).clear();
+            }
+            float confidence = 0f;
+            for (MRZCandidate line : lines) {
+                confidence += line.confidence;
+            }
+            boolean complete = lines.size() == expected;
+            if (best == null || (complete && !bestComplete) || (complete == bestComplete
+                    && (lines.size() > bestLines || (lines.size() == bestLines && confidence > bestConfidence)))) {
+                best = lines;
+                bestExpected = expected;
+                bestComplete = complete;
+                bestLines = lines.size();
+                bestConfidence = confidence;
+            }
+        }
+
+        List<MRZCandidate> ranked = new ArrayList<>();
+        if (best != null) {
+            ranked.addAll(best);
+        }
+        if (ranked.size() < bestExpected) {
+            candidates.stream()
+                    .filter(c -> !ranked.contains(c))
+                    .sorted(byConfidence)
+                    .limit(3 - ranked.size())
+                    .forEach(ranked::add);
+        }
+
+        return ranked.stream()
                 .sorted(Comparator.comparing((MRZCandidate c) -> c.yPosition).reversed())
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Format whose lines a line type shares: EEP lines are TD1 wide, MRV-A and
+     * MRV-B lines as wide as TD3 and TD2
+     */
+    private static String lineFormat(String lineType) {
+        if (lineType == null) {
+            return null;
+        }
+        switch (lineType) {
+            case Constants.DOC_TYPE_EEP_CHINA:
+                return Constants.DOC_TYPE_TD1;
+            case Constants.DOC_TYPE_MRVA:
+                return Constants.DOC_TYPE_TD3;
+            case Constants.DOC_TYPE_MRVB:
+                return Constants.DOC_TYPE_TD2;
+            default:
+                return lineType;
+        }
+    }
+
     public static class MRZCandidate {
         public final String text;
+        public final String lineType;   // Constants.DOC_TYPE_* this line's shape matches, or null
         public final float yPosition;
         public final float confidence;
 
         public MRZCandidate(String text, float yPosition, float confidence) {
+            this(text, null, yPosition, confidence);
+        }
+
+        public MRZCandidate(String text, String lineType, float yPosition, float confidence) {
             this.text = text;
+            this.lineType = lineType;
             this.yPosition = yPosition;
             this.confidence = confidence;
         }
@@ -0,0 +1,88 @@
+package com.example.reader.probe;
+
+import android.nfc.tech.IsoDep;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Fast pre-authentication fingerprint of an ISO-DEP chip, see {@link ChipProfile}.
+ *
+ * Costs two unsecured APDUs on top of what the NFC stack already knows from
+ * activation: SELECT EF.CardAccess in the MF (PACE support) and SELECT of the
+ * eMRTD application. The connection is left open: the reader must be handed
+ * this same IsoDep object, since another one from IsoDep.get(tag) cannot connect
+ * while it is. Readers reselect the application themselves.
+ */
+public final class ChipFingerprint {
+
+    private static final String TAG = "@@>> ChipFingerprint";
+
+    // The probes are single short APDUs; a chip that needs longer is not worth waiting for
+    private static final int PROBE_TIMEOUT_MS = 2000;
+
+    // 00 A4 02 0C 02 011C: SELECT EF.CardAccess by FID, no response data
+    private static final byte[] SELECT_CARD_ACCESS = {
+            (byte) 0x00, (byte) 0xA4, (byte) 0x02, (byte) 0x0C, (byte) 0x02, (byte) 0x01, (byte) 0x1C
+    };
+
+    // 00 A4 04 0C 07 A0000002471001: SELECT eMRTD application by AID, no response data
+    private static final byte[] SELECT_EMRTD_AID = {
+            (byte) 0x00, (byte) 0xA4, (byte) 0x04, (byte) 0x0C, (byte) 0x07,
+            (byte) 0xA0, (byte) 0x00, (byte) 0x00, (byte) 0x02, (byte) 0x47, (byte) 0x10, (byte) 0x01
+    };
+
+    private ChipFingerprint() {
+    }
+
+    /**
+     * Connect if needed and probe the chip. Must run off the main thread.
+     *
+     * @throws IOException if the tag left the field
+     */
+    public static ChipProfile fingerprint(IsoDep isoDep) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        if (!isoDep.isConnected()) {
+            isoDep.connect();
+        }
+        int timeout = isoDep.getTimeout();
+        isoDep.setTimeout(PROBE_TIMEOUT_MS);
+
+        int cardAccessSw;
+        int selectAidSw;
+        try {
+            // EF.CardAccess lives in the MF, so it is selected before the application
+            cardAccessSw = sw(isoDep.transceive(SELECT_CARD_ACCESS));
+            selectAidSw = sw(isoDep.transceive(SELECT_EMRTD_AID));
+        } finally {
+            isoDep.setTimeout(timeout);
+        }
+
+        ChipProfile profile = new ChipProfile(
+                isoDep.getHistoricalBytes(),
+                isoDep.getHiLayerResponse(),
+                isoDep.getMaxTransceiveLength(),
+                isoDep.isExtendedLengthApduSupported(),
+                cardAccessSw == ChipProfile.SW_OK,
+                selectAidSw,
+                SystemClock.elapsedRealtime() - start);
+        Log.d(TAG, "🔎 " + profile);
+        return profile;
+    }
+
+    private static int sw(byte[] response) {
+        if (response == null || response.length < 2) {
+            return -1;
+        }
+        return ((response[response.length - 2] & 0xFF) << 8) | (response[response.length - 1] & 0xFF);
+    }
+
+    static String hex(byte[] b) {
+        if (b == null) return "null";
+        StringBuilder sb = new StringBuilder();
+        for (byte v : b) sb.append(String.format(Locale.US, "%02X", v));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.reader.probe;
+
+import java.util.Locale;
+
+/**
+ * What {@link ChipFingerprint} learned about a chip before authentication:
+ * the activation bytes the NFC stack already has, and the answers to two
+ * unsecured SELECTs. Sets the reader's transport and its choice of PACE or BAC.
+ */
+public final class ChipProfile {
+
+    public static final int SW_OK = 0x9000;
+    public static final int SW_FILE_NOT_FOUND = 0x6A82;
+
+    public final byte[] historicalBytes;     // NFC-A (ATS), null otherwise
+    public final byte[] hiLayerResponse;     // NFC-B (ATTRIB), null otherwise
+    public final int maxTransceiveLength;
+    public final boolean extendedLengthSupported;
+    public final boolean cardAccessPresent;  // EF.CardAccess selectable in the MF, i.e. PACE
+    public final int selectAidSw;            // SELECT of the eMRTD application
+    public final long probeMs;
+
+    ChipProfile(byte[] historicalBytes, byte[] hiLayerResponse, int maxTransceiveLength,
+                boolean extendedLengthSupported, boolean cardAccessPresent, int selectAidSw,
+                long probeMs) {
+        this.historicalBytes = historicalBytes;
+        this.hiLayerResponse = hiLayerResponse;
+        this.maxTransceiveLength = maxTransceiveLength;
+        this.extendedLengthSupported = extendedLengthSupported;
+        this.cardAccessPresent = cardAccessPresent;
+        this.selectAidSw = selectAidSw;
+        this.probeMs = probeMs;
+    }
+
+    /**
+     * The chip has the ICAO LDS application (A0000002471001)
+     */
+    public boolean isEmrtd() {
+        return selectAidSw == SW_OK;
+    }
+
+    public boolean isNfcA() {
+        return historicalBytes != null && historicalBytes.length > 0;
+    }
+
+    /**
+     * Bytes that identify the chip model: historical bytes, or the hi-layer response on NFC-B
+     */
+    public byte[] getIdentity() {
+        return isNfcA() ? historicalBytes : hiLayerResponse;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "ChipProfile{%s %s, eMRTD SW=%04X, CardAccess=%b, " +
+                        "maxTransceive=%d, extended=%b, %d ms}",
+                isNfcA() ? "NFC-A" : "NFC-B", ChipFingerprint.hex(getIdentity()), selectAidSw,
+                cardAccessPresent, maxTransceiveLength, extendedLengthSupported, probeMs);
+    }
+}
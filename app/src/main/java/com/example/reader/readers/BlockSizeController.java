@@ -0,0 +1,78 @@
+package com.example.reader.readers;
+
+import android.util.Log;
+
+import net.sf.scuba.smartcards.CardServiceException;
+
+/**
+ * Adaptive READ BINARY block size for one chip session.
+ *
+ * Starts at the largest block the transport allows and halves whenever the
+ * chip or the phone rejects a read (6700, 6Cxx, 6987/6988, transceive errors,
+ * see {@link StatusWords#isLengthFailure}). The size
+ * that works is kept for the rest of the session.
+ */
+public class BlockSizeController {
+
+    private static final String TAG = "@@>> BlockSizeController";
+
+    /**
+     * Smallest block size worth retrying with
+     */
+    public static final int MIN_BLOCKSIZE = 32;
+
+    private final int initialBlockSize;
+    private int currentBlockSize;
+    private int reductions;
+
+    public BlockSizeController(int initialBlockSize) {
+        this.initialBlockSize = Math.max(initialBlockSize, MIN_BLOCKSIZE);
+        this.currentBlockSize = this.initialBlockSize;
+    }
+
+    public BlockSizeController(TransportProfile transport) {
+        this(transport.getMaxBlockSize());
+    }
+
+    public synchronized int current() {
+        return currentBlockSize;
+    }
+
+    /**
+     * Shrink after a failed read.
+     *
+     * @return true if a smaller block size is available and the read should be retried
+     */
+    public synchronized boolean onReadFailure(Exception e) {
+        CardServiceException cse = StatusWords.findCardServiceException(e);
+        if (cse == null || !StatusWords.isLengthFailure(cse)) {
+            return false;
+        }
+
+        if (currentBlockSize <= MIN_BLOCKSIZE) {
+            Log.w(TAG, "Block size already at minimum (" + currentBlockSize + ")");
+            return false;
+        }
+
+        int sw = cse.getSW();
+        int next = currentBlockSize / 2;
+
+        // 6Cxx carries the number of bytes the chip is willing to return
+        if ((sw & 0xFF00) == 0x6C00 && (sw & 0xFF) > 0) {
+            next = Math.min(next, sw & 0xFF);
+        }
+
+        Log.w(TAG, String.format("READ BINARY failed (SW=%04X), block size %d -> %d",
+                sw & 0xFFFF, currentBlockSize, Math.max(next, MIN_BLOCKSIZE)));
+
+        currentBlockSize = Math.max(next, MIN_BLOCKSIZE);
+        reductions++;
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BlockSize{" + currentBlockSize + " (start " + initialBlockSize
+                + ", reductions " + reductions + ")}";
+    }
+}
@@ -10,6 +10,7 @@ public class DocumentAuthData {
     private String dateOfExpiry;
     private String pin; // For ID cards
     private String can; // Card Access Number
+    private String issuingState; // From the MRZ, when known
     private byte[] customKey; // For future use
 
     public DocumentAuthData(String documentNumber, String dateOfBirth, String dateOfExpiry) {
@@ -34,6 +35,9 @@ public class DocumentAuthData {
     public String getCan() { return can; }
     public void setCan(String can) { this.can = can; }
 
+    public String getIssuingState() { return issuingState; }
+    public void setIssuingState(String issuingState) { this.issuingState = issuingState; }
+
     public byte[] getCustomKey() { return customKey; }
     public void setCustomKey(byte[] customKey) { this.customKey = customKey; }
 
@@ -6,17 +6,21 @@ import android.nfc.Tag;
 import android.nfc.tech.IsoDep;
 import android.util.Log;
 
+import com.example.reader.lds.SecurityObject;
 import com.example.reader.models.DocumentData;
 import com.example.reader.models.EepData;
+import com.example.reader.probe.ChipProfile;
 import com.example.reader.readers.eep.*;
+import com.example.reader.readers.transcript.ApduTranscript;
+import com.example.reader.readers.transcript.RecordingCardService;
+import com.example.reader.readers.transcript.ReplayCardService;
+import com.example.reader.readers.transcript.TranscriptRecorder;
 
 import net.sf.scuba.smartcards.CardService;
 import org.jmrtd.BACKey;
 import org.jmrtd.PassportService;
-import org.jmrtd.lds.SODFile;
 import org.jmrtd.lds.icao.*;
 
-import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -33,23 +37,102 @@ public class EepDocumentReader implements IDocumentReader {
 
     private static final String TAG = "@@>> EepDocumentReader";
 
+    // Data groups an EEP read covers, in read order
+    private static final int[] READ_ORDER = {1, 2, 11, 12, 14, 15};
+
+    // onProgress share of each phase: the handshake up to 30%, the EF transfer
+    // 30-90%, mapping the result the rest; onTransferProgress has the byte counts
+    private static final int TRANSFER_START_PERCENT = 30;
+    private static final int TRANSFER_END_PERCENT = 90;
+
     private final EepMrzParser mrzParser;
     private final EmrtdAuthenticator authenticator;
     private final ChineseNameDecoder nameDecoder;
 
+    private TransportProfile.ReadMode readMode = TransportProfile.ReadMode.AUTO;
+
+    private final ImageDecodePipeline decodePipeline = new ImageDecodePipeline();
+
+    private EfCache efCache;
+
+    private PaceParameterCache paceCache;
+
+    private ReadTrace.Listener traceListener;
+
+    private TranscriptRecorder transcriptRecorder;
+
+    private final ReadCheckpoints checkpoints = new ReadCheckpoints();
+
     public EepDocumentReader() {
         this.mrzParser = new EepMrzParser();
         this.authenticator = new EmrtdAuthenticator();
         this.nameDecoder = new ChineseNameDecoder();
     }
 
+    /**
+     * Select whether extended-length READ BINARY may be used
+     */
+    public void setReadMode(TransportProfile.ReadMode readMode) {
+        this.readMode = readMode != null ? readMode : TransportProfile.ReadMode.STANDARD;
+    }
+
+    /**
+     * Share an EF cache so re-taps only fetch the SOD (null disables caching)
+     */
+    public void setEfCache(EfCache efCache) {
+        this.efCache = efCache;
+    }
+
+    /**
+     * Remember which PACE parameters worked per chip profile (null disables it)
+     */
+    public void setPaceParameterCache(PaceParameterCache paceCache) {
+        this.paceCache = paceCache;
+    }
+
+    /**
+     * Receive the APDU timing report of every read
+     */
+    public void setReadTraceListener(ReadTrace.Listener traceListener) {
+        this.traceListener = traceListener;
+    }
+
+    /**
+     * Record the APDU transcript of every tap for offline replay (null disables it)
+     */
+    public void setTranscriptRecorder(TranscriptRecorder transcriptRecorder) {
+        this.transcriptRecorder = transcriptRecorder;
+    }
+
+    private CardService newCardService(IsoDep isoDep) {
+        CardService cardService = CardService.getInstance(isoDep);
+        return transcriptRecorder != null ? transcriptRecorder.begin(cardService, isoDep) : cardService;
+    }
+
     @Override
     public DocumentData readDocument(Tag tag, DocumentAuthData authData,ProgressCallback progressCallback) throws Exception {
+        return readDocument(tag, authData, ReadProfile.FULL, progressCallback);
+    }
+
+    @Override
+    public DocumentData readDocument(Tag tag, DocumentAuthData authData, ReadProfile readProfile,
+                                     ProgressCallback progressCallback) throws Exception {
         validateInputs(tag, authData);
+        return readDocument(connect(tag), null, authData, readProfile, progressCallback);
+    }
+
+    @Override
+    public DocumentData readDocument(IsoDep isoDep, ChipProfile chip, DocumentAuthData authData,
+                                     ReadProfile readProfile, ProgressCallback progressCallback) throws Exception {
+        if (authData == null || !authData.isValid()) {
+            closeQuietly(isoDep);
+            throw new IllegalArgumentException("Invalid authentication data");
+        }
         if (progressCallback != null) {
             progressCallback.onProgress("Starting document read...", 0);
         }
-        ChipReadResult chipData = readChip(tag, authData,progressCallback);
+        ChipReadResult chipData = readChip(isoDep, chip, authData,
+                readProfile != null ? readProfile : ReadProfile.FULL, progressCallback);
 
         if (progressCallback != null) {
             progressCallback.onProgress("Processing data...", 95);
@@ -65,11 +148,70 @@ public class EepDocumentReader implements IDocumentReader {
     }
 
 
+    /**
+     * Read through an already connected card service, e.g. a simulated chip or a
+     * replayed transcript. The service is closed when the read ends.
+     *
+     * @param chipKey PACE cache key of the chip, see {@link PaceParameterCache#chipKey}
+     */
+    public DocumentData readDocument(CardService cardService, TransportProfile transport, String chipKey,
+                                     DocumentAuthData authData, ReadProfile readProfile,
+                                     ProgressCallback progressCallback) throws Exception {
+        if (authData == null || !authData.isValid()) {
+            throw new IllegalArgumentException("Invalid authentication data");
+        }
+
+        String docNumber = normalizeDocNumber(authData.getDocumentNumber());
+        String birthDate = normalizeDateYYMMDD(authData.getDateOfBirth());
+        String expiryDate = normalizeDateYYMMDD(authData.getDateOfExpiry());
+
+        validateDates(birthDate, expiryDate);
+
+        ChipReadResult chipData;
+        try {
+            chipData = performChipRead(cardService, transport, docNumber, birthDate, expiryDate,
+                    authData.getIssuingState(), chipKey, true,
+                    readProfile != null ? readProfile : ReadProfile.FULL, progressCallback);
+        } finally {
+            closeQuietly(cardService);
+        }
+        return mapToEepData(chipData);
+    }
+
+    /**
+     * Replay a recorded transcript with the read profile, transport, chip key,
+     * issuing state and EF.CardAccess presence it was recorded with. Bind a
+     * DeterministicRandom to the transcript seed around the call.
+     */
+    public DocumentData replay(ReplayCardService replay, DocumentAuthData authData,
+                               ProgressCallback progressCallback) throws Exception {
+        if (authData == null || !authData.isValid()) {
+            throw new IllegalArgumentException("Invalid authentication data");
+        }
+
+        String docNumber = normalizeDocNumber(authData.getDocumentNumber());
+        String birthDate = normalizeDateYYMMDD(authData.getDateOfBirth());
+        String expiryDate = normalizeDateYYMMDD(authData.getDateOfExpiry());
+
+        validateDates(birthDate, expiryDate);
+
+        ApduTranscript transcript = replay.getTranscript();
+        ChipReadResult chipData;
+        try {
+            chipData = performChipRead(replay, transcript.negotiateTransport(), docNumber, birthDate, expiryDate,
+                    transcript.getIssuingState(), transcript.getChipKey(), transcript.isCardAccessPresent(),
+                    transcript.getReadProfile(), progressCallback);
+        } finally {
+            closeQuietly(replay);
+        }
+        return mapToEepData(chipData);
+    }
+
     @Override
     public DocumentData readDocument(Tag tag, DocumentAuthData authData) throws Exception {
         validateInputs(tag, authData);
 
-        ChipReadResult chipData = readChip(tag, authData,null);
+        ChipReadResult chipData = readChip(connect(tag), null, authData, ReadProfile.FULL, null);
         return mapToEepData(chipData);
     }
 
@@ -99,198 +241,356 @@ public class EepDocumentReader implements IDocumentReader {
         }
     }
 
-    private ChipReadResult readChip(Tag tag, DocumentAuthData authData,ProgressCallback progressCallback) throws Exception {
-        String docNumber = normalizeDocNumber(authData.getDocumentNumber());
-        String birthDate = normalizeDateYYMMDD(authData.getDateOfBirth());
-        String expiryDate = normalizeDateYYMMDD(authData.getDateOfExpiry());
-
-        validateDates(birthDate, expiryDate);
-
-        if (progressCallback != null) {
-            progressCallback.onProgress("Connecting to chip...", 5);
-        }
-
+    private static IsoDep connect(Tag tag) throws Exception {
         IsoDep isoDep = IsoDep.get(tag);
         if (isoDep == null) {
             throw new Exception("Tag does not support ISO-DEP");
         }
-
-        isoDep.setTimeout(EepConstants.ISO_DEP_TIMEOUT_MS);
         isoDep.connect();
+        return isoDep;
+    }
 
-        if (progressCallback != null) {
-            progressCallback.onProgress("Connected to chip", 10);
-        }
+    /**
+     * Read through a connected IsoDep; it is closed when the read ends. The chip
+     * profile, if any, stands in for querying the IsoDep's capabilities.
+     */
+    private ChipReadResult readChip(IsoDep isoDep, ChipProfile chip, DocumentAuthData authData,
+                                    ReadProfile readProfile, ProgressCallback progressCallback) throws Exception {
+        CardService cardService = null;
+        try {
+            String docNumber = normalizeDocNumber(authData.getDocumentNumber());
+            String birthDate = normalizeDateYYMMDD(authData.getDateOfBirth());
+            String expiryDate = normalizeDateYYMMDD(authData.getDateOfExpiry());
 
+            validateDates(birthDate, expiryDate);
 
-        try {
-            return performChipRead(isoDep, docNumber, birthDate, expiryDate, progressCallback);
+            isoDep.setTimeout(EepConstants.ISO_DEP_TIMEOUT_MS);
+
+            if (progressCallback != null) {
+                progressCallback.onProgress("Connected to chip", 10);
+            }
+
+            cardService = newCardService(isoDep);
+            if (chip == null) {
+                return performChipRead(cardService, TransportProfile.negotiate(isoDep, readMode),
+                        docNumber, birthDate, expiryDate, authData.getIssuingState(),
+                        PaceParameterCache.chipKey(isoDep), true, readProfile, progressCallback);
+            }
+
+            Log.d(TAG, "Using " + chip);
+            TransportProfile transport = TransportProfile.negotiate(chip.extendedLengthSupported,
+                    chip.maxTransceiveLength, chip.historicalBytes, chip.hiLayerResponse, readMode);
+            return performChipRead(cardService, transport, docNumber, birthDate, expiryDate,
+                    authData.getIssuingState(), PaceParameterCache.chipKey(chip.getIdentity()),
+                    chip.cardAccessPresent, readProfile, progressCallback);
         } finally {
+            closeQuietly(cardService);
             closeQuietly(isoDep);
         }
     }
 
     private ChipReadResult performChipRead(
-            IsoDep isoDep,
+            CardService rawCardService,
+            TransportProfile transport,
             String docNumber,
             String birthDate,
             String expiryDate,
+            String issuingState,
+            String chipKey,
+            boolean cardAccessPresent,
+            ReadProfile readProfile,
             ProgressCallback progressCallback) throws Exception {
 
-        CardService cardService = CardService.getInstance(isoDep);
+        // A recorded or replayed read must go the same way in a fresh reader: no cache, no checkpoint
+        ApduTranscript transcript = ApduTranscript.of(rawCardService);
+        if (rawCardService instanceof RecordingCardService) {
+            transcript.setReadContext(readProfile, transport.isExtendedLength()
+                            ? TransportProfile.ReadMode.AUTO : TransportProfile.ReadMode.STANDARD,
+                    chipKey, issuingState, cardAccessPresent);
+        }
+        EfCache readEfCache = transcript == null ? efCache : null;
+        PaceParameterCache readPaceCache = transcript == null ? paceCache : null;
+        ReadCheckpoints readCheckpoints = transcript == null ? checkpoints : new ReadCheckpoints();
+
+        ReadTrace trace = new ReadTrace();
+        CardService cardService = new TracingCardService(rawCardService, trace);
+        ProgressTracker progressTracker = new ProgressTracker(ProgressTracker.forCallback(progressCallback, false));
 //        rawService.open();
 
 //        CardService patchedService = new PatchedCardService(rawService);
-//        PassportService passportService = createPassportService(patchedService);
-        PassportService passportService = new PassportService(
-                cardService,
-                PassportService.NORMAL_MAX_TRANCEIVE_LENGTH,
-                PassportService.DEFAULT_MAX_BLOCKSIZE,
-                false,  // isSFIEnabled
-                false   // shouldCheckMAC
-        );
-        try {
-            if (progressCallback != null) {
-                progressCallback.onProgress("Opening passport service...", 15);
-            }
-            passportService.open();
-            passportService.sendSelectApplet(false);
+        Log.d(TAG, "Transport: " + transport);
 
-            if (progressCallback != null) {
-                progressCallback.onProgress("Authenticating...", 20);
-            }
+        String checkpointKey = ReadCheckpoints.keyFor(docNumber, birthDate, expiryDate);
+        ReadCheckpoints.Checkpoint checkpoint = readCheckpoints.open(checkpointKey);
+        if (checkpoint.isResumed()) {
+            Log.d(TAG, "Resuming interrupted read, " + checkpoint.getBytesKept() + " bytes kept");
+        }
 
-            // Authenticate
+        PassportService passportService = null;
+        try {
             BACKey bacKey = new BACKey(docNumber, birthDate, expiryDate);
-            EmrtdAuthenticator.AuthResult authResult = authenticator.authenticate(passportService, bacKey);
+            EmrtdAuthenticator.AuthResult authResult;
 
-            if (!authResult.success) {
-                throw new Exception("Authentication failed: " + authResult.errorMessage);
-            }
-            if (progressCallback != null) {
-                progressCallback.onProgress("Authentication successful", 30);
+            try {
+                passportService = createPassportService(cardService, transport);
+                authResult = openSession(passportService, cardService, transport, bacKey, issuingState, chipKey,
+                        cardAccessPresent, readPaceCache, progressCallback);
+            } catch (Exception e) {
+                if (!transport.isExtendedLengthRejected(cardService, e)) {
+                    throw e;
+                }
+                Log.w(TAG, "Extended-length APDUs rejected, retrying with short APDUs: " + e.getMessage());
+                transport = TransportProfile.standard();
+                passportService = createPassportService(cardService, transport);
+                authResult = openSession(passportService, cardService, transport, bacKey, issuingState, chipKey,
+                        cardAccessPresent, readPaceCache, progressCallback);
             }
+
+            trace.markAuthenticated();
+
+            EfReader efReader = new EfReader(passportService, cardService, new BlockSizeController(transport),
+                    readEfCache != null ? readEfCache.openSession(docNumber) : null, checkpoint);
+            efReader.setTrace(trace);
+            efReader.setProgressTracker(progressTracker);
+
             // Read data groups
-            return readDataGroups(passportService, authResult.method, progressCallback);
+            ChipReadResult result = readDataGroups(efReader, authResult.method, readProfile, progressCallback);
+            result.extendedLengthApdu = transport.isExtendedLength();
+            result.readBinaryBlockSize = efReader.getBlockSize().current();
+            Log.d(TAG, "READ BINARY " + efReader.getBlockSize());
+            Log.d(TAG, "EFs served from cache: " + efReader.getCacheHits());
+            efReader.persistCache();
+            readCheckpoints.discard(checkpointKey);
+            result.readTrace = trace;
+            return result;
 
         } finally {
             closeQuietly(passportService);
+
+            trace.finish();
+            Log.d(TAG, "Read trace: " + trace);
+            progressTracker.logSummary();
+            if (traceListener != null) {
+                traceListener.onReadTrace(trace);
+            }
 //            closeQuietly(patchedService);
 //            closeQuietly(rawService);
         }
     }
 
-    private PassportService createPassportService(CardService cardService) {
-        return new PassportService(
+    /**
+     * Open, select and authenticate. In extended mode the first block of EF.SOD is
+     * read at the end, so the first extended READ BINARY happens here, where a
+     * rejection can still be retried with short APDUs.
+     */
+    private EmrtdAuthenticator.AuthResult openSession(
+            PassportService passportService,
+            CardService cardService,
+            TransportProfile transport,
+            BACKey bacKey,
+            String issuingState,
+            String chipKey,
+            boolean cardAccessPresent,
+            PaceParameterCache paceCache,
+            ProgressCallback progressCallback) throws Exception {
+
+        if (progressCallback != null) {
+            progressCallback.onProgress("Opening passport service...", 15);
+        }
+        passportService.open();
+        passportService.sendSelectApplet(false);
+
+        if (progressCallback != null) {
+            progressCallback.onProgress("Authenticating...", 20);
+        }
+
+        // Authenticate
+        EmrtdAuthenticator.AuthResult authResult = authenticator.authenticate(passportService, bacKey,
+                paceCache, issuingState, chipKey, cardAccessPresent);
+
+        if (!authResult.success) {
+            throw new Exception("Authentication failed: " + authResult.errorMessage, authResult.cause);
+        }
+
+        transport.probeExtendedRead(passportService, cardService);
+
+        if (progressCallback != null) {
+            progressCallback.onProgress("Authentication successful", TRANSFER_START_PERCENT);
+        }
+        return authResult;
+    }
+
+    private PassportService createPassportService(CardService cardService, TransportProfile transport) {
+        return transport.createPassportService(
                 cardService,
-                PassportService.NORMAL_MAX_TRANCEIVE_LENGTH,
-                PassportService.DEFAULT_MAX_BLOCKSIZE,
                 false,  // isSFIEnabled
                 false   // shouldCheckMAC
         );
     }
 
     private ChipReadResult readDataGroups(
-            PassportService service,
+            EfReader efReader,
             EmrtdAuthenticator.AuthMethod authMethod,
+            ReadProfile readProfile,
             ProgressCallback progressCallback) throws Exception {
 
         ChipReadResult result = new ChipReadResult();
         result.authMethod = authMethod;
 
-        DataGroupReader dgReader = new DataGroupReader(service);
+        DataGroupReader dgReader = new DataGroupReader(efReader);
+        ProgressTracker progress = efReader.getProgressTracker();
+        ImageDecodePipeline.Batch decodeBatch = decodePipeline.newBatch(
+                progressCallback != null ? progressCallback::onImageDecoded : null);
 
-        // Read SOD first
-        if (progressCallback != null) {
-            progressCallback.onProgress("Reading security data (SOD)...", 35);
-        }
+        try {
+            // Plan the whole read up front so the percentage does not run ahead on the SOD
+            if (readProfile.isEnabled(ReadProfile.Check.SOD)) {
+                progress.plan(PassportService.EF_SOD);
+            }
+            progress.planDataGroups(readProfile, READ_ORDER);
 
-        // Read SOD first to get available data groups
-        result.sodData = readSOD(service);
-        if (result.sodData != null && result.sodData.dataGroupHashes != null) {
-            result.availableDataGroups = new ArrayList<>(result.sodData.dataGroupHashes.keySet());
-        }
+            if (readProfile.isEnabled(ReadProfile.Check.SOD)) {
+                if (progressCallback != null) {
+                    progressCallback.onProgress("Reading security data (SOD)...", overallPercent(progress));
+                }
 
-        // Read DG1 - MRZ
-        if (progressCallback != null) {
-            progressCallback.onProgress("Reading document data (DG1)...", 45);
-        }
+                // Read SOD first to get available data groups
+                result.sodData = readSOD(efReader);
+                if (result.sodData != null && result.sodData.dataGroupHashes != null) {
+                    result.availableDataGroups = new ArrayList<>(result.sodData.dataGroupHashes.keySet());
+                }
+            }
 
-        // Read mandatory groups
-        DG1File dg1 = dgReader.readDG1();
-        result.mrzData = parseMrz(dg1);
+            // Correct the plan with what the SOD lists
+            for (int dg : READ_ORDER) {
+                if (dg <= 2 ? readProfile.includesDataGroup(dg) : shouldRead(readProfile, result, dg)) {
+                    progress.planDataGroup(dg);
+                } else {
+                    progress.unplanDataGroup(dg);
+                }
+            }
 
-        if (progressCallback != null) {
-            progressCallback.onProgress("Reading photo (DG2)...", 55);
-        }
-        result.faceImages = dgReader.readDG2();
+            // Read mandatory groups
+            if (readProfile.includesDataGroup(1)) {
+                if (progressCallback != null) {
+                    progressCallback.onProgress("Reading document data (DG1)...", overallPercent(progress));
+                }
+                DG1File dg1 = dgReader.readDG1();
+                result.mrzData = parseMrz(dg1);
+                dataGroupRead(progressCallback, 1, dg1);
+            }
 
-        int currentProgress = 60;
+            if (readProfile.includesDataGroup(2)) {
+                if (progressCallback != null) {
+                    progressCallback.onProgress("Reading photo (DG2)...", overallPercent(progress));
+                }
+                dataGroupRead(progressCallback, 2, dgReader.readDG2(decodeBatch, result.faceImages));
+            }
 
-        if (isAvailable(result, 11)) {
-            if (progressCallback != null) {
-                progressCallback.onProgress("Reading additional data (DG11)...", currentProgress);
+            if (shouldRead(readProfile, result, 11)) {
+                if (progressCallback != null) {
+                    progressCallback.onProgress("Reading additional data (DG11)...", overallPercent(progress));
+                }
+                result.dg11 = dgReader.readDG11();
+                dataGroupRead(progressCallback, 11, result.dg11);
             }
-            result.dg11 = dgReader.readDG11();
-            currentProgress += 8;
-        }
 
-        if (isAvailable(result, 12)) {
-            if (progressCallback != null) {
-                progressCallback.onProgress("Reading issuing data (DG12)...", currentProgress);
+            if (shouldRead(readProfile, result, 12)) {
+                if (progressCallback != null) {
+                    progressCallback.onProgress("Reading issuing data (DG12)...", overallPercent(progress));
+                }
+                result.dg12 = dgReader.readDG12();
+                dataGroupRead(progressCallback, 12, result.dg12);
             }
-            result.dg12 = dgReader.readDG12();
-            currentProgress += 8;
-        }
 
-        if (isAvailable(result, 14)) {
-            if (progressCallback != null) {
-                progressCallback.onProgress("Reading security features (DG14)...", currentProgress);
+            if (shouldRead(readProfile, result, 14)) {
+                if (progressCallback != null) {
+                    progressCallback.onProgress("Reading security features (DG14)...", overallPercent(progress));
+                }
+                result.dg14 = dgReader.readDG14();
+                dataGroupRead(progressCallback, 14, result.dg14);
+            }
+
+            if (shouldRead(readProfile, result, 15)) {
+                if (progressCallback != null) {
+                    progressCallback.onProgress("Reading public key (DG15)...", overallPercent(progress));
+                }
+                result.dg15 = dgReader.readDG15();
+                dataGroupRead(progressCallback, 15, result.dg15);
+            }
+
+            // Optional data groups swallow their errors; a lost tag must end the read
+            efReader.throwIfConnectionLost();
+
+            if (readProfile.isEnabled(ReadProfile.Check.SOD)) {
+                // Passes only if every data group read matched its hash in the SOD
+                Log.d(TAG, "Data group hashes: " + efReader.getHashChecks());
+                verification(progressCallback, ReadProfile.Check.SOD, efReader.allHashesMatch());
+            }
+
+            // Face images were decoding while DG11-DG15 were read
+            ReadTrace trace = efReader.getTrace();
+            long decodeWaitStart = System.nanoTime();
+            if (trace != null) {
+                trace.setPhase("Image decode wait");
+            }
+            decodeBatch.await();
+            if (trace != null) {
+                trace.addDecodeWait(System.nanoTime() - decodeWaitStart);
             }
-            result.dg14 = dgReader.readDG14();
-            currentProgress += 7;
-        }
 
-        if (isAvailable(result, 15)) {
             if (progressCallback != null) {
-                progressCallback.onProgress("Reading public key (DG15)...", currentProgress);
+                progressCallback.onProgress("Data groups read successfully", TRANSFER_END_PERCENT);
             }
-            result.dg15 = dgReader.readDG15();
-            currentProgress += 7;
+        } finally {
+            // A failed read must not report images after its error, or into the next read
+            decodeBatch.cancel();
         }
 
+        return result;
+    }
+
+    /**
+     * The EF transfer's percentage within the whole read
+     */
+    private static int overallPercent(ProgressTracker progress) {
+        return TRANSFER_START_PERCENT
+                + progress.getPercent() * (TRANSFER_END_PERCENT - TRANSFER_START_PERCENT) / 100;
+    }
+
+    private static void verification(ProgressCallback progressCallback, ReadProfile.Check check, boolean passed) {
         if (progressCallback != null) {
-            progressCallback.onProgress("Data groups read successfully", 90);
+            progressCallback.onVerification(check, passed);
         }
+    }
 
-        return result;
+    /**
+     * Report a data group as soon as it is parsed; missing groups (null) are not reported
+     */
+    private static void dataGroupRead(ProgressCallback progressCallback, int dgNumber, Object dataGroup) {
+        if (progressCallback != null && dataGroup != null) {
+            progressCallback.onDataGroupRead(dgNumber, dataGroup);
+        }
     }
 
-    private SodData readSOD(PassportService service) {
+    private SodData readSOD(EfReader efReader) {
         try {
-            byte[] sodBytes = StreamUtils.readAllBytes(
-                    service.getInputStream(PassportService.EF_SOD)
-            );
+            byte[] sodBytes = efReader.read(PassportService.EF_SOD);
 
-            SODFile sodFile = new SODFile(new ByteArrayInputStream(sodBytes));
+            SecurityObject sod = SecurityObject.parse(sodBytes);
 
             SodData data = new SodData();
             data.rawBytes = sodBytes;
-            data.dataGroupHashes = sodFile.getDataGroupHashes();
-            data.digestAlgorithm = sodFile.getDigestAlgorithm();
-            data.signatureAlgorithm = sodFile.getDigestEncryptionAlgorithm();
+            data.dataGroupHashes = sod.dataGroupHashes;
+            data.digestAlgorithm = sod.digestAlgorithm;
+            data.signatureAlgorithm = sod.signatureAlgorithm;
+            data.ldsVersion = sod.ldsVersion;
+            data.unicodeVersion = sod.unicodeVersion;
             data.isValid = true;
-
-            // Try to get LDS and Unicode versions
-            try {
-                data.ldsVersion = sodFile.getLDSVersion();
-                data.unicodeVersion = sodFile.getUnicodeVersion();
-            } catch (Exception e) {
-                Log.d(TAG, "LDS/Unicode version not available");
-            }
+            efReader.setSecurityObject(sod);
 
             // Log for debugging
-            logSodHashData(sodFile, data);
+            logSodHashData(data);
 
             return data;
 
@@ -300,7 +600,7 @@ public class EepDocumentReader implements IDocumentReader {
         }
     }
 
-    private void logSodHashData(SODFile sodFile, SodData data) {
+    private void logSodHashData(SodData data) {
         Log.d(TAG, "========== SOD Hash Data ==========");
         Log.d(TAG, "Digest Algorithm: " + data.digestAlgorithm);
         Log.d(TAG, "Signature Algorithm: " + data.signatureAlgorithm);
@@ -398,6 +698,9 @@ public class EepDocumentReader implements IDocumentReader {
         out.hasRfidChip = true;
         out.hasValidSignature = chipData.sodData != null && chipData.sodData.isValid;
         out.authenticationMethod = chipData.authMethod != null ? chipData.authMethod.name() : null;
+        out.extendedLengthApdu = chipData.extendedLengthApdu;
+        out.readBinaryBlockSize = chipData.readBinaryBlockSize;
+        out.readTrace = chipData.readTrace;
 
         // ========== MAP SOD DATA ==========
         if (chipData.sodData != null) {
@@ -487,6 +790,20 @@ public class EepDocumentReader implements IDocumentReader {
                 && result.availableDataGroups.contains(dgNumber);
     }
 
+    /**
+     * Optional groups are read when the profile names them and the SOD lists them.
+     * Without a SOD, an explicit profile reads what it names.
+     */
+    private boolean shouldRead(ReadProfile readProfile, ChipReadResult result, int dgNumber) {
+        if (!readProfile.includesDataGroup(dgNumber)) {
+            return false;
+        }
+        if (result.availableDataGroups == null || result.availableDataGroups.isEmpty()) {
+            return !readProfile.isAllAvailable();
+        }
+        return isAvailable(result, dgNumber);
+    }
+
     private String extractMrzFromDg1(String rawDg1) {
         // Implementation moved from original class
         // ... (same logic as before)
@@ -529,6 +846,9 @@ public class EepDocumentReader implements IDocumentReader {
         DG12File dg12;
         DG14File dg14;
         DG15File dg15;
+        boolean extendedLengthApdu;
+        int readBinaryBlockSize;
+        ReadTrace readTrace;
     }
 
     private static class SodData {
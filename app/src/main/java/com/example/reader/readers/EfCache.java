@@ -0,0 +1,291 @@
+package com.example.reader.readers;
+
+import android.util.Log;
+
+import com.example.reader.lds.SecurityObject;
+import com.example.reader.readers.eep.HexUtils;
+
+import org.jmrtd.PassportService;
+import org.jmrtd.lds.LDSFileUtil;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory cache of raw EF bytes, keyed by document number and SOD digest.
+ *
+ * On a re-tap within the TTL only EF.SOD has to come from the chip: once its
+ * digest matches a cached entry, data groups whose hash still matches the SOD
+ * are served from memory. Entries are evicted least-recently-used once the
+ * memory cap is reached. An optional {@link DiskStore} keeps entries across
+ * process restarts; an entry is written once, off the read thread, when
+ * {@link Session#persist()} is called at the end of a read.
+ */
+public class EfCache {
+
+    private static final String TAG = "@@>> EfCache";
+
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000;          // 10 minutes
+    public static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;      // 2 MB
+
+    /**
+     * Persistent backing for cache entries
+     */
+    public interface DiskStore {
+        Entry load(String key);
+        void save(String key, Entry entry);
+        void remove(String key);
+    }
+
+    /**
+     * EF bytes for one document
+     */
+    public static class Entry {
+        final long createdAt;
+        final Map<Short, byte[]> files = new HashMap<>();
+        long sizeBytes;
+
+        public Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+
+        public long getCreatedAt() { return createdAt; }
+
+        public Map<Short, byte[]> getFiles() { return files; }
+
+        public void putFile(short fid, byte[] bytes) {
+            byte[] previous = files.put(fid, bytes);
+            if (previous != null) {
+                sizeBytes -= previous.length;
+            }
+            sizeBytes += bytes.length;
+        }
+    }
+
+    private final long ttlMs;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private DiskStore diskStore;
+    private ExecutorService persistExecutor;
+
+    public EfCache() {
+        this(DEFAULT_TTL_MS, DEFAULT_MAX_BYTES);
+    }
+
+    public EfCache(long ttlMs, long maxBytes) {
+        this.ttlMs = ttlMs;
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized void setDiskStore(DiskStore diskStore) {
+        this.diskStore = diskStore;
+        if (diskStore != null && persistExecutor == null) {
+            persistExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "EfCachePersist");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Start a cache session for one chip read
+     */
+    public Session openSession(String documentNumber) {
+        return new Session(documentNumber);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private synchronized Entry lookup(String key) {
+        long now = System.currentTimeMillis();
+
+        Entry entry = entries.get(key);
+        if (entry == null && diskStore != null) {
+            entry = diskStore.load(key);
+            if (entry != null) {
+                insert(key, entry);
+                evictToCap(key);
+                entry = entries.get(key);
+            }
+        }
+
+        if (entry != null && now - entry.createdAt > ttlMs) {
+            Log.d(TAG, "Entry expired");
+            remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void store(String key, short fid, byte[] bytes) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(System.currentTimeMillis());
+            insert(key, entry);
+        }
+
+        totalBytes -= entry.sizeBytes;
+        entry.putFile(fid, bytes);
+        totalBytes += entry.sizeBytes;
+
+        evictToCap(key);
+    }
+
+    /**
+     * Write a snapshot of the entry to the disk store on the persist thread
+     */
+    private synchronized void persist(String key) {
+        Entry entry = entries.get(key);
+        if (diskStore == null || entry == null) {
+            return;
+        }
+
+        Entry snapshot = new Entry(entry.createdAt);
+        for (Map.Entry<Short, byte[]> file : entry.files.entrySet()) {
+            snapshot.putFile(file.getKey(), file.getValue());
+        }
+        DiskStore store = diskStore;
+        persistExecutor.execute(() -> store.save(key, snapshot));
+    }
+
+    private void insert(String key, Entry entry) {
+        entries.put(key, entry);
+        totalBytes += entry.sizeBytes;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.sizeBytes;
+        }
+        if (diskStore != null) {
+            diskStore.remove(key);
+        }
+    }
+
+    /**
+     * Evict least-recently-used entries until under the cap, keeping the
+     * current entry unless it alone exceeds the cap.
+     */
+    private void evictToCap(String currentKey) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(currentKey)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().sizeBytes;
+            it.remove();
+            Log.d(TAG, "Evicted entry, cache now " + totalBytes + " bytes");
+        }
+
+        if (totalBytes > maxBytes) {
+            Log.w(TAG, "Entry larger than cache cap, not cached");
+            remove(currentKey);
+        }
+    }
+
+    /**
+     * Cache view for one read. Nothing is served until EF.SOD has been read
+     * from the chip and its digest is known.
+     */
+    public class Session {
+
+        private final String documentNumber;
+        private String key;
+        private Entry cached;
+        private SecurityObject securityObject;
+        private int hits;
+
+        private Session(String documentNumber) {
+            this.documentNumber = documentNumber != null ? documentNumber.trim().toUpperCase() : "";
+        }
+
+        /**
+         * Cached bytes for the EF, or null if it must be read from the chip
+         */
+        public byte[] get(short fid) {
+            if (key == null || cached == null || fid == PassportService.EF_SOD) {
+                return null;
+            }
+
+            byte[] bytes;
+            synchronized (EfCache.this) {
+                bytes = cached.files.get(fid);
+            }
+            if (bytes == null || !matchesSod(fid, bytes)) {
+                return null;
+            }
+
+            hits++;
+            Log.d(TAG, String.format("Cache hit for EF %04X (%d bytes)", fid & 0xFFFF, bytes.length));
+            return bytes;
+        }
+
+        /**
+         * Record bytes read from the chip. Reading EF.SOD binds the session to a cache entry.
+         */
+        public void put(short fid, byte[] bytes) {
+            if (fid == PassportService.EF_SOD) {
+                bind(bytes);
+            }
+            if (key != null) {
+                store(key, fid, bytes);
+            }
+        }
+
+        public int getHits() {
+            return hits;
+        }
+
+        /**
+         * Persist what this read put in the cache; call once the read has finished
+         */
+        public void persist() {
+            if (key != null) {
+                EfCache.this.persist(key);
+            }
+        }
+
+        private void bind(byte[] sodBytes) {
+            try {
+                securityObject = SecurityObject.parse(sodBytes);
+                key = documentNumber + ":" + HexUtils.bytesToHex(securityObject.fingerprint());
+                cached = lookup(key);
+
+                Log.d(TAG, cached != null ? "Cached entry found for this SOD" : "No cached entry for this SOD");
+            } catch (Exception e) {
+                Log.w(TAG, "Cannot key cache on SOD: " + e.getMessage());
+                key = null;
+                cached = null;
+            }
+        }
+
+        /**
+         * Check cached DG bytes against the hash in the freshly read SOD
+         */
+        private boolean matchesSod(short fid, byte[] bytes) {
+            if (securityObject == null) {
+                return false;
+            }
+            try {
+                return securityObject.matches(LDSFileUtil.lookupDataGroupNumberByFID(fid), bytes);
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
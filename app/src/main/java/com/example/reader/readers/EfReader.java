@@ -0,0 +1,304 @@
+package com.example.reader.readers;
+
+import android.nfc.TagLostException;
+import android.util.Log;
+
+import com.example.reader.lds.SecurityObject;
+
+import net.sf.scuba.smartcards.CardFileInputStream;
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+
+import org.jmrtd.DefaultFileSystem;
+import org.jmrtd.PassportService;
+import org.jmrtd.lds.LDSFileUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads complete elementary files from an authenticated PassportService,
+ * adapting the READ BINARY block size through a {@link BlockSizeController}.
+ *
+ * Files are read through a file system of the reader's own on the secure
+ * messaging session of the PassportService, since the service's one reads with
+ * the block size it was created with and loops on a READ BINARY that returns
+ * no data (see {@link ReadBinarySender}). A retry with a smaller block
+ * continues from the last block in the checkpoint.
+ * With an {@link EfCache.Session}, files unchanged since an earlier read of the
+ * same document are served without touching the chip.
+ *
+ * Every block that arrives is recorded in a {@link ReadCheckpoints.Checkpoint}.
+ * If the tag leaves the field, the read stops with a {@link ResumableReadException}
+ * and the next session for the same document continues each EF from its last
+ * confirmed offset.
+ *
+ * A {@link ProgressTracker} gets each EF's length as soon as the first block
+ * has been read, and every block after that.
+ *
+ * Once the SOD is set, every data group read is checked against its hash.
+ */
+public class EfReader {
+
+    private static final String TAG = "@@>> EfReader";
+
+    private final PassportService service;
+    private final CardService cardService;
+    private final BlockSizeController blockSize;
+    private final EfCache.Session cacheSession;
+    private final ReadCheckpoints.Checkpoint checkpoint;
+    private DefaultFileSystem fileSystem;
+    private ResumableReadException connectionLost;
+    private ReadTrace trace;
+    private ProgressTracker progress;
+    private SecurityObject securityObject;
+    private final Map<Integer, Boolean> hashChecks = new TreeMap<>();
+
+    public EfReader(PassportService service, CardService cardService, BlockSizeController blockSize) {
+        this(service, cardService, blockSize, null, null);
+    }
+
+    public EfReader(PassportService service, CardService cardService, BlockSizeController blockSize,
+                    EfCache.Session cacheSession, ReadCheckpoints.Checkpoint checkpoint) {
+        this.service = service;
+        this.cardService = cardService;
+        this.blockSize = blockSize;
+        this.cacheSession = cacheSession;
+        this.checkpoint = checkpoint != null ? checkpoint : new ReadCheckpoints.Checkpoint();
+    }
+
+    /**
+     * Attribute the APDUs (and the parsing that follows) of each EF to its own trace phase
+     */
+    public void setTrace(ReadTrace trace) {
+        this.trace = trace;
+    }
+
+    public ReadTrace getTrace() {
+        return trace;
+    }
+
+    public void setProgressTracker(ProgressTracker progress) {
+        this.progress = progress;
+    }
+
+    public ProgressTracker getProgressTracker() {
+        return progress;
+    }
+
+    /**
+     * Read the whole EF
+     */
+    public byte[] read(short fid) throws Exception {
+        if (connectionLost != null) {
+            throw connectionLost;
+        }
+        if (trace != null) {
+            trace.setPhase(phaseName(fid));
+        }
+        if (progress != null) {
+            progress.onOpen(fid);
+        }
+
+        byte[] bytes = cacheSession != null ? cacheSession.get(fid) : null;
+        if (bytes == null) {
+            try {
+                bytes = readFromChip(fid);
+            } catch (Exception e) {
+                if (progress != null) {
+                    progress.onFailed(fid);
+                }
+                throw e;
+            }
+            if (cacheSession != null) {
+                cacheSession.put(fid, bytes);
+            }
+        }
+
+        if (progress != null) {
+            progress.onDone(fid, bytes.length);
+        }
+        checkHash(fid, bytes);
+        return bytes;
+    }
+
+    /**
+     * Check every data group read from now on against its hash in the SOD
+     */
+    public void setSecurityObject(SecurityObject securityObject) {
+        this.securityObject = securityObject;
+    }
+
+    /**
+     * Data groups read since the SOD was set, and whether each matched its hash
+     */
+    public Map<Integer, Boolean> getHashChecks() {
+        return Collections.unmodifiableMap(hashChecks);
+    }
+
+    /**
+     * True if at least one data group was checked and every one matched
+     */
+    public boolean allHashesMatch() {
+        return !hashChecks.isEmpty() && !hashChecks.containsValue(false);
+    }
+
+    private void checkHash(short fid, byte[] bytes) {
+        if (securityObject == null || fid == PassportService.EF_SOD) {
+            return;
+        }
+        int dgNumber;
+        try {
+            dgNumber = LDSFileUtil.lookupDataGroupNumberByFID(fid);
+        } catch (Exception e) {
+            return;
+        }
+        boolean matches = securityObject.matches(dgNumber, bytes);
+        hashChecks.put(dgNumber, matches);
+        if (!matches) {
+            Log.w(TAG, "DG" + dgNumber + " does not match its hash in the SOD");
+        }
+    }
+
+    private byte[] readFromChip(short fid) throws Exception {
+        byte[] done = checkpoint.getComplete(fid);
+        if (done != null) {
+            Log.d(TAG, String.format("EF %04X already read before tag loss", fid & 0xFFFF));
+            return done;
+        }
+
+        while (true) {
+            try {
+                return readRemaining(fid);
+            } catch (Exception e) {
+                if (isConnectionLost(e)) {
+                    Log.w(TAG, String.format("Tag lost in EF %04X at offset %d",
+                            fid & 0xFFFF, checkpoint.getOffset(fid)));
+                    connectionLost = new ResumableReadException(checkpoint.getBytesKept(), e);
+                    throw connectionLost;
+                }
+                if (!blockSize.onReadFailure(e)) {
+                    throw e;
+                }
+                if (trace != null) {
+                    trace.recordRetry();
+                }
+                Log.d(TAG, String.format("Retrying EF %04X with %s", fid & 0xFFFF, blockSize));
+            }
+        }
+    }
+
+    /**
+     * Read the EF from the last confirmed offset to the end, checkpointing each block
+     */
+    private byte[] readRemaining(short fid) throws Exception {
+        InputStream is = openStream(fid);
+        if (progress != null && is instanceof CardFileInputStream) {
+            progress.onLength(fid, ((CardFileInputStream) is).getLength());
+        }
+
+        int offset = checkpoint.getOffset(fid);
+        if (progress != null) {
+            progress.onOffset(fid, offset);
+        }
+        if (offset > 0) {
+            Log.d(TAG, String.format("Resuming EF %04X at offset %d", fid & 0xFFFF, offset));
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = is.skip(remaining);
+                if (skipped <= 0) {
+                    throw new IllegalStateException("Cannot seek to checkpoint offset " + offset);
+                }
+                remaining -= skipped;
+            }
+        }
+
+        byte[] buffer = new byte[Math.max(blockSize.current(), BlockSizeController.MIN_BLOCKSIZE)];
+        int n;
+        while ((n = is.read(buffer)) != -1) {
+            checkpoint.append(fid, buffer, 0, n);
+            if (progress != null) {
+                progress.onChipBytes(fid, n);
+            }
+        }
+        return checkpoint.complete(fid);
+    }
+
+    /**
+     * Open the EF with the current block size
+     */
+    private InputStream openStream(short fid) throws CardServiceException {
+        if (fileSystem == null) {
+            fileSystem = ReadBinarySender.newFileSystem(cardService);
+        }
+        fileSystem.setWrapper(service.getWrapper());
+        fileSystem.selectFile(fid);
+        return new CardFileInputStream(blockSize.current(), fileSystem);
+    }
+
+    static String phaseName(short fid) {
+        if (fid == PassportService.EF_SOD) {
+            return "EF.SOD";
+        }
+        try {
+            return "DG" + LDSFileUtil.lookupDataGroupNumberByFID(fid);
+        } catch (Exception e) {
+            return String.format("EF %04X", fid & 0xFFFF);
+        }
+    }
+
+    /**
+     * Tell a tag that left the field apart from a chip error. The card service
+     * wraps the transport exception, so the whole cause chain is checked.
+     */
+    private boolean isConnectionLost(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TagLostException) {
+                return true;
+            }
+            if (t instanceof Exception && cardService.isConnectionLost((Exception) t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stop the read if the tag was lost during a data group that swallowed the error
+     */
+    public void throwIfConnectionLost() throws ResumableReadException {
+        if (connectionLost != null) {
+            throw connectionLost;
+        }
+    }
+
+    /**
+     * Read the whole EF and expose it as a stream for the LDS file parsers
+     */
+    public InputStream open(short fid) throws Exception {
+        return new ByteArrayInputStream(read(fid));
+    }
+
+    public BlockSizeController getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Hand the EFs read in this session to the cache's disk store, off the read thread
+     */
+    public void persistCache() {
+        if (cacheSession != null) {
+            cacheSession.persist();
+        }
+    }
+
+    /**
+     * Number of EFs served from the cache during this read
+     */
+    public int getCacheHits() {
+        return cacheSession != null ? cacheSession.getHits() : 0;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.reader.readers;
+
+import android.content.Context;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Log;
+
+import com.example.reader.readers.eep.HexUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Disk backing for {@link EfCache}. Each entry is one file in the app cache
+ * directory, encrypted with AES-GCM under a non-exportable Android Keystore key.
+ * File names are hashes of the cache key, so no document number is stored in clear.
+ *
+ * Files older than the TTL are swept when the store is created and on every
+ * save, so document data does not outlive the cache TTL on disk even if its
+ * key is never looked up again.
+ */
+public class EncryptedEfDiskStore implements EfCache.DiskStore {
+
+    private static final String TAG = "@@>> EncryptedEfDiskStore";
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "reader_ef_cache";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_BITS = 128;
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+    private final long ttlMs;
+
+    public EncryptedEfDiskStore(Context context) {
+        this(context, EfCache.DEFAULT_TTL_MS);
+    }
+
+    public EncryptedEfDiskStore(Context context, long ttlMs) {
+        this.directory = new File(context.getCacheDir(), "ef_cache");
+        this.ttlMs = ttlMs;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+        }
+        sweepExpired();
+    }
+
+    @Override
+    public synchronized EfCache.Entry load(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] iv = new byte[in.readUnsignedByte()];
+            in.readFully(iv);
+            byte[] ciphertext = new byte[(int) file.length() - 1 - iv.length];
+            in.readFully(ciphertext);
+
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getOrCreateKey(), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            return deserialize(cipher.doFinal(ciphertext));
+
+        } catch (Exception e) {
+            Log.w(TAG, "Dropping unreadable cache file: " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void save(String key, EfCache.Entry entry) {
+        sweepExpired();
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getOrCreateKey());
+            byte[] ciphertext = cipher.doFinal(serialize(entry));
+            byte[] iv = cipher.getIV();
+
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(fileFor(key)))) {
+                out.writeByte(iv.length);
+                out.write(iv);
+                out.write(ciphertext);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Cannot persist cache entry: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        File file = fileFor(key);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete " + file);
+        }
+    }
+
+    /**
+     * Delete all persisted entries
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Delete files last written longer than the TTL ago. An entry is written after
+     * it was created, so this never removes one that is still valid.
+     */
+    private synchronized void sweepExpired() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        for (File file : files) {
+            if (file.lastModified() < cutoff && file.delete()) {
+                Log.d(TAG, "Swept expired cache file");
+            }
+        }
+    }
+
+    private File fileFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8));
+            return new File(directory, HexUtils.bytesToHex(digest));
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private SecretKey getOrCreateKey() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+
+        if (keyStore.containsAlias(KEY_ALIAS)) {
+            return ((KeyStore.SecretKeyEntry) keyStore.getEntry(KEY_ALIAS, null)).getSecretKey();
+        }
+
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(
+                KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    private static byte[] serialize(EfCache.Entry entry) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(entry.getCreatedAt());
+        out.writeInt(entry.getFiles().size());
+        for (Map.Entry<Short, byte[]> file : entry.getFiles().entrySet()) {
+            out.writeShort(file.getKey());
+            out.writeInt(file.getValue().length);
+            out.write(file.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static EfCache.Entry deserialize(byte[] data) throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IllegalStateException("Unknown cache format");
+        }
+
+        EfCache.Entry entry = new EfCache.Entry(in.readLong());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            short fid = in.readShort();
+            byte[] contents = new byte[in.readInt()];
+            in.readFully(contents);
+            entry.putFile(fid, contents);
+        }
+        return entry;
+    }
+}
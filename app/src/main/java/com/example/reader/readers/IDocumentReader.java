@@ -1,7 +1,10 @@
 package com.example.reader.readers;
 
+import android.graphics.Bitmap;
 import android.nfc.Tag;
+import android.nfc.tech.IsoDep;
 import com.example.reader.models.DocumentData;
+import com.example.reader.probe.ChipProfile;
 
 /**
  * Interface for all document readers
@@ -16,6 +19,34 @@ public interface IDocumentReader {
     // Add progress callback support
     DocumentData readDocument(Tag tag, DocumentAuthData authData, ProgressCallback progressCallback) throws Exception;
 
+    /**
+     * Read only the data groups and checks named by the read profile
+     */
+    DocumentData readDocument(Tag tag, DocumentAuthData authData, ReadProfile readProfile,
+                              ProgressCallback progressCallback) throws Exception;
+
+    /**
+     * Read through an IsoDep that is already connected, e.g. by the chip fingerprint.
+     * Android connects one technology object per tag at a time, and IsoDep.get(tag)
+     * returns a new, unconnected one that cannot connect while this one is, so the
+     * read must go through this object. The connection is closed when the read ends.
+     *
+     * The chip profile, if given, replaces the reader's own capability queries:
+     * its transceive limit and extended-length support set the transport, and a
+     * chip without EF.CardAccess goes straight to BAC.
+     *
+     * The default closes the connection and reads through the tag, for readers that
+     * connect on their own.
+     */
+    default DocumentData readDocument(IsoDep isoDep, ChipProfile chip, DocumentAuthData authData,
+                                      ReadProfile readProfile, ProgressCallback progressCallback) throws Exception {
+        try {
+            isoDep.close();
+        } catch (Exception ignored) {
+            // Ignore close errors
+        }
+        return readDocument(isoDep.getTag(), authData, readProfile, progressCallback);
+    }
 
     /**
      * Check if this reader can handle the given tag
@@ -35,6 +66,39 @@ public interface IDocumentReader {
     // Progress callback interface
     interface ProgressCallback {
         void onProgress(String message, int progress);
+
+        /**
+         * A data group has been read and parsed, before the rest of the document.
+         * Called on the read thread.
+         *
+         * @param dataGroup the parsed LDS file (DG1File, DG2File, ...), or the raw
+         *                  bytes for groups the reader does not parse
+         */
+        default void onDataGroupRead(int dgNumber, Object dataGroup) {}
+
+        /**
+         * A biometric image has been decoded. Called on an image decode thread,
+         * possibly while later data groups are still being read.
+         */
+        default void onImageDecoded(int dgNumber, Bitmap image) {}
+
+        /**
+         * A security check has completed. Called on the read thread, only for
+         * checks that were actually carried out:
+         * SOD after the last data group, passed if every data group read
+         * matched its hash in the SOD (the SOD signature itself is not verified);
+         * ACTIVE_AUTHENTICATION once the chip's signature over a fresh challenge
+         * has been checked against the DG15 key. Chip Authentication is not
+         * implemented and never reported.
+         */
+        default void onVerification(ReadProfile.Check check, boolean passed) {}
+
+        /**
+         * Bytes transferred against the planned EF set, with throughput and ETA.
+         * Called on the read thread, at most every {@link ProgressTracker#REPORT_INTERVAL_MS}
+         * and at the end of each EF.
+         */
+        default void onTransferProgress(ReadProgress progress) {}
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package com.example.reader.readers;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.gemalto.jp2.JP2Decoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes biometric images (DG2 face, DG3 finger, DG4 iris) off the NFC thread.
+ *
+ * The NFC thread only pulls the raw image bytes and submits them; JPEG2000
+ * decoding then overlaps with reading the next EF. Results are handed back on
+ * the NFC thread, in submission order, when the read calls {@link Batch#await()}.
+ * A batch can also have a {@link DecodeListener} that sees each image as soon as
+ * it is decoded, while the read is still going.
+ *
+ * The executor is bounded: when the queue is full the caller decodes the image
+ * itself, which throttles reading instead of piling up image buffers.
+ */
+public class ImageDecodePipeline {
+
+    private static final String TAG = "@@>> ImageDecodePipeline";
+
+    private static final int DECODE_THREADS = 2;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+
+    public ImageDecodePipeline() {
+        executor = new ThreadPoolExecutor(
+                DECODE_THREADS,
+                DECODE_THREADS,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                new DecodeThreadFactory(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Start collecting decodes for one document read, reporting each image early
+     *
+     * @param listener may be null
+     */
+    public Batch newBatch(DecodeListener listener) {
+        return new Batch(listener);
+    }
+
+    /**
+     * Decode JPEG or JPEG2000 image bytes
+     */
+    public static Bitmap decode(byte[] data, String mimeType) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        if (isJpeg2000(mimeType)) {
+            return new JP2Decoder(data).decode();
+        }
+        return BitmapFactory.decodeByteArray(data, 0, data.length);
+    }
+
+    public static boolean isJpeg2000(String mimeType) {
+        return "image/jp2".equalsIgnoreCase(mimeType)
+                || "image/jpeg2000".equalsIgnoreCase(mimeType);
+    }
+
+    public interface Consumer {
+        /**
+         * Called on the thread that awaits the batch; bitmap is null if decoding failed
+         */
+        void onDecoded(Bitmap bitmap);
+    }
+
+    public interface DecodeListener {
+        /**
+         * Called on the decoding thread as soon as an image is ready, before the
+         * batch is awaited; only for images that decoded
+         */
+        void onImageDecoded(int dataGroup, Bitmap bitmap);
+    }
+
+    /**
+     * Decodes submitted during one read
+     */
+    public class Batch {
+
+        private final List<Future<Bitmap>> futures = new ArrayList<>();
+        private final List<Consumer> consumers = new ArrayList<>();
+        private final DecodeListener listener;
+
+        private Batch(DecodeListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @param dataGroup the data group the image came from, for the listener
+         */
+        public void submit(int dataGroup, byte[] data, String mimeType, Consumer consumer) {
+            futures.add(executor.submit(() -> {
+                Bitmap bitmap = decode(data, mimeType);
+                if (bitmap != null && listener != null) {
+                    listener.onImageDecoded(dataGroup, bitmap);
+                }
+                return bitmap;
+            }));
+            consumers.add(consumer);
+        }
+
+        /**
+         * Wait for every submitted decode and deliver the results in submission order
+         */
+        public void await() throws InterruptedException {
+            for (int i = 0; i < futures.size(); i++) {
+                Bitmap bitmap = null;
+                try {
+                    bitmap = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Image decode failed", e.getCause());
+                }
+                consumers.get(i).onDecoded(bitmap);
+            }
+            futures.clear();
+            consumers.clear();
+        }
+
+        /**
+         * Drop pending decodes, e.g. when the read failed
+         */
+        public void cancel() {
+            for (Future<Bitmap> future : futures) {
+                future.cancel(true);
+            }
+            futures.clear();
+            consumers.clear();
+        }
+    }
+
+    private static class DecodeThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ImageDecode-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
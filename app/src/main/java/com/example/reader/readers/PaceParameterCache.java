@@ -0,0 +1,211 @@
+package com.example.reader.readers;
+
+import android.content.SharedPreferences;
+import android.nfc.tech.IsoDep;
+import android.util.Log;
+
+import com.example.reader.readers.eep.HexUtils;
+
+import org.jmrtd.lds.PACEInfo;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers which PACE parameters worked for a chip profile, so the next read
+ * tries them first instead of walking every PACEInfo in EF.CardAccess order.
+ * It only orders the attempts: a chip that advertises PACE is always offered
+ * PACE, whatever worked before, so a failed attempt cannot pin it to BAC.
+ *
+ * Entries are keyed by issuing state, the chip's historical bytes (or hi-layer
+ * response) and a hash of EF.CardAccess, so a chip that changes its CardAccess
+ * gets a fresh entry. The cache is bounded (LRU) and only stores OIDs and
+ * parameter IDs; it can be persisted in SharedPreferences and never needs the network.
+ */
+public class PaceParameterCache {
+
+    private static final String TAG = "@@>> PaceParameterCache";
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final String PREFS_KEY = "pace_parameters";
+
+    /**
+     * The PACE parameters that succeeded last time
+     */
+    public static class Choice {
+        public final String oid;
+        public final BigInteger parameterId;
+
+        Choice(String oid, BigInteger parameterId) {
+            this.oid = oid;
+            this.parameterId = parameterId;
+        }
+
+        public boolean matches(PACEInfo paceInfo) {
+            return oid.equals(paceInfo.getObjectIdentifier())
+                    && parameterId != null
+                    && parameterId.equals(paceInfo.getParameterId());
+        }
+
+        @Override
+        public String toString() {
+            return oid + "/" + parameterId;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Choice> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private SharedPreferences preferences;
+
+    public PaceParameterCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public PaceParameterCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Persist entries in the given preferences and load what is already there
+     */
+    public synchronized void setPreferences(SharedPreferences preferences) {
+        this.preferences = preferences;
+        if (preferences != null) {
+            load(preferences.getString(PREFS_KEY, null));
+        }
+    }
+
+    /**
+     * Chip part of the key: historical bytes, or the hi-layer response on NFC-B
+     */
+    public static String chipKey(IsoDep isoDep) {
+        byte[] identity = isoDep.getHistoricalBytes();
+        if (identity == null || identity.length == 0) {
+            identity = isoDep.getHiLayerResponse();
+        }
+        return chipKey(identity);
+    }
+
+    /**
+     * Chip part of the key from raw identity bytes (historical bytes, hi-layer response or ATR)
+     */
+    public static String chipKey(byte[] identity) {
+        return identity != null ? HexUtils.bytesToHex(identity) : "";
+    }
+
+    /**
+     * Full key once EF.CardAccess has been read
+     *
+     * @param issuingState from the MRZ; null if unknown
+     */
+    public static String keyFor(String issuingState, String chipKey, byte[] cardAccess) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(cardAccess);
+            return (issuingState != null ? issuingState.trim().toUpperCase() : "")
+                    + ":" + (chipKey != null ? chipKey : "") + ":" + HexUtils.bytesToHex(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public synchronized Choice get(String key) {
+        Choice choice = entries.get(key);
+        if (choice != null) {
+            Log.d(TAG, "Cached authentication for this chip: " + choice);
+        }
+        return choice;
+    }
+
+    public synchronized void recordPace(String key, String oid, BigInteger parameterId) {
+        put(key, new Choice(oid, parameterId));
+    }
+
+    /**
+     * Forget an entry that no longer works
+     */
+    public synchronized void invalidate(String key) {
+        if (entries.remove(key) != null) {
+            Log.d(TAG, "Cached authentication failed, entry dropped");
+            save();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        save();
+    }
+
+    /**
+     * PACEInfos in the order to try them: the cached one first, then the rest in CardAccess order
+     */
+    public static List<PACEInfo> order(List<PACEInfo> paceInfos, Choice cached) {
+        if (cached == null) {
+            return paceInfos;
+        }
+        List<PACEInfo> ordered = new ArrayList<>(paceInfos.size());
+        for (PACEInfo paceInfo : paceInfos) {
+            if (cached.matches(paceInfo)) {
+                ordered.add(0, paceInfo);
+            } else {
+                ordered.add(paceInfo);
+            }
+        }
+        return ordered;
+    }
+
+    private void put(String key, Choice choice) {
+        Choice previous = entries.put(key, choice);
+        if (previous != null && previous.toString().equals(choice.toString())) {
+            return;
+        }
+        while (entries.size() > maxEntries) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+        }
+        save();
+    }
+
+    /**
+     * One "key=choice" line per entry, least recently used first
+     */
+    private void save() {
+        if (preferences == null) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Choice> entry : entries.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        preferences.edit().putString(PREFS_KEY, sb.toString()).apply();
+    }
+
+    private void load(String serialized) {
+        if (serialized == null) {
+            return;
+        }
+        for (String line : serialized.split("\n")) {
+            int eq = line.lastIndexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String key = line.substring(0, eq);
+            String value = line.substring(eq + 1);
+            try {
+                // Entries written by older versions may record BAC; they are dropped
+                int slash = value.lastIndexOf('/');
+                entries.put(key, new Choice(value.substring(0, slash),
+                        new BigInteger(value.substring(slash + 1))));
+            } catch (Exception e) {
+                Log.w(TAG, "Skipping unreadable entry");
+            }
+        }
+        while (entries.size() > maxEntries) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+        Log.d(TAG, "Loaded " + entries.size() + " cached chip profiles");
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.reader.readers;
 
-import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.nfc.Tag;
 import android.nfc.tech.IsoDep;
 import android.util.Log;
 
+import com.example.reader.lds.ActiveAuthentication;
+import com.example.reader.lds.SecurityObject;
 import com.example.reader.models.DocumentData;
 import com.example.reader.models.PassportData;
-import com.gemalto.jp2.JP2Decoder;
+import com.example.reader.probe.ChipProfile;
+import com.example.reader.readers.eep.StreamUtils;
+import com.example.reader.readers.transcript.ApduTranscript;
+import com.example.reader.readers.transcript.RecordingCardService;
+import com.example.reader.readers.transcript.ReplayCardService;
+import com.example.reader.readers.transcript.TranscriptRecorder;
 
 import net.sf.scuba.smartcards.CardService;
 import net.sf.scuba.smartcards.CardServiceException;
@@ -18,10 +24,11 @@ import net.sf.scuba.smartcards.ResponseAPDU;
 import org.jmrtd.BACKey;
 import org.jmrtd.BACKeySpec;
 import org.jmrtd.PassportService;
+import org.jmrtd.Util;
+import org.jmrtd.lds.ActiveAuthenticationInfo;
 import org.jmrtd.lds.CardAccessFile;
 import org.jmrtd.lds.DisplayedImageInfo;
 import org.jmrtd.lds.PACEInfo;
-import org.jmrtd.lds.SODFile;
 import org.jmrtd.lds.SecurityInfo;
 import org.jmrtd.lds.icao.DG11File;
 import org.jmrtd.lds.icao.DG12File;
@@ -43,7 +50,6 @@ import org.jmrtd.lds.iso19794.IrisImageInfo;
 import org.jmrtd.lds.iso19794.IrisInfo;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.InputStream;
 import java.math.BigInteger;
@@ -64,6 +70,8 @@ public class PassportDocumentReader implements IDocumentReader {
             (byte) 0xA0, 0x00, 0x00, 0x02, 0x47, 0x10, 0x01
     };
 
+    private static final int[] ALL_DATA_GROUPS = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
     // Authentication method enum
     public enum AuthMethod {
         PACE,
@@ -71,6 +79,60 @@ public class PassportDocumentReader implements IDocumentReader {
         NONE
     }
 
+    private TransportProfile.ReadMode readMode = TransportProfile.ReadMode.AUTO;
+
+    private final ImageDecodePipeline decodePipeline = new ImageDecodePipeline();
+
+    private EfCache efCache;
+
+    private PaceParameterCache paceCache;
+
+    private ReadTrace.Listener traceListener;
+
+    private TranscriptRecorder transcriptRecorder;
+
+    private final ReadCheckpoints checkpoints = new ReadCheckpoints();
+
+    /**
+     * Select whether extended-length READ BINARY may be used
+     */
+    public void setReadMode(TransportProfile.ReadMode readMode) {
+        this.readMode = readMode != null ? readMode : TransportProfile.ReadMode.STANDARD;
+    }
+
+    /**
+     * Share an EF cache so re-taps only fetch the SOD (null disables caching)
+     */
+    public void setEfCache(EfCache efCache) {
+        this.efCache = efCache;
+    }
+
+    /**
+     * Remember which PACE parameters worked per chip profile (null disables it)
+     */
+    public void setPaceParameterCache(PaceParameterCache paceCache) {
+        this.paceCache = paceCache;
+    }
+
+    /**
+     * Receive the APDU timing report of every read
+     */
+    public void setReadTraceListener(ReadTrace.Listener traceListener) {
+        this.traceListener = traceListener;
+    }
+
+    /**
+     * Record the APDU transcript of every tap for offline replay (null disables it)
+     */
+    public void setTranscriptRecorder(TranscriptRecorder transcriptRecorder) {
+        this.transcriptRecorder = transcriptRecorder;
+    }
+
+    private CardService newCardService(IsoDep isoDep) {
+        CardService cardService = CardService.getInstance(isoDep);
+        return transcriptRecorder != null ? transcriptRecorder.begin(cardService, isoDep) : cardService;
+    }
+
     private void selectEMRTDApplication(CardService cardService) throws CardServiceException {
         Log.d(TAG, "📱 Selecting eMRTD application...");
 
@@ -89,54 +151,77 @@ public class PassportDocumentReader implements IDocumentReader {
 
     private AuthMethod performSmartAuthentication(PassportService service,
                                                   CardService cardService,
-                                                  BACKeySpec bacKey) throws Exception {
+                                                  BACKeySpec bacKey,
+                                                  String issuingState,
+                                                  String chipKey,
+                                                  boolean cardAccessPresent,
+                                                  PaceParameterCache paceCache) throws Exception {
 
         boolean paceSucceeded = false;
+        String paceKey = null;
+        PaceParameterCache.Choice cached = null;
 
-        try {
-            Log.d(TAG, "📖 Checking for PACE support (CardAccess file)...");
+        if (!cardAccessPresent) {
+            Log.d(TAG, "ℹ️ No CardAccess file on this chip, skipping PACE");
+        } else {
+            try {
+                Log.d(TAG, "📖 Checking for PACE support (CardAccess file)...");
 
-            CardAccessFile cardAccessFile = new CardAccessFile(
-                    service.getInputStream(PassportService.EF_CARD_ACCESS)
-            );
+                byte[] cardAccessBytes = StreamUtils.readAllBytes(
+                        service.getInputStream(PassportService.EF_CARD_ACCESS)
+                );
+                CardAccessFile cardAccessFile = new CardAccessFile(new ByteArrayInputStream(cardAccessBytes));
 
-            Collection<SecurityInfo> securityInfos = cardAccessFile.getSecurityInfos();
-            Log.d(TAG, "✅ CardAccess found with " + securityInfos.size() + " security infos");
+                Collection<SecurityInfo> securityInfos = cardAccessFile.getSecurityInfos();
+                Log.d(TAG, "✅ CardAccess found with " + securityInfos.size() + " security infos");
 
-            List<PACEInfo> paceInfos = new ArrayList<>();
-            for (SecurityInfo securityInfo : securityInfos) {
-                if (securityInfo instanceof PACEInfo) {
-                    PACEInfo paceInfo = (PACEInfo) securityInfo;
-                    paceInfos.add(paceInfo);
-                    Log.d(TAG, "  Found PACE: " + paceInfo.getProtocolOIDString());
+                List<PACEInfo> paceInfos = new ArrayList<>();
+                for (SecurityInfo securityInfo : securityInfos) {
+                    if (securityInfo instanceof PACEInfo) {
+                        PACEInfo paceInfo = (PACEInfo) securityInfo;
+                        paceInfos.add(paceInfo);
+                        Log.d(TAG, "  Found PACE: " + paceInfo.getProtocolOIDString());
+                    }
                 }
-            }
 
-            for (PACEInfo paceInfo : paceInfos) {
-                try {
-                    String oid = paceInfo.getObjectIdentifier();
-                    BigInteger parameterId = paceInfo.getParameterId();
+                if (paceCache != null) {
+                    paceKey = PaceParameterCache.keyFor(issuingState, chipKey, cardAccessBytes);
+                    cached = paceCache.get(paceKey);
+                }
 
-                    Log.d(TAG, "🔐 Attempting PACE with OID: " + oid);
+                for (PACEInfo paceInfo : PaceParameterCache.order(paceInfos, cached)) {
+                    try {
+                        String oid = paceInfo.getObjectIdentifier();
+                        BigInteger parameterId = paceInfo.getParameterId();
 
-                    service.doPACE(
-                            bacKey,
-                            oid,
-                            PACEInfo.toParameterSpec(parameterId),
-                            null
-                    );
+                        Log.d(TAG, "🔐 Attempting PACE with OID: " + oid);
+
+                        service.doPACE(
+                                bacKey,
+                                oid,
+                                PACEInfo.toParameterSpec(parameterId),
+                                null
+                        );
 
-                    Log.d(TAG, "✅ PACE authentication SUCCESSFUL");
-                    paceSucceeded = true;
-                    break;
+                        Log.d(TAG, "✅ PACE authentication SUCCESSFUL");
+                        paceSucceeded = true;
+                        if (paceKey != null) {
+                            paceCache.recordPace(paceKey, oid, parameterId);
+                        }
+                        break;
 
-                } catch (Exception e) {
-                    Log.w(TAG, "⚠️ PACE attempt failed: " + e.getMessage());
+                    } catch (Exception e) {
+                        Log.w(TAG, "⚠️ PACE attempt failed: " + e.getMessage());
+                    }
                 }
-            }
 
-        } catch (Exception e) {
-            Log.d(TAG, "ℹ️ PACE not supported: " + e.getMessage());
+                if (!paceSucceeded && cached != null) {
+                    paceCache.invalidate(paceKey);
+                }
+
+            } catch (Exception e) {
+                Log.d(TAG, "ℹ️ PACE not supported: " + e.getMessage());
+            }
         }
 
         if (paceSucceeded) {
@@ -166,99 +251,317 @@ public class PassportDocumentReader implements IDocumentReader {
 
     @Override
     public DocumentData readDocument(Tag tag, DocumentAuthData authData, ProgressCallback progressCallback) throws Exception {
+        return readDocument(tag, authData, ReadProfile.FULL, progressCallback);
+    }
 
-        if (!authData.isValid()) {
-            throw new Exception("Invalid auth data");
-        }
-
-        String docNumber = authData.getDocumentNumber().trim().toUpperCase();
-        String birthDate = authData.getDateOfBirth().replaceAll("[^0-9]", "");
-        String expiryDate = authData.getDateOfExpiry().replaceAll("[^0-9]", "");
-
-        if (birthDate.length() != 6 || expiryDate.length() != 6) {
-            throw new IllegalArgumentException("Dates must be in YYMMDD format");
-        }
+    @Override
+    public DocumentData readDocument(Tag tag, DocumentAuthData authData, ReadProfile readProfile,
+                                     ProgressCallback progressCallback) throws Exception {
 
-        Log.d(TAG, "📖 Starting COMPLETE passport read (ALL Data Groups)...");
+        validateAuthData(authData);
 
         IsoDep isoDep = IsoDep.get(tag);
         if (isoDep == null) {
             throw new Exception("Tag does not support ISO-DEP (ISO 14443-4)");
         }
+        isoDep.connect();
+
+        return readDocument(isoDep, null, authData, readProfile, progressCallback);
+    }
+
+    @Override
+    public DocumentData readDocument(IsoDep isoDep, ChipProfile chip, DocumentAuthData authData,
+                                     ReadProfile readProfile, ProgressCallback progressCallback) throws Exception {
 
+        // Auth data is checked by the card service overload, which closes the connection on failure
         isoDep.setTimeout(20000);
-        isoDep.connect();
 
-        CardService cardService = CardService.getInstance(isoDep);
+        if (chip == null) {
+            return readDocument(newCardService(isoDep), TransportProfile.negotiate(isoDep, readMode),
+                    PaceParameterCache.chipKey(isoDep), true, authData, readProfile, progressCallback);
+        }
+
+        Log.d(TAG, "🔎 Using " + chip);
+        TransportProfile transport = TransportProfile.negotiate(chip.extendedLengthSupported,
+                chip.maxTransceiveLength, chip.historicalBytes, chip.hiLayerResponse, readMode);
+        return readDocument(newCardService(isoDep), transport, PaceParameterCache.chipKey(chip.getIdentity()),
+                chip.cardAccessPresent, authData, readProfile, progressCallback);
+    }
+
+    /**
+     * Read through an already connected card service, e.g. a simulated chip or a
+     * replayed transcript. The service is closed when the read ends.
+     *
+     * @param chipKey PACE cache key of the chip, see {@link PaceParameterCache#chipKey}
+     */
+    public DocumentData readDocument(CardService rawCardService, TransportProfile transport, String chipKey,
+                                     DocumentAuthData authData, ReadProfile readProfile,
+                                     ProgressCallback progressCallback) throws Exception {
+        return readDocument(rawCardService, transport, chipKey, true, authData, readProfile, progressCallback);
+    }
+
+    /**
+     * Replay a recorded transcript with the read profile, transport, chip key,
+     * issuing state and EF.CardAccess presence it was recorded with. Bind a
+     * DeterministicRandom to the transcript seed around the call.
+     */
+    public DocumentData replay(ReplayCardService replay, DocumentAuthData authData,
+                               ProgressCallback progressCallback) throws Exception {
+        ApduTranscript transcript = replay.getTranscript();
+        DocumentAuthData recorded = new DocumentAuthData(authData.getDocumentNumber(),
+                authData.getDateOfBirth(), authData.getDateOfExpiry());
+        recorded.setIssuingState(transcript.getIssuingState());
+        return readDocument(replay, transcript.negotiateTransport(), transcript.getChipKey(),
+                transcript.isCardAccessPresent(), recorded, transcript.getReadProfile(), progressCallback);
+    }
+
+    /**
+     * @param cardAccessPresent false if the chip has no EF.CardAccess, so PACE is not tried
+     */
+    private DocumentData readDocument(CardService rawCardService, TransportProfile transport, String chipKey,
+                                      boolean cardAccessPresent, DocumentAuthData authData,
+                                      ReadProfile readProfile, ProgressCallback progressCallback) throws Exception {
+
+        if (readProfile == null) {
+            readProfile = ReadProfile.FULL;
+        }
+
+        try {
+            validateAuthData(authData);
+        } catch (Exception e) {
+            rawCardService.close();
+            throw e;
+        }
+
+        String docNumber = authData.getDocumentNumber().trim().toUpperCase();
+        String birthDate = authData.getDateOfBirth().replaceAll("[^0-9]", "");
+        String expiryDate = authData.getDateOfExpiry().replaceAll("[^0-9]", "");
+
+        Log.d(TAG, "📖 Starting passport read: " + readProfile);
+
+        // A recorded or replayed read must go the same way in a fresh reader: no cache, no checkpoint
+        ApduTranscript transcript = ApduTranscript.of(rawCardService);
+        if (rawCardService instanceof RecordingCardService) {
+            transcript.setReadContext(readProfile, transport.isExtendedLength()
+                            ? TransportProfile.ReadMode.AUTO : TransportProfile.ReadMode.STANDARD,
+                    chipKey, authData.getIssuingState(), cardAccessPresent);
+        }
+        EfCache readEfCache = transcript == null ? efCache : null;
+        PaceParameterCache readPaceCache = transcript == null ? paceCache : null;
+        ReadCheckpoints readCheckpoints = transcript == null ? checkpoints : new ReadCheckpoints();
+
+        ReadTrace trace = new ReadTrace();
+        CardService cardService = new TracingCardService(rawCardService, trace);
         cardService.open();
 
-        PassportService service = new PassportService(
-                cardService,
-                PassportService.NORMAL_MAX_TRANCEIVE_LENGTH,
-                PassportService.DEFAULT_MAX_BLOCKSIZE,
-                true,
-                false
-        );
-        service.open();
+        Log.d(TAG, "📶 Transport: " + transport);
 
         PassportData result = new PassportData();
+        PassportService service = null;
+        ImageDecodePipeline.Batch decodeBatch = decodePipeline.newBatch(
+                progressCallback != null ? progressCallback::onImageDecoded : null);
+        ProgressTracker progressTracker = new ProgressTracker(ProgressTracker.forCallback(progressCallback, true));
+
+        String checkpointKey = ReadCheckpoints.keyFor(docNumber, birthDate, expiryDate);
+        ReadCheckpoints.Checkpoint checkpoint = readCheckpoints.open(checkpointKey);
+        if (checkpoint.isResumed()) {
+            Log.d(TAG, "🔁 Resuming interrupted read, " + checkpoint.getBytesKept() + " bytes kept");
+        }
 
         try {
             BACKeySpec bacKey = new BACKey(docNumber, birthDate, expiryDate);
 
-            AuthMethod authMethod = performSmartAuthentication(service, cardService, bacKey);
-            result.authenticationMethod = authMethod.toString();
-            result.supportedSecurityProtocols.add(authMethod.toString());
+            try {
+                service = openSession(cardService, transport, bacKey, authData.getIssuingState(), chipKey,
+                        cardAccessPresent, readPaceCache, result);
+            } catch (Exception e) {
+                if (!transport.isExtendedLengthRejected(cardService, e)) {
+                    throw e;
+                }
+                Log.w(TAG, "⚠️ Extended-length APDUs rejected, retrying with short APDUs: " + e.getMessage());
+                transport = TransportProfile.standard();
+                service = openSession(cardService, transport, bacKey, authData.getIssuingState(), chipKey,
+                        cardAccessPresent, readPaceCache, result);
+            }
+
+            trace.markAuthenticated();
+            result.extendedLengthApdu = transport.isExtendedLength();
+            result.supportedSecurityProtocols.add(result.authenticationMethod);
 
             Log.d(TAG, "🔒 Secure messaging active: " + (service.getWrapper() != null));
 
-            readSOD(service, result);
+            EfReader efReader = new EfReader(service, cardService, new BlockSizeController(transport),
+                    readEfCache != null ? readEfCache.openSession(docNumber) : null, checkpoint);
+            efReader.setTrace(trace);
+            efReader.setProgressTracker(progressTracker);
+
+            // Plan the whole read up front so the percentage does not run ahead on the SOD
+            if (readProfile.isEnabled(ReadProfile.Check.SOD)) {
+                progressTracker.plan(PassportService.EF_SOD);
+            }
+            progressTracker.planDataGroups(readProfile, ALL_DATA_GROUPS);
+
+            if (readProfile.isEnabled(ReadProfile.Check.SOD)) {
+                readSOD(efReader, result);
+            }
 
             if (result.dataGroupHashes != null && !result.dataGroupHashes.isEmpty()) {
                 result.availableDataGroups = new ArrayList<>(result.dataGroupHashes.keySet());
                 Log.d(TAG, "✓ Available Data Groups from SOD: " + result.availableDataGroups);
             }
 
-            readDG1(service, result);
-            readDG2(service, result);
-
-            if (result.availableDataGroups.contains(3)) readDG3(service, result);
-            if (result.availableDataGroups.contains(4)) readDG4(service, result);
-            if (result.availableDataGroups.contains(5)) readDG5(service, result);
-            if (result.availableDataGroups.contains(6)) readDG6(service, result);
-            if (result.availableDataGroups.contains(7)) readDG7(service, result);
-            if (result.availableDataGroups.contains(8)) readDG8(service, result);
-            if (result.availableDataGroups.contains(9)) readDG9(service, result);
-            if (result.availableDataGroups.contains(10)) readDG10(service, result);
-            if (result.availableDataGroups.contains(11)) readDG11(service, result);
-            if (result.availableDataGroups.contains(12)) readDG12(service, result);
-            if (result.availableDataGroups.contains(13)) readDG13(service, result);
-            if (result.availableDataGroups.contains(14)) readDG14(service, result);
-            if (result.availableDataGroups.contains(15)) readDG15(service, result);
-            if (result.availableDataGroups.contains(16)) readDG16(service, result);
+            for (int dg : ALL_DATA_GROUPS) {
+                if (shouldRead(readProfile, result, dg)) {
+                    progressTracker.planDataGroup(dg);
+                } else {
+                    progressTracker.unplanDataGroup(dg);
+                }
+            }
 
-            if (result.hasActiveAuthentication) {
+            if (shouldRead(readProfile, result, 1)) dataGroupRead(progressCallback, 1, readDG1(efReader, result));
+            if (shouldRead(readProfile, result, 2)) dataGroupRead(progressCallback, 2, readDG2(efReader, decodeBatch, result));
+            if (shouldRead(readProfile, result, 3)) dataGroupRead(progressCallback, 3, readDG3(efReader, decodeBatch, result));
+            if (shouldRead(readProfile, result, 4)) dataGroupRead(progressCallback, 4, readDG4(efReader, decodeBatch, result));
+            if (shouldRead(readProfile, result, 5)) dataGroupRead(progressCallback, 5, readDG5(efReader, result));
+            if (shouldRead(readProfile, result, 6)) dataGroupRead(progressCallback, 6, readDG6(efReader, result));
+            if (shouldRead(readProfile, result, 7)) dataGroupRead(progressCallback, 7, readDG7(efReader, result));
+            if (shouldRead(readProfile, result, 8)) dataGroupRead(progressCallback, 8, readDG8(efReader, result));
+            if (shouldRead(readProfile, result, 9)) dataGroupRead(progressCallback, 9, readDG9(efReader, result));
+            if (shouldRead(readProfile, result, 10)) dataGroupRead(progressCallback, 10, readDG10(efReader, result));
+            if (shouldRead(readProfile, result, 11)) dataGroupRead(progressCallback, 11, readDG11(efReader, result));
+            if (shouldRead(readProfile, result, 12)) dataGroupRead(progressCallback, 12, readDG12(efReader, result));
+            if (shouldRead(readProfile, result, 13)) dataGroupRead(progressCallback, 13, readDG13(efReader, result));
+            if (shouldRead(readProfile, result, 14)) dataGroupRead(progressCallback, 14, readDG14(efReader, result));
+            if (shouldRead(readProfile, result, 15)) dataGroupRead(progressCallback, 15, readDG15(efReader, result));
+            if (shouldRead(readProfile, result, 16)) dataGroupRead(progressCallback, 16, readDG16(efReader, result));
+
+            // Data group readers log and swallow their errors; a lost tag must end the read
+            efReader.throwIfConnectionLost();
+
+            if (readProfile.isEnabled(ReadProfile.Check.SOD)) {
+                // Passes only if every data group read matched its hash in the SOD
+                Log.d(TAG, "🔏 Data group hashes: " + efReader.getHashChecks());
+                verification(progressCallback, ReadProfile.Check.SOD, efReader.allHashesMatch());
+            }
+
+            if (result.hasActiveAuthentication
+                    && readProfile.isEnabled(ReadProfile.Check.ACTIVE_AUTHENTICATION)) {
+                trace.setPhase("Active Authentication");
                 performActiveAuthentication(service, result);
+                verification(progressCallback, ReadProfile.Check.ACTIVE_AUTHENTICATION,
+                        result.activeAuthenticationPerformed);
             }
 
-            if (result.hasChipAuthentication) {
+            // Chip Authentication is not implemented, so no verdict is reported for it
+            if (result.hasChipAuthentication
+                    && readProfile.isEnabled(ReadProfile.Check.CHIP_AUTHENTICATION)) {
                 performChipAuthentication(service, result);
             }
 
-            Log.d(TAG, "✅ COMPLETE passport read finished - ALL Data Groups processed");
+            trace.setPhase("Image decode wait");
+            long decodeWaitStart = System.nanoTime();
+            decodeBatch.await();
+            trace.addDecodeWait(System.nanoTime() - decodeWaitStart);
+            Log.d(TAG, "✓ DG2: " + result.faceImages.size() + " image(s) successfully decoded");
+
+            result.readBinaryBlockSize = efReader.getBlockSize().current();
+            Log.d(TAG, "📶 READ BINARY " + efReader.getBlockSize());
+            Log.d(TAG, "📦 EFs served from cache: " + efReader.getCacheHits());
+            efReader.persistCache();
+
+            readCheckpoints.discard(checkpointKey);
+            result.readTrace = trace;
+            Log.d(TAG, "✅ Passport read finished");
 
         } finally {
-            try { service.close(); } catch (Exception e) { }
+            decodeBatch.cancel();
+            try { if (service != null) service.close(); } catch (Exception e) { }
             try { cardService.close(); } catch (Exception e) { }
+
+            trace.finish();
+            Log.d(TAG, "⏱️ " + trace);
+            progressTracker.logSummary();
+            if (traceListener != null) {
+                traceListener.onReadTrace(trace);
+            }
         }
 
         return result;
     }
 
-    private void readDG1(PassportService service, PassportData result) {
+    /**
+     * Report a data group as soon as it is parsed; failed groups (null) are not reported
+     */
+    private static void dataGroupRead(ProgressCallback progressCallback, int dgNumber, Object dataGroup) {
+        if (progressCallback != null && dataGroup != null) {
+            progressCallback.onDataGroupRead(dgNumber, dataGroup);
+        }
+    }
+
+    private static void verification(ProgressCallback progressCallback, ReadProfile.Check check, boolean passed) {
+        if (progressCallback != null) {
+            progressCallback.onVerification(check, passed);
+        }
+    }
+
+    private static void validateAuthData(DocumentAuthData authData) throws Exception {
+        if (authData == null || !authData.isValid()) {
+            throw new Exception("Invalid auth data");
+        }
+
+        String birthDate = authData.getDateOfBirth().replaceAll("[^0-9]", "");
+        String expiryDate = authData.getDateOfExpiry().replaceAll("[^0-9]", "");
+
+        if (birthDate.length() != 6 || expiryDate.length() != 6) {
+            throw new IllegalArgumentException("Dates must be in YYMMDD format");
+        }
+    }
+
+    /**
+     * Open a PassportService with the given transport and authenticate.
+     * In extended mode the first block of EF.SOD is read at the end, so the first
+     * extended READ BINARY happens here, where a rejection can still be retried.
+     */
+    private PassportService openSession(CardService cardService,
+                                        TransportProfile transport,
+                                        BACKeySpec bacKey,
+                                        String issuingState,
+                                        String chipKey,
+                                        boolean cardAccessPresent,
+                                        PaceParameterCache paceCache,
+                                        PassportData result) throws Exception {
+        PassportService service = transport.createPassportService(cardService, true, false);
+        service.open();
+
+        AuthMethod authMethod = performSmartAuthentication(service, cardService, bacKey, issuingState, chipKey,
+                cardAccessPresent, paceCache);
+        result.authenticationMethod = authMethod.toString();
+
+        transport.probeExtendedRead(service, cardService);
+        return service;
+    }
+
+    /**
+     * DG1 and DG2 are mandatory; other groups are read when the SOD lists them.
+     * Without a SOD, an explicit profile reads what it names and lets missing files fail.
+     */
+    private boolean shouldRead(ReadProfile readProfile, PassportData result, int dgNumber) {
+        if (!readProfile.includesDataGroup(dgNumber)) {
+            return false;
+        }
+        if (dgNumber == 1 || dgNumber == 2) {
+            return true;
+        }
+        if (result.availableDataGroups.isEmpty()) {
+            return !readProfile.isAllAvailable();
+        }
+        return result.availableDataGroups.contains(dgNumber);
+    }
+
+    private Object readDG1(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "📄 Reading DG1 (MRZ)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG1);
+            InputStream is = efReader.open(PassportService.EF_DG1);
             DG1File dg1 = new DG1File(is);
             MRZInfo mrzInfo = dg1.getMRZInfo();
 
@@ -275,15 +578,17 @@ public class PassportDocumentReader implements IDocumentReader {
             result.optionalData2 = mrzInfo.getOptionalData2();
 
             Log.d(TAG, "✓ DG1 read successfully");
+            return dg1;
         } catch (Exception e) {
             Log.e(TAG, "✗ Error reading DG1", e);
         }
+        return null;
     }
 
-    private void readDG2(PassportService service, PassportData result) {
+    private Object readDG2(EfReader efReader, ImageDecodePipeline.Batch decodeBatch, PassportData result) {
         try {
             Log.d(TAG, "📸 Reading DG2 (Face Image)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG2);
+            InputStream is = efReader.open(PassportService.EF_DG2);
             DG2File dg2 = new DG2File(is);
 
             List<FaceInfo> faceInfos = dg2.getFaceInfos();
@@ -300,30 +605,26 @@ public class PassportDocumentReader implements IDocumentReader {
                     String mimeType = faceImageInfo.getMimeType();
                     result.faceImageMimeTypes.add(mimeType);
 
-                    Bitmap bitmap = null;
-
-                    if (mimeType.equals("image/jp2") || mimeType.equals("image/jpeg2000")) {
-                        bitmap = new JP2Decoder(buffer).decode();
-                    } else {
-                        bitmap = BitmapFactory.decodeByteArray(buffer, 0, buffer.length);
-                    }
-
-                    if (bitmap != null) {
-                        result.faceImages.add(bitmap);
-                        Log.d(TAG, "✓ Decoded face image: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-                    }
+                    decodeBatch.submit(2, buffer, mimeType, bitmap -> {
+                        if (bitmap != null) {
+                            result.faceImages.add(bitmap);
+                            Log.d(TAG, "✓ Decoded face image: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+                        }
+                    });
                 }
             }
-            Log.d(TAG, "✓ DG2: " + result.faceImages.size() + " image(s) successfully decoded");
+            Log.d(TAG, "✓ DG2: image bytes read, decoding in background");
+            return dg2;
         } catch (Exception e) {
             Log.e(TAG, "✗ Error reading DG2", e);
         }
+        return null;
     }
 
-    private void readDG3(PassportService service, PassportData result) {
+    private Object readDG3(EfReader efReader, ImageDecodePipeline.Batch decodeBatch, PassportData result) {
         try {
             Log.d(TAG, "👆 Reading DG3 (Fingerprints)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG3);
+            InputStream is = efReader.open(PassportService.EF_DG3);
             DG3File dg3 = new DG3File(is);
 
             List<FingerInfo> fingerInfos = dg3.getFingerInfos();
@@ -344,9 +645,8 @@ public class PassportDocumentReader implements IDocumentReader {
                     fingerData.imageFormat = imageInfo.getMimeType();
 
                     if (fingerData.imageFormat.contains("jpeg")) {
-                        fingerData.fingerImage = BitmapFactory.decodeByteArray(
-                                fingerData.imageData, 0, imageLength
-                        );
+                        decodeBatch.submit(3, fingerData.imageData, fingerData.imageFormat,
+                                bitmap -> fingerData.fingerImage = bitmap);
                     }
 
                     result.fingerprints.add(fingerData);
@@ -355,16 +655,18 @@ public class PassportDocumentReader implements IDocumentReader {
 
             result.hasFingerprintData = !result.fingerprints.isEmpty();
             Log.d(TAG, "✓ DG3: " + result.fingerprints.size() + " fingerprint(s)");
+            return dg3;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG3 not accessible (requires EAC)", e);
             result.hasFingerprintData = false;
         }
+        return null;
     }
 
-    private void readDG4(PassportService service, PassportData result) {
+    private Object readDG4(EfReader efReader, ImageDecodePipeline.Batch decodeBatch, PassportData result) {
         try {
             Log.d(TAG, "👁️ Reading DG4 (Iris)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG4);
+            InputStream is = efReader.open(PassportService.EF_DG4);
             DG4File dg4 = new DG4File(is);
 
             List<IrisInfo> irisInfos = dg4.getIrisInfos();
@@ -405,9 +707,8 @@ public class PassportDocumentReader implements IDocumentReader {
                         }
 
                         if (imageFormat == 4 || imageFormat == 5) {
-                            irisData.irisImage = BitmapFactory.decodeByteArray(
-                                    irisData.imageData, 0, imageLength
-                            );
+                            decodeBatch.submit(4, irisData.imageData, irisData.imageFormat,
+                                    bitmap -> irisData.irisImage = bitmap);
                         }
 
                         result.irisScans.add(irisData);
@@ -417,16 +718,18 @@ public class PassportDocumentReader implements IDocumentReader {
 
             result.hasIrisData = !result.irisScans.isEmpty();
             Log.d(TAG, "✓ DG4: " + result.irisScans.size() + " iris scan(s)");
+            return dg4;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG4 not accessible (requires EAC)", e);
             result.hasIrisData = false;
         }
+        return null;
     }
 
-    private void readDG5(PassportService service, PassportData result) {
+    private Object readDG5(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "🖼️ Reading DG5 (Displayed Portrait)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG5);
+            InputStream is = efReader.open(PassportService.EF_DG5);
             DG5File dg5 = new DG5File(is);
 
             List<DisplayedImageInfo> imageInfos = dg5.getImages();
@@ -440,30 +743,34 @@ public class PassportDocumentReader implements IDocumentReader {
                 result.displayedPortrait = BitmapFactory.decodeByteArray(buffer, 0, imageLength);
                 Log.d(TAG, "✓ DG5: Portrait image");
             }
+            return dg5;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG5 not available", e);
         }
+        return null;
     }
 
-    private void readDG6(PassportService service, PassportData result) {
+    private Object readDG6(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "📦 Reading DG6 (Reserved for Future Use)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG6);
+            InputStream is = efReader.open(PassportService.EF_DG6);
 
             byte[] buffer = new byte[is.available()];
             is.read(buffer);
             result.dg6Data = buffer;
 
             Log.d(TAG, "✓ DG6: " + buffer.length + " bytes (reserved/country-specific)");
+            return buffer;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG6 not available (expected - usually empty)", e);
         }
+        return null;
     }
 
-    private void readDG7(PassportService service, PassportData result) {
+    private Object readDG7(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "✍️ Reading DG7 (Signature)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG7);
+            InputStream is = efReader.open(PassportService.EF_DG7);
             DG7File dg7 = new DG7File(is);
 
             List<DisplayedImageInfo> imageInfos = dg7.getImages();
@@ -479,15 +786,17 @@ public class PassportDocumentReader implements IDocumentReader {
                 );
                 Log.d(TAG, "✓ DG7: Signature image");
             }
+            return dg7;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG7 not available", e);
         }
+        return null;
     }
 
-    private void readDG8(PassportService service, PassportData result) {
+    private Object readDG8(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "🔍 Reading DG8 (Data Features - Visual Security)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG8);
+            InputStream is = efReader.open(PassportService.EF_DG8);
 
             byte[] buffer = new byte[is.available()];
             is.read(buffer);
@@ -499,15 +808,17 @@ public class PassportDocumentReader implements IDocumentReader {
             result.dataFeatures.add(feature);
 
             Log.d(TAG, "✓ DG8: " + buffer.length + " bytes of visual security data");
+            return buffer;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG8 not available", e);
         }
+        return null;
     }
 
-    private void readDG9(PassportService service, PassportData result) {
+    private Object readDG9(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "🏗️ Reading DG9 (Structure Features - Physical Security)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG9);
+            InputStream is = efReader.open(PassportService.EF_DG9);
 
             byte[] buffer = new byte[is.available()];
             is.read(buffer);
@@ -519,15 +830,17 @@ public class PassportDocumentReader implements IDocumentReader {
             result.structureFeatures.add(feature);
 
             Log.d(TAG, "✓ DG9: " + buffer.length + " bytes of structure data");
+            return buffer;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG9 not available", e);
         }
+        return null;
     }
 
-    private void readDG10(PassportService service, PassportData result) {
+    private Object readDG10(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "⚗️ Reading DG10 (Substance Features - Material Composition)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG10);
+            InputStream is = efReader.open(PassportService.EF_DG10);
 
             byte[] buffer = new byte[is.available()];
             is.read(buffer);
@@ -539,15 +852,17 @@ public class PassportDocumentReader implements IDocumentReader {
             result.substanceFeatures.add(feature);
 
             Log.d(TAG, "✓ DG10: " + buffer.length + " bytes of substance data");
+            return buffer;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG10 not available", e);
         }
+        return null;
     }
 
-    private void readDG11(PassportService service, PassportData result) {
+    private Object readDG11(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "ℹ️ Reading DG11 (Personal Details)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG11);
+            InputStream is = efReader.open(PassportService.EF_DG11);
             DG11File dg11 = new DG11File(is);
 
             result.fullName = dg11.getNameOfHolder();
@@ -570,15 +885,17 @@ public class PassportDocumentReader implements IDocumentReader {
             result.custodyInformation = dg11.getCustodyInformation();
 
             Log.d(TAG, "✓ DG11: Extended personal data");
+            return dg11;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG11 not available", e);
         }
+        return null;
     }
 
-    private void readDG12(PassportService service, PassportData result) {
+    private Object readDG12(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "📋 Reading DG12 (Document Details)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG12);
+            InputStream is = efReader.open(PassportService.EF_DG12);
             DG12File dg12 = new DG12File(is);
 
             result.issuingAuthority = dg12.getIssuingAuthority();
@@ -592,34 +909,44 @@ public class PassportDocumentReader implements IDocumentReader {
             result.personalizationSystemSerialNumber = dg12.getPersonalizationSystemSerialNumber();
 
             Log.d(TAG, "✓ DG12: Document metadata");
+            return dg12;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG12 not available", e);
         }
+        return null;
     }
 
-    private void readDG13(PassportService service, PassportData result) {
+    private Object readDG13(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "📦 Reading DG13 (Optional Details)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG13);
+            InputStream is = efReader.open(PassportService.EF_DG13);
             byte[] buffer = new byte[is.available()];
             is.read(buffer);
             result.optionalDetailsData = buffer;
 
             Log.d(TAG, "✓ DG13: " + buffer.length + " bytes");
+            return buffer;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG13 not available", e);
         }
+        return null;
     }
 
-    private void readDG14(PassportService service, PassportData result) {
+    private Object readDG14(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "🔐 Reading DG14 (Security Options)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG14);
+            InputStream is = efReader.open(PassportService.EF_DG14);
             DG14File dg14 = new DG14File(is);
 
             result.hasChipAuthentication = !dg14.getChipAuthenticationInfos().isEmpty();
             result.hasTerminalAuthentication = !dg14.getTerminalAuthenticationInfos().isEmpty();
 
+            List<ActiveAuthenticationInfo> aaInfos = dg14.getActiveAuthenticationInfos();
+            if (!aaInfos.isEmpty() && aaInfos.get(0).getSignatureAlgorithmOID() != null) {
+                result.activeAuthSignatureAlgorithm =
+                        ActiveAuthenticationInfo.lookupMnemonicByOID(aaInfos.get(0).getSignatureAlgorithmOID());
+            }
+
             if (result.hasChipAuthentication) {
                 result.chipAuthAlgorithm = dg14.getChipAuthenticationInfos()
                         .get(0)
@@ -632,17 +959,19 @@ public class PassportDocumentReader implements IDocumentReader {
             }
 
             Log.d(TAG, "✓ DG14: Security protocols detected");
+            return dg14;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG14 not available", e);
             result.hasChipAuthentication = false;
             result.hasTerminalAuthentication = false;
         }
+        return null;
     }
 
-    private void readDG15(PassportService service, PassportData result) {
+    private Object readDG15(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "🔑 Reading DG15 (Active Authentication)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG15);
+            InputStream is = efReader.open(PassportService.EF_DG15);
             DG15File dg15 = new DG15File(is);
 
             result.activeAuthPublicKey = dg15.getPublicKey();
@@ -653,23 +982,27 @@ public class PassportDocumentReader implements IDocumentReader {
                 result.supportedSecurityProtocols.add("Active Authentication");
                 Log.d(TAG, "✓ DG15: " + result.activeAuthAlgorithm);
             }
+            return dg15;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG15 not available", e);
             result.hasActiveAuthentication = false;
         }
+        return null;
     }
 
-    private void readDG16(PassportService service, PassportData result) {
+    private Object readDG16(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "🆘 Reading DG16 (Emergency Contacts)...");
-            InputStream is = service.getInputStream(PassportService.EF_DG16);
+            InputStream is = efReader.open(PassportService.EF_DG16);
             byte[] buffer = new byte[is.available()];
             is.read(buffer);
 
             Log.d(TAG, "✓ DG16: Emergency contact data (" + buffer.length + " bytes)");
+            return buffer;
         } catch (Exception e) {
             Log.w(TAG, "⚠️ DG16 not available", e);
         }
+        return null;
     }
 
     private void performActiveAuthentication(PassportService service, PassportData result) {
@@ -685,7 +1018,12 @@ public class PassportDocumentReader implements IDocumentReader {
                     challenge
             );
 
-            result.activeAuthenticationPerformed = (aaResult != null);
+            // ECDSA names its digest in DG14; RSA carries it in the signature trailer
+            String digestAlgorithm = result.activeAuthSignatureAlgorithm != null
+                    ? Util.inferDigestAlgorithmFromSignatureAlgorithm(result.activeAuthSignatureAlgorithm)
+                    : null;
+            result.activeAuthenticationPerformed = aaResult != null && ActiveAuthentication.verify(
+                    result.activeAuthPublicKey, digestAlgorithm, challenge, aaResult.getResponse());
             Log.d(TAG, "✅ Active Authentication " + (result.activeAuthenticationPerformed ? "VERIFIED" : "FAILED"));
         } catch (Exception e) {
             Log.w(TAG, "⚠️ Active Authentication failed", e);
@@ -702,34 +1040,26 @@ public class PassportDocumentReader implements IDocumentReader {
         }
     }
 
-    private void readSOD(PassportService service, PassportData result) {
+    private void readSOD(EfReader efReader, PassportData result) {
         try {
             Log.d(TAG, "🔏 Reading SOD (Security Object Document)...");
-            InputStream is = service.getInputStream(PassportService.EF_SOD);
-
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            int nRead;
-            byte[] data = new byte[1024];
-            while ((nRead = is.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
-            }
-            buffer.flush();
-            byte[] sodBytes = buffer.toByteArray();
+            byte[] sodBytes = efReader.read(PassportService.EF_SOD);
 
             result.rawSODData = sodBytes;
 
-            SODFile sodFile = new SODFile(new ByteArrayInputStream(sodBytes));
+            SecurityObject sod = SecurityObject.parse(sodBytes);
 
-            if (sodFile.getIssuerX500Principal() != null) {
-                result.signingCountry = sodFile.getIssuerX500Principal().getName();
+            if (sod.issuerName != null) {
+                result.signingCountry = sod.issuerName;
             }
 
-            if (sodFile.getDocSigningCertificate() != null) {
-                result.documentSignerCertificate = sodFile.getDocSigningCertificate().toString();
+            if (sod.documentSignerCertificate != null) {
+                result.documentSignerCertificate = sod.documentSignerCertificate.toString();
             }
 
-            result.dataGroupHashes = sodFile.getDataGroupHashes();
+            result.dataGroupHashes = sod.dataGroupHashes;
             result.hasValidSignature = true;
+            efReader.setSecurityObject(sod);
 
             Log.d(TAG, "✓ SOD: Read " + sodBytes.length + " bytes");
             Log.d(TAG, "✓ SOD: Hashes found for DGs: " + result.dataGroupHashes.keySet());
@@ -0,0 +1,308 @@
+package com.example.reader.readers;
+
+import android.os.Build;
+import android.util.Log;
+
+import org.jmrtd.PassportService;
+import org.jmrtd.lds.LDSFileUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Byte-level progress of the EF transfer, fed by {@link EfReader}.
+ *
+ * The reader plans every EF it expects to read before the first one is opened;
+ * each counts with a typical size until its first READ BINARY returns the TLV
+ * length, then with the exact length. Once the SOD says which data groups exist,
+ * the plan is corrected by adding or dropping groups. Every block updates the
+ * smoothed chip throughput and the ETA, and the listener gets a
+ * {@link ReadProgress} at most every {@link #REPORT_INTERVAL_MS} and at the end
+ * of each EF.
+ *
+ * Called from the read thread only; the snapshots are immutable.
+ */
+public class ProgressTracker {
+
+    private static final String TAG = "@@>> ProgressTracker";
+
+    public static final long REPORT_INTERVAL_MS = 100;
+
+    // Weight of the newest block in the smoothed throughput
+    private static final double SMOOTHING = 0.3;
+
+    // Planned before the SOD when the profile reads whatever the SOD lists
+    private static final int[] TYPICAL_DATA_GROUPS = {1, 2, 11, 12, 14, 15};
+
+    public interface Listener {
+        void onReadProgress(ReadProgress progress);
+    }
+
+    private static class Ef {
+        final String name;
+        int length;
+        boolean lengthKnown;
+        int bytesRead;
+        boolean done;
+
+        Ef(String name, int estimate) {
+            this.name = name;
+            this.length = estimate;
+        }
+    }
+
+    private final Listener listener;
+    private final Map<Short, Ef> files = new LinkedHashMap<>();
+    private Ef current;
+    private long startNanos = -1;
+    private long lastDataNanos = System.nanoTime();
+    private long lastBlockNanos;
+    private long lastReportNanos;
+    private long chipBytes;
+    private long chipNanos;
+    private double bytesPerSecond;
+
+    public ProgressTracker(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Forward every snapshot to the callback's {@link IDocumentReader.ProgressCallback#onTransferProgress}.
+     * With withMessages, also report "Reading DGn..." through onProgress whenever
+     * the EF or the whole percentage changes, for readers without messages of their own.
+     *
+     * @return null for a null callback
+     */
+    public static Listener forCallback(IDocumentReader.ProgressCallback callback, boolean withMessages) {
+        if (callback == null) {
+            return null;
+        }
+        return new Listener() {
+            private String lastFile;
+            private int lastPercent = -1;
+
+            @Override
+            public void onReadProgress(ReadProgress progress) {
+                callback.onTransferProgress(progress);
+                int percent = progress.getPercent();
+                if (withMessages && (percent != lastPercent || !progress.currentFile.equals(lastFile))) {
+                    lastFile = progress.currentFile;
+                    lastPercent = percent;
+                    callback.onProgress("Reading " + progress.currentFile + "...", percent);
+                }
+            }
+        };
+    }
+
+    /**
+     * Add an EF to the read set. EFs opened without being planned are added then.
+     */
+    public void plan(short fid) {
+        entry(fid);
+    }
+
+    public void planDataGroup(int dgNumber) {
+        try {
+            plan(LDSFileUtil.lookupFIDByDataGroupNumber(dgNumber));
+        } catch (Exception e) {
+            Log.w(TAG, "No EF for DG" + dgNumber);
+        }
+    }
+
+    /**
+     * Plan the data groups a read will probably cover, before the SOD is known.
+     * An explicit profile plans the candidates it names; an all-available one
+     * plans those most chips carry.
+     *
+     * @param candidates the groups the reader knows how to read
+     */
+    public void planDataGroups(ReadProfile profile, int[] candidates) {
+        for (int dg : candidates) {
+            if (profile.isAllAvailable() ? isTypical(dg) : profile.includesDataGroup(dg)) {
+                planDataGroup(dg);
+            }
+        }
+    }
+
+    /**
+     * Drop a planned EF that will not be read after all; no effect once it was opened
+     */
+    public void unplan(short fid) {
+        Ef ef = files.get(fid);
+        if (ef != null && ef != current && ef.bytesRead == 0 && !ef.done) {
+            files.remove(fid);
+        }
+    }
+
+    public void unplanDataGroup(int dgNumber) {
+        try {
+            unplan(LDSFileUtil.lookupFIDByDataGroupNumber(dgNumber));
+        } catch (Exception e) {
+            Log.w(TAG, "No EF for DG" + dgNumber);
+        }
+    }
+
+    private static boolean isTypical(int dgNumber) {
+        for (int dg : TYPICAL_DATA_GROUPS) {
+            if (dg == dgNumber) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void onOpen(short fid) {
+        long now = System.nanoTime();
+        if (startNanos < 0) {
+            startNanos = now;
+        }
+        current = entry(fid);
+        lastBlockNanos = now;
+        lastDataNanos = now;
+    }
+
+    /**
+     * Length from the TLV header, known once the first block has been read
+     */
+    void onLength(short fid, int length) {
+        Ef ef = entry(fid);
+        ef.length = length;
+        ef.lengthKnown = true;
+    }
+
+    /**
+     * Bytes kept from an earlier attempt at this EF (block size retry, checkpoint)
+     */
+    void onOffset(short fid, int offset) {
+        entry(fid).bytesRead = offset;
+    }
+
+    /**
+     * A block arrived from the chip
+     */
+    void onChipBytes(short fid, int count) {
+        long now = System.nanoTime();
+        long elapsed = now - lastBlockNanos;
+        if (elapsed > 0) {
+            double rate = count * 1e9 / elapsed;
+            bytesPerSecond = bytesPerSecond == 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * bytesPerSecond;
+        }
+        chipBytes += count;
+        chipNanos += elapsed;
+        lastBlockNanos = now;
+        lastDataNanos = now;
+
+        entry(fid).bytesRead += count;
+        report(false);
+    }
+
+    /**
+     * The EF is complete, from the chip, the cache or a checkpoint
+     */
+    void onDone(short fid, int length) {
+        Ef ef = entry(fid);
+        ef.length = length;
+        ef.lengthKnown = true;
+        ef.bytesRead = length;
+        ef.done = true;
+        report(true);
+    }
+
+    /**
+     * The EF could not be read; it counts with what was transferred
+     */
+    void onFailed(short fid) {
+        Ef ef = entry(fid);
+        ef.length = ef.bytesRead;
+        ef.lengthKnown = true;
+        ef.done = true;
+        report(true);
+    }
+
+    public ReadProgress snapshot() {
+        long read = 0;
+        long total = 0;
+        boolean exact = true;
+        int done = 0;
+        for (Ef ef : files.values()) {
+            read += ef.bytesRead;
+            total += ef.lengthKnown ? ef.length : Math.max(ef.length, ef.bytesRead);
+            exact &= ef.lengthKnown;
+            if (ef.done) {
+                done++;
+            }
+        }
+        long eta = bytesPerSecond > 0 ? (long) ((total - read) * 1000 / bytesPerSecond) : -1;
+        long elapsedMs = startNanos < 0 ? 0 : (System.nanoTime() - startNanos) / 1_000_000;
+        return new ReadProgress(current != null ? current.name : null, read, total, exact,
+                done, files.size(), bytesPerSecond, eta, elapsedMs, lastDataNanos);
+    }
+
+    public int getPercent() {
+        return snapshot().getPercent();
+    }
+
+    /**
+     * Average chip throughput over the blocks read so far, in bytes per second
+     */
+    public double getAverageBytesPerSecond() {
+        return chipNanos > 0 ? chipBytes * 1e9 / chipNanos : 0;
+    }
+
+    /**
+     * Log the transfer throughput together with the device model, so reads can
+     * be compared across phones
+     */
+    public void logSummary() {
+        Log.d(TAG, String.format(Locale.US, "📶 %s %s: %d bytes from chip in %d ms, %.0f B/s",
+                Build.MANUFACTURER, Build.MODEL, chipBytes, chipNanos / 1_000_000,
+                getAverageBytesPerSecond()));
+    }
+
+    private void report(boolean force) {
+        if (listener == null || current == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (!force && now - lastReportNanos < REPORT_INTERVAL_MS * 1_000_000) {
+            return;
+        }
+        lastReportNanos = now;
+        listener.onReadProgress(snapshot());
+    }
+
+    private Ef entry(short fid) {
+        Ef ef = files.get(fid);
+        if (ef == null) {
+            ef = new Ef(EfReader.phaseName(fid), estimateSize(fid));
+            files.put(fid, ef);
+        }
+        return ef;
+    }
+
+    /**
+     * Typical EF sizes, only used until the real length is read
+     */
+    private static int estimateSize(short fid) {
+        if (fid == PassportService.EF_SOD) {
+            return 2000;
+        }
+        int dgNumber;
+        try {
+            dgNumber = LDSFileUtil.lookupDataGroupNumberByFID(fid);
+        } catch (Exception e) {
+            return 256;
+        }
+        switch (dgNumber) {
+            case 1: return 95;
+            case 2: return 18000;
+            case 3:
+            case 4: return 25000;
+            case 5:
+            case 7: return 5000;
+            case 14: return 500;
+            default: return 256;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.reader.readers;
+
+import net.sf.scuba.smartcards.APDUWrapper;
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+import net.sf.scuba.smartcards.CommandAPDU;
+import net.sf.scuba.smartcards.ResponseAPDU;
+
+import org.jmrtd.DefaultFileSystem;
+import org.jmrtd.protocol.ReadBinaryAPDUSender;
+
+/**
+ * READ BINARY for {@link EfReader} and the extended-length probe.
+ *
+ * JMRTD's sender logs an error response without data and returns an empty
+ * block, and CardFileInputStream then asks for the same block again, forever.
+ * A 6700 or 6Cxx to a Le the chip will not serve is such a response, and so is
+ * a transceive the NFC stack refuses. Here the empty block becomes a
+ * CardServiceException with the status word (or the transport exception), so
+ * the {@link BlockSizeController} can shrink the block.
+ */
+final class ReadBinarySender extends ReadBinaryAPDUSender {
+
+    private final LastResponse channel;
+
+    private ReadBinarySender(LastResponse channel) {
+        super(channel);
+        this.channel = channel;
+    }
+
+    /**
+     * A file system on the secure messaging session of the card service,
+     * without SFI. Set the wrapper before each file.
+     */
+    static DefaultFileSystem newFileSystem(CardService cardService) {
+        return new DefaultFileSystem(new ReadBinarySender(new LastResponse(cardService)), false);
+    }
+
+    @Override
+    public synchronized byte[] sendReadBinary(APDUWrapper wrapper, int sfi, int offset, int le,
+                                              boolean isSFIEnabled, boolean isTLVEncodedOffsetNeeded)
+            throws CardServiceException {
+        channel.reset();
+        byte[] data = super.sendReadBinary(wrapper, sfi, offset, le, isSFIEnabled, isTLVEncodedOffsetNeeded);
+        if (le > 0 && (data == null || data.length == 0)) {
+            throw new CardServiceException("READ BINARY returned no data (offset " + offset + ", le " + le + ")",
+                    channel.failure, channel.sw);
+        }
+        return data;
+    }
+
+    /**
+     * Remembers the status word or exception of the last APDU. Secure messaging
+     * repeats the status word outside the protected response, so it is the
+     * chip's answer either way.
+     */
+    private static final class LastResponse extends CardService {
+
+        private final CardService delegate;
+        int sw = -1;
+        CardServiceException failure;
+
+        LastResponse(CardService delegate) {
+            this.delegate = delegate;
+        }
+
+        void reset() {
+            sw = -1;
+            failure = null;
+        }
+
+        @Override
+        public ResponseAPDU transmit(CommandAPDU commandApdu) throws CardServiceException {
+            try {
+                ResponseAPDU response = delegate.transmit(commandApdu);
+                sw = response.getSW();
+                return response;
+            } catch (CardServiceException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public void open() throws CardServiceException {
+            delegate.open();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public byte[] getATR() throws CardServiceException {
+            return delegate.getATR();
+        }
+
+        @Override
+        public boolean isExtendedAPDULengthSupported() {
+            return delegate.isExtendedAPDULengthSupported();
+        }
+
+        @Override
+        public boolean isConnectionLost(Exception e) {
+            return delegate.isConnectionLost(e);
+        }
+
+        @Override
+        public void close() {
+            // The session belongs to the PassportService
+        }
+    }
+}
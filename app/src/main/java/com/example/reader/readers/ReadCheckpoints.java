@@ -0,0 +1,129 @@
+package com.example.reader.readers;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-document record of how far each EF was read.
+ *
+ * When the tag is lost mid-read, the bytes confirmed so far are kept here.
+ * The next read of the same document (after re-authentication) continues each
+ * partially read file from its last confirmed offset and reuses finished files.
+ */
+public class ReadCheckpoints {
+
+    private static final String TAG = "@@>> ReadCheckpoints";
+
+    public static final long DEFAULT_TTL_MS = 2 * 60 * 1000;   // 2 minutes
+    private static final int MAX_DOCUMENTS = 4;
+
+    private final long ttlMs;
+    private final LinkedHashMap<String, Checkpoint> checkpoints = new LinkedHashMap<>();
+
+    public ReadCheckpoints() {
+        this(DEFAULT_TTL_MS);
+    }
+
+    public ReadCheckpoints(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Key checkpoints by the full BAC key so a different document never resumes another's bytes
+     */
+    public static String keyFor(String documentNumber, String dateOfBirth, String dateOfExpiry) {
+        return documentNumber + "|" + dateOfBirth + "|" + dateOfExpiry;
+    }
+
+    /**
+     * Existing checkpoint for the document if still fresh, otherwise a new one
+     */
+    public synchronized Checkpoint open(String key) {
+        Checkpoint checkpoint = checkpoints.get(key);
+        if (checkpoint != null && System.currentTimeMillis() - checkpoint.createdAt <= ttlMs) {
+            Log.d(TAG, "Resuming read, " + checkpoint.getBytesKept() + " bytes kept");
+            checkpoint.resumed = true;
+            return checkpoint;
+        }
+
+        checkpoint = new Checkpoint();
+        checkpoints.remove(key);
+        checkpoints.put(key, checkpoint);
+
+        Iterator<Map.Entry<String, Checkpoint>> it = checkpoints.entrySet().iterator();
+        while (checkpoints.size() > MAX_DOCUMENTS && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Forget the document, e.g. after a complete read or a non-recoverable failure
+     */
+    public synchronized void discard(String key) {
+        checkpoints.remove(key);
+    }
+
+    /**
+     * Confirmed EF bytes for one document
+     */
+    public static class Checkpoint {
+
+        final long createdAt = System.currentTimeMillis();
+        private final Map<Short, ByteArrayOutputStream> partial = new HashMap<>();
+        private final Map<Short, byte[]> complete = new HashMap<>();
+        private boolean resumed;
+
+        public synchronized int getOffset(short fid) {
+            ByteArrayOutputStream bytes = partial.get(fid);
+            return bytes != null ? bytes.size() : 0;
+        }
+
+        public synchronized void append(short fid, byte[] data, int offset, int length) {
+            ByteArrayOutputStream bytes = partial.get(fid);
+            if (bytes == null) {
+                bytes = new ByteArrayOutputStream();
+                partial.put(fid, bytes);
+            }
+            bytes.write(data, offset, length);
+        }
+
+        /**
+         * Mark the EF as fully read and return its contents
+         */
+        public synchronized byte[] complete(short fid) {
+            ByteArrayOutputStream bytes = partial.remove(fid);
+            byte[] contents = bytes != null ? bytes.toByteArray() : new byte[0];
+            complete.put(fid, contents);
+            return contents;
+        }
+
+        public synchronized byte[] getComplete(short fid) {
+            return complete.get(fid);
+        }
+
+        public synchronized int getBytesKept() {
+            int total = 0;
+            for (ByteArrayOutputStream bytes : partial.values()) {
+                total += bytes.size();
+            }
+            for (byte[] bytes : complete.values()) {
+                total += bytes.length;
+            }
+            return total;
+        }
+
+        /**
+         * True if this read continues an interrupted one
+         */
+        public synchronized boolean isResumed() {
+            return resumed;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.reader.readers;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Read plan for a chip session: which data groups to fetch and which checks to run.
+ *
+ * A DG1+SOD read only needs a few hundred bytes from the chip, while a full read
+ * also pulls the 20-30 KB face image and every optional data group.
+ */
+public final class ReadProfile {
+
+    public enum Check {
+        SOD,                      // Read EF.SOD (data group hashes, signer info)
+        ACTIVE_AUTHENTICATION,    // Requires DG15
+        CHIP_AUTHENTICATION       // Requires DG14
+    }
+
+    /** DG1 (MRZ) and SOD */
+    public static final ReadProfile MRZ_ONLY = new Builder()
+            .addDataGroups(1)
+            .addCheck(Check.SOD)
+            .build();
+
+    /** DG1 (MRZ), DG2 (face) and SOD */
+    public static final ReadProfile MRZ_AND_PHOTO = new Builder()
+            .addDataGroups(1, 2)
+            .addCheck(Check.SOD)
+            .build();
+
+    /** Every data group listed in the SOD and every check (previous default behaviour) */
+    public static final ReadProfile FULL = new Builder()
+            .readAllAvailable()
+            .addCheck(Check.SOD)
+            .addCheck(Check.ACTIVE_AUTHENTICATION)
+            .addCheck(Check.CHIP_AUTHENTICATION)
+            .build();
+
+    private final boolean allAvailable;
+    private final Set<Integer> dataGroups;
+    private final Set<Check> checks;
+
+    private ReadProfile(Builder builder) {
+        this.allAvailable = builder.allAvailable;
+        this.checks = Collections.unmodifiableSet(EnumSet.copyOf(builder.checks));
+
+        Set<Integer> groups = new TreeSet<>(builder.dataGroups);
+        if (checks.contains(Check.ACTIVE_AUTHENTICATION)) {
+            groups.add(15);
+        }
+        if (checks.contains(Check.CHIP_AUTHENTICATION)) {
+            groups.add(14);
+        }
+        this.dataGroups = Collections.unmodifiableSet(groups);
+    }
+
+    /**
+     * Whether the data group is part of this plan
+     */
+    public boolean includesDataGroup(int dgNumber) {
+        return allAvailable || dataGroups.contains(dgNumber);
+    }
+
+    /**
+     * True when the plan is "whatever the SOD lists" rather than an explicit set
+     */
+    public boolean isAllAvailable() {
+        return allAvailable;
+    }
+
+    public Set<Integer> getDataGroups() {
+        return dataGroups;
+    }
+
+    public boolean isEnabled(Check check) {
+        return checks.contains(check);
+    }
+
+    public Set<Check> getChecks() {
+        return checks;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadProfile{dataGroups=" + (allAvailable ? "ALL" : dataGroups.toString())
+                + ", checks=" + checks + "}";
+    }
+
+    public static class Builder {
+        private boolean allAvailable = false;
+        private final Set<Integer> dataGroups = new TreeSet<>();
+        private final Set<Check> checks = EnumSet.noneOf(Check.class);
+
+        public Builder addDataGroups(int... dgNumbers) {
+            for (int dg : dgNumbers) {
+                if (dg < 1 || dg > 16) {
+                    throw new IllegalArgumentException("Invalid data group: DG" + dg);
+                }
+                dataGroups.add(dg);
+            }
+            return this;
+        }
+
+        public Builder readAllAvailable() {
+            allAvailable = true;
+            return this;
+        }
+
+        public Builder addCheck(Check check) {
+            checks.add(check);
+            return this;
+        }
+
+        public ReadProfile build() {
+            if (allAvailable && !checks.contains(Check.SOD)) {
+                throw new IllegalStateException("Reading all available data groups requires the SOD");
+            }
+            return new ReadProfile(this);
+        }
+    }
+}
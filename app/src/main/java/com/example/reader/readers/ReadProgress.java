@@ -0,0 +1,63 @@
+package com.example.reader.readers;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of the EF transfer of one read, see {@link ProgressTracker}.
+ *
+ * The total is the sum of the planned EFs: exact for files whose length is known
+ * from the TLV header of their first block, a size estimate for the rest
+ * ({@link #totalExact} tells which). Throughput only counts bytes that came from
+ * the chip, not files served from the cache or a checkpoint.
+ */
+public class ReadProgress {
+
+    public final String currentFile;      // "EF.SOD", "DG2", ...; null before the first EF
+    public final long bytesRead;
+    public final long bytesTotal;
+    public final boolean totalExact;
+    public final int filesDone;
+    public final int filesPlanned;
+    public final double bytesPerSecond;   // smoothed chip throughput, 0 until measured
+    public final long etaMs;              // -1 while the throughput is unknown
+    public final long elapsedMs;          // since the first EF was opened
+    private final long lastDataNanos;
+
+    ReadProgress(String currentFile, long bytesRead, long bytesTotal, boolean totalExact,
+                 int filesDone, int filesPlanned, double bytesPerSecond, long etaMs,
+                 long elapsedMs, long lastDataNanos) {
+        this.currentFile = currentFile;
+        this.bytesRead = bytesRead;
+        this.bytesTotal = bytesTotal;
+        this.totalExact = totalExact;
+        this.filesDone = filesDone;
+        this.filesPlanned = filesPlanned;
+        this.bytesPerSecond = bytesPerSecond;
+        this.etaMs = etaMs;
+        this.elapsedMs = elapsedMs;
+        this.lastDataNanos = lastDataNanos;
+    }
+
+    public int getPercent() {
+        if (bytesTotal <= 0) {
+            return 0;
+        }
+        return (int) Math.min(100, bytesRead * 100 / bytesTotal);
+    }
+
+    /**
+     * Time since the chip last delivered data. A slow read keeps this near the
+     * block interval; a stuck one lets it grow until the transceive times out.
+     */
+    public long getIdleMs() {
+        return (System.nanoTime() - lastDataNanos) / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s %d/%d%s bytes (%d%%), %d/%d EFs, %.0f B/s, ETA %s",
+                currentFile, bytesRead, bytesTotal, totalExact ? "" : "~", getPercent(),
+                filesDone, filesPlanned, bytesPerSecond,
+                etaMs < 0 ? "?" : etaMs + " ms");
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.reader.readers;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Timing report for one chip read, filled by {@link TracingCardService}.
+ *
+ * Every APDU is attributed to the current phase (handshake, EF.SOD, DG1, ...).
+ * The roll-up separates time spent waiting for the chip (transceive) from time
+ * spent on the phone (parsing, waiting for image decodes), which tells a slow
+ * chip apart from a slow NFC stack or a slow decode path.
+ */
+public class ReadTrace {
+
+    public static final String PHASE_HANDSHAKE = "Handshake";
+
+    public interface Listener {
+        /**
+         * Called once per read, after the chip session has closed (also for failed reads)
+         */
+        void onReadTrace(ReadTrace trace);
+    }
+
+    /**
+     * One command/response pair
+     */
+    public static class ApduRecord {
+        public final String phase;
+        public final int ins;
+        public final boolean secureMessaging;
+        public final int bytesOut;
+        public final int bytesIn;
+        public final int sw;                 // -1 if the transceive failed
+        public final long durationNanos;
+
+        ApduRecord(String phase, int ins, boolean secureMessaging, int bytesOut, int bytesIn,
+                   int sw, long durationNanos) {
+            this.phase = phase;
+            this.ins = ins;
+            this.secureMessaging = secureMessaging;
+            this.bytesOut = bytesOut;
+            this.bytesIn = bytesIn;
+            this.sw = sw;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    /**
+     * Totals for one phase
+     */
+    public static class PhaseStats {
+        public final String phase;
+        public int apduCount;
+        public long transceiveNanos;
+        public long wallNanos;
+        public long bytesOut;
+        public long bytesIn;
+
+        PhaseStats(String phase) {
+            this.phase = phase;
+        }
+
+        public long getTransceiveMs() {
+            return transceiveNanos / 1_000_000;
+        }
+
+        public long getWallMs() {
+            return wallNanos / 1_000_000;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final List<ApduRecord> apdus = new ArrayList<>();
+    private final Map<String, PhaseStats> phases = new LinkedHashMap<>();
+
+    private String phase = PHASE_HANDSHAKE;
+    private long phaseStartNanos = startNanos;
+    private long handshakeNanos = -1;
+    private long totalNanos = -1;
+    private long decodeWaitNanos;
+    private int retries;
+    private int secureMessagingApdus;
+    private long bytesIn;
+    private long bytesOut;
+    private long transceiveNanos;
+
+    /**
+     * Attribute the following APDUs to the given phase; returns the previous phase
+     */
+    public synchronized String setPhase(String newPhase) {
+        String previous = phase;
+        long now = System.nanoTime();
+        statsFor(phase).wallNanos += now - phaseStartNanos;
+        phase = newPhase;
+        phaseStartNanos = now;
+        return previous;
+    }
+
+    /**
+     * Authentication finished; everything up to now counts as handshake
+     */
+    public synchronized void markAuthenticated() {
+        if (handshakeNanos < 0) {
+            handshakeNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    synchronized void record(byte[] command, byte[] response, int sw, long durationNanos) {
+        int ins = command.length > 1 ? command[1] & 0xFF : -1;
+        boolean secureMessaging = command.length > 0 && (command[0] & 0x0C) == 0x0C;
+        int out = command.length;
+        int in = response != null ? response.length : 0;
+
+        apdus.add(new ApduRecord(phase, ins, secureMessaging, out, in, sw, durationNanos));
+
+        PhaseStats stats = statsFor(phase);
+        stats.apduCount++;
+        stats.transceiveNanos += durationNanos;
+        stats.bytesOut += out;
+        stats.bytesIn += in;
+
+        if (secureMessaging) secureMessagingApdus++;
+        bytesOut += out;
+        bytesIn += in;
+        transceiveNanos += durationNanos;
+    }
+
+    /**
+     * An EF read was retried (smaller block size or re-read after an error)
+     */
+    public synchronized void recordRetry() {
+        retries++;
+    }
+
+    /**
+     * Time the NFC thread spent waiting for image decodes
+     */
+    public synchronized void addDecodeWait(long nanos) {
+        decodeWaitNanos += nanos;
+    }
+
+    public synchronized void finish() {
+        if (totalNanos < 0) {
+            setPhase(phase);
+            totalNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    private PhaseStats statsFor(String name) {
+        PhaseStats stats = phases.get(name);
+        if (stats == null) {
+            stats = new PhaseStats(name);
+            phases.put(name, stats);
+        }
+        return stats;
+    }
+
+    public synchronized long getHandshakeMs() {
+        return handshakeNanos < 0 ? -1 : handshakeNanos / 1_000_000;
+    }
+
+    public synchronized long getTotalMs() {
+        return (totalNanos < 0 ? System.nanoTime() - startNanos : totalNanos) / 1_000_000;
+    }
+
+    public synchronized long getTransceiveMs() {
+        return transceiveNanos / 1_000_000;
+    }
+
+    public synchronized long getDecodeWaitMs() {
+        return decodeWaitNanos / 1_000_000;
+    }
+
+    public synchronized int getRetries() {
+        return retries;
+    }
+
+    public synchronized int getApduCount() {
+        return apdus.size();
+    }
+
+    public synchronized int getSecureMessagingApduCount() {
+        return secureMessagingApdus;
+    }
+
+    public synchronized long getBytesIn() {
+        return bytesIn;
+    }
+
+    public synchronized long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * Response bytes per second of transceive time
+     */
+    public synchronized long getThroughputBytesPerSecond() {
+        return transceiveNanos > 0 ? bytesIn * 1_000_000_000L / transceiveNanos : 0;
+    }
+
+    public synchronized List<ApduRecord> getApdus() {
+        return Collections.unmodifiableList(new ArrayList<>(apdus));
+    }
+
+    public synchronized List<PhaseStats> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<>(phases.values()));
+    }
+
+    /**
+     * Roll-up for export; the per-APDU records are left out
+     */
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("totalMs", getTotalMs());
+        json.put("handshakeMs", getHandshakeMs());
+        json.put("transceiveMs", getTransceiveMs());
+        json.put("decodeWaitMs", getDecodeWaitMs());
+        json.put("apdus", apdus.size());
+        json.put("secureMessagingApdus", secureMessagingApdus);
+        json.put("bytesIn", bytesIn);
+        json.put("bytesOut", bytesOut);
+        json.put("throughputBytesPerSecond", getThroughputBytesPerSecond());
+        json.put("retries", retries);
+
+        JSONArray phaseArray = new JSONArray();
+        for (PhaseStats stats : phases.values()) {
+            JSONObject p = new JSONObject();
+            p.put("phase", stats.phase);
+            p.put("apdus", stats.apduCount);
+            p.put("wallMs", stats.getWallMs());
+            p.put("transceiveMs", stats.getTransceiveMs());
+            p.put("bytesIn", stats.bytesIn);
+            p.put("bytesOut", stats.bytesOut);
+            phaseArray.put(p);
+        }
+        json.put("phases", phaseArray);
+        return json;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US,
+                "Read %d ms (handshake %d ms, transceive %d ms, decode wait %d ms), "
+                        + "%d APDUs, %d bytes in, %d B/s, %d retries",
+                getTotalMs(), getHandshakeMs(), getTransceiveMs(), getDecodeWaitMs(),
+                apdus.size(), bytesIn, getThroughputBytesPerSecond(), retries));
+        for (PhaseStats stats : phases.values()) {
+            sb.append(String.format(Locale.US, "\n  %-22s %4d ms (%4d ms chip) %3d APDUs %6d bytes",
+                    stats.phase, stats.getWallMs(), stats.getTransceiveMs(),
+                    stats.apduCount, stats.bytesIn));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.reader.readers;
+
+/**
+ * The tag left the field during a chip read. The bytes read so far are kept,
+ * so presenting the same document again continues the read instead of restarting it.
+ */
+public class ResumableReadException extends Exception {
+
+    private final int bytesKept;
+
+    public ResumableReadException(int bytesKept, Throwable cause) {
+        super("Document moved away from the reader. Hold it still to continue reading.", cause);
+        this.bytesKept = bytesKept;
+    }
+
+    public int getBytesKept() {
+        return bytesKept;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.reader.readers;
+
+import net.sf.scuba.smartcards.CardServiceException;
+
+import java.io.IOException;
+
+/**
+ * Status word classification shared by the READ BINARY block size fallback
+ * ({@link BlockSizeController}) and the extended-length fallback ({@link TransportProfile}).
+ */
+final class StatusWords {
+
+    private StatusWords() {
+    }
+
+    /**
+     * Whether a failed APDU points at the response length rather than the file or
+     * the session: a smaller READ BINARY (or short APDUs) may succeed.
+     *
+     * Without a status word only a transceive the NFC stack refused (an
+     * IOException underneath) counts; JMRTD also throws without one for a
+     * file it could not select.
+     */
+    static boolean isLengthFailure(CardServiceException cse) {
+        if (cse.getSW() == -1) {
+            return hasCause(cse, IOException.class);
+        }
+        return isLengthFailure(cse.getSW());
+    }
+
+    static boolean isLengthFailure(int sw) {
+        return sw == 0x6700                 // Wrong length
+                || (sw & 0xFF00) == 0x6C00  // Wrong Le
+                || sw == 0x6F00             // No precise diagnosis
+                || sw == 0x6987             // SM data objects missing (response cut short)
+                || sw == 0x6988;            // SM data objects incorrect
+    }
+
+    private static boolean hasCause(Throwable t, Class<? extends Throwable> type) {
+        for (; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Authentication helpers and streams wrap the APDU failure, so look through the cause chain
+     */
+    static CardServiceException findCardServiceException(Throwable t) {
+        while (t != null) {
+            if (t instanceof CardServiceException) {
+                return (CardServiceException) t;
+            }
+            t = t.getCause();
+        }
+        return null;
+    }
+}
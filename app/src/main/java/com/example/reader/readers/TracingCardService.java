@@ -0,0 +1,70 @@
+package com.example.reader.readers;
+
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+import net.sf.scuba.smartcards.CommandAPDU;
+import net.sf.scuba.smartcards.ResponseAPDU;
+
+/**
+ * CardService wrapper that times every APDU and records it in a {@link ReadTrace}
+ *
+ * Sits below the PassportService, so secure-messaging APDUs are seen wrapped
+ * (CLA with bits 0x0C set) and their sizes include the SM overhead.
+ */
+public class TracingCardService extends CardService {
+
+    private final CardService delegate;
+    private final ReadTrace trace;
+
+    public TracingCardService(CardService delegate, ReadTrace trace) {
+        this.delegate = delegate;
+        this.trace = trace;
+    }
+
+    public ReadTrace getTrace() {
+        return trace;
+    }
+
+    @Override
+    public void open() throws CardServiceException {
+        delegate.open();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } catch (Exception ignored) {
+            // Ignore close errors
+        }
+    }
+
+    @Override
+    public boolean isConnectionLost(Exception e) {
+        return delegate.isConnectionLost(e);
+    }
+
+    @Override
+    public byte[] getATR() throws CardServiceException {
+        return delegate.getATR();
+    }
+
+    @Override
+    public ResponseAPDU transmit(CommandAPDU commandApdu) throws CardServiceException {
+        long start = System.nanoTime();
+        try {
+            ResponseAPDU response = delegate.transmit(commandApdu);
+            trace.record(commandApdu.getBytes(), response.getBytes(), response.getSW(),
+                    System.nanoTime() - start);
+            return response;
+        } catch (CardServiceException e) {
+            trace.record(commandApdu.getBytes(), null, -1, System.nanoTime() - start);
+            throw e;
+        }
+    }
+}
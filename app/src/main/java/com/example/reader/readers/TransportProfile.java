@@ -0,0 +1,244 @@
+package com.example.reader.readers;
+
+import android.nfc.tech.IsoDep;
+import android.util.Log;
+
+import net.sf.scuba.smartcards.CardFileInputStream;
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+
+import org.jmrtd.DefaultFileSystem;
+import org.jmrtd.PassportService;
+
+import java.io.IOException;
+
+/**
+ * APDU length settings negotiated between the phone's NFC stack and the chip.
+ *
+ * Extended-length READ BINARY lets a 20-30 KB DG2 be pulled in a handful of
+ * APDUs instead of ~100 short ones. It is only used when the phone reports
+ * support and the chip does not explicitly deny it in its historical bytes.
+ */
+public class TransportProfile {
+
+    private static final String TAG = "@@>> TransportProfile";
+
+    /**
+     * Worst-case secure messaging overhead on a READ BINARY response:
+     * DO87 header + padding indicator + block padding, DO99, DO8E and SW1SW2.
+     */
+    private static final int SM_RESPONSE_OVERHEAD = 64;
+
+    /**
+     * Upper bound for extended reads. Most chips have I/O buffers well below the
+     * 64 KB an extended Le can express, so larger requests just fail.
+     */
+    public static final int MAX_EXTENDED_BLOCKSIZE = 4096;
+
+    public enum ReadMode {
+        STANDARD,   // Short APDUs only (legacy behaviour)
+        AUTO        // Extended-length when both phone and chip allow it
+    }
+
+    /**
+     * What the chip says about extended Lc/Le in its ATR/ATS historical bytes
+     */
+    public enum ChipSupport {
+        SUPPORTED,
+        NOT_SUPPORTED,
+        UNKNOWN
+    }
+
+    private final boolean extendedLength;
+    private final int maxTransceiveLength;
+    private final int maxBlockSize;
+
+    private TransportProfile(boolean extendedLength, int maxTransceiveLength, int maxBlockSize) {
+        this.extendedLength = extendedLength;
+        this.maxTransceiveLength = maxTransceiveLength;
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /**
+     * Short APDU profile, identical to what the readers always used
+     */
+    public static TransportProfile standard() {
+        return new TransportProfile(
+                false,
+                PassportService.NORMAL_MAX_TRANCEIVE_LENGTH,
+                PassportService.DEFAULT_MAX_BLOCKSIZE
+        );
+    }
+
+    /**
+     * Pick the profile for a connected IsoDep tag
+     */
+    public static TransportProfile negotiate(IsoDep isoDep, ReadMode mode) {
+        if (mode != ReadMode.AUTO || isoDep == null) {
+            return standard();
+        }
+
+        boolean phoneSupport;
+        int phoneMaxTransceive;
+        try {
+            phoneSupport = isoDep.isExtendedLengthApduSupported();
+            phoneMaxTransceive = isoDep.getMaxTransceiveLength();
+        } catch (Exception e) {
+            Log.w(TAG, "Could not query IsoDep capabilities: " + e.getMessage());
+            return standard();
+        }
+
+        return negotiate(phoneSupport, phoneMaxTransceive,
+                isoDep.getHistoricalBytes(), isoDep.getHiLayerResponse(), mode);
+    }
+
+    /**
+     * Pick the profile from link capabilities, for card services that are not backed by an IsoDep tag
+     */
+    public static TransportProfile negotiate(boolean phoneSupport, int phoneMaxTransceive,
+                                             byte[] historicalBytes, byte[] hiLayerResponse,
+                                             ReadMode mode) {
+        if (mode != ReadMode.AUTO) {
+            return standard();
+        }
+
+        ChipSupport chipSupport = parseChipSupport(historicalBytes);
+        if (chipSupport == ChipSupport.UNKNOWN) {
+            chipSupport = parseChipSupport(hiLayerResponse);
+        }
+
+        Log.d(TAG, "Extended length: phone=" + phoneSupport
+                + " (maxTransceive=" + phoneMaxTransceive + "), chip=" + chipSupport);
+
+        int blockSize = Math.min(phoneMaxTransceive - SM_RESPONSE_OVERHEAD, MAX_EXTENDED_BLOCKSIZE);
+
+        if (!phoneSupport
+                || chipSupport == ChipSupport.NOT_SUPPORTED
+                || blockSize <= PassportService.DEFAULT_MAX_BLOCKSIZE) {
+            return standard();
+        }
+
+        return new TransportProfile(true, PassportService.EXTENDED_MAX_TRANCEIVE_LENGTH, blockSize);
+    }
+
+    /**
+     * Read the "extended Lc and Le fields" bit (ISO 7816-4, card capabilities
+     * third software function table byte, b7) from compact-TLV historical bytes.
+     */
+    static ChipSupport parseChipSupport(byte[] historicalBytes) {
+        if (historicalBytes == null || historicalBytes.length < 2) {
+            return ChipSupport.UNKNOWN;
+        }
+
+        int category = historicalBytes[0] & 0xFF;
+        int end;
+        if (category == 0x80) {
+            end = historicalBytes.length;
+        } else if (category == 0x00) {
+            end = historicalBytes.length - 3; // Last 3 bytes are status indicator
+        } else {
+            return ChipSupport.UNKNOWN;
+        }
+
+        int i = 1;
+        while (i < end) {
+            int tag = (historicalBytes[i] >> 4) & 0x0F;
+            int len = historicalBytes[i] & 0x0F;
+            i++;
+
+            if (i + len > end) {
+                break;
+            }
+
+            if (tag == 0x7 && len >= 3) {
+                boolean extended = (historicalBytes[i + 2] & 0x40) != 0;
+                return extended ? ChipSupport.SUPPORTED : ChipSupport.NOT_SUPPORTED;
+            }
+
+            i += len;
+        }
+
+        return ChipSupport.UNKNOWN;
+    }
+
+    /**
+     * Create a PassportService using this profile. The PACE and BAC commands
+     * themselves are short; the transceive length applies to secure messaging.
+     */
+    public PassportService createPassportService(CardService cardService,
+                                                 boolean isSFIEnabled,
+                                                 boolean shouldCheckMAC) {
+        return new PassportService(
+                cardService,
+                maxTransceiveLength,
+                maxBlockSize,
+                isSFIEnabled,
+                shouldCheckMAC
+        );
+    }
+
+    /**
+     * Send one extended READ BINARY (the first block of EF.SOD) right after
+     * authentication, so a chip or phone that rejects extended APDUs fails while
+     * the session can still be redone with short APDUs. Opening the file is not
+     * enough: that only reads its 8-byte header with a short Le.
+     *
+     * The block is read through a {@link ReadBinarySender} file system, which
+     * fails on a rejected Le instead of retrying it, and is read again by the
+     * {@link EfReader}. Failures other than length failures are left to the real
+     * read of EF.SOD.
+     *
+     * @param cardService the card service under the PassportService
+     */
+    public void probeExtendedRead(PassportService service, CardService cardService)
+            throws CardServiceException, IOException {
+        if (!extendedLength) {
+            return;
+        }
+        try {
+            DefaultFileSystem fileSystem = ReadBinarySender.newFileSystem(cardService);
+            fileSystem.setWrapper(service.getWrapper());
+            fileSystem.selectFile(PassportService.EF_SOD);
+            CardFileInputStream is = new CardFileInputStream(maxBlockSize, fileSystem);
+            int length = is.getLength();
+            if (length <= PassportService.DEFAULT_MAX_BLOCKSIZE) {
+                Log.d(TAG, "EF.SOD fits a short READ BINARY (" + length + " bytes), extended length not probed");
+                return;
+            }
+            // The stream fills its buffer with a single READ BINARY of up to maxBlockSize
+            is.read();
+            Log.d(TAG, "Extended READ BINARY accepted (block " + maxBlockSize + ")");
+        } catch (CardServiceException | IOException e) {
+            CardServiceException cse = StatusWords.findCardServiceException(e);
+            if (cse == null || StatusWords.isLengthFailure(cse)) {
+                throw e;
+            }
+            Log.d(TAG, "EF.SOD not readable, extended length not probed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether a failure under this profile means the chip or phone rejected
+     * extended-length APDUs (so the session should be redone with short APDUs).
+     */
+    public boolean isExtendedLengthRejected(CardService cardService, Exception e) {
+        if (!extendedLength || cardService.isConnectionLost(e)) {
+            return false;
+        }
+
+        CardServiceException cse = StatusWords.findCardServiceException(e);
+        return cse != null && StatusWords.isLengthFailure(cse);
+    }
+
+    public boolean isExtendedLength() { return extendedLength; }
+
+    public int getMaxTransceiveLength() { return maxTransceiveLength; }
+
+    public int getMaxBlockSize() { return maxBlockSize; }
+
+    @Override
+    public String toString() {
+        return (extendedLength ? "EXTENDED" : "STANDARD")
+                + " (transceive=" + maxTransceiveLength + ", block=" + maxBlockSize + ")";
+    }
+}
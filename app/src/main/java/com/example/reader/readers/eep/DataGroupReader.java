@@ -1,10 +1,10 @@
 package com.example.reader.readers.eep;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.Log;
 
-import com.gemalto.jp2.JP2Decoder;
+import com.example.reader.readers.EfReader;
+import com.example.reader.readers.ImageDecodePipeline;
 import org.jmrtd.PassportService;
 import org.jmrtd.lds.icao.*;
 import org.jmrtd.lds.iso19794.*;
@@ -21,40 +21,39 @@ public class DataGroupReader {
 
     private static final String TAG = "@@>> DataGroupReader";
 
-    private final PassportService service;
+    private final EfReader efReader;
 
-    public DataGroupReader(PassportService service) {
-        this.service = service;
+    public DataGroupReader(EfReader efReader) {
+        this.efReader = efReader;
     }
 
     /**
      * Read DG1 (MRZ Information)
      */
     public DG1File readDG1() throws Exception {
-        InputStream is = service.getInputStream(PassportService.EF_DG1);
+        InputStream is = efReader.open(PassportService.EF_DG1);
         return new DG1File(is);
     }
 
     /**
-     * Read DG2 (Facial Biometrics) and extract face images
+     * Read DG2 (Facial Biometrics) and queue its face images for decoding.
+     * Decoded images are added to {@code results} when the batch is awaited.
      */
-    public List<FaceImageResult> readDG2() throws Exception {
-        List<FaceImageResult> results = new ArrayList<>();
-
-        InputStream is = service.getInputStream(PassportService.EF_DG2);
+    public DG2File readDG2(ImageDecodePipeline.Batch decodeBatch, List<FaceImageResult> results) throws Exception {
+        InputStream is = efReader.open(PassportService.EF_DG2);
         DG2File dg2 = new DG2File(is);
 
+        int queued = 0;
         for (FaceInfo faceInfo : nullSafe(dg2.getFaceInfos())) {
             for (FaceImageInfo imageInfo : nullSafe(faceInfo.getFaceImageInfos())) {
-                FaceImageResult result = extractFaceImage(imageInfo);
-                if (result != null) {
-                    results.add(result);
+                if (extractFaceImage(imageInfo, decodeBatch, results)) {
+                    queued++;
                 }
             }
         }
 
-        Log.d(TAG, "DG2: extracted " + results.size() + " face images");
-        return results;
+        Log.d(TAG, "DG2: queued " + queued + " face images for decoding");
+        return dg2;
     }
 
     public static class FaceImageResult {
@@ -67,7 +66,9 @@ public class DataGroupReader {
         }
     }
 
-    private FaceImageResult extractFaceImage(FaceImageInfo imageInfo) {
+    private boolean extractFaceImage(FaceImageInfo imageInfo,
+                                     ImageDecodePipeline.Batch decodeBatch,
+                                     List<FaceImageResult> results) {
         try {
             int length = imageInfo.getImageLength();
             DataInputStream dis = new DataInputStream(imageInfo.getImageInputStream());
@@ -75,34 +76,25 @@ public class DataGroupReader {
             dis.readFully(imageBytes);
 
             String mimeType = imageInfo.getMimeType();
-            Bitmap bitmap = decodeBitmap(imageBytes, mimeType);
-
-            return bitmap != null ? new FaceImageResult(bitmap, mimeType) : null;
+            decodeBatch.submit(2, imageBytes, mimeType, bitmap -> {
+                if (bitmap != null) {
+                    results.add(new FaceImageResult(bitmap, mimeType));
+                }
+            });
+            return true;
 
         } catch (Exception e) {
             Log.e(TAG, "Failed to extract face image: " + e.getMessage());
-            return null;
+            return false;
         }
     }
 
-    private Bitmap decodeBitmap(byte[] data, String mimeType) {
-        if (isJpeg2000(mimeType)) {
-            return new JP2Decoder(data).decode();
-        }
-        return BitmapFactory.decodeByteArray(data, 0, data.length);
-    }
-
-    private boolean isJpeg2000(String mimeType) {
-        return "image/jp2".equalsIgnoreCase(mimeType)
-                || "image/jpeg2000".equalsIgnoreCase(mimeType);
-    }
-
     /**
      * Read DG11 (Additional Personal Details)
      */
     public DG11File readDG11() {
         try {
-            InputStream is = service.getInputStream(PassportService.EF_DG11);
+            InputStream is = efReader.open(PassportService.EF_DG11);
             return new DG11File(is);
         } catch (Exception e) {
             Log.w(TAG, "DG11 not available: " + e.getMessage());
@@ -115,7 +107,7 @@ public class DataGroupReader {
      */
     public DG12File readDG12() {
         try {
-            InputStream is = service.getInputStream(PassportService.EF_DG12);
+            InputStream is = efReader.open(PassportService.EF_DG12);
             return new DG12File(is);
         } catch (Exception e) {
             Log.w(TAG, "DG12 not available: " + e.getMessage());
@@ -128,7 +120,7 @@ public class DataGroupReader {
      */
     public DG14File readDG14() {
         try {
-            InputStream is = service.getInputStream(PassportService.EF_DG14);
+            InputStream is = efReader.open(PassportService.EF_DG14);
             return new DG14File(is);
         } catch (Exception e) {
             Log.w(TAG, "DG14 not available: " + e.getMessage());
@@ -141,7 +133,7 @@ public class DataGroupReader {
      */
     public DG15File readDG15() {
         try {
-            InputStream is = service.getInputStream(PassportService.EF_DG15);
+            InputStream is = efReader.open(PassportService.EF_DG15);
             return new DG15File(is);
         } catch (Exception e) {
             Log.w(TAG, "DG15 not available: " + e.getMessage());
@@ -1,6 +1,9 @@
 package com.example.reader.readers.eep;
 
 import android.util.Log;
+
+import com.example.reader.readers.PaceParameterCache;
+
 import org.jmrtd.BACKeySpec;
 import org.jmrtd.PassportService;
 import org.jmrtd.lds.CardAccessFile;
@@ -25,19 +28,25 @@ public class EmrtdAuthenticator {
         public final AuthMethod method;
         public final boolean success;
         public final String errorMessage;
+        public final Exception cause;
 
-        private AuthResult(AuthMethod method, boolean success, String errorMessage) {
+        private AuthResult(AuthMethod method, boolean success, String errorMessage, Exception cause) {
             this.method = method;
             this.success = success;
             this.errorMessage = errorMessage;
+            this.cause = cause;
         }
 
         public static AuthResult success(AuthMethod method) {
-            return new AuthResult(method, true, null);
+            return new AuthResult(method, true, null, null);
         }
 
         public static AuthResult failure(String message) {
-            return new AuthResult(null, false, message);
+            return new AuthResult(null, false, message, null);
+        }
+
+        public static AuthResult failure(String message, Exception cause) {
+            return new AuthResult(null, false, message, cause);
         }
     }
 
@@ -45,26 +54,57 @@ public class EmrtdAuthenticator {
      * Perform authentication using PACE (preferred) or BAC (fallback)
      */
     public AuthResult authenticate(PassportService service, BACKeySpec bacKey) throws Exception {
-        // Try PACE first
-        AuthResult paceResult = tryPace(service, bacKey);
-        if (paceResult.success) {
-            return paceResult;
+        return authenticate(service, bacKey, null, null, null, true);
+    }
+
+    /**
+     * Perform authentication. PACE is always tried when EF.CardAccess advertises it;
+     * the cache only decides which PACEInfo goes first.
+     *
+     * @param issuingState      from the MRZ, part of the cache key; null if unknown
+     * @param cardAccessPresent false if the chip fingerprint found no EF.CardAccess;
+     *                          it is then not read and BAC is used straight away
+     */
+    public AuthResult authenticate(PassportService service, BACKeySpec bacKey, PaceParameterCache paceCache,
+                                   String issuingState, String chipKey, boolean cardAccessPresent)
+            throws Exception {
+        byte[] caBytes = cardAccessPresent ? readCardAccess(service) : null;
+
+        String paceKey = null;
+        PaceParameterCache.Choice cached = null;
+        if (caBytes != null && paceCache != null) {
+            paceKey = PaceParameterCache.keyFor(issuingState, chipKey, caBytes);
+            cached = paceCache.get(paceKey);
+        }
+
+        if (caBytes == null) {
+            Log.d(TAG, "No CardAccess file, PACE not available");
+        } else {
+            // Try PACE first
+            PACEInfo paceInfo = tryPace(service, bacKey, caBytes, cached);
+            if (paceInfo != null) {
+                if (paceKey != null) {
+                    paceCache.recordPace(paceKey, paceInfo.getObjectIdentifier(), paceInfo.getParameterId());
+                }
+                return AuthResult.success(AuthMethod.PACE);
+            }
+            if (cached != null) {
+                paceCache.invalidate(paceKey);
+            }
         }
 
         // Fallback to BAC
         return tryBac(service, bacKey);
     }
 
-    private AuthResult tryPace(PassportService service, BACKeySpec bacKey) {
+    /**
+     * Returns the PACEInfo that authenticated, or null if none did
+     */
+    private PACEInfo tryPace(PassportService service, BACKeySpec bacKey, byte[] caBytes,
+                             PaceParameterCache.Choice cached) {
         try {
-            byte[] caBytes = readCardAccess(service);
-            if (caBytes == null) {
-                Log.d(TAG, "No CardAccess file, PACE not available");
-                return AuthResult.failure("No CardAccess");
-            }
-
             CardAccessFile cardAccessFile = new CardAccessFile(new ByteArrayInputStream(caBytes));
-            List<PACEInfo> paceInfos = extractPaceInfos(cardAccessFile);
+            List<PACEInfo> paceInfos = PaceParameterCache.order(extractPaceInfos(cardAccessFile), cached);
 
             for (PACEInfo paceInfo : paceInfos) {
                 try {
@@ -78,7 +118,7 @@ public class EmrtdAuthenticator {
                     service.sendSelectApplet(true);
                     Log.d(TAG, "PACE succeeded");
 
-                    return AuthResult.success(AuthMethod.PACE);
+                    return paceInfo;
 
                 } catch (Exception e) {
                     Log.w(TAG, "PACE attempt failed: " + e.getMessage());
@@ -89,7 +129,7 @@ public class EmrtdAuthenticator {
             Log.d(TAG, "PACE not available: " + e.getMessage());
         }
 
-        return AuthResult.failure("PACE failed");
+        return null;
     }
 
     private AuthResult tryBac(PassportService service, BACKeySpec bacKey) {
@@ -102,7 +142,7 @@ public class EmrtdAuthenticator {
 
         } catch (Exception e) {
             Log.e(TAG, "BAC failed: " + e.getMessage());
-            return AuthResult.failure("BAC failed: " + e.getMessage());
+            return AuthResult.failure("BAC failed: " + e.getMessage(), e);
         }
     }
 
@@ -0,0 +1,352 @@
+package com.example.reader.readers.transcript;
+
+import com.example.reader.readers.ReadProfile;
+import com.example.reader.readers.TransportProfile;
+import com.example.reader.readers.eep.HexUtils;
+
+import net.sf.scuba.smartcards.CardService;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Full APDU exchange of one chip read, plus what is needed to replay it:
+ * the link capabilities, the chip's historical bytes, the seed of the
+ * terminal-side random generator and the context the reader read with.
+ *
+ * A recorded read uses no EF cache, PACE cache or checkpoint, so with the
+ * recorded context a fresh reader sends the same commands.
+ *
+ * Text format, one item per line:
+ * <pre>
+ * # eMRTD APDU transcript v1
+ * seed 0123...
+ * historical 8073...
+ * extended true
+ * maxTransceive 65279
+ * profile 1,2 SOD                        data groups (or all), checks (or -)
+ * readMode AUTO
+ * chipKey 8073...
+ * issuingState UTO
+ * cardAccess true
+ * &gt; 00A4040C07A0000002471001            command
+ * &lt; 9000 1830                            response, micros
+ * ! -1 2100 Tag was lost                 failure: SW, micros, message
+ * </pre>
+ *
+ * A transcript holds the chip's personal data and the seed for the session
+ * keys; store it like the document data itself.
+ */
+public class ApduTranscript {
+
+    private static final String MAGIC = "# eMRTD APDU transcript v1";
+
+    /**
+     * One command and its response or failure
+     */
+    public static class Exchange {
+        public final byte[] command;
+        public final byte[] response;      // null when the transceive failed
+        public final int failureSw;
+        public final String failureMessage;
+        public final boolean connectionLost;
+        public final long micros;
+
+        Exchange(byte[] command, byte[] response, int failureSw, String failureMessage,
+                 boolean connectionLost, long micros) {
+            this.command = command;
+            this.response = response;
+            this.failureSw = failureSw;
+            this.failureMessage = failureMessage;
+            this.connectionLost = connectionLost;
+            this.micros = micros;
+        }
+
+        public boolean isFailure() {
+            return response == null;
+        }
+    }
+
+    private byte[] seed;
+    private byte[] historicalBytes;
+    private boolean extendedLengthSupported;
+    private int maxTransceiveLength;
+    private ReadProfile readProfile;
+    private TransportProfile.ReadMode readMode = TransportProfile.ReadMode.AUTO;
+    private String chipKey;
+    private String issuingState;
+    private boolean cardAccessPresent = true;
+    private final List<Exchange> exchanges = new ArrayList<>();
+
+    public ApduTranscript(byte[] seed, byte[] historicalBytes,
+                          boolean extendedLengthSupported, int maxTransceiveLength) {
+        this.seed = seed;
+        this.historicalBytes = historicalBytes;
+        this.extendedLengthSupported = extendedLengthSupported;
+        this.maxTransceiveLength = maxTransceiveLength;
+    }
+
+    private ApduTranscript() {}
+
+    /**
+     * The transcript a recording or replaying card service works on, or null for any other service
+     */
+    public static ApduTranscript of(CardService cardService) {
+        if (cardService instanceof RecordingCardService) {
+            return ((RecordingCardService) cardService).getTranscript();
+        }
+        if (cardService instanceof ReplayCardService) {
+            return ((ReplayCardService) cardService).getTranscript();
+        }
+        return null;
+    }
+
+    /**
+     * Set by the reader when the read starts
+     *
+     * @param chipKey      PACE cache key of the chip; null if unknown
+     * @param issuingState from the MRZ; null if unknown
+     */
+    public synchronized void setReadContext(ReadProfile readProfile, TransportProfile.ReadMode readMode,
+                                            String chipKey, String issuingState, boolean cardAccessPresent) {
+        this.readProfile = readProfile;
+        this.readMode = readMode;
+        this.chipKey = chipKey;
+        this.issuingState = issuingState;
+        this.cardAccessPresent = cardAccessPresent;
+    }
+
+    synchronized void addResponse(byte[] command, byte[] response, long micros) {
+        exchanges.add(new Exchange(command, response, 0, null, false, micros));
+    }
+
+    synchronized void addFailure(byte[] command, int sw, String message, boolean connectionLost, long micros) {
+        exchanges.add(new Exchange(command, null, sw, message, connectionLost, micros));
+    }
+
+    public byte[] getSeed() {
+        return seed;
+    }
+
+    public byte[] getHistoricalBytes() {
+        return historicalBytes;
+    }
+
+    public boolean isExtendedLengthSupported() {
+        return extendedLengthSupported;
+    }
+
+    public int getMaxTransceiveLength() {
+        return maxTransceiveLength;
+    }
+
+    /**
+     * The read profile of the recorded read; FULL for a transcript without context
+     */
+    public synchronized ReadProfile getReadProfile() {
+        return readProfile != null ? readProfile : ReadProfile.FULL;
+    }
+
+    public synchronized TransportProfile.ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public synchronized String getChipKey() {
+        return chipKey;
+    }
+
+    public synchronized String getIssuingState() {
+        return issuingState;
+    }
+
+    public synchronized boolean isCardAccessPresent() {
+        return cardAccessPresent;
+    }
+
+    public synchronized List<Exchange> getExchanges() {
+        return Collections.unmodifiableList(new ArrayList<>(exchanges));
+    }
+
+    /**
+     * Transport the reader negotiated with the recorded phone and chip
+     */
+    public TransportProfile negotiateTransport() {
+        return negotiateTransport(getReadMode());
+    }
+
+    /**
+     * Transport the reader would have negotiated with the recorded phone and chip
+     */
+    public TransportProfile negotiateTransport(TransportProfile.ReadMode mode) {
+        return TransportProfile.negotiate(extendedLengthSupported, maxTransceiveLength,
+                historicalBytes, null, mode);
+    }
+
+    public synchronized void write(File file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.US_ASCII))) {
+            out.write(MAGIC + "\n");
+            out.write("seed " + HexUtils.bytesToHex(seed) + "\n");
+            out.write("historical " + (historicalBytes != null ? HexUtils.bytesToHex(historicalBytes) : "") + "\n");
+            out.write("extended " + extendedLengthSupported + "\n");
+            out.write("maxTransceive " + maxTransceiveLength + "\n");
+            if (readProfile != null) {
+                out.write("profile " + formatProfile(readProfile) + "\n");
+            }
+            out.write("readMode " + readMode + "\n");
+            out.write("chipKey " + (chipKey != null ? chipKey : "") + "\n");
+            out.write("issuingState " + (issuingState != null ? issuingState : "") + "\n");
+            out.write("cardAccess " + cardAccessPresent + "\n");
+
+            for (Exchange exchange : exchanges) {
+                out.write("> " + HexUtils.bytesToHex(exchange.command) + "\n");
+                if (exchange.isFailure()) {
+                    out.write("! " + exchange.failureSw + " " + exchange.micros
+                            + (exchange.connectionLost ? " lost " : " error ")
+                            + (exchange.failureMessage != null ? exchange.failureMessage.replace('\n', ' ') : "")
+                            + "\n");
+                } else {
+                    out.write("< " + HexUtils.bytesToHex(exchange.response) + " " + exchange.micros + "\n");
+                }
+            }
+        }
+    }
+
+    public static ApduTranscript read(File file) throws IOException {
+        ApduTranscript transcript = new ApduTranscript();
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.US_ASCII))) {
+            String line = in.readLine();
+            if (!MAGIC.equals(line)) {
+                throw new IOException("Not an APDU transcript: " + file);
+            }
+
+            byte[] pendingCommand = null;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(" ", 5);
+                switch (parts[0]) {
+                    case "seed":
+                        transcript.seed = hex(parts, 1);
+                        break;
+                    case "historical":
+                        transcript.historicalBytes = hex(parts, 1);
+                        break;
+                    case "extended":
+                        transcript.extendedLengthSupported = Boolean.parseBoolean(parts[1]);
+                        break;
+                    case "maxTransceive":
+                        transcript.maxTransceiveLength = Integer.parseInt(parts[1]);
+                        break;
+                    case "profile":
+                        transcript.readProfile = parseProfile(parts);
+                        break;
+                    case "readMode":
+                        transcript.readMode = TransportProfile.ReadMode.valueOf(parts[1]);
+                        break;
+                    case "chipKey":
+                        transcript.chipKey = text(parts, 1);
+                        break;
+                    case "issuingState":
+                        transcript.issuingState = text(parts, 1);
+                        break;
+                    case "cardAccess":
+                        transcript.cardAccessPresent = Boolean.parseBoolean(parts[1]);
+                        break;
+                    case ">":
+                        pendingCommand = hex(parts, 1);
+                        break;
+                    case "<":
+                        requireCommand(pendingCommand, line);
+                        transcript.addResponse(pendingCommand, hex(parts, 1), Long.parseLong(parts[2]));
+                        pendingCommand = null;
+                        break;
+                    case "!":
+                        requireCommand(pendingCommand, line);
+                        transcript.addFailure(pendingCommand, Integer.parseInt(parts[1]),
+                                parts.length > 4 ? parts[4] : null, "lost".equals(parts[3]),
+                                Long.parseLong(parts[2]));
+                        pendingCommand = null;
+                        break;
+                    default:
+                        throw new IOException("Unexpected transcript line: " + line);
+                }
+            }
+        }
+        return transcript;
+    }
+
+    private static void requireCommand(byte[] command, String line) throws IOException {
+        if (command == null) {
+            throw new IOException("Response without command: " + line);
+        }
+    }
+
+    private static String formatProfile(ReadProfile profile) {
+        StringBuilder sb = new StringBuilder();
+        if (profile.isAllAvailable()) {
+            sb.append("all");
+        } else {
+            for (int dg : profile.getDataGroups()) {
+                sb.append(sb.length() > 0 ? "," : "").append(dg);
+            }
+        }
+        sb.append(' ');
+        Set<ReadProfile.Check> checks = profile.getChecks();
+        if (checks.isEmpty()) {
+            sb.append('-');
+        } else {
+            int start = sb.length();
+            for (ReadProfile.Check check : checks) {
+                sb.append(sb.length() > start ? "," : "").append(check);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static ReadProfile parseProfile(String[] parts) throws IOException {
+        if (parts.length < 3) {
+            throw new IOException("Incomplete read profile: " + String.join(" ", parts));
+        }
+        ReadProfile.Builder builder = new ReadProfile.Builder();
+        if ("all".equals(parts[1])) {
+            builder.readAllAvailable();
+        } else if (!parts[1].isEmpty()) {
+            for (String dg : parts[1].split(",")) {
+                builder.addDataGroups(Integer.parseInt(dg));
+            }
+        }
+        if (!"-".equals(parts[2])) {
+            for (String check : parts[2].split(",")) {
+                builder.addCheck(ReadProfile.Check.valueOf(check));
+            }
+        }
+        return builder.build();
+    }
+
+    private static String text(String[] parts, int index) {
+        return parts.length > index && !parts[index].isEmpty() ? parts[index] : null;
+    }
+
+    private static byte[] hex(String[] parts, int index) {
+        if (parts.length <= index || parts[index].isEmpty()) {
+            return new byte[0];
+        }
+        return HexUtils.hexToBytes(parts[index]);
+    }
+}
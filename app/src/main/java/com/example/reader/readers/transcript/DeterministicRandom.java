@@ -0,0 +1,145 @@
+package com.example.reader.readers.transcript;
+
+import java.io.Closeable;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.SecureRandomSpi;
+import java.security.Security;
+
+/**
+ * Seeded terminal-side randomness for recording and replaying transcripts.
+ *
+ * JMRTD draws BAC challenges, PACE nonces and ephemeral EC keys from
+ * {@code new SecureRandom()} instances it creates itself, with no way to pass
+ * one in. A forwarding provider therefore sits first in the provider list, but
+ * it only answers from the seed on a thread that has {@link #bind bound} a
+ * DeterministicRandom, until that binding is closed. Every other draw, on any
+ * thread and at any time, goes to the platform generator captured before the
+ * provider was added. Each binding has its own SHA-256 counter-mode stream, so
+ * concurrent recordings do not share state.
+ *
+ * The same seed and the same sequence of requests give the same bytes, so a
+ * replay derives the session keys of the recording.
+ */
+public final class DeterministicRandom implements Closeable {
+
+    private static final String PROVIDER_NAME = "ReaderDeterministicRandom";
+
+    private static final ThreadLocal<DeterministicRandom> BOUND = new ThreadLocal<>();
+
+    // Created at class load, before the provider can be inserted, so it is the platform generator
+    private static final SecureRandom PLATFORM = new SecureRandom();
+
+    private final byte[] key;
+    private final Thread thread;
+    private long counter;
+    private volatile boolean closed;
+
+    private DeterministicRandom(byte[] seed, Thread thread) {
+        this.key = seed.clone();
+        this.thread = thread;
+    }
+
+    /**
+     * 32 bytes from the platform generator, to seed a recording
+     */
+    public static byte[] newSeed() {
+        byte[] seed = new byte[32];
+        PLATFORM.nextBytes(seed);
+        return seed;
+    }
+
+    /**
+     * Seed the SecureRandom draws of the calling thread until the returned binding is closed
+     */
+    public static DeterministicRandom bind(byte[] seed) {
+        ensureProvider();
+        DeterministicRandom random = new DeterministicRandom(seed, Thread.currentThread());
+        BOUND.set(random);
+        return random;
+    }
+
+    /**
+     * End the binding. Safe to call from another thread: the bound thread then
+     * falls back to the platform generator on its next draw.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (Thread.currentThread() == thread && BOUND.get() == this) {
+            BOUND.remove();
+        }
+    }
+
+    private synchronized void nextBytes(byte[] out) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            int offset = 0;
+            while (offset < out.length) {
+                sha256.update(key);
+                for (int i = 7; i >= 0; i--) {
+                    sha256.update((byte) (counter >>> (8 * i)));
+                }
+                counter++;
+                byte[] block = sha256.digest();
+                int n = Math.min(block.length, out.length - offset);
+                System.arraycopy(block, 0, out, offset, n);
+                offset += n;
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static synchronized void ensureProvider() {
+        if (Security.getProvider(PROVIDER_NAME) == null) {
+            Security.insertProviderAt(new ForwardingProvider(), 1);
+        }
+    }
+
+    private static DeterministicRandom current() {
+        DeterministicRandom random = BOUND.get();
+        return random != null && !random.closed ? random : null;
+    }
+
+    private static final class ForwardingProvider extends Provider {
+        ForwardingProvider() {
+            super(PROVIDER_NAME, 1.0, "Seeded SecureRandom for APDU transcripts on bound threads");
+            put("SecureRandom.SHA256CTR", Spi.class.getName());
+        }
+    }
+
+    /**
+     * Instantiated by the JCA for every {@code new SecureRandom()}; decides per draw
+     */
+    public static final class Spi extends SecureRandomSpi {
+
+        @Override
+        protected void engineSetSeed(byte[] seed) {
+            // Extra seeding would make the seeded stream depend on call sites; the
+            // platform generator is shared and seeds itself
+        }
+
+        @Override
+        protected void engineNextBytes(byte[] bytes) {
+            DeterministicRandom random = current();
+            if (random != null) {
+                random.nextBytes(bytes);
+            } else {
+                PLATFORM.nextBytes(bytes);
+            }
+        }
+
+        @Override
+        protected byte[] engineGenerateSeed(int numBytes) {
+            DeterministicRandom random = current();
+            if (random == null) {
+                return PLATFORM.generateSeed(numBytes);
+            }
+            byte[] seed = new byte[numBytes];
+            random.nextBytes(seed);
+            return seed;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.reader.readers.transcript;
+
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+import net.sf.scuba.smartcards.CommandAPDU;
+import net.sf.scuba.smartcards.ResponseAPDU;
+
+/**
+ * CardService wrapper that copies every APDU exchange into an {@link ApduTranscript}
+ */
+public class RecordingCardService extends CardService {
+
+    /**
+     * Called once when the service is closed, with the finished transcript
+     */
+    public interface OnClose {
+        void onClose(ApduTranscript transcript);
+    }
+
+    private final CardService delegate;
+    private final ApduTranscript transcript;
+    private final OnClose onClose;
+    private boolean closed;
+
+    public RecordingCardService(CardService delegate, ApduTranscript transcript, OnClose onClose) {
+        this.delegate = delegate;
+        this.transcript = transcript;
+        this.onClose = onClose;
+    }
+
+    public ApduTranscript getTranscript() {
+        return transcript;
+    }
+
+    @Override
+    public void open() throws CardServiceException {
+        delegate.open();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } catch (Exception ignored) {
+            // Ignore close errors
+        }
+
+        // PassportService.close() and the reader both close the service; report once
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        if (onClose != null) {
+            onClose.onClose(transcript);
+        }
+    }
+
+    @Override
+    public boolean isConnectionLost(Exception e) {
+        return delegate.isConnectionLost(e);
+    }
+
+    @Override
+    public byte[] getATR() throws CardServiceException {
+        return delegate.getATR();
+    }
+
+    @Override
+    public ResponseAPDU transmit(CommandAPDU commandApdu) throws CardServiceException {
+        long start = System.nanoTime();
+        try {
+            ResponseAPDU response = delegate.transmit(commandApdu);
+            transcript.addResponse(commandApdu.getBytes(), response.getBytes(),
+                    (System.nanoTime() - start) / 1000);
+            return response;
+        } catch (CardServiceException e) {
+            transcript.addFailure(commandApdu.getBytes(), e.getSW(), e.getMessage(),
+                    delegate.isConnectionLost(e), (System.nanoTime() - start) / 1000);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.reader.readers.transcript;
+
+import com.example.reader.readers.eep.HexUtils;
+
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+import net.sf.scuba.smartcards.CommandAPDU;
+import net.sf.scuba.smartcards.ResponseAPDU;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CardService that plays back a recorded transcript instead of talking to a chip.
+ *
+ * Responses, failures and lost-tag events are returned in recorded order. With
+ * a {@link DeterministicRandom} bound to the transcript seed and the recorded
+ * read context, an unchanged reader sends byte-identical commands; in strict
+ * mode the first command that differs stops the replay and names the exchange
+ * where the reader diverged.
+ *
+ * <pre>
+ * ApduTranscript transcript = ApduTranscript.read(file);
+ * ReplayCardService replay = new ReplayCardService(transcript, true);
+ * try (DeterministicRandom random = DeterministicRandom.bind(transcript.getSeed())) {
+ *     reader.replay(replay, authData, null);
+ * }
+ * </pre>
+ */
+public class ReplayCardService extends CardService {
+
+    /**
+     * Thrown for exchanges that were recorded as a lost tag
+     */
+    public static class ReplayTagLostException extends CardServiceException {
+        ReplayTagLostException(String message) {
+            super(message);
+        }
+    }
+
+    private final ApduTranscript transcript;
+    private final List<ApduTranscript.Exchange> exchanges;
+    private final boolean strict;
+    private double timeScale = 0;
+    private int position;
+    private boolean open;
+    private String divergence;
+
+    public ReplayCardService(ApduTranscript transcript, boolean strict) {
+        this.transcript = transcript;
+        this.exchanges = transcript.getExchanges();
+        this.strict = strict;
+    }
+
+    /**
+     * Sleep for the recorded transceive time multiplied by the scale (0 = as fast as possible)
+     */
+    public void setTimeScale(double timeScale) {
+        this.timeScale = timeScale;
+    }
+
+    public ApduTranscript getTranscript() {
+        return transcript;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isFinished() {
+        return position >= exchanges.size();
+    }
+
+    /**
+     * Where the reader stopped matching the recording, or null.
+     * Readers swallow per-DG errors, so check this after the read.
+     */
+    public String getDivergence() {
+        return divergence;
+    }
+
+    @Override
+    public void open() {
+        open = true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public byte[] getATR() {
+        return transcript.getHistoricalBytes();
+    }
+
+    @Override
+    public boolean isConnectionLost(Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ReplayTagLostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ResponseAPDU transmit(CommandAPDU commandApdu) throws CardServiceException {
+        if (divergence != null) {
+            throw new CardServiceException(divergence);
+        }
+        if (position >= exchanges.size()) {
+            throw new CardServiceException("Transcript exhausted after " + position + " exchanges");
+        }
+
+        ApduTranscript.Exchange exchange = exchanges.get(position++);
+        byte[] command = commandApdu.getBytes();
+        if (strict && !Arrays.equals(command, exchange.command)) {
+            divergence = "Replay diverged at exchange " + (position - 1)
+                    + ": sent " + HexUtils.bytesToHex(command)
+                    + ", recorded " + HexUtils.bytesToHex(exchange.command);
+            throw new CardServiceException(divergence);
+        }
+
+        if (timeScale > 0) {
+            long micros = (long) (exchange.micros * timeScale);
+            try {
+                Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (exchange.isFailure()) {
+            if (exchange.connectionLost) {
+                throw new ReplayTagLostException(exchange.failureMessage);
+            }
+            throw new CardServiceException(exchange.failureMessage, exchange.failureSw);
+        }
+        return new ResponseAPDU(exchange.response);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.reader.readers.transcript;
+
+import android.nfc.tech.IsoDep;
+import android.util.Log;
+
+import com.example.reader.BuildConfig;
+
+import net.sf.scuba.smartcards.CardService;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records the APDU transcript of each real tap into a directory.
+ *
+ * For the duration of a read the SecureRandom draws of the read thread come from
+ * a {@link DeterministicRandom} binding with a fresh seed, which is stored in the
+ * transcript so the read can be replayed offline with {@link ReplayCardService}.
+ * The reader also stores its read context, and skips the EF cache, the PACE cache
+ * and the checkpoints, so a re-tap is recorded as the full read it replays as.
+ *
+ * A transcript holds the seed of the session keys and every APDU, so the personal
+ * data can be recovered from it: recording is only available in debug builds.
+ */
+public class TranscriptRecorder {
+
+    private static final String TAG = "@@>> TranscriptRecorder";
+
+    private final File directory;
+    private volatile File lastTranscript;
+
+    /**
+     * @throws IllegalStateException in a release build
+     */
+    public TranscriptRecorder(File directory) {
+        if (!BuildConfig.DEBUG) {
+            throw new IllegalStateException("APDU transcripts are only recorded in debug builds");
+        }
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+        }
+    }
+
+    /**
+     * Wrap the card service of a new tap. Call on the read thread: it is bound to the
+     * transcript seed until the service closes, and the transcript is written then.
+     */
+    public CardService begin(CardService cardService, IsoDep isoDep) {
+        boolean extended = false;
+        int maxTransceive = 261;
+        try {
+            extended = isoDep.isExtendedLengthApduSupported();
+            maxTransceive = isoDep.getMaxTransceiveLength();
+        } catch (Exception e) {
+            Log.w(TAG, "Could not query IsoDep capabilities: " + e.getMessage());
+        }
+        byte[] historical = isoDep.getHistoricalBytes();
+        if (historical == null) {
+            historical = isoDep.getHiLayerResponse();
+        }
+
+        byte[] seed = DeterministicRandom.newSeed();
+        ApduTranscript transcript = new ApduTranscript(seed, historical, extended, maxTransceive);
+        DeterministicRandom random = DeterministicRandom.bind(seed);
+
+        return new RecordingCardService(cardService, transcript, closed -> {
+            random.close();
+            finish(closed);
+        });
+    }
+
+    private void finish(ApduTranscript transcript) {
+        File file = new File(directory, "transcript-" + System.currentTimeMillis() + ".apdu");
+        try {
+            transcript.write(file);
+            lastTranscript = file;
+            Log.d(TAG, "Wrote " + transcript.getExchanges().size() + " exchanges to " + file);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write transcript: " + e.getMessage());
+        }
+    }
+
+    public File getLastTranscript() {
+        return lastTranscript;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.reader.utils;
+
+import android.util.Log;
+
+/**
+ * Forwards core module logging to logcat
+ */
+public final class AndroidLogSink implements CoreLog.Sink {
+
+    private static volatile boolean installed;
+
+    private AndroidLogSink() {}
+
+    public static void install() {
+        if (!installed) {
+            CoreLog.setSink(new AndroidLogSink());
+            installed = true;
+        }
+    }
+
+    @Override
+    public void log(int level, String tag, String message, Throwable throwable) {
+        switch (level) {
+            case CoreLog.ERROR:
+                Log.e(tag, message, throwable);
+                break;
+            case CoreLog.WARN:
+                Log.w(tag, message, throwable);
+                break;
+            case CoreLog.INFO:
+                Log.i(tag, message, throwable);
+                break;
+            default:
+                Log.d(tag, message, throwable);
+                break;
+        }
+    }
+}
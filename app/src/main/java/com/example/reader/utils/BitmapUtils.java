@@ -4,6 +4,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.RectF;
@@ -16,8 +17,9 @@ import androidx.camera.core.ImageProxy;
 import androidx.camera.view.PreviewView;
 
 import com.example.reader.MRZGuidanceOverlay;
-import com.google.mlkit.vision.common.InputImage;
 
+import org.opencv.android.Utils;
+import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 
 import java.io.File;
@@ -35,76 +37,27 @@ public class BitmapUtils {
     private static final String TAG = "BitmapUtils";
 
     /**
-     * Converts an InputImage and ImageProxy to a Bitmap.
-     * Handles YUV to RGB conversion and rotation.
+     * One-off conversion with a converter of its own, released before returning
      */
-    public static Bitmap inputImageToBitmap(InputImage inputImage, ImageProxy imageProxy) {
+    private static Bitmap convertToNewBitmap(ImageProxy imageProxy, int rotation) {
+        YuvConverter converter = new YuvConverter();
         try {
-            ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
-
-            int width = imageProxy.getWidth();
-            int height = imageProxy.getHeight();
-            int rotation = inputImage.getRotationDegrees();
-
-            Log.d(TAG, "📷 ImageProxy RAW: " + width + "x" + height + ", rotation: " + rotation + "°");
-
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            ByteBuffer vBuffer = planes[2].getBuffer();
-
-            int yRowStride = planes[0].getRowStride();
-            int uvRowStride = planes[1].getRowStride();
-            int uvPixelStride = planes[1].getPixelStride();
-
-            int[] argbArray = new int[width * height];
-
-            yBuffer.rewind();
-            uBuffer.rewind();
-            vBuffer.rewind();
-
-            // YUV to RGB conversion
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int yIndex = y * yRowStride + x;
-                    int uvX = x / 2;
-                    int uvY = y / 2;
-                    int uvIndex = uvY * uvRowStride + uvX * uvPixelStride;
-
-                    int yValue = yBuffer.get(yIndex) & 0xFF;
-                    int uValue = (uBuffer.get(uvIndex) & 0xFF) - 128;
-                    int vValue = (vBuffer.get(uvIndex) & 0xFF) - 128;
-
-                    // YUV to RGB conversion formula
-                    int r = (int) (yValue + 1.402f * vValue);
-                    int g = (int) (yValue - 0.344f * uValue - 0.714f * vValue);
-                    int b = (int) (yValue + 1.772f * uValue);
-
-                    // Clamp values to [0, 255]
-                    r = clamp(r);
-                    g = clamp(g);
-                    b = clamp(b);
-
-                    argbArray[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
-                }
-            }
-
-            Bitmap bitmap = Bitmap.createBitmap(argbArray, width, height, Bitmap.Config.ARGB_8888);
-            Log.d(TAG, "🖼️ Pre-rotation: " + bitmap.getWidth() + "x" + bitmap.getHeight());
-
-            // Apply rotation if needed
-            if (rotation != 0) {
-                Bitmap rotated = rotateBitmap(bitmap, rotation);
-                Log.d(TAG, "🖼️ Post-rotation: " + rotated.getWidth() + "x" + rotated.getHeight());
-                return rotated;            }
-
-            return bitmap;
-
-        } catch (Exception e) {
-            Log.e(TAG, "❌ Error converting ImageProxy to Bitmap", e);
-            return null;
+            Mat rgba = converter.toRgba(imageProxy, rotation);
+            return rgba != null ? matToNewBitmap(rgba) : null;
+        } finally {
+            converter.release();
         }
     }
 
+    /**
+     * Copies an RGBA Mat into a new ARGB_8888 Bitmap
+     */
+    private static Bitmap matToNewBitmap(Mat rgba) {
+        Bitmap bitmap = Bitmap.createBitmap(rgba.cols(), rgba.rows(), Bitmap.Config.ARGB_8888);
+        Utils.matToBitmap(rgba, bitmap);
+        return bitmap;
+    }
+
     /**
      * Rotates a bitmap by the specified degrees.
      * Recycles the original bitmap after rotation.
@@ -140,12 +93,28 @@ public class BitmapUtils {
             Bitmap bitmap,
             MRZGuidanceOverlay overlay,
             PreviewView previewView
+    ) {
+        return cropToGuidanceOverlay(bitmap, 0, overlay, previewView);
+    }
+
+    /**
+     * Crops a bitmap still in sensor orientation to the guidance overlay area.
+     * The overlay is mapped into sensor coordinates and only the crop is rotated
+     * upright, never the full frame. Returns a new bitmap; the source is left alone.
+     */
+    public static Bitmap cropToGuidanceOverlay(
+            Bitmap bitmap,
+            int rotationDegrees,
+            MRZGuidanceOverlay overlay,
+            PreviewView previewView
     ) {
         RectF guide = overlay.getGuidanceBoxRect();
         if (guide == null || guide.isEmpty()) return bitmap;
 
-        int bw = bitmap.getWidth();
-        int bh = bitmap.getHeight();
+        FrameOrientation orientation =
+                new FrameOrientation(bitmap.getWidth(), bitmap.getHeight(), rotationDegrees);
+        int bw = orientation.getUprightWidth();
+        int bh = orientation.getUprightHeight();
         int pw = previewView.getWidth();
         int ph = previewView.getHeight();
 
@@ -185,7 +154,15 @@ public class BitmapUtils {
                 "✅ Final crop: " + width + "x" + height +
                         " from " + bw + "x" + bh);
 
-        return Bitmap.createBitmap(bitmap, left, top, width, height);
+        // Crop and rotate in one pass, over the crop's pixels only
+        RectF sensor = orientation.toSensor(new RectF(left, top, right, bottom));
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotationDegrees);
+
+        return Bitmap.createBitmap(bitmap,
+                Math.round(sensor.left), Math.round(sensor.top),
+                Math.round(sensor.width()), Math.round(sensor.height()),
+                matrix, true);
     }
     /**
      * Saves a bitmap to device storage.
@@ -266,13 +243,6 @@ public class BitmapUtils {
         return file.getAbsolutePath();
     }
 
-    /**
-     * Clamps an integer value to the range [0, 255]
-     */
-    private static int clamp(int value) {
-        return Math.max(0, Math.min(255, value));
-    }
-
     /**
      * Scales a bitmap to a maximum dimension while maintaining aspect ratio.
      */
@@ -509,11 +479,19 @@ public class BitmapUtils {
      * Handles both YUV_420_888 (from ImageAnalysis) and JPEG (from ImageCapture)
      */
     public static Bitmap imageProxyToBitmap(ImageProxy imageProxy) {
+        return imageProxyToBitmap(imageProxy, true);
+    }
+
+    /**
+     * Converts ImageProxy to Bitmap, rotated upright or left in sensor orientation
+     * (rotate coordinates with {@link FrameOrientation} instead)
+     */
+    public static Bitmap imageProxyToBitmap(ImageProxy imageProxy, boolean upright) {
         if (imageProxy == null) return null;
 
         try {
             int format = imageProxy.getFormat();
-            int rotation = imageProxy.getImageInfo().getRotationDegrees();
+            int rotation = upright ? imageProxy.getImageInfo().getRotationDegrees() : 0;
 
             Log.d(TAG, "🖼️  Converting ImageProxy:");
             Log.d(TAG, "   Format: " + format);
@@ -527,9 +505,10 @@ public class BitmapUtils {
             if (format == ImageFormat.JPEG) {
                 bitmap = imageProxyToBitmapJPEG(imageProxy);
             }
-            // YUV format (from ImageAnalysis)
+            // YUV format (from ImageAnalysis), rotated during conversion
             else if (format == ImageFormat.YUV_420_888) {
-                bitmap = imageProxyToBitmapYUV(imageProxy);
+                bitmap = imageProxyToBitmapYUV(imageProxy, rotation);
+                rotation = 0;
             }
             else {
                 Log.e(TAG, "❌ Unsupported format: " + format);
@@ -584,53 +563,12 @@ public class BitmapUtils {
     /**
      * Convert YUV_420_888 ImageProxy to Bitmap
      */
-    private static Bitmap imageProxyToBitmapYUV(ImageProxy imageProxy) {
+    private static Bitmap imageProxyToBitmapYUV(ImageProxy imageProxy, int rotation) {
         try {
-            ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
-
-            if (planes.length < 3) {
-                Log.e(TAG, "❌ Invalid YUV format - expected 3 planes, got " + planes.length);
-                return null;
+            Bitmap bitmap = convertToNewBitmap(imageProxy, rotation);
+            if (bitmap != null) {
+                Log.d(TAG, "✅ YUV converted: " + bitmap.getWidth() + "x" + bitmap.getHeight());
             }
-
-            int width = imageProxy.getWidth();
-            int height = imageProxy.getHeight();
-
-            ByteBuffer yBuffer = planes[0].getBuffer();
-            ByteBuffer uBuffer = planes[1].getBuffer();
-            ByteBuffer vBuffer = planes[2].getBuffer();
-
-            int yRowStride = planes[0].getRowStride();
-            int uvRowStride = planes[1].getRowStride();
-            int uvPixelStride = planes[1].getPixelStride();
-
-            int[] argbArray = new int[width * height];
-
-            yBuffer.rewind();
-            uBuffer.rewind();
-            vBuffer.rewind();
-
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int yIndex = y * yRowStride + x;
-                    int uvX = x / 2;
-                    int uvY = y / 2;
-                    int uvIndex = uvY * uvRowStride + uvX * uvPixelStride;
-
-                    int yValue = yBuffer.get(yIndex) & 0xFF;
-                    int uValue = (uBuffer.get(uvIndex) & 0xFF) - 128;
-                    int vValue = (vBuffer.get(uvIndex) & 0xFF) - 128;
-
-                    int r = clamp((int) (yValue + 1.402f * vValue));
-                    int g = clamp((int) (yValue - 0.344f * uValue - 0.714f * vValue));
-                    int b = clamp((int) (yValue + 1.772f * uValue));
-
-                    argbArray[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
-                }
-            }
-
-            Bitmap bitmap = Bitmap.createBitmap(argbArray, width, height, Bitmap.Config.ARGB_8888);
-            Log.d(TAG, "✅ YUV converted: " + bitmap.getWidth() + "x" + bitmap.getHeight());
             return bitmap;
 
         } catch (Exception e) {
@@ -663,17 +601,40 @@ public class BitmapUtils {
         }
     }
 
+    /**
+     * Copy a region of source into a pooled bitmap, or null if it is out of bounds
+     */
+    public static Bitmap cropInto(Bitmap source, int x, int y, int width, int height, FramePool pool) {
+        if (width <= 0 || height <= 0 ||
+                x + width > source.getWidth() ||
+                y + height > source.getHeight()) {
+            return null;
+        }
+
+        Bitmap cropped = pool.acquireBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(cropped).drawBitmap(source,
+                new android.graphics.Rect(x, y, x + width, y + height),
+                new android.graphics.Rect(0, 0, width, height), null);
+        return cropped;
+    }
+
     /**
      * Get guidance box coordinates in bitmap coordinate space
      */
     public static RectF getGuidanceBoxInBitmapCoords(Bitmap bitmap, MRZGuidanceOverlay guidanceOverlay, PreviewView previewView) {
+        return getGuidanceBoxInBitmapCoords(bitmap.getWidth(), bitmap.getHeight(), guidanceOverlay, previewView);
+    }
+
+    /**
+     * Get guidance box coordinates in the space of an upright image of the given size
+     */
+    public static RectF getGuidanceBoxInBitmapCoords(int bitmapWidth, int bitmapHeight,
+                                                     MRZGuidanceOverlay guidanceOverlay, PreviewView previewView) {
         // Get guidance box rect in view coordinates
         RectF viewGuidanceRect = guidanceOverlay.getGuidanceBoxRect();
 
         int previewWidth = previewView.getWidth();
         int previewHeight = previewView.getHeight();
-        int bitmapWidth = bitmap.getWidth();
-        int bitmapHeight = bitmap.getHeight();
 
         Log.d(TAG, "📐 Coordinate mapping:");
         Log.d(TAG, "   Preview: " + previewWidth + "x" + previewHeight);
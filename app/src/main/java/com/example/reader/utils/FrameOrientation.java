@@ -0,0 +1,91 @@
+package com.example.reader.utils;
+
+import android.graphics.Matrix;
+import android.graphics.Point;
+import android.graphics.RectF;
+
+/**
+ * Maps between a camera frame kept in sensor orientation and the upright image
+ * the user sees, so geometry can be rotated instead of pixels.
+ *
+ * rotationDegrees is the clockwise rotation CameraX reports for the frame. Both
+ * directions are precomputed matrices; keep an instance for as long as the frame
+ * size and rotation stay the same (see {@link #matches}).
+ */
+public final class FrameOrientation {
+
+    public final int sensorWidth;
+    public final int sensorHeight;
+    public final int rotationDegrees;
+
+    private final Matrix toUpright = new Matrix();
+    private final Matrix toSensor = new Matrix();
+
+    public FrameOrientation(int sensorWidth, int sensorHeight, int rotationDegrees) {
+        this.sensorWidth = sensorWidth;
+        this.sensorHeight = sensorHeight;
+        this.rotationDegrees = rotationDegrees;
+
+        toUpright.postRotate(rotationDegrees);
+        // Bring the rotated frame back to the origin
+        switch (rotationDegrees) {
+            case 90:
+                toUpright.postTranslate(sensorHeight, 0);
+                break;
+            case 180:
+                toUpright.postTranslate(sensorWidth, sensorHeight);
+                break;
+            case 270:
+                toUpright.postTranslate(0, sensorWidth);
+                break;
+        }
+        toUpright.invert(toSensor);
+    }
+
+    public boolean matches(int sensorWidth, int sensorHeight, int rotationDegrees) {
+        return this.sensorWidth == sensorWidth && this.sensorHeight == sensorHeight &&
+                this.rotationDegrees == rotationDegrees;
+    }
+
+    public boolean isSwapped() {
+        return rotationDegrees == 90 || rotationDegrees == 270;
+    }
+
+    public int getUprightWidth() {
+        return isSwapped() ? sensorHeight : sensorWidth;
+    }
+
+    public int getUprightHeight() {
+        return isSwapped() ? sensorWidth : sensorHeight;
+    }
+
+    public RectF toSensor(RectF upright) {
+        RectF sensor = new RectF();
+        toSensor.mapRect(sensor, upright);
+        return sensor;
+    }
+
+    public RectF toUpright(RectF sensor) {
+        RectF upright = new RectF();
+        toUpright.mapRect(upright, sensor);
+        return upright;
+    }
+
+    /**
+     * Map points from sensor to upright coordinates; the order of the points is kept
+     */
+    public Point[] toUpright(Point[] sensor) {
+        float[] coords = new float[sensor.length * 2];
+        for (int i = 0; i < sensor.length; i++) {
+            coords[i * 2] = sensor[i].x;
+            coords[i * 2 + 1] = sensor[i].y;
+        }
+        toUpright.mapPoints(coords);
+
+        Point[] upright = new Point[sensor.length];
+        for (int i = 0; i < sensor.length; i++) {
+            upright[i] = new Point(Math.round(coords[i * 2]), Math.round(coords[i * 2 + 1]));
+        }
+        return upright;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.reader.utils;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reusable Bitmaps and Mats for the camera pipeline.
+ *
+ * Buffers are keyed by size, rounded up to a bucket so that crops which move by
+ * a few pixels from frame to frame still hit the same entry: a Bitmap is
+ * reconfigured to the requested size, a Mat is handed out as a view into a
+ * bucket-sized backing Mat. Everything acquired must be given back with
+ * {@link #release(Bitmap)} / {@link #release(Mat)} instead of recycle()/release().
+ *
+ * The pool counts the buffers it had to allocate; {@link #endFrame()} closes a
+ * frame and logs the average per frame every {@link #REPORT_INTERVAL} frames.
+ * Once the pipeline is warm this should read zero.
+ *
+ * Thread-safe: the preview analyzer and the high-res capture path share one pool.
+ */
+public class FramePool {
+    private static final String TAG = "FramePool";
+
+    private static final int BUCKET = 64;
+    private static final int MAX_PER_SIZE = 4;
+    private static final int REPORT_INTERVAL = 100;
+
+    private final Map<Long, ArrayDeque<Bitmap>> bitmaps = new HashMap<>();
+    private final Map<Long, ArrayDeque<Mat>> mats = new HashMap<>();
+    // Bitmaps handed out -> their size key
+    private final Map<Bitmap, Long> borrowedBitmaps = new IdentityHashMap<>();
+    // Views handed out -> their backing Mat
+    private final Map<Mat, Mat> borrowedMats = new IdentityHashMap<>();
+
+    private long totalAllocations = 0;
+    private int windowAllocations = 0;
+    private int windowFrames = 0;
+    private long frameCount = 0;
+    private float allocationsPerFrame = 0f;
+
+    /**
+     * Borrow a mutable Bitmap of exactly this size; its contents are undefined
+     */
+    public synchronized Bitmap acquireBitmap(int width, int height, Bitmap.Config config) {
+        long key = key(width, height, config.ordinal());
+        ArrayDeque<Bitmap> free = bitmaps.get(key);
+        Bitmap bitmap = free != null ? free.poll() : null;
+
+        if (bitmap == null || bitmap.isRecycled()) {
+            bitmap = Bitmap.createBitmap(roundUp(width), roundUp(height), config);
+            countAllocation("Bitmap " + width + "x" + height);
+        }
+        bitmap.reconfigure(width, height, config);
+        borrowedBitmaps.put(bitmap, key);
+        return bitmap;
+    }
+
+    /**
+     * Return a Bitmap from {@link #acquireBitmap}; null and bitmaps the pool did
+     * not hand out (or already got back) are ignored
+     */
+    public synchronized void release(Bitmap bitmap) {
+        Long key = bitmap != null ? borrowedBitmaps.remove(bitmap) : null;
+        if (key == null || bitmap.isRecycled()) {
+            return;
+        }
+        ArrayDeque<Bitmap> free = bitmaps.computeIfAbsent(key, k -> new ArrayDeque<>());
+        if (free.size() >= MAX_PER_SIZE) {
+            bitmap.recycle();
+        } else {
+            free.push(bitmap);
+        }
+    }
+
+    /**
+     * Whether the bitmap is currently borrowed from this pool
+     */
+    public synchronized boolean owns(Bitmap bitmap) {
+        return bitmap != null && borrowedBitmaps.containsKey(bitmap);
+    }
+
+    /**
+     * Borrow a Mat of exactly this size and type; its contents are undefined
+     */
+    public synchronized Mat acquireMat(int rows, int cols, int type) {
+        long key = key(cols, rows, type);
+        ArrayDeque<Mat> free = mats.get(key);
+        Mat backing = free != null ? free.poll() : null;
+
+        if (backing == null) {
+            backing = new Mat(roundUp(rows), roundUp(cols), type);
+            countAllocation("Mat " + cols + "x" + rows);
+        }
+        Mat view = backing.submat(0, rows, 0, cols);
+        borrowedMats.put(view, backing);
+        return view;
+    }
+
+    /**
+     * Return a Mat from {@link #acquireMat}; null is ignored
+     */
+    public synchronized void release(Mat mat) {
+        if (mat == null) {
+            return;
+        }
+        Mat backing = borrowedMats.remove(mat);
+        mat.release();
+        if (backing == null) {
+            return;
+        }
+        ArrayDeque<Mat> free = mats.computeIfAbsent(
+                key(backing.cols(), backing.rows(), backing.type()), k -> new ArrayDeque<>());
+        if (free.size() >= MAX_PER_SIZE) {
+            backing.release();
+        } else {
+            free.push(backing);
+        }
+    }
+
+    /**
+     * Close the current frame for the allocation statistics
+     */
+    public synchronized void endFrame() {
+        frameCount++;
+        if (++windowFrames >= REPORT_INTERVAL) {
+            allocationsPerFrame = (float) windowAllocations / windowFrames;
+            Log.d(TAG, "📊 Allocations/frame over last " + windowFrames + " frames: " +
+                    String.format("%.2f", allocationsPerFrame) + " (total " + totalAllocations +
+                    " in " + frameCount + " frames)");
+            windowAllocations = 0;
+            windowFrames = 0;
+        }
+    }
+
+    /**
+     * Buffers allocated per frame over the last full reporting window
+     */
+    public synchronized float getAllocationsPerFrame() {
+        return allocationsPerFrame;
+    }
+
+    public synchronized long getTotalAllocations() {
+        return totalAllocations;
+    }
+
+    /**
+     * Free every pooled buffer. Borrowed ones are freed when released.
+     */
+    public synchronized void clear() {
+        for (ArrayDeque<Bitmap> free : bitmaps.values()) {
+            for (Bitmap bitmap : free) {
+                bitmap.recycle();
+            }
+        }
+        bitmaps.clear();
+
+        for (ArrayDeque<Mat> free : mats.values()) {
+            for (Mat backing : free) {
+                backing.release();
+            }
+        }
+        mats.clear();
+    }
+
+    private void countAllocation(String what) {
+        totalAllocations++;
+        windowAllocations++;
+        Log.d(TAG, "🆕 Allocated " + what);
+    }
+
+    private static int roundUp(int size) {
+        return (size + BUCKET - 1) / BUCKET * BUCKET;
+    }
+
+    private static long key(int width, int height, int type) {
+        return ((long) roundUp(width) << 32) | ((long) roundUp(height) << 8) | type;
+    }
+}
@@ -7,13 +7,42 @@ import android.nfc.NfcAdapter;
 import android.nfc.Tag;
 import android.nfc.tech.IsoDep;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.util.Log;
 
 public class NfcHelper {
 
+    private static final String TAG = "NfcHelper";
+
+    /**
+     * Reader-mode polling: NFC-A/B only (eMRTDs are ISO 14443), no NDEF probe
+     * before the tag is handed over and no platform sound on discovery.
+     */
+    public static final int READER_FLAGS = NfcAdapter.FLAG_READER_NFC_A
+            | NfcAdapter.FLAG_READER_NFC_B
+            | NfcAdapter.FLAG_READER_SKIP_NDEF_CHECK
+            | NfcAdapter.FLAG_READER_NO_PLATFORM_SOUNDS;
+
+    /**
+     * How often the stack checks the tag is still in the field. The default
+     * (125 ms) interleaves presence frames with our APDUs for the whole read; the
+     * read itself notices a lost tag through the transceive failure.
+     */
+    public static final int PRESENCE_CHECK_DELAY_MS = 1000;
+
+    /**
+     * Receives tags discovered in reader mode, on an NFC binder thread
+     */
+    public interface TagListener {
+        void onTagDiscovered(Tag tag);
+    }
+
     private final Activity activity;
     private NfcAdapter nfcAdapter;
     private PendingIntent pendingIntent;
+    private volatile boolean readerModeEnabled = false;
 
     public NfcHelper(Activity activity) {
         this.activity = activity;
@@ -43,6 +72,63 @@ public class NfcHelper {
         return nfcAdapter != null && nfcAdapter.isEnabled();
     }
 
+    /**
+     * Start a reader-mode session: tags go straight to the listener instead of
+     * through an Activity intent. Only while the activity is resumed; call again
+     * from onResume if the session should survive a pause.
+     *
+     * @return false if NFC is unavailable or the adapter refused
+     */
+    public boolean enableReaderMode(TagListener listener) {
+        return enableReaderMode(listener, PRESENCE_CHECK_DELAY_MS);
+    }
+
+    public boolean enableReaderMode(TagListener listener, int presenceCheckDelayMs) {
+        if (nfcAdapter == null || listener == null) return false;
+
+        Bundle extras = new Bundle();
+        extras.putInt(NfcAdapter.EXTRA_READER_PRESENCE_CHECK_DELAY, presenceCheckDelayMs);
+
+        try {
+            nfcAdapter.enableReaderMode(activity, tag -> {
+                long discoveredAt = SystemClock.elapsedRealtime();
+                if (IsoDep.get(tag) == null) {
+                    Log.d(TAG, "Ignoring tag without IsoDep");
+                    return;
+                }
+                listener.onTagDiscovered(tag);
+                Log.d(TAG, "Tag handed off in " + (SystemClock.elapsedRealtime() - discoveredAt) + " ms");
+            }, READER_FLAGS, extras);
+            readerModeEnabled = true;
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error enabling reader mode: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * End the reader-mode session; safe to call from the read's worker thread
+     */
+    public void disableReaderMode() {
+        if (nfcAdapter == null || !readerModeEnabled) return;
+        readerModeEnabled = false;
+
+        activity.runOnUiThread(() -> {
+            try {
+                nfcAdapter.disableReaderMode(activity);
+            } catch (Exception ignored) {}
+        });
+    }
+
+    public boolean isReaderModeEnabled() {
+        return readerModeEnabled;
+    }
+
+    /**
+     * @deprecated routes every tag through onNewIntent; use {@link #enableReaderMode}
+     */
+    @Deprecated
     public void enableForegroundDispatch() {
         if (nfcAdapter == null) return;
 
@@ -52,6 +138,10 @@ public class NfcHelper {
         } catch (Exception ignored) {}
     }
 
+    /**
+     * @deprecated see {@link #enableForegroundDispatch()}
+     */
+    @Deprecated
     public void disableForegroundDispatch() {
         if (nfcAdapter == null) return;
 
@@ -76,4 +166,4 @@ public class NfcHelper {
         Intent intent = new Intent(Settings.ACTION_NFC_SETTINGS);
         activity.startActivity(intent);
     }
-}
\ No newline at end of file
+}
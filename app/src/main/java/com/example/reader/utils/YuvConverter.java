@@ -0,0 +1,174 @@
+package com.example.reader.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.util.Log;
+
+import androidx.camera.core.ImageProxy;
+
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts YUV_420_888 camera frames to RGBA with OpenCV.
+ *
+ * The planes are wrapped as Mats directly over the ImageProxy buffers, honouring
+ * row and pixel strides, and converted natively: interleaved chroma (what nearly
+ * every device delivers) goes through cvtColorTwoPlane with no copy, planar
+ * chroma is packed once into an I420 buffer. Rotation is done on the Mat.
+ *
+ * Output Mats and the Bitmap are pooled and reused while the frame size stays
+ * the same, so a result is only valid until the next call and must not be
+ * recycled by the caller. Not thread-safe; keep one per analyzer thread.
+ */
+public class YuvConverter {
+    private static final String TAG = "YuvConverter";
+
+    private final Mat rgba = new Mat();
+    private final Mat rotated = new Mat();
+    private Mat i420;
+    private byte[] i420Bytes;
+    private Bitmap bitmap;
+
+    /**
+     * Convert and rotate a frame
+     *
+     * @return pooled RGBA Mat, or null if the frame is not YUV_420_888
+     */
+    public Mat toRgba(ImageProxy imageProxy, int rotationDegrees) {
+        if (imageProxy.getFormat() != ImageFormat.YUV_420_888 || imageProxy.getPlanes().length < 3) {
+            Log.e(TAG, "❌ Unsupported frame: format " + imageProxy.getFormat() +
+                    ", planes " + imageProxy.getPlanes().length);
+            return null;
+        }
+
+        convert(imageProxy);
+        return rotate(rotationDegrees);
+    }
+
+    /**
+     * Convert and rotate a frame into the pooled Bitmap
+     *
+     * @return pooled Bitmap, or null if the frame is not YUV_420_888
+     */
+    public Bitmap toBitmap(ImageProxy imageProxy, int rotationDegrees) {
+        Mat mat = toRgba(imageProxy, rotationDegrees);
+        if (mat == null) {
+            return null;
+        }
+
+        if (bitmap == null || bitmap.isRecycled() ||
+                bitmap.getWidth() != mat.cols() || bitmap.getHeight() != mat.rows()) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            bitmap = Bitmap.createBitmap(mat.cols(), mat.rows(), Bitmap.Config.ARGB_8888);
+            Log.d(TAG, "🖼️ Output bitmap allocated: " + mat.cols() + "x" + mat.rows());
+        }
+
+        Utils.matToBitmap(mat, bitmap);
+        return bitmap;
+    }
+
+    private void convert(ImageProxy imageProxy) {
+        ImageProxy.PlaneProxy[] planes = imageProxy.getPlanes();
+        int width = imageProxy.getWidth();
+        int height = imageProxy.getHeight();
+
+        if (planes[1].getPixelStride() == 2) {
+            // Interleaved chroma: the U and V planes are two views of one NV12/NV21 buffer
+            Mat y = new Mat(height, width, CvType.CV_8UC1, planes[0].getBuffer(), planes[0].getRowStride());
+            Mat u = new Mat(height / 2, width / 2, CvType.CV_8UC2, planes[1].getBuffer(), planes[1].getRowStride());
+            Mat v = new Mat(height / 2, width / 2, CvType.CV_8UC2, planes[2].getBuffer(), planes[2].getRowStride());
+            try {
+                if (v.dataAddr() - u.dataAddr() > 0) {
+                    Imgproc.cvtColorTwoPlane(y, u, rgba, Imgproc.COLOR_YUV2RGBA_NV12);
+                } else {
+                    Imgproc.cvtColorTwoPlane(y, v, rgba, Imgproc.COLOR_YUV2RGBA_NV21);
+                }
+            } finally {
+                y.release();
+                u.release();
+                v.release();
+            }
+        } else {
+            packI420(planes, width, height);
+            Imgproc.cvtColor(i420, rgba, Imgproc.COLOR_YUV2RGBA_I420);
+        }
+    }
+
+    /**
+     * Copy planar frames into a contiguous I420 buffer, row by row
+     */
+    private void packI420(ImageProxy.PlaneProxy[] planes, int width, int height) {
+        int size = width * height * 3 / 2;
+        if (i420Bytes == null || i420Bytes.length != size) {
+            i420Bytes = new byte[size];
+            if (i420 != null) {
+                i420.release();
+            }
+            i420 = new Mat(height * 3 / 2, width, CvType.CV_8UC1);
+        }
+
+        int offset = copyPlane(planes[0], width, height, i420Bytes, 0);
+        offset = copyPlane(planes[1], width / 2, height / 2, i420Bytes, offset);
+        copyPlane(planes[2], width / 2, height / 2, i420Bytes, offset);
+        i420.put(0, 0, i420Bytes);
+    }
+
+    private static int copyPlane(ImageProxy.PlaneProxy plane, int width, int height, byte[] out, int offset) {
+        // Duplicate so ML Kit still sees the buffer positions it expects
+        ByteBuffer buffer = plane.getBuffer().duplicate();
+        int rowStride = plane.getRowStride();
+        int pixelStride = plane.getPixelStride();
+
+        for (int row = 0; row < height; row++) {
+            int rowStart = row * rowStride;
+            if (pixelStride == 1) {
+                buffer.position(rowStart);
+                buffer.get(out, offset, width);
+                offset += width;
+            } else {
+                for (int col = 0; col < width; col++) {
+                    out[offset++] = buffer.get(rowStart + col * pixelStride);
+                }
+            }
+        }
+        return offset;
+    }
+
+    private Mat rotate(int rotationDegrees) {
+        switch (rotationDegrees) {
+            case 90:
+                Core.rotate(rgba, rotated, Core.ROTATE_90_CLOCKWISE);
+                return rotated;
+            case 180:
+                Core.rotate(rgba, rotated, Core.ROTATE_180);
+                return rotated;
+            case 270:
+                Core.rotate(rgba, rotated, Core.ROTATE_90_COUNTERCLOCKWISE);
+                return rotated;
+            default:
+                return rgba;
+        }
+    }
+
+    public void release() {
+        rgba.release();
+        rotated.release();
+        if (i420 != null) {
+            i420.release();
+            i420 = null;
+        }
+        i420Bytes = null;
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.reader.simulator;
+
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.macs.CMac;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Chip-side key derivation, padding and MAC primitives from ICAO 9303 part 11
+ */
+final class ChipCrypto {
+
+    static final int KDF_ENC = 1;
+    static final int KDF_MAC = 2;
+    static final int KDF_PACE = 3;
+
+    private ChipCrypto() {}
+
+    /**
+     * MRZ information used as BAC / PACE-MRZ key material: document number, date of
+     * birth and date of expiry, each followed by its check digit
+     */
+    static byte[] mrzInformation(String documentNumber, String dateOfBirth, String dateOfExpiry) {
+        StringBuilder number = new StringBuilder(documentNumber);
+        while (number.length() < 9) {
+            number.append('<');
+        }
+        String info = number.toString() + checkDigit(number.toString())
+                + dateOfBirth + checkDigit(dateOfBirth)
+                + dateOfExpiry + checkDigit(dateOfExpiry);
+        return info.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static char checkDigit(String field) {
+        int[] weights = {7, 3, 1};
+        int sum = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            int value;
+            if (c >= '0' && c <= '9') {
+                value = c - '0';
+            } else if (c >= 'A' && c <= 'Z') {
+                value = c - 'A' + 10;
+            } else {
+                value = 0;
+            }
+            sum += value * weights[i % 3];
+        }
+        return (char) ('0' + sum % 10);
+    }
+
+    static byte[] sha1(byte[]... parts) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        for (byte[] part : parts) {
+            digest.update(part);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * KDF(K, c) = H(K || c) truncated to the key length (16 bytes for 3DES two-key and AES-128)
+     */
+    static byte[] kdf(byte[] keySeed, int counter) throws Exception {
+        byte[] c = {0, 0, 0, (byte) counter};
+        return Arrays.copyOf(sha1(keySeed, c), 16);
+    }
+
+    /**
+     * Two-key 3DES as a 24-byte JCE key (K1 || K2 || K1)
+     */
+    static SecretKeySpec desedeKey(byte[] key16) {
+        byte[] key24 = new byte[24];
+        System.arraycopy(key16, 0, key24, 0, 16);
+        System.arraycopy(key16, 0, key24, 16, 8);
+        return new SecretKeySpec(key24, "DESede");
+    }
+
+    static SecretKeySpec aesKey(byte[] key16) {
+        return new SecretKeySpec(key16, "AES");
+    }
+
+    /**
+     * ISO/IEC 9797-1 padding method 2
+     */
+    static byte[] pad(byte[] data, int blockSize) {
+        int paddedLength = (data.length / blockSize + 1) * blockSize;
+        byte[] padded = Arrays.copyOf(data, paddedLength);
+        padded[data.length] = (byte) 0x80;
+        return padded;
+    }
+
+    static byte[] unpad(byte[] data) {
+        int i = data.length - 1;
+        while (i >= 0 && data[i] == 0x00) {
+            i--;
+        }
+        if (i < 0 || data[i] != (byte) 0x80) {
+            throw new IllegalArgumentException("Bad padding");
+        }
+        return Arrays.copyOf(data, i);
+    }
+
+    static byte[] desedeCbc(int mode, byte[] key16, byte[] data) throws Exception {
+        Cipher cipher = Cipher.getInstance("DESede/CBC/NoPadding");
+        cipher.init(mode, desedeKey(key16), new IvParameterSpec(new byte[8]));
+        return cipher.doFinal(data);
+    }
+
+    static byte[] aesCbc(int mode, byte[] key16, byte[] iv, byte[] data) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        cipher.init(mode, aesKey(key16), new IvParameterSpec(iv));
+        return cipher.doFinal(data);
+    }
+
+    static byte[] aesEcb(byte[] key16, byte[] block) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, aesKey(key16));
+        return cipher.doFinal(block);
+    }
+
+    /**
+     * ISO/IEC 9797-1 MAC algorithm 3 (retail MAC) over already padded data
+     */
+    static byte[] retailMac(byte[] key16, byte[] paddedData) throws Exception {
+        byte[] k1 = Arrays.copyOfRange(key16, 0, 8);
+        byte[] k2 = Arrays.copyOfRange(key16, 8, 16);
+
+        Cipher des = Cipher.getInstance("DES/CBC/NoPadding");
+        des.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(k1, "DES"), new IvParameterSpec(new byte[8]));
+        byte[] cbc = des.doFinal(paddedData);
+        byte[] last = Arrays.copyOfRange(cbc, cbc.length - 8, cbc.length);
+
+        Cipher ecb = Cipher.getInstance("DES/ECB/NoPadding");
+        ecb.init(Cipher.DECRYPT_MODE, new SecretKeySpec(k2, "DES"));
+        last = ecb.doFinal(last);
+        ecb.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(k1, "DES"));
+        return ecb.doFinal(last);
+    }
+
+    /**
+     * AES-CMAC truncated to 8 bytes
+     */
+    static byte[] cmac8(byte[] key16, byte[] data) {
+        CMac mac = new CMac(new AESEngine(), 128);
+        mac.init(new KeyParameter(key16));
+        mac.update(data, 0, data.length);
+        byte[] out = new byte[mac.getMacSize()];
+        mac.doFinal(out, 0);
+        return Arrays.copyOf(out, 8);
+    }
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * BER-TLV with a definite length
+     */
+    static byte[] tlv(int tag, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (tag > 0xFF) {
+            out.write(tag >> 8);
+        }
+        out.write(tag & 0xFF);
+        int length = value.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length <= 0xFF) {
+            out.write(0x81);
+            out.write(length);
+        } else {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length & 0xFF);
+        }
+        out.write(value, 0, value.length);
+        return out.toByteArray();
+    }
+}
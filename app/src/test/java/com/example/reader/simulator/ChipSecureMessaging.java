@@ -0,0 +1,186 @@
+package com.example.reader.simulator;
+
+import net.sf.scuba.smartcards.CommandAPDU;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+
+/**
+ * Chip side of ICAO 9303 secure messaging (3DES after BAC, AES after PACE).
+ *
+ * Commands arrive as [DO85/DO87] [DO97] DO8E and are checked and decrypted;
+ * responses leave as [DO87] DO99 DO8E.
+ */
+final class ChipSecureMessaging {
+
+    /**
+     * The protected command did not verify; the chip answers 6988 and drops the session
+     */
+    static final class SecureMessagingException extends Exception {
+        SecureMessagingException(String message) {
+            super(message);
+        }
+    }
+
+    private final boolean aes;
+    private final byte[] ksEnc;
+    private final byte[] ksMac;
+    private final byte[] ssc;
+
+    private ChipSecureMessaging(boolean aes, byte[] ksEnc, byte[] ksMac, byte[] ssc) {
+        this.aes = aes;
+        this.ksEnc = ksEnc;
+        this.ksMac = ksMac;
+        this.ssc = ssc;
+    }
+
+    static ChipSecureMessaging desede(byte[] ksEnc, byte[] ksMac, byte[] ssc8) {
+        return new ChipSecureMessaging(false, ksEnc, ksMac, ssc8.clone());
+    }
+
+    static ChipSecureMessaging aes(byte[] ksEnc, byte[] ksMac) {
+        return new ChipSecureMessaging(true, ksEnc, ksMac, new byte[16]);
+    }
+
+    private int blockSize() {
+        return aes ? 16 : 8;
+    }
+
+    /**
+     * Verify and decrypt a protected command
+     */
+    CommandAPDU unwrap(CommandAPDU apdu) throws Exception {
+        incrementSsc();
+
+        byte[] data = apdu.getData();
+        byte[] cryptogramObject = null;
+        boolean cryptogramHasIndicator = false;
+        byte[] leObject = null;
+        byte[] mac = null;
+
+        int i = 0;
+        while (i < data.length) {
+            int start = i;
+            int tag = data[i++] & 0xFF;
+            int length = data[i++] & 0xFF;
+            if (length == 0x81) {
+                length = data[i++] & 0xFF;
+            } else if (length == 0x82) {
+                length = ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+                i += 2;
+            }
+            byte[] value = Arrays.copyOfRange(data, i, i + length);
+            i += length;
+
+            switch (tag) {
+                case 0x85:
+                case 0x87:
+                    cryptogramObject = Arrays.copyOfRange(data, start, i);
+                    cryptogramHasIndicator = tag == 0x87;
+                    break;
+                case 0x97:
+                    leObject = Arrays.copyOfRange(data, start, i);
+                    break;
+                case 0x8E:
+                    mac = value;
+                    break;
+                default:
+                    throw new SecureMessagingException(String.format("Unexpected DO %02X", tag));
+            }
+        }
+
+        if (mac == null) {
+            throw new SecureMessagingException("DO8E missing");
+        }
+
+        byte[] header = {(byte) apdu.getCLA(), (byte) apdu.getINS(), (byte) apdu.getP1(), (byte) apdu.getP2()};
+        ByteArrayOutputStream macInput = new ByteArrayOutputStream();
+        macInput.write(ssc, 0, ssc.length);
+        byte[] paddedHeader = ChipCrypto.pad(header, blockSize());
+        macInput.write(paddedHeader, 0, paddedHeader.length);
+        if (cryptogramObject != null) macInput.write(cryptogramObject, 0, cryptogramObject.length);
+        if (leObject != null) macInput.write(leObject, 0, leObject.length);
+
+        if (!MessageDigest.isEqual(mac, computeMac(macInput.toByteArray()))) {
+            throw new SecureMessagingException("Command MAC mismatch");
+        }
+
+        byte[] plainData = null;
+        if (cryptogramObject != null) {
+            int valueStart = valueOffset(cryptogramObject) + (cryptogramHasIndicator ? 1 : 0);
+            byte[] cryptogram = Arrays.copyOfRange(cryptogramObject, valueStart, cryptogramObject.length);
+            plainData = ChipCrypto.unpad(crypt(Cipher.DECRYPT_MODE, cryptogram));
+        }
+
+        int ne = 0;
+        if (leObject != null) {
+            byte[] le = Arrays.copyOfRange(leObject, 2, leObject.length);
+            if (le.length == 1) {
+                ne = le[0] == 0 ? 256 : le[0] & 0xFF;
+            } else {
+                int value = ((le[0] & 0xFF) << 8) | (le[1] & 0xFF);
+                ne = value == 0 ? 65536 : value;
+            }
+        }
+
+        int cla = apdu.getCLA() & ~0x0C;
+        if (plainData != null && plainData.length > 0) {
+            return ne > 0
+                    ? new CommandAPDU(cla, apdu.getINS(), apdu.getP1(), apdu.getP2(), plainData, ne)
+                    : new CommandAPDU(cla, apdu.getINS(), apdu.getP1(), apdu.getP2(), plainData);
+        }
+        return ne > 0
+                ? new CommandAPDU(cla, apdu.getINS(), apdu.getP1(), apdu.getP2(), ne)
+                : new CommandAPDU(cla, apdu.getINS(), apdu.getP1(), apdu.getP2());
+    }
+
+    /**
+     * Protect response data and status word
+     */
+    byte[] wrap(byte[] data, int sw) throws Exception {
+        incrementSsc();
+
+        byte[] do87 = new byte[0];
+        if (data != null && data.length > 0) {
+            byte[] cryptogram = crypt(Cipher.ENCRYPT_MODE, ChipCrypto.pad(data, blockSize()));
+            do87 = ChipCrypto.tlv(0x87, ChipCrypto.concat(new byte[]{0x01}, cryptogram));
+        }
+        byte[] do99 = ChipCrypto.tlv(0x99, new byte[]{(byte) (sw >> 8), (byte) sw});
+        byte[] mac = computeMac(ChipCrypto.concat(ssc, do87, do99));
+        byte[] do8e = ChipCrypto.tlv(0x8E, mac);
+
+        return ChipCrypto.concat(do87, do99, do8e, new byte[]{(byte) (sw >> 8), (byte) sw});
+    }
+
+    private byte[] computeMac(byte[] unpadded) throws Exception {
+        byte[] padded = ChipCrypto.pad(unpadded, blockSize());
+        return aes ? ChipCrypto.cmac8(ksMac, padded) : ChipCrypto.retailMac(ksMac, padded);
+    }
+
+    private byte[] crypt(int mode, byte[] data) throws Exception {
+        if (aes) {
+            byte[] iv = ChipCrypto.aesEcb(ksEnc, ssc);
+            return ChipCrypto.aesCbc(mode, ksEnc, iv, data);
+        }
+        return ChipCrypto.desedeCbc(mode, ksEnc, data);
+    }
+
+    private void incrementSsc() {
+        for (int i = ssc.length - 1; i >= 0; i--) {
+            ssc[i]++;
+            if (ssc[i] != 0) {
+                break;
+            }
+        }
+    }
+
+    private static int valueOffset(byte[] tlv) {
+        int lengthByte = tlv[1] & 0xFF;
+        if (lengthByte == 0x81) return 3;
+        if (lengthByte == 0x82) return 4;
+        return 2;
+    }
+}
@@ -0,0 +1,788 @@
+package com.example.reader.simulator;
+
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+import net.sf.scuba.smartcards.CommandAPDU;
+import net.sf.scuba.smartcards.ResponseAPDU;
+
+import org.jmrtd.PassportService;
+import org.jmrtd.lds.CardAccessFile;
+import org.jmrtd.lds.PACEInfo;
+import org.jmrtd.lds.SecurityInfo;
+import org.spongycastle.asn1.x9.ECNamedCurveTable;
+import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.math.ec.ECPoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+
+/**
+ * Software eMRTD chip behind the CardService abstraction, for running the readers
+ * on the host JVM without a document.
+ *
+ * Implements SELECT (AID, FID, MF), READ BINARY (B0 with short EF or current file,
+ * B1 with offset DO54) with short and extended length, BAC, PACE-MRZ with
+ * ECDH generic mapping and AES-128, and 3DES/AES secure messaging. The LDS content
+ * is whatever set of files the builder was given. Per-APDU latency, maximum
+ * transceive length and extended-length support are configurable, so the cost of
+ * a read strategy can be measured in APDUs and simulated transfer time.
+ */
+public class SimulatedChip extends CardService {
+
+    public static final String PACE_ECDH_GM_AES_128 = PACEInfo.ID_PACE_ECDH_GM_AES_CBC_CMAC_128;
+
+    /** Standardized domain parameters: 12 = NIST P-256, 13 = brainpoolP256r1 */
+    public static final int PARAM_ID_NIST_P256 = 12;
+    public static final int PARAM_ID_BRAINPOOL_P256R1 = 13;
+
+    private static final byte[] EMRTD_AID = {
+            (byte) 0xA0, 0x00, 0x00, 0x02, 0x47, 0x10, 0x01
+    };
+    private static final short FID_MF = 0x3F00;
+
+    private static final int SW_OK = 0x9000;
+
+    /**
+     * Thrown once the simulated tag has left the field
+     */
+    public static class SimulatedTagLostException extends CardServiceException {
+        SimulatedTagLostException() {
+            super("Tag was lost");
+        }
+    }
+
+    private final Map<Short, byte[]> files;
+    private final byte[] mrzInformation;
+    private final boolean bacEnabled;
+    private final boolean paceEnabled;
+    private final int paceParameterId;
+    private final long latencyMicros;
+    private final long microsPerByte;
+    private final int maxTransceiveLength;
+    private final boolean extendedLengthSupported;
+    private final int ioBufferSize;
+    private final byte[] historicalBytes;
+    private final SecureRandom random;
+
+    private int loseTagAfterApdus;
+    private boolean tagLost;
+    private boolean open;
+
+    // Session state
+    private boolean appletSelected;
+    private Short selectedFile;
+    private ChipSecureMessaging secureMessaging;
+    private ChipSecureMessaging pendingSecureMessaging;
+    private byte[] bacChallenge;
+    private PaceState pace;
+
+    // Statistics
+    private int apduCount;
+    private long bytesOut;
+    private long bytesIn;
+    private long simulatedMicros;
+
+    private SimulatedChip(Builder builder) throws Exception {
+        this.files = new LinkedHashMap<>(builder.files);
+        this.mrzInformation = ChipCrypto.mrzInformation(
+                builder.documentNumber, builder.dateOfBirth, builder.dateOfExpiry);
+        this.bacEnabled = builder.bacEnabled;
+        this.paceEnabled = builder.paceEnabled;
+        this.paceParameterId = builder.paceParameterId;
+        this.latencyMicros = builder.latencyMicros;
+        this.microsPerByte = builder.microsPerByte;
+        this.maxTransceiveLength = builder.maxTransceiveLength;
+        this.extendedLengthSupported = builder.extendedLengthSupported;
+        this.ioBufferSize = builder.ioBufferSize;
+        this.loseTagAfterApdus = builder.loseTagAfterApdus;
+        this.random = builder.random != null ? builder.random : new SecureRandom();
+
+        if (builder.historicalBytes != null) {
+            this.historicalBytes = builder.historicalBytes;
+        } else {
+            // Compact-TLV card capabilities; third byte b7 = extended Lc/Le
+            this.historicalBytes = new byte[]{
+                    (byte) 0x80, 0x73, 0x00, 0x00, (byte) (extendedLengthSupported ? 0x40 : 0x00)
+            };
+        }
+
+        if (paceEnabled && !files.containsKey(PassportService.EF_CARD_ACCESS)) {
+            PACEInfo paceInfo = new PACEInfo(PACE_ECDH_GM_AES_128, 2, paceParameterId);
+            CardAccessFile cardAccess = new CardAccessFile(Collections.<SecurityInfo>singleton(paceInfo));
+            files.put(PassportService.EF_CARD_ACCESS, cardAccess.getEncoded());
+        }
+    }
+
+    // ========== CardService ==========
+
+    @Override
+    public void open() throws CardServiceException {
+        if (tagLost) {
+            throw new SimulatedTagLostException();
+        }
+        open = true;
+        resetSession();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        resetSession();
+    }
+
+    @Override
+    public byte[] getATR() {
+        return historicalBytes.clone();
+    }
+
+    @Override
+    public boolean isConnectionLost(Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SimulatedTagLostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public ResponseAPDU transmit(CommandAPDU apdu) throws CardServiceException {
+        if (tagLost) {
+            throw new SimulatedTagLostException();
+        }
+        if (!open) {
+            throw new CardServiceException("Card service not open");
+        }
+
+        apduCount++;
+        if (loseTagAfterApdus >= 0 && apduCount > loseTagAfterApdus) {
+            tagLost = true;
+            open = false;
+            throw new SimulatedTagLostException();
+        }
+
+        byte[] command = apdu.getBytes();
+        if (command.length > maxTransceiveLength) {
+            throw transceiveRefused("Command of " + command.length
+                    + " bytes exceeds max transceive length " + maxTransceiveLength);
+        }
+
+        byte[] response;
+        if (isExtendedEncoding(command) && !extendedLengthSupported) {
+            response = statusWord(0x6700);
+        } else {
+            try {
+                response = process(apdu);
+            } catch (Exception e) {
+                response = statusWord(0x6F00);
+            }
+        }
+
+        if (response.length > maxTransceiveLength) {
+            throw transceiveRefused("Response of " + response.length
+                    + " bytes exceeds max transceive length " + maxTransceiveLength);
+        }
+
+        bytesOut += command.length;
+        bytesIn += response.length;
+        simulateLatency(command.length + response.length);
+
+        return new ResponseAPDU(response);
+    }
+
+    /**
+     * What the Android card service throws when IsoDep.transceive refuses an APDU
+     */
+    private static CardServiceException transceiveRefused(String message) {
+        return new CardServiceException(message, new IOException("Transceive length exceeds supported maximum"));
+    }
+
+    // ========== Statistics and fault injection ==========
+
+    public int getApduCount() {
+        return apduCount;
+    }
+
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * Transfer time the chip and link would have taken, in microseconds
+     */
+    public long getSimulatedMicros() {
+        return simulatedMicros;
+    }
+
+    public void resetStatistics() {
+        apduCount = 0;
+        bytesOut = 0;
+        bytesIn = 0;
+        simulatedMicros = 0;
+    }
+
+    public boolean isExtendedLengthSupported() {
+        return extendedLengthSupported;
+    }
+
+    public int getMaxTransceiveLength() {
+        return maxTransceiveLength;
+    }
+
+    public byte[] getHistoricalBytes() {
+        return historicalBytes.clone();
+    }
+
+    /**
+     * Drop the tag after the given number of further APDUs (-1 disables)
+     */
+    public void loseTagAfter(int apdus) {
+        loseTagAfterApdus = apdus < 0 ? -1 : apduCount + apdus;
+    }
+
+    /**
+     * Bring a lost tag back into the field
+     */
+    public void presentAgain() {
+        tagLost = false;
+        loseTagAfterApdus = -1;
+        resetSession();
+    }
+
+    // ========== APDU processing ==========
+
+    private byte[] process(CommandAPDU apdu) throws Exception {
+        boolean isProtected = (apdu.getCLA() & 0x0C) == 0x0C;
+
+        if (isProtected) {
+            if (secureMessaging == null) {
+                return statusWord(0x6988);
+            }
+            CommandAPDU plain;
+            try {
+                plain = secureMessaging.unwrap(apdu);
+            } catch (Exception e) {
+                secureMessaging = null;
+                return statusWord(0x6988);
+            }
+            Response response = dispatch(plain);
+            return secureMessaging.wrap(response.data, response.sw);
+        }
+
+        // A plain command ends any secure messaging session; a completed BAC or PACE starts a new one
+        secureMessaging = null;
+        Response response = dispatch(apdu);
+        if (pendingSecureMessaging != null) {
+            secureMessaging = pendingSecureMessaging;
+            pendingSecureMessaging = null;
+        }
+        return ChipCrypto.concat(response.data, statusWord(response.sw));
+    }
+
+    private Response dispatch(CommandAPDU apdu) throws Exception {
+        switch (apdu.getINS()) {
+            case 0xA4: return select(apdu);
+            case 0xB0: return readBinary(apdu);
+            case 0xB1: return readBinaryOddIns(apdu);
+            case 0x84: return getChallenge(apdu);
+            case 0x82: return externalAuthenticate(apdu);
+            case 0x22: return manageSecurityEnvironment(apdu);
+            case 0x86: return generalAuthenticate(apdu);
+            default:   return new Response(0x6D00);
+        }
+    }
+
+    private Response select(CommandAPDU apdu) {
+        byte[] data = apdu.getData();
+
+        if (apdu.getP1() == 0x04) {
+            if (Arrays.equals(data, EMRTD_AID)) {
+                appletSelected = true;
+                selectedFile = null;
+                return new Response(SW_OK);
+            }
+            return new Response(0x6A82);
+        }
+
+        if (data.length < 2) {
+            return new Response(0x6A80);
+        }
+        short fid = (short) (((data[data.length - 2] & 0xFF) << 8) | (data[data.length - 1] & 0xFF));
+        if (fid == FID_MF) {
+            appletSelected = false;
+            selectedFile = null;
+            return new Response(SW_OK);
+        }
+        if (!files.containsKey(fid)) {
+            return new Response(0x6A82);
+        }
+        selectedFile = fid;
+        return new Response(SW_OK);
+    }
+
+    private Response readBinary(CommandAPDU apdu) {
+        int p1 = apdu.getP1();
+        int offset;
+        Short fid;
+
+        if ((p1 & 0x80) != 0) {
+            fid = fidForShortEf(p1 & 0x1F);
+            if (fid == null) {
+                return new Response(0x6A82);
+            }
+            selectedFile = fid;
+            offset = apdu.getP2();
+        } else {
+            fid = selectedFile;
+            offset = ((p1 & 0x7F) << 8) | apdu.getP2();
+        }
+
+        return readFile(fid, offset, apdu.getNe(), false);
+    }
+
+    private Response readBinaryOddIns(CommandAPDU apdu) {
+        Short fid = selectedFile;
+        int fileId = (apdu.getP1() << 8) | apdu.getP2();
+        if (fileId != 0) {
+            fid = (short) fileId;
+            selectedFile = fid;
+        }
+
+        byte[] data = apdu.getData();
+        if (data.length < 3 || data[0] != 0x54) {
+            return new Response(0x6A80);
+        }
+        int offset = 0;
+        for (int i = 2; i < 2 + (data[1] & 0xFF); i++) {
+            offset = (offset << 8) | (data[i] & 0xFF);
+        }
+
+        return readFile(fid, offset, apdu.getNe(), true);
+    }
+
+    private Response readFile(Short fid, int offset, int ne, boolean wrapInDo53) {
+        if (fid == null) {
+            return new Response(0x6986);
+        }
+        byte[] contents = files.get(fid);
+        if (contents == null) {
+            return new Response(0x6A82);
+        }
+        if (secureMessaging == null && fid != PassportService.EF_CARD_ACCESS && (bacEnabled || paceEnabled)) {
+            return new Response(0x6982);
+        }
+        if (ne > ioBufferSize) {
+            return new Response(0x6700);
+        }
+        if (offset > contents.length) {
+            return new Response(0x6B00);
+        }
+
+        int length = Math.min(ne == 0 ? 256 : ne, contents.length - offset);
+        byte[] data = Arrays.copyOfRange(contents, offset, offset + length);
+        if (wrapInDo53) {
+            data = ChipCrypto.tlv(0x53, data);
+        }
+        return new Response(data, SW_OK);
+    }
+
+    private Short fidForShortEf(int sfi) {
+        for (Short fid : files.keySet()) {
+            if ((fid & 0x1F) == sfi && (fid & 0xFF00) == 0x0100) {
+                return fid;
+            }
+        }
+        return null;
+    }
+
+    // ========== BAC ==========
+
+    private Response getChallenge(CommandAPDU apdu) {
+        if (!bacEnabled) {
+            return new Response(0x6D00);
+        }
+        bacChallenge = new byte[8];
+        random.nextBytes(bacChallenge);
+        return new Response(bacChallenge.clone(), SW_OK);
+    }
+
+    private Response externalAuthenticate(CommandAPDU apdu) throws Exception {
+        byte[] data = apdu.getData();
+        if (!bacEnabled || bacChallenge == null || data.length != 40) {
+            return new Response(0x6985);
+        }
+
+        byte[] keySeed = Arrays.copyOf(ChipCrypto.sha1(mrzInformation), 16);
+        byte[] kEnc = ChipCrypto.kdf(keySeed, ChipCrypto.KDF_ENC);
+        byte[] kMac = ChipCrypto.kdf(keySeed, ChipCrypto.KDF_MAC);
+
+        byte[] eIfd = Arrays.copyOfRange(data, 0, 32);
+        byte[] mIfd = Arrays.copyOfRange(data, 32, 40);
+        if (!Arrays.equals(mIfd, ChipCrypto.retailMac(kMac, ChipCrypto.pad(eIfd, 8)))) {
+            bacChallenge = null;
+            return new Response(0x6300);
+        }
+
+        byte[] s = ChipCrypto.desedeCbc(Cipher.DECRYPT_MODE, kEnc, eIfd);
+        byte[] rndIfd = Arrays.copyOfRange(s, 0, 8);
+        byte[] rndIc = Arrays.copyOfRange(s, 8, 16);
+        byte[] kIfd = Arrays.copyOfRange(s, 16, 32);
+        if (!Arrays.equals(rndIc, bacChallenge)) {
+            bacChallenge = null;
+            return new Response(0x6300);
+        }
+
+        byte[] kIc = new byte[16];
+        random.nextBytes(kIc);
+        byte[] eIc = ChipCrypto.desedeCbc(Cipher.ENCRYPT_MODE, kEnc, ChipCrypto.concat(rndIc, rndIfd, kIc));
+        byte[] mIc = ChipCrypto.retailMac(kMac, ChipCrypto.pad(eIc, 8));
+
+        byte[] sessionSeed = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            sessionSeed[i] = (byte) (kIfd[i] ^ kIc[i]);
+        }
+        byte[] ssc = ChipCrypto.concat(Arrays.copyOfRange(rndIc, 4, 8), Arrays.copyOfRange(rndIfd, 4, 8));
+
+        // The response itself is still plain; secure messaging starts with the next command
+        pendingSecureMessaging = ChipSecureMessaging.desede(
+                ChipCrypto.kdf(sessionSeed, ChipCrypto.KDF_ENC),
+                ChipCrypto.kdf(sessionSeed, ChipCrypto.KDF_MAC),
+                ssc);
+        bacChallenge = null;
+        return new Response(ChipCrypto.concat(eIc, mIc), SW_OK);
+    }
+
+    // ========== PACE ==========
+
+    private static final class PaceState {
+        final X9ECParameters curve;
+        int step = 1;
+        BigInteger nonce;
+        ECPoint mappedGenerator;
+        ECPoint terminalPublicKey;
+        ECPoint chipPublicKey;
+        byte[] ksEnc;
+        byte[] ksMac;
+
+        PaceState(X9ECParameters curve) {
+            this.curve = curve;
+        }
+    }
+
+    private Response manageSecurityEnvironment(CommandAPDU apdu) {
+        if (apdu.getP1() != 0xC1 || apdu.getP2() != 0xA4 || !paceEnabled) {
+            return new Response(0x6A80);
+        }
+
+        Map<Integer, byte[]> objects = parseTlvs(apdu.getData());
+        byte[] oid = objects.get(0x80);
+        if (oid == null || !Arrays.equals(oid, encodeOid(PACE_ECDH_GM_AES_128))) {
+            return new Response(0x6A80);
+        }
+        byte[] keyReference = objects.get(0x83);
+        if (keyReference == null || keyReference.length != 1 || keyReference[0] != 0x01) {
+            return new Response(0x6A88);   // Only the MRZ password is supported
+        }
+
+        pace = new PaceState(ECNamedCurveTable.getByName(curveName(paceParameterId)));
+        return new Response(SW_OK);
+    }
+
+    private Response generalAuthenticate(CommandAPDU apdu) throws Exception {
+        if (pace == null) {
+            return new Response(0x6985);
+        }
+
+        byte[] data = apdu.getData();
+        if (data.length < 2 || data[0] != 0x7C) {
+            pace = null;
+            return new Response(0x6A80);
+        }
+        Map<Integer, byte[]> objects = parseTlvs(parseTlvs(data).get(0x7C));
+        X9ECParameters curve = pace.curve;
+
+        switch (pace.step) {
+            case 1: {
+                // Encrypted nonce
+                byte[] s = new byte[16];
+                random.nextBytes(s);
+                pace.nonce = new BigInteger(1, s);
+
+                byte[] kPi = ChipCrypto.kdf(ChipCrypto.sha1(mrzInformation), ChipCrypto.KDF_PACE);
+                byte[] z = ChipCrypto.aesCbc(Cipher.ENCRYPT_MODE, kPi, new byte[16], s);
+                pace.step = 2;
+                return dynamicAuthenticationData(0x80, z);
+            }
+            case 2: {
+                // Generic mapping: G' = s*G + SK_map_IC * PK_map_PCD
+                ECPoint terminalMapping = curve.getCurve().decodePoint(objects.get(0x81));
+                BigInteger mappingKey = randomScalar(curve.getN());
+                ECPoint chipMapping = curve.getG().multiply(mappingKey).normalize();
+                ECPoint h = terminalMapping.multiply(mappingKey);
+                pace.mappedGenerator = curve.getG().multiply(pace.nonce).add(h).normalize();
+                pace.step = 3;
+                return dynamicAuthenticationData(0x82, chipMapping.getEncoded(false));
+            }
+            case 3: {
+                // Key agreement on the mapped generator
+                pace.terminalPublicKey = curve.getCurve().decodePoint(objects.get(0x83)).normalize();
+                BigInteger privateKey = randomScalar(curve.getN());
+                pace.chipPublicKey = pace.mappedGenerator.multiply(privateKey).normalize();
+
+                byte[] sharedSecret = pace.terminalPublicKey.multiply(privateKey).normalize()
+                        .getAffineXCoord().getEncoded();
+                pace.ksEnc = ChipCrypto.kdf(sharedSecret, ChipCrypto.KDF_ENC);
+                pace.ksMac = ChipCrypto.kdf(sharedSecret, ChipCrypto.KDF_MAC);
+                pace.step = 4;
+                return dynamicAuthenticationData(0x84, pace.chipPublicKey.getEncoded(false));
+            }
+            case 4: {
+                // Mutual authentication tokens
+                byte[] expected = ChipCrypto.cmac8(pace.ksMac, publicKeyDataObject(pace.chipPublicKey));
+                if (!Arrays.equals(expected, objects.get(0x85))) {
+                    pace = null;
+                    return new Response(0x6300);
+                }
+                byte[] token = ChipCrypto.cmac8(pace.ksMac, publicKeyDataObject(pace.terminalPublicKey));
+                pendingSecureMessaging = ChipSecureMessaging.aes(pace.ksEnc, pace.ksMac);
+                pace = null;
+                return dynamicAuthenticationData(0x86, token);
+            }
+            default:
+                pace = null;
+                return new Response(0x6985);
+        }
+    }
+
+    private static Response dynamicAuthenticationData(int tag, byte[] value) {
+        return new Response(ChipCrypto.tlv(0x7C, ChipCrypto.tlv(tag, value)), SW_OK);
+    }
+
+    private static byte[] publicKeyDataObject(ECPoint point) {
+        byte[] oid = ChipCrypto.tlv(0x06, encodeOid(PACE_ECDH_GM_AES_128));
+        byte[] key = ChipCrypto.tlv(0x86, point.getEncoded(false));
+        return ChipCrypto.tlv(0x7F49, ChipCrypto.concat(oid, key));
+    }
+
+    private BigInteger randomScalar(BigInteger order) {
+        BigInteger k;
+        do {
+            k = new BigInteger(order.bitLength(), random);
+        } while (k.signum() == 0 || k.compareTo(order) >= 0);
+        return k;
+    }
+
+    private static String curveName(int parameterId) {
+        switch (parameterId) {
+            case PARAM_ID_NIST_P256: return "secp256r1";
+            case PARAM_ID_BRAINPOOL_P256R1: return "brainpoolP256r1";
+            default: throw new IllegalArgumentException("Unsupported PACE parameter ID " + parameterId);
+        }
+    }
+
+    // ========== Helpers ==========
+
+    private void resetSession() {
+        appletSelected = false;
+        selectedFile = null;
+        secureMessaging = null;
+        pendingSecureMessaging = null;
+        bacChallenge = null;
+        pace = null;
+    }
+
+    private void simulateLatency(int bytes) {
+        long micros = latencyMicros + microsPerByte * bytes;
+        simulatedMicros += micros;
+        if (micros > 0) {
+            try {
+                Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean isExtendedEncoding(byte[] command) {
+        return command.length > 5 && command[4] == 0x00;
+    }
+
+    private static byte[] statusWord(int sw) {
+        return new byte[]{(byte) (sw >> 8), (byte) sw};
+    }
+
+    /**
+     * Flat BER-TLV parse of one level (one- and two-byte tags)
+     */
+    private static Map<Integer, byte[]> parseTlvs(byte[] data) {
+        Map<Integer, byte[]> objects = new HashMap<>();
+        if (data == null) {
+            return objects;
+        }
+        int i = 0;
+        while (i < data.length) {
+            int tag = data[i++] & 0xFF;
+            if ((tag & 0x1F) == 0x1F) {
+                tag = (tag << 8) | (data[i++] & 0xFF);
+            }
+            int length = data[i++] & 0xFF;
+            if (length == 0x81) {
+                length = data[i++] & 0xFF;
+            } else if (length == 0x82) {
+                length = ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+                i += 2;
+            }
+            objects.put(tag, Arrays.copyOfRange(data, i, i + length));
+            i += length;
+        }
+        return objects;
+    }
+
+    /**
+     * DER contents octets of a dotted OID
+     */
+    private static byte[] encodeOid(String oid) {
+        String[] arcs = oid.split("\\.");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Integer.parseInt(arcs[0]) * 40 + Integer.parseInt(arcs[1]));
+        for (int i = 2; i < arcs.length; i++) {
+            long arc = Long.parseLong(arcs[i]);
+            int shift = 63 - Long.numberOfLeadingZeros(arc | 1);
+            shift -= shift % 7;
+            for (; shift > 0; shift -= 7) {
+                out.write((int) (0x80 | ((arc >> shift) & 0x7F)));
+            }
+            out.write((int) (arc & 0x7F));
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Response {
+        final byte[] data;
+        final int sw;
+
+        Response(int sw) {
+            this(new byte[0], sw);
+        }
+
+        Response(byte[] data, int sw) {
+            this.data = data;
+            this.sw = sw;
+        }
+    }
+
+    public static class Builder {
+        private final Map<Short, byte[]> files = new LinkedHashMap<>();
+        private String documentNumber;
+        private String dateOfBirth;
+        private String dateOfExpiry;
+        private boolean bacEnabled = true;
+        private boolean paceEnabled = false;
+        private int paceParameterId = PARAM_ID_NIST_P256;
+        private long latencyMicros = 0;
+        private long microsPerByte = 0;
+        private int maxTransceiveLength = 261;
+        private boolean extendedLengthSupported = false;
+        private int ioBufferSize = 65536;
+        private byte[] historicalBytes;
+        private int loseTagAfterApdus = -1;
+        private SecureRandom random;
+
+        /**
+         * BAC/PACE password: document number and dates as YYMMDD
+         */
+        public Builder setMrzKey(String documentNumber, String dateOfBirth, String dateOfExpiry) {
+            this.documentNumber = documentNumber;
+            this.dateOfBirth = dateOfBirth;
+            this.dateOfExpiry = dateOfExpiry;
+            return this;
+        }
+
+        public Builder addFile(short fid, byte[] contents) {
+            files.put(fid, contents);
+            return this;
+        }
+
+        public Builder setBacEnabled(boolean enabled) {
+            this.bacEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Offer PACE-ECDH-GM-AES-128 in EF.CardAccess with the given standardized domain parameters
+         */
+        public Builder enablePace(int parameterId) {
+            curveName(parameterId);
+            this.paceEnabled = true;
+            this.paceParameterId = parameterId;
+            return this;
+        }
+
+        /**
+         * Simulated transfer time: a fixed cost per APDU plus a cost per byte in either direction
+         */
+        public Builder setLatency(long microsPerApdu, long microsPerByte) {
+            this.latencyMicros = microsPerApdu;
+            this.microsPerByte = microsPerByte;
+            return this;
+        }
+
+        public Builder setMaxTransceiveLength(int maxTransceiveLength) {
+            this.maxTransceiveLength = maxTransceiveLength;
+            return this;
+        }
+
+        public Builder setExtendedLengthSupported(boolean supported) {
+            this.extendedLengthSupported = supported;
+            return this;
+        }
+
+        /**
+         * Largest READ BINARY Le the chip accepts; larger requests get 6700
+         */
+        public Builder setIoBufferSize(int ioBufferSize) {
+            this.ioBufferSize = ioBufferSize;
+            return this;
+        }
+
+        public Builder setHistoricalBytes(byte[] historicalBytes) {
+            this.historicalBytes = historicalBytes;
+            return this;
+        }
+
+        public Builder loseTagAfter(int apdus) {
+            this.loseTagAfterApdus = apdus;
+            return this;
+        }
+
+        public Builder setRandom(SecureRandom random) {
+            this.random = random;
+            return this;
+        }
+
+        public SimulatedChip build() throws Exception {
+            if (documentNumber == null || dateOfBirth == null || dateOfExpiry == null) {
+                throw new IllegalStateException("MRZ key is required");
+            }
+            return new SimulatedChip(this);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.reader.simulator;
+
+import com.example.reader.models.DocumentData;
+import com.example.reader.readers.DocumentAuthData;
+import com.example.reader.readers.EepDocumentReader;
+import com.example.reader.readers.EfCache;
+import com.example.reader.readers.IDocumentReader;
+import com.example.reader.readers.PassportDocumentReader;
+import com.example.reader.readers.ReadProfile;
+import com.example.reader.readers.ResumableReadException;
+import com.example.reader.readers.TransportProfile;
+
+import org.jmrtd.PassportService;
+import org.jmrtd.lds.icao.DG1File;
+import org.jmrtd.lds.icao.MRZInfo;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Both readers end to end against {@link SimulatedChip} with the
+ * {@link SpecimenDocument}: BAC and PACE, a chip that answers large READ BINARY
+ * blocks with 6700, a tag that leaves the field mid-read, a second tap of
+ * the same document, and a DG1 that does not match the SOD.
+ */
+public class SimulatedChipReadTest {
+
+    private static final int IMAGE_SIZE = 12 * 1024;
+
+    private static final DocumentAuthData AUTH_DATA = new DocumentAuthData(
+            SpecimenDocument.DOCUMENT_NUMBER, SpecimenDocument.DATE_OF_BIRTH, SpecimenDocument.DATE_OF_EXPIRY);
+
+    /**
+     * One of the two readers, with the setters the tests need
+     */
+    private interface Reader {
+        DocumentData read(SimulatedChip chip, TransportProfile transport,
+                          IDocumentReader.ProgressCallback callback) throws Exception;
+
+        default DocumentData read(SimulatedChip chip, TransportProfile transport) throws Exception {
+            return read(chip, transport, null);
+        }
+    }
+
+    /**
+     * Records the verdicts a read reports
+     */
+    private static final class Verdicts implements IDocumentReader.ProgressCallback {
+        final Map<ReadProfile.Check, Boolean> reported = new EnumMap<>(ReadProfile.Check.class);
+
+        @Override
+        public void onProgress(String message, int progress) {
+        }
+
+        @Override
+        public void onVerification(ReadProfile.Check check, boolean passed) {
+            reported.put(check, passed);
+        }
+    }
+
+    private static Reader passportReader(EfCache efCache) {
+        PassportDocumentReader reader = new PassportDocumentReader();
+        reader.setEfCache(efCache);
+        return (chip, transport, callback) -> reader.readDocument(chip, transport, null, AUTH_DATA,
+                ReadProfile.MRZ_AND_PHOTO, callback);
+    }
+
+    private static Reader eepReader(EfCache efCache) {
+        EepDocumentReader reader = new EepDocumentReader();
+        reader.setEfCache(efCache);
+        return (chip, transport, callback) -> reader.readDocument(chip, transport, null, AUTH_DATA,
+                ReadProfile.MRZ_AND_PHOTO, callback);
+    }
+
+    @Test
+    public void passport_bac() throws Exception {
+        assertShortRead(passportReader(null), "BAC", newChip(false).build());
+    }
+
+    @Test
+    public void passport_paceExtendedLength() throws Exception {
+        assertExtendedRead(passportReader(null), "PACE", newChip(true).build());
+    }
+
+    @Test
+    public void eep_bac() throws Exception {
+        assertShortRead(eepReader(null), "BAC", newChip(false).build());
+    }
+
+    @Test
+    public void eep_paceExtendedLength() throws Exception {
+        assertExtendedRead(eepReader(null), "PACE", newChip(true).build());
+    }
+
+    @Test
+    public void passport_wrongLength_shrinksBlock() throws Exception {
+        assertBlockShrinks(passportReader(null));
+    }
+
+    @Test
+    public void eep_wrongLength_shrinksBlock() throws Exception {
+        assertBlockShrinks(eepReader(null));
+    }
+
+    @Test
+    public void passport_tagLoss_resumes() throws Exception {
+        assertResumes(passportReader(null));
+    }
+
+    @Test
+    public void eep_tagLoss_resumes() throws Exception {
+        assertResumes(eepReader(null));
+    }
+
+    @Test
+    public void passport_warmRetap_usesCache() throws Exception {
+        assertCacheServes(passportReader(new EfCache()));
+    }
+
+    @Test
+    public void eep_warmRetap_usesCache() throws Exception {
+        assertCacheServes(eepReader(new EfCache()));
+    }
+
+    @Test
+    public void passport_sodVerdict() throws Exception {
+        assertSodVerdict(passportReader(null));
+    }
+
+    @Test
+    public void eep_sodVerdict() throws Exception {
+        assertSodVerdict(eepReader(null));
+    }
+
+    private static SimulatedChip.Builder newChip(boolean pace) throws Exception {
+        SimulatedChip.Builder builder = SpecimenDocument.newChip(IMAGE_SIZE)
+                .setExtendedLengthSupported(true)
+                .setMaxTransceiveLength(65279);
+        if (pace) {
+            builder.enablePace(SimulatedChip.PARAM_ID_NIST_P256);
+        }
+        return builder;
+    }
+
+    private static TransportProfile negotiate(SimulatedChip chip) {
+        return TransportProfile.negotiate(chip.isExtendedLengthSupported(), chip.getMaxTransceiveLength(),
+                chip.getHistoricalBytes(), null, TransportProfile.ReadMode.AUTO);
+    }
+
+    private static void assertShortRead(Reader reader, String authMethod, SimulatedChip chip) throws Exception {
+        DocumentData data = reader.read(chip, TransportProfile.standard());
+
+        assertSpecimen(data);
+        assertTrue(data.authenticationMethod, data.authenticationMethod.contains(authMethod));
+        assertFalse(data.extendedLengthApdu);
+        assertEquals(PassportService.DEFAULT_MAX_BLOCKSIZE, data.readBinaryBlockSize);
+    }
+
+    private static void assertExtendedRead(Reader reader, String authMethod, SimulatedChip chip) throws Exception {
+        DocumentData data = reader.read(chip, negotiate(chip));
+
+        assertSpecimen(data);
+        assertTrue(data.authenticationMethod, data.authenticationMethod.contains(authMethod));
+        assertTrue(data.extendedLengthApdu);
+        assertTrue(data.readBinaryBlockSize > PassportService.DEFAULT_MAX_BLOCKSIZE);
+    }
+
+    /**
+     * The chip's I/O buffer is smaller than the extended block, so READ BINARY
+     * gets 6700 until the block fits
+     */
+    private static void assertBlockShrinks(Reader reader) throws Exception {
+        SimulatedChip chip = newChip(true).setIoBufferSize(1024).build();
+        TransportProfile transport = negotiate(chip);
+        assertTrue(transport.getMaxBlockSize() > 1024);
+
+        DocumentData data = reader.read(chip, transport);
+
+        assertSpecimen(data);
+        assertTrue(data.extendedLengthApdu);
+        assertTrue("block " + data.readBinaryBlockSize, data.readBinaryBlockSize <= 1024);
+    }
+
+    /**
+     * The tag leaves the field in the middle of DG2; the next tap with the same
+     * reader continues from what was already read
+     */
+    private static void assertResumes(Reader reader) throws Exception {
+        SimulatedChip fresh = newChip(false).build();
+        reader.read(fresh, TransportProfile.standard());
+        long fullBytes = fresh.getBytesIn();
+
+        // Short blocks: DG2 alone takes about 60 READ BINARY, so it is lost well inside it
+        SimulatedChip chip = newChip(false).loseTagAfter(fresh.getApduCount() - 30).build();
+        try {
+            reader.read(chip, TransportProfile.standard());
+            fail("Read finished although the tag was lost");
+        } catch (ResumableReadException e) {
+            assertTrue(e.getBytesKept() > 0);
+        }
+
+        chip.presentAgain();
+        chip.resetStatistics();
+        DocumentData data = reader.read(chip, TransportProfile.standard());
+
+        assertSpecimen(data);
+        assertTrue("resumed read " + chip.getBytesIn() + " bytes, full read " + fullBytes,
+                chip.getBytesIn() < fullBytes / 2);
+    }
+
+    /**
+     * The second tap reads EF.SOD again and takes the data groups it still
+     * vouches for from the cache
+     */
+    private static void assertCacheServes(Reader reader) throws Exception {
+        SimulatedChip chip = newChip(false).build();
+        reader.read(chip, TransportProfile.standard());
+        long coldBytes = chip.getBytesIn();
+
+        chip.resetStatistics();
+        DocumentData data = reader.read(chip, TransportProfile.standard());
+
+        assertSpecimen(data);
+        assertTrue("warm read " + chip.getBytesIn() + " bytes, cold read " + coldBytes,
+                chip.getBytesIn() < coldBytes / 2);
+    }
+
+    /**
+     * SOD passes when the data groups match their hashes, and fails for a DG1
+     * replaced after the SOD was signed
+     */
+    private static void assertSodVerdict(Reader reader) throws Exception {
+        Verdicts genuine = new Verdicts();
+        reader.read(newChip(false).build(), TransportProfile.standard(), genuine);
+        assertEquals(Boolean.TRUE, genuine.reported.get(ReadProfile.Check.SOD));
+        assertNull(genuine.reported.get(ReadProfile.Check.CHIP_AUTHENTICATION));
+
+        String forgedMrz = SpecimenDocument.MRZ.replace("ERIKSSON<<ANNA", "ERIKSSON<<ANNE");
+        SimulatedChip forged = newChip(false)
+                .addFile(PassportService.EF_DG1, new DG1File(new MRZInfo(forgedMrz)).getEncoded())
+                .build();
+        Verdicts verdicts = new Verdicts();
+        reader.read(forged, TransportProfile.standard(), verdicts);
+        assertEquals(Boolean.FALSE, verdicts.reported.get(ReadProfile.Check.SOD));
+    }
+
+    private static void assertSpecimen(DocumentData data) {
+        assertEquals(SpecimenDocument.DOCUMENT_NUMBER, data.documentNumber);
+        assertEquals("ERIKSSON", data.lastName);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.reader.simulator;
+
+import com.example.reader.models.DocumentData;
+import com.example.reader.readers.DocumentAuthData;
+import com.example.reader.readers.EepDocumentReader;
+import com.example.reader.readers.PassportDocumentReader;
+import com.example.reader.readers.ReadProfile;
+import com.example.reader.readers.TransportProfile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * What each transport costs on the link: both readers read the
+ * {@link SpecimenDocument} from a {@link SimulatedChip} with extended-length
+ * support, once with short APDUs only (STANDARD) and once negotiated (AUTO).
+ * The same document comes off the chip either way; AUTO needs far fewer APDUs and
+ * so less simulated link time.
+ */
+public class SimulatedTransportTest {
+
+    private static final int DG2_SIZE = 24 * 1024;
+    private static final long MICROS_PER_APDU = 4000;   // Typical ISO-DEP frame round trip
+    private static final long MICROS_PER_BYTE = 80;     // ~106 kbit/s plus framing
+
+    private static final DocumentAuthData AUTH_DATA = new DocumentAuthData(
+            SpecimenDocument.DOCUMENT_NUMBER, SpecimenDocument.DATE_OF_BIRTH, SpecimenDocument.DATE_OF_EXPIRY);
+
+    /**
+     * A fresh instance of one of the two readers for every read
+     */
+    private interface Reader {
+        DocumentData read(SimulatedChip chip, TransportProfile transport) throws Exception;
+    }
+
+    private static final Reader PASSPORT = (chip, transport) -> new PassportDocumentReader()
+            .readDocument(chip, transport, null, AUTH_DATA, ReadProfile.MRZ_AND_PHOTO, null);
+
+    private static final Reader EEP = (chip, transport) -> new EepDocumentReader()
+            .readDocument(chip, transport, null, AUTH_DATA, ReadProfile.MRZ_AND_PHOTO, null);
+
+    @Test
+    public void passport_bac_autoNeedsFewerApdus() throws Exception {
+        assertAutoNeedsFewerApdus(PASSPORT, false);
+    }
+
+    @Test
+    public void passport_pace_autoNeedsFewerApdus() throws Exception {
+        assertAutoNeedsFewerApdus(PASSPORT, true);
+    }
+
+    @Test
+    public void eep_bac_autoNeedsFewerApdus() throws Exception {
+        assertAutoNeedsFewerApdus(EEP, false);
+    }
+
+    @Test
+    public void eep_pace_autoNeedsFewerApdus() throws Exception {
+        assertAutoNeedsFewerApdus(EEP, true);
+    }
+
+    private static void assertAutoNeedsFewerApdus(Reader reader, boolean pace) throws Exception {
+        SimulatedChip standardChip = newChip(pace);
+        DocumentData standard = reader.read(standardChip, negotiate(standardChip, TransportProfile.ReadMode.STANDARD));
+
+        SimulatedChip autoChip = newChip(pace);
+        DocumentData auto = reader.read(autoChip, negotiate(autoChip, TransportProfile.ReadMode.AUTO));
+
+        assertEquals(SpecimenDocument.DOCUMENT_NUMBER, standard.documentNumber);
+        assertEquals(SpecimenDocument.DOCUMENT_NUMBER, auto.documentNumber);
+        assertFalse(standard.extendedLengthApdu);
+        assertTrue(auto.extendedLengthApdu);
+
+        // DG2 alone takes over a hundred short READ BINARY and a handful of extended ones
+        assertTrue("AUTO " + autoChip.getApduCount() + " APDUs, STANDARD " + standardChip.getApduCount(),
+                autoChip.getApduCount() < standardChip.getApduCount() / 2);
+        assertTrue("AUTO " + autoChip.getSimulatedMicros() + " us, STANDARD " + standardChip.getSimulatedMicros(),
+                autoChip.getSimulatedMicros() < standardChip.getSimulatedMicros());
+    }
+
+    private static SimulatedChip newChip(boolean pace) throws Exception {
+        SimulatedChip.Builder builder = SpecimenDocument.newChip(DG2_SIZE)
+                .setLatency(MICROS_PER_APDU, MICROS_PER_BYTE)
+                .setExtendedLengthSupported(true)
+                .setMaxTransceiveLength(65279);
+        if (pace) {
+            builder.enablePace(SimulatedChip.PARAM_ID_NIST_P256);
+        }
+        return builder.build();
+    }
+
+    private static TransportProfile negotiate(SimulatedChip chip, TransportProfile.ReadMode mode) {
+        return TransportProfile.negotiate(chip.isExtendedLengthSupported(), chip.getMaxTransceiveLength(),
+                chip.getHistoricalBytes(), null, mode);
+    }
+}
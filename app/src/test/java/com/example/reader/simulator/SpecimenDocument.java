@@ -0,0 +1,103 @@
+package com.example.reader.simulator;
+
+import net.sf.scuba.data.Gender;
+
+import org.jmrtd.PassportService;
+import org.jmrtd.lds.SODFile;
+import org.jmrtd.lds.icao.DG1File;
+import org.jmrtd.lds.icao.DG2File;
+import org.jmrtd.lds.icao.MRZInfo;
+import org.jmrtd.lds.iso19794.FaceImageInfo;
+import org.jmrtd.lds.iso19794.FaceInfo;
+import org.spongycastle.x509.X509V3CertificateGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * LDS of the ICAO 9303 specimen passport for {@link SimulatedChip}: DG1 with the
+ * specimen MRZ, a DG2 holding one face image of the given size, and an EF.SOD
+ * over both, signed by a throwaway document signer.
+ *
+ * The face image is random bytes labelled JPEG, so it parses as a DG2 but does
+ * not decode.
+ */
+final class SpecimenDocument {
+
+    static final String MRZ =
+            "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<"
+            + "L898902C36UTO7408122F1204159ZE184226B<<<<<10";
+    static final String DOCUMENT_NUMBER = "L898902C3";
+    static final String DATE_OF_BIRTH = "740812";
+    static final String DATE_OF_EXPIRY = "120415";
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+    private SpecimenDocument() {
+    }
+
+    /**
+     * Builder with the specimen MRZ key and DG1, DG2 and EF.SOD in place
+     */
+    static SimulatedChip.Builder newChip(int imageSize) throws Exception {
+        byte[] dg1 = new DG1File(new MRZInfo(MRZ)).getEncoded();
+        byte[] dg2 = dg2(imageSize);
+
+        Map<Integer, byte[]> hashes = new TreeMap<>();
+        hashes.put(1, MessageDigest.getInstance(DIGEST_ALGORITHM).digest(dg1));
+        hashes.put(2, MessageDigest.getInstance(DIGEST_ALGORITHM).digest(dg2));
+
+        return new SimulatedChip.Builder()
+                .setMrzKey(DOCUMENT_NUMBER, DATE_OF_BIRTH, DATE_OF_EXPIRY)
+                .addFile(PassportService.EF_DG1, dg1)
+                .addFile(PassportService.EF_DG2, dg2)
+                .addFile(PassportService.EF_SOD, sod(hashes));
+    }
+
+    private static byte[] dg2(int imageSize) throws Exception {
+        byte[] image = new byte[imageSize];
+        new Random(imageSize).nextBytes(image);
+
+        FaceImageInfo imageInfo = new FaceImageInfo(Gender.FEMALE, FaceImageInfo.EyeColor.UNSPECIFIED,
+                0, 0, 0, new int[3], new int[3],
+                FaceImageInfo.FACE_IMAGE_TYPE_FULL_FRONTAL, FaceImageInfo.IMAGE_COLOR_SPACE_RGB24,
+                FaceImageInfo.SOURCE_TYPE_STATIC_PHOTO_DIGITAL_CAM, 0, 0,
+                new FaceImageInfo.FeaturePoint[0], 480, 640,
+                new ByteArrayInputStream(image), image.length, FaceImageInfo.IMAGE_DATA_TYPE_JPEG);
+        FaceInfo faceInfo = new FaceInfo(Collections.singletonList(imageInfo));
+        return new DG2File(Collections.singletonList(faceInfo)).getEncoded();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static byte[] sod(Map<Integer, byte[]> hashes) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        X500Principal name = new X500Principal("CN=Document Signer, O=Simulator, C=UT");
+        X509V3CertificateGenerator certificateGenerator = new X509V3CertificateGenerator();
+        certificateGenerator.setSerialNumber(BigInteger.ONE);
+        certificateGenerator.setIssuerDN(name);
+        certificateGenerator.setSubjectDN(name);
+        certificateGenerator.setNotBefore(new Date(System.currentTimeMillis() - 86_400_000L));
+        certificateGenerator.setNotAfter(new Date(System.currentTimeMillis() + 86_400_000L));
+        certificateGenerator.setPublicKey(keyPair.getPublic());
+        certificateGenerator.setSignatureAlgorithm(SIGNATURE_ALGORITHM);
+        X509Certificate certificate = certificateGenerator.generate(keyPair.getPrivate());
+
+        return new SODFile(DIGEST_ALGORITHM, SIGNATURE_ALGORITHM, hashes, keyPair.getPrivate(), certificate)
+                .getEncoded();
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.reader.simulator;
+
+import com.example.reader.models.DocumentData;
+import com.example.reader.readers.DocumentAuthData;
+import com.example.reader.readers.EepDocumentReader;
+import com.example.reader.readers.EfCache;
+import com.example.reader.readers.PaceParameterCache;
+import com.example.reader.readers.PassportDocumentReader;
+import com.example.reader.readers.ReadProfile;
+import com.example.reader.readers.TransportProfile;
+import com.example.reader.readers.transcript.ApduTranscript;
+import com.example.reader.readers.transcript.DeterministicRandom;
+import com.example.reader.readers.transcript.RecordingCardService;
+import com.example.reader.readers.transcript.ReplayCardService;
+
+import net.sf.scuba.smartcards.CardService;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.security.SecureRandom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A read of {@link SimulatedChip} recorded with {@link RecordingCardService}
+ * and played back into a fresh reader with {@link ReplayCardService} in strict
+ * mode: with the transcript seed bound, the reader sends the recorded commands
+ * byte for byte, BAC challenges and PACE nonces included, and reads the same
+ * document. A re-tap recorded by a reader with warm caches is still a full
+ * read, so it replays too.
+ */
+public class TranscriptReplayTest {
+
+    private static final int IMAGE_SIZE = 12 * 1024;
+
+    private static final DocumentAuthData AUTH_DATA = new DocumentAuthData(
+            SpecimenDocument.DOCUMENT_NUMBER, SpecimenDocument.DATE_OF_BIRTH, SpecimenDocument.DATE_OF_EXPIRY);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * One of the two readers, and a fresh instance of it for the replay
+     */
+    private interface Reader {
+        DocumentData read(CardService service, TransportProfile transport, String chipKey) throws Exception;
+
+        DocumentData replay(ReplayCardService replay) throws Exception;
+    }
+
+    private static Reader passportReader(EfCache efCache, PaceParameterCache paceCache) {
+        PassportDocumentReader reader = new PassportDocumentReader();
+        reader.setEfCache(efCache);
+        reader.setPaceParameterCache(paceCache);
+        return new Reader() {
+            @Override
+            public DocumentData read(CardService service, TransportProfile transport, String chipKey)
+                    throws Exception {
+                return reader.readDocument(service, transport, chipKey, AUTH_DATA, ReadProfile.MRZ_AND_PHOTO, null);
+            }
+
+            @Override
+            public DocumentData replay(ReplayCardService replay) throws Exception {
+                return new PassportDocumentReader().replay(replay, AUTH_DATA, null);
+            }
+        };
+    }
+
+    private static Reader eepReader(EfCache efCache, PaceParameterCache paceCache) {
+        EepDocumentReader reader = new EepDocumentReader();
+        reader.setEfCache(efCache);
+        reader.setPaceParameterCache(paceCache);
+        return new Reader() {
+            @Override
+            public DocumentData read(CardService service, TransportProfile transport, String chipKey)
+                    throws Exception {
+                return reader.readDocument(service, transport, chipKey, AUTH_DATA, ReadProfile.MRZ_AND_PHOTO, null);
+            }
+
+            @Override
+            public DocumentData replay(ReplayCardService replay) throws Exception {
+                return new EepDocumentReader().replay(replay, AUTH_DATA, null);
+            }
+        };
+    }
+
+    @Test
+    public void passport_bac_replays() throws Exception {
+        assertReplays(passportReader(null, null), "BAC", false);
+    }
+
+    @Test
+    public void passport_pace_replays() throws Exception {
+        assertReplays(passportReader(null, null), "PACE", true);
+    }
+
+    @Test
+    public void eep_bac_replays() throws Exception {
+        assertReplays(eepReader(null, null), "BAC", false);
+    }
+
+    @Test
+    public void eep_pace_replays() throws Exception {
+        assertReplays(eepReader(null, null), "PACE", true);
+    }
+
+    @Test
+    public void passport_warmRetap_replays() throws Exception {
+        assertWarmRetapReplays(passportReader(new EfCache(), new PaceParameterCache()));
+    }
+
+    @Test
+    public void eep_warmRetap_replays() throws Exception {
+        assertWarmRetapReplays(eepReader(new EfCache(), new PaceParameterCache()));
+    }
+
+    private static void assertReplays(Reader reader, String authMethod, boolean pace) throws Exception {
+        SimulatedChip chip = newChip(pace);
+
+        ApduTranscript transcript = newTranscript(chip);
+        DocumentData recorded = record(reader, chip, transcript);
+        assertTrue(recorded.authenticationMethod, recorded.authenticationMethod.contains(authMethod));
+
+        assertReplaysInto(reader, transcript, recorded);
+    }
+
+    /**
+     * The first tap fills the EF and PACE caches. The recorded second tap must not
+     * use them: it reads every EF again, and the transcript, written to a file
+     * and read back, carries the context a fresh reader needs to replay it.
+     */
+    private void assertWarmRetapReplays(Reader reader) throws Exception {
+        SimulatedChip chip = newChip(true);
+        String chipKey = PaceParameterCache.chipKey(chip.getHistoricalBytes());
+        reader.read(chip, newTranscript(chip).negotiateTransport(TransportProfile.ReadMode.AUTO), chipKey);
+        int coldApdus = chip.getApduCount();
+
+        chip.resetStatistics();
+        ApduTranscript transcript = newTranscript(chip);
+        DocumentData recorded = record(reader, chip, transcript);
+        assertEquals(coldApdus, chip.getApduCount());
+
+        File file = folder.newFile("retap.apdu");
+        transcript.write(file);
+        ApduTranscript stored = ApduTranscript.read(file);
+        assertEquals(chipKey, stored.getChipKey());
+        assertTrue(stored.isCardAccessPresent());
+        assertTrue(stored.getReadProfile().includesDataGroup(2));
+        assertEquals(TransportProfile.ReadMode.AUTO, stored.getReadMode());
+
+        assertReplaysInto(reader, stored, recorded);
+    }
+
+    private static SimulatedChip newChip(boolean pace) throws Exception {
+        // The chip draws from its own generator: on the bound thread a plain
+        // SecureRandom would take from the transcript stream, which the replay has no chip to consume
+        SecureRandom chipRandom = SecureRandom.getInstance("SHA1PRNG");
+        chipRandom.setSeed(42);
+        SimulatedChip.Builder builder = SpecimenDocument.newChip(IMAGE_SIZE)
+                .setExtendedLengthSupported(true)
+                .setMaxTransceiveLength(65279)
+                .setRandom(chipRandom);
+        if (pace) {
+            builder.enablePace(SimulatedChip.PARAM_ID_NIST_P256);
+        }
+        return builder.build();
+    }
+
+    private static ApduTranscript newTranscript(SimulatedChip chip) {
+        return new ApduTranscript(DeterministicRandom.newSeed(), chip.getHistoricalBytes(),
+                chip.isExtendedLengthSupported(), chip.getMaxTransceiveLength());
+    }
+
+    private static DocumentData record(Reader reader, SimulatedChip chip, ApduTranscript transcript)
+            throws Exception {
+        try (DeterministicRandom ignored = DeterministicRandom.bind(transcript.getSeed())) {
+            return reader.read(new RecordingCardService(chip, transcript, null),
+                    transcript.negotiateTransport(TransportProfile.ReadMode.AUTO),
+                    PaceParameterCache.chipKey(chip.getHistoricalBytes()));
+        }
+    }
+
+    private static void assertReplaysInto(Reader reader, ApduTranscript transcript, DocumentData recorded)
+            throws Exception {
+        ReplayCardService replay = new ReplayCardService(transcript, true);
+        DocumentData replayed;
+        try (DeterministicRandom ignored = DeterministicRandom.bind(transcript.getSeed())) {
+            replayed = reader.replay(replay);
+        }
+
+        assertNull(replay.getDivergence());
+        assertTrue("replay stopped at exchange " + replay.getPosition(), replay.isFinished());
+        assertSameDocument(recorded, replayed);
+    }
+
+    private static void assertSameDocument(DocumentData expected, DocumentData actual) {
+        assertEquals(expected.documentType, actual.documentType);
+        assertEquals(expected.documentCode, actual.documentCode);
+        assertEquals(expected.documentNumber, actual.documentNumber);
+        assertEquals(expected.issuingCountry, actual.issuingCountry);
+        assertEquals(expected.dateOfExpiry, actual.dateOfExpiry);
+        assertEquals(expected.firstName, actual.firstName);
+        assertEquals(expected.lastName, actual.lastName);
+        assertEquals(expected.nationality, actual.nationality);
+        assertEquals(expected.dateOfBirth, actual.dateOfBirth);
+        assertEquals(expected.gender, actual.gender);
+        assertEquals(expected.faceImageMimeTypes, actual.faceImageMimeTypes);
+        assertEquals(expected.hasValidSignature, actual.hasValidSignature);
+        assertEquals(expected.authenticationMethod, actual.authenticationMethod);
+        assertEquals(expected.securityFeatures, actual.securityFeatures);
+        assertEquals(expected.extendedLengthApdu, actual.extendedLengthApdu);
+        assertEquals(expected.readBinaryBlockSize, actual.readBinaryBlockSize);
+        assertArrayEquals(expected.rawData, actual.rawData);
+        assertEquals(expected.getSummary(), actual.getSummary());
+    }
+}
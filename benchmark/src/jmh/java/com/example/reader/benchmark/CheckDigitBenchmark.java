@@ -0,0 +1,76 @@
+package com.example.reader.benchmark;
+
+import com.example.reader.mrz.BaseMrzParser;
+import com.example.reader.mrz.MrzFields;
+import com.example.reader.readers.eep.MrzCheckDigitValidator;
+import com.example.reader.utils.MRZCleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The three check-digit implementations (parsers, MRZCleaner, chip MRZ validator)
+ * on the fields of a TD3 line
+ */
+@State(Scope.Thread)
+public class CheckDigitBenchmark {
+
+    /**
+     * Document number, date, and the 39-character composite of TD3 line 2
+     */
+    @Param({"L898902C3", "740812", "L898902C36UTO7408122F1204159ZE184226B<<<<<"})
+    public String field;
+
+    private char checkDigit;
+    private final MrzCheckDigitValidator chipValidator = new MrzCheckDigitValidator();
+    private final ExposedParser parser = new ExposedParser();
+
+    @Setup
+    public void setUp() {
+        MrzSamples.silenceLogging();
+        checkDigit = (char) ('0' + MRZCleaner.calculateCheckDigit(field));
+    }
+
+    @Benchmark
+    public boolean parserCheckDigit() {
+        return parser.check(field, checkDigit);
+    }
+
+    @Benchmark
+    public boolean cleanerCheckDigit() {
+        return MRZCleaner.validateCheckDigit(field, checkDigit);
+    }
+
+    @Benchmark
+    public boolean chipValidatorCheckDigit() {
+        return chipValidator.verify(field, checkDigit);
+    }
+
+    /**
+     * BaseMrzParser keeps its check digit protected
+     */
+    private static final class ExposedParser extends BaseMrzParser {
+
+        boolean check(String data, char digit) {
+            return validateCheckDigit(data, digit);
+        }
+
+        @Override
+        public boolean canParse(String line) {
+            return false;
+        }
+
+        @Override
+        public boolean parse(String line, MrzFields out) {
+            return false;
+        }
+
+        @Override
+        public String getDocumentType() {
+            return "benchmark";
+        }
+    }
+}
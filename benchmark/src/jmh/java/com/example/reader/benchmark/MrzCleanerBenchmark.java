@@ -0,0 +1,56 @@
+package com.example.reader.benchmark;
+
+import com.example.reader.utils.MRZCleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * MRZCleaner as MRZProcessor calls it on every analyzed frame
+ */
+@State(Scope.Thread)
+public class MrzCleanerBenchmark {
+
+    @Param
+    public MrzSamples sample;
+
+    private String firstLine;
+    private String extracted;
+    private String nextFrame;
+
+    @Setup
+    public void setUp() {
+        MrzSamples.silenceLogging();
+        firstLine = sample.lines.get(0);
+        extracted = MRZCleaner.extractAndClean(sample.lines, sample.documentType);
+        // Stability check compares the current frame with the previous one
+        MrzSamples clean = MrzSamples.valueOf(sample.name().replace("_NOISY", "_CLEAN"));
+        nextFrame = MRZCleaner.extractAndClean(clean.lines, clean.documentType);
+    }
+
+    @Benchmark
+    public String extractAndClean() {
+        return MRZCleaner.extractAndClean(sample.lines, sample.documentType);
+    }
+
+    @Benchmark
+    public String cleanMRZLine() {
+        return MRZCleaner.cleanMRZLine(firstLine);
+    }
+
+    @Benchmark
+    public boolean areSimilar() {
+        return MRZCleaner.areSimilar(extracted, nextFrame);
+    }
+
+    @Benchmark
+    public void cleanAllLines(Blackhole blackhole) {
+        for (int i = 0; i < sample.lines.size(); i++) {
+            blackhole.consume(MRZCleaner.cleanMRZLine(sample.lines.get(i)));
+        }
+    }
+}
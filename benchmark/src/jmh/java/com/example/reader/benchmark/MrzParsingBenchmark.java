@@ -0,0 +1,68 @@
+package com.example.reader.benchmark;
+
+import com.example.reader.mrz.CheckDigitCorrector;
+import com.example.reader.mrz.MrzFields;
+import com.example.reader.mrz.MrzParserManager;
+import com.example.reader.utils.DocumentTypeDetector;
+import com.example.reader.utils.MRZCleaner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Document type detection on raw OCR lines and field parsing of the cleaned MRZ
+ */
+@State(Scope.Thread)
+public class MrzParsingBenchmark {
+
+    @Param
+    public MrzSamples sample;
+
+    private MrzParserManager parserManager;
+    private final CheckDigitCorrector corrector = new CheckDigitCorrector();
+    private String extracted;
+    private String detectedType;
+
+    @Setup
+    public void setUp() {
+        MrzSamples.silenceLogging();
+        parserManager = new MrzParserManager();
+        detectedType = DocumentTypeDetector.detect(sample.lines);
+        extracted = MRZCleaner.extractAndClean(sample.lines, detectedType);
+        if (extracted == null) {
+            // Too damaged to extract; parse the raw lines as the fallback path does
+            extracted = String.join("\n", sample.lines);
+        }
+    }
+
+    @Benchmark
+    public String detectDocumentType() {
+        return DocumentTypeDetector.detect(sample.lines);
+    }
+
+    @Benchmark
+    public MrzFields parseMrz() {
+        return parserManager.parseMrz(extracted, detectedType);
+    }
+
+    /**
+     * Check-digit guided correction at the confidence MRZProcessor typically sees
+     */
+    @Benchmark
+    public CheckDigitCorrector.Result correctMrz() {
+        return corrector.correct(extracted, detectedType, 0.8f);
+    }
+
+    /**
+     * detect + extractAndClean + parseMrz, the work done for a frame that holds an MRZ
+     */
+    @Benchmark
+    public MrzFields fullFrame() {
+        String docType = DocumentTypeDetector.detect(sample.lines);
+        String mrz = MRZCleaner.extractAndClean(sample.lines, docType);
+        return mrz != null ? parserManager.parseMrz(mrz, docType) : null;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.reader.benchmark;
+
+import com.example.reader.utils.CoreLog;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MRZ inputs as the OCR stage hands them over: one string per recognized line.
+ *
+ * Clean samples are the ICAO 9303 specimens (and a synthetic EEP with valid check
+ * digits); noisy samples carry the errors seen from ML Kit on camera frames:
+ * O/0 swaps, I read as 1 or |, stray spaces and a wrong EEP prefix.
+ */
+public enum MrzSamples {
+
+    TD1_CLEAN("TD1",
+            "I<UTOD231458907<<<<<<<<<<<<<<<",
+            "7408122F1204159UTO<<<<<<<<<<<6",
+            "ERIKSSON<<ANNA<MARIA<<<<<<<<<<"),
+    TD1_NOISY("TD1",
+            "1<UT0D23145890 7<<<<<<<<<<<<<<<",
+            "74O8122F12O4159UTO<<<<<<<<<<<6",
+            "ERIKSS0N<<ANNA<MAR|A<<<<<<<< <<"),
+
+    TD2_CLEAN("TD2",
+            "I<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<",
+            "D231458907UTO7408122F1204159<<<<<<<6"),
+    TD2_NOISY("TD2",
+            "I<UT0ERIKSS0N<<ANNA<MARIA<<<<<<<< <<<",
+            "D23145890 7UTO74O8122F12O4159<<<<<<<6"),
+
+    TD3_CLEAN("TD3",
+            "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<",
+            "L898902C36UTO7408122F1204159ZE184226B<<<<<10"),
+    TD3_NOISY("TD3",
+            "P<UT0ERIKSSON<<ANNA<MAR|A<<<<<< <<<<<<<<<<<<<",
+            "l898902C36UTO74O8122F12O4159ZE184226B<<<<<1O"),
+
+    EEP_CLEAN("EEP",
+            "CSC123456788<2903150<9001011<8"),
+    EEP_NOISY("EEP",
+            "C5C12345678 8<29O315O<9OO1011<8");
+
+    public final String documentType;
+    public final List<String> lines;
+
+    MrzSamples(String documentType, String... lines) {
+        this.documentType = documentType;
+        this.lines = Arrays.asList(lines);
+    }
+
+    /**
+     * Benchmarks measure the code paths, not the console; debug messages are still
+     * built by the callers as in production
+     */
+    static void silenceLogging() {
+        CoreLog.setSink((level, tag, message, throwable) -> { });
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.reader.lds;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+
+/**
+ * Verification of an Active Authentication response against the DG15 public key
+ * (ICAO 9303-11, 6.1)
+ *
+ * RSA chips sign with ISO/IEC 9796-2 scheme 1, partial message recovery: the
+ * recovered message is the chip's nonce M1 and the challenge is the
+ * non-recoverable part. ECDSA chips return a plain r||s signature over the
+ * challenge, with the digest named by the ActiveAuthenticationInfo in DG14.
+ */
+public final class ActiveAuthentication {
+
+    // Digests a chip may use when DG14 does not name one
+    private static final String[] EC_DIGESTS = {"SHA-256", "SHA-384", "SHA-512", "SHA-224", "SHA-1"};
+
+    private ActiveAuthentication() {
+    }
+
+    /**
+     * @param digestAlgorithm digest of an ECDSA signature ("SHA-256", ...), or null
+     *                        to accept any of the usual ones; RSA signatures name
+     *                        their digest in the trailer
+     * @return true if the response is the chip's signature over the challenge
+     */
+    public static boolean verify(PublicKey publicKey, String digestAlgorithm, byte[] challenge, byte[] response) {
+        if (publicKey == null || challenge == null || response == null || response.length == 0) {
+            return false;
+        }
+        try {
+            if (publicKey instanceof RSAPublicKey) {
+                return verifyRsa((RSAPublicKey) publicKey, challenge, response);
+            }
+            if (publicKey instanceof ECPublicKey) {
+                if (digestAlgorithm != null) {
+                    return verifyEc(publicKey, digestAlgorithm, challenge, response);
+                }
+                for (String digest : EC_DIGESTS) {
+                    if (verifyEc(publicKey, digest, challenge, response)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean verifyRsa(RSAPublicKey key, byte[] challenge, byte[] response)
+            throws GeneralSecurityException {
+        BigInteger n = key.getModulus();
+        BigInteger s = new BigInteger(1, response);
+        if (s.compareTo(n) >= 0) {
+            return false;
+        }
+        int k = (n.bitLength() + 7) / 8;
+
+        // The signer sends the smaller of J^d and n - J^d; J ends in the nibble C
+        BigInteger j = s.modPow(key.getPublicExponent(), n);
+        if ((j.intValue() & 0x0F) != 0x0C) {
+            j = n.subtract(j);
+        }
+        byte[] f = toFixedLength(j, k);
+
+        if ((f[0] & 0xFF) != 0x6A || (f[k - 1] & 0x0F) != 0x0C) {
+            return false;
+        }
+
+        String digestAlgorithm;
+        int trailerLength;
+        if ((f[k - 1] & 0xFF) == 0xBC) {
+            digestAlgorithm = "SHA-1";
+            trailerLength = 1;
+        } else if ((f[k - 1] & 0xFF) == 0xCC) {
+            digestAlgorithm = digestForHashId(f[k - 2] & 0xFF);
+            trailerLength = 2;
+        } else {
+            return false;
+        }
+        if (digestAlgorithm == null) {
+            return false;
+        }
+
+        MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
+        int hashStart = k - trailerLength - digest.getDigestLength();
+        if (hashStart <= 1) {
+            return false;
+        }
+        digest.update(f, 1, hashStart - 1);
+        digest.update(challenge);
+        return MessageDigest.isEqual(digest.digest(), Arrays.copyOfRange(f, hashStart, k - trailerLength));
+    }
+
+    /**
+     * ISO/IEC 10118-3 hash function identifiers used in the two-byte trailer
+     */
+    private static String digestForHashId(int hashId) {
+        switch (hashId) {
+            case 0x33: return "SHA-1";
+            case 0x34: return "SHA-256";
+            case 0x35: return "SHA-512";
+            case 0x36: return "SHA-384";
+            case 0x38: return "SHA-224";
+            default: return null;
+        }
+    }
+
+    private static boolean verifyEc(PublicKey key, String digestAlgorithm, byte[] challenge, byte[] response)
+            throws GeneralSecurityException {
+        if (response.length % 2 != 0) {
+            return false;
+        }
+        Signature signature = Signature.getInstance(digestAlgorithm.replace("-", "") + "withECDSA");
+        signature.initVerify(key);
+        signature.update(challenge);
+        return signature.verify(plainToDer(response));
+    }
+
+    /**
+     * r||s as a DER SEQUENCE of two INTEGERs
+     */
+    private static byte[] plainToDer(byte[] plain) {
+        int half = plain.length / 2;
+        byte[] r = new BigInteger(1, Arrays.copyOfRange(plain, 0, half)).toByteArray();
+        byte[] s = new BigInteger(1, Arrays.copyOfRange(plain, half, plain.length)).toByteArray();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writeTlv(body, 0x02, r);
+        writeTlv(body, 0x02, s);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTlv(out, 0x30, body.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static void writeTlv(ByteArrayOutputStream out, int tag, byte[] value) {
+        out.write(tag);
+        if (value.length < 0x80) {
+            out.write(value.length);
+        } else if (value.length < 0x100) {
+            out.write(0x81);
+            out.write(value.length);
+        } else {
+            out.write(0x82);
+            out.write(value.length >> 8);
+            out.write(value.length);
+        }
+        out.write(value, 0, value.length);
+    }
+
+    private static byte[] toFixedLength(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length == length) {
+            return bytes;
+        }
+        byte[] fixed = new byte[length];
+        int copy = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copy, fixed, length - copy, copy);
+        return fixed;
+    }
+}
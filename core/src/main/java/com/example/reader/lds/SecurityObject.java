@@ -0,0 +1,78 @@
+package com.example.reader.lds;
+
+import org.jmrtd.lds.SODFile;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Parsed EF.SOD (Document Security Object)
+ *
+ * Holds the data group hashes and signer details the readers need, and checks
+ * data group bytes against them. Works on raw bytes so the same logic can
+ * re-verify stored reads away from the chip.
+ */
+public class SecurityObject {
+
+    public final byte[] rawBytes;
+    public final String digestAlgorithm;
+    public final String signatureAlgorithm;
+    public final Map<Integer, byte[]> dataGroupHashes;
+    public final String ldsVersion;
+    public final String unicodeVersion;
+    public final String issuerName;
+    public final X509Certificate documentSignerCertificate;
+
+    private SecurityObject(byte[] rawBytes, SODFile sodFile) {
+        this.rawBytes = rawBytes;
+        this.digestAlgorithm = sodFile.getDigestAlgorithm();
+        this.signatureAlgorithm = sodFile.getDigestEncryptionAlgorithm();
+        Map<Integer, byte[]> hashes = sodFile.getDataGroupHashes();
+        this.dataGroupHashes = hashes != null ? hashes : Collections.emptyMap();
+        this.ldsVersion = sodFile.getLDSVersion();
+        this.unicodeVersion = sodFile.getUnicodeVersion();
+        this.issuerName = sodFile.getIssuerX500Principal() != null
+                ? sodFile.getIssuerX500Principal().getName() : null;
+        this.documentSignerCertificate = sodFile.getDocSigningCertificate();
+    }
+
+    /**
+     * Parse EF.SOD bytes as read from the chip
+     */
+    public static SecurityObject parse(byte[] sodBytes) throws Exception {
+        return new SecurityObject(sodBytes, new SODFile(new ByteArrayInputStream(sodBytes)));
+    }
+
+    /**
+     * Check data group bytes against the hash stored for that data group
+     *
+     * @return false when the hash differs or the SOD has no hash for the data group
+     */
+    public boolean matches(int dataGroupNumber, byte[] dataGroupBytes) {
+        byte[] expected = dataGroupHashes.get(dataGroupNumber);
+        if (expected == null || dataGroupBytes == null) {
+            return false;
+        }
+        try {
+            byte[] actual = MessageDigest.getInstance(digestAlgorithm).digest(dataGroupBytes);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    /**
+     * SHA-256 of the whole EF.SOD, identifying this issuance of the document
+     */
+    public byte[] fingerprint() {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(rawBytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
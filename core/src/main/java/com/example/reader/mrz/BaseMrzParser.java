@@ -1,22 +1,35 @@
 package com.example.reader.mrz;
 
-import android.util.Log;
-
 public abstract class BaseMrzParser implements MrzParser {
     protected static final String TAG = "MrzParser";
 
+    // Letter-for-digit OCR confusions in numeric fields; 0 means keep the character
+    private static final char[] DIGIT_CONFUSIONS = new char[128];
+
+    static {
+        DIGIT_CONFUSIONS['O'] = '0';  // Letter O to zero
+        DIGIT_CONFUSIONS['Q'] = '0';
+        DIGIT_CONFUSIONS['D'] = '0';
+        DIGIT_CONFUSIONS['I'] = '1';  // Letter I to one
+        DIGIT_CONFUSIONS['l'] = '1';  // Lowercase L to one
+        DIGIT_CONFUSIONS['Z'] = '2';
+        DIGIT_CONFUSIONS['S'] = '5';
+        DIGIT_CONFUSIONS['B'] = '8';
+    }
+
     protected String cleanMrzCharacters(String text) {
-        return text
-                .replace("O", "0")  // Letter O to zero
-                .replace("Q", "0")
-                .replace("D", "0")
-                .replace("I", "1")  // Letter I to one
-                .replace("l", "1")  // Lowercase L to one
-                .replace("Z", "2")
-                .replace("S", "5")
-                .replace("B", "8")
-                .replace("<", "")   // Remove filler characters
-                .toUpperCase();
+        // One pass: map confusions, drop filler characters, upper-case the rest
+        char[] out = new char[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                continue;
+            }
+            char mapped = c < 128 ? DIGIT_CONFUSIONS[c] : 0;
+            out[length++] = mapped != 0 ? mapped : Character.toUpperCase(c);
+        }
+        return new String(out, 0, length);
     }
 
     protected boolean isValidDate(String date) {
@@ -0,0 +1,529 @@
+package com.example.reader.mrz;
+
+import com.example.reader.utils.Constants;
+import com.example.reader.utils.CoreLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repairs OCR errors in a cleaned MRZ using its check digits.
+ *
+ * For every check-digit protected field (document number, birth date, expiry,
+ * TD3 personal number) the readings reachable through the known OCR confusions
+ * are enumerated and scored: letter/digit look-alikes cost 1, digit/digit
+ * look-alikes cost 2, and the total budget shrinks as the ML Kit line confidence
+ * grows. Readings that fail the field's check digit (or are not a calendar date)
+ * are dropped, and the composite check digit then picks the cheapest combination.
+ * The MRZ counts as verified only when exactly one combination has that lowest
+ * cost, so a single good frame can be accepted without waiting for repeats. Only
+ * the cheapest readings of a field take part in the combination search; when
+ * the dropped ones could still reach the lowest cost the MRZ is left unverified.
+ *
+ * Not thread-safe; keep one per analyzer thread.
+ */
+public class CheckDigitCorrector {
+
+    private static final String TAG = "CheckDigitCorrector";
+
+    private static final int MAX_READINGS_PER_FIELD = 6;
+    private static final float SHAPE_COST = 1f;
+    private static final float DIGIT_COST = 2f;
+
+    public static class Result {
+        public final String mrz;
+        public final boolean verified;
+        public final float cost;
+
+        Result(String mrz, boolean verified, float cost) {
+            this.mrz = mrz;
+            this.verified = verified;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Check-digit protected field: value at [start, start + length) on a line, check digit at check
+     */
+    private static final class Field {
+        final int line;
+        final int start;
+        final int length;
+        final int check;
+        final boolean numeric;
+        final boolean date;
+        final boolean optional;
+
+        Field(int line, int start, int length, int check, boolean numeric, boolean date, boolean optional) {
+            this.line = line;
+            this.start = start;
+            this.length = length;
+            this.check = check;
+            this.numeric = numeric;
+            this.date = date;
+            this.optional = optional;
+        }
+    }
+
+    /**
+     * Positions per document type: checked fields, composite check digit and its
+     * input ranges ({line, start, end}), letter-only ranges and the sex position
+     */
+    private static final class Layout {
+        final int lineCount;
+        final int lineLength;
+        final Field[] fields;
+        final int compositeLine;
+        final int compositePos;
+        final int[][] compositeRanges;
+        final int[][] letterRanges;
+        final int sexLine;
+        final int sexPos;
+
+        Layout(int lineCount, int lineLength, Field[] fields, int compositeLine, int compositePos,
+               int[][] compositeRanges, int[][] letterRanges, int sexLine, int sexPos) {
+            this.lineCount = lineCount;
+            this.lineLength = lineLength;
+            this.fields = fields;
+            this.compositeLine = compositeLine;
+            this.compositePos = compositePos;
+            this.compositeRanges = compositeRanges;
+            this.letterRanges = letterRanges;
+            this.sexLine = sexLine;
+            this.sexPos = sexPos;
+        }
+    }
+
+    private static final Layout TD1 = new Layout(3, 30,
+            new Field[]{
+                    new Field(0, 5, 9, 14, false, false, false),
+                    new Field(1, 0, 6, 6, true, true, false),
+                    new Field(1, 8, 6, 14, true, true, false)},
+            1, 29, new int[][]{{0, 5, 30}, {1, 0, 7}, {1, 8, 15}, {1, 18, 29}},
+            new int[][]{{0, 0, 1}, {0, 2, 5}, {1, 15, 18}}, 1, 7);
+
+    private static final Layout TD2 = new Layout(2, 36,
+            new Field[]{
+                    new Field(1, 0, 9, 9, false, false, false),
+                    new Field(1, 13, 6, 19, true, true, false),
+                    new Field(1, 21, 6, 27, true, true, false)},
+            1, 35, new int[][]{{1, 0, 10}, {1, 13, 20}, {1, 21, 35}},
+            new int[][]{{0, 0, 1}, {0, 2, 5}, {1, 10, 13}}, 1, 20);
+
+    private static final Layout TD3 = new Layout(2, 44,
+            new Field[]{
+                    new Field(1, 0, 9, 9, false, false, false),
+                    new Field(1, 13, 6, 19, true, true, false),
+                    new Field(1, 21, 6, 27, true, true, false),
+                    new Field(1, 28, 14, 42, false, false, true)},
+            1, 43, new int[][]{{1, 0, 10}, {1, 13, 20}, {1, 21, 43}},
+            new int[][]{{0, 0, 1}, {0, 2, 5}, {1, 10, 13}}, 1, 20);
+
+    private static final Layout EEP = new Layout(1, 30,
+            new Field[]{
+                    new Field(0, 2, 9, 11, false, false, false),
+                    new Field(0, 13, 6, 19, true, true, false),
+                    new Field(0, 21, 6, 27, true, true, false)},
+            0, 29, new int[][]{{0, 2, 12}, {0, 13, 20}, {0, 21, 28}},
+            new int[0][], -1, -1);
+
+    // Letter read for a digit in a numeric position (0 = no known confusion)
+    private static final char[] LETTER_TO_DIGIT = new char[128];
+    // Digit read for a letter in a letter-only position
+    private static final char[] DIGIT_TO_LETTER = new char[128];
+    // Look-alikes of either class in an alphanumeric position
+    private static final String[] SHAPE_TWINS = new String[128];
+    // Digits OCR confuses with each other
+    private static final String[] DIGIT_TWINS = new String[128];
+
+    static {
+        String[][] letterDigit = {{"O", "0"}, {"Q", "0"}, {"D", "0"}, {"U", "0"}, {"I", "1"}, {"L", "1"},
+                {"T", "7"}, {"Z", "2"}, {"S", "5"}, {"G", "6"}, {"B", "8"}, {"A", "4"}};
+        for (String[] pair : letterDigit) {
+            LETTER_TO_DIGIT[pair[0].charAt(0)] = pair[1].charAt(0);
+        }
+        String[][] digitLetter = {{"0", "O"}, {"1", "I"}, {"2", "Z"}, {"4", "A"}, {"5", "S"},
+                {"6", "G"}, {"7", "T"}, {"8", "B"}};
+        for (String[] pair : digitLetter) {
+            DIGIT_TO_LETTER[pair[0].charAt(0)] = pair[1].charAt(0);
+        }
+
+        SHAPE_TWINS['0'] = "ODQ";
+        SHAPE_TWINS['O'] = "0";
+        SHAPE_TWINS['D'] = "0";
+        SHAPE_TWINS['Q'] = "0";
+        SHAPE_TWINS['1'] = "I";
+        SHAPE_TWINS['I'] = "1";
+        SHAPE_TWINS['2'] = "Z";
+        SHAPE_TWINS['Z'] = "2";
+        SHAPE_TWINS['5'] = "S";
+        SHAPE_TWINS['S'] = "5";
+        SHAPE_TWINS['6'] = "G";
+        SHAPE_TWINS['G'] = "6";
+        SHAPE_TWINS['8'] = "B";
+        SHAPE_TWINS['B'] = "8";
+        SHAPE_TWINS['<'] = "K";
+        SHAPE_TWINS['K'] = "<";
+
+        DIGIT_TWINS['0'] = "8";
+        DIGIT_TWINS['1'] = "7";
+        DIGIT_TWINS['3'] = "8";
+        DIGIT_TWINS['5'] = "6";
+        DIGIT_TWINS['6'] = "58";
+        DIGIT_TWINS['7'] = "1";
+        DIGIT_TWINS['8'] = "036";
+    }
+
+    /**
+     * One consistent reading of a field: value characters followed by the check digit
+     */
+    private static final class Reading {
+        final char[] chars;
+        final float cost;
+
+        Reading(char[] chars, float cost) {
+            this.chars = chars;
+            this.cost = cost;
+        }
+    }
+
+    private char[][] lines;
+
+    /**
+     * Correct a cleaned MRZ (lines joined by '\n', as MRZCleaner.extractAndClean returns it)
+     *
+     * @param confidence ML Kit confidence of the lines, 0..1
+     * @return the corrected MRZ, or null when the document type has no check-digit layout
+     *         or the text does not have its shape
+     */
+    public Result correct(String mrz, String docType, float confidence) {
+        // Budget in cost units: 1 (one letter/digit look-alike) for a confident frame,
+        // rising linearly to 5 at zero confidence
+        return correctWithin(mrz, docType, 1f + Math.max(0f, Math.min(1f, 1f - confidence)) * 4f);
+    }
+
+    /**
+     * Check an MRZ as read, without substitutions
+     *
+     * @return the MRZ with letter-only positions normalized when every check digit
+     *         holds, otherwise null
+     */
+    public Result verify(String mrz, String docType) {
+        Result result = correctWithin(mrz, docType, 0f);
+        return result != null && result.verified && result.cost == 0f ? result : null;
+    }
+
+    private Result correctWithin(String mrz, String docType, float budget) {
+        Layout layout = layoutFor(docType);
+        if (mrz == null || layout == null || !split(mrz, layout)) {
+            return null;
+        }
+
+        fixClassOnlyPositions(layout);
+
+        List<List<Reading>> perField = new ArrayList<>(layout.fields.length);
+        float[] droppedCost = new float[layout.fields.length];
+        for (int f = 0; f < layout.fields.length; f++) {
+            Field field = layout.fields[f];
+            List<Reading> readings = enumerate(field, budget);
+            if (readings.isEmpty()) {
+                CoreLog.d(TAG, "No consistent reading for field at " + field.line + ":" + field.start);
+                return new Result(join(), false, Float.MAX_VALUE);
+            }
+            if (readings.size() > MAX_READINGS_PER_FIELD) {
+                droppedCost[f] = readings.get(MAX_READINGS_PER_FIELD).cost;
+                readings = new ArrayList<>(readings.subList(0, MAX_READINGS_PER_FIELD));
+            } else {
+                droppedCost[f] = Float.MAX_VALUE;
+            }
+            perField.add(readings);
+        }
+
+        return chooseCombination(layout, perField, droppedCost, budget);
+    }
+
+    private static Layout layoutFor(String docType) {
+        if (docType == null) {
+            return null;
+        }
+        switch (docType) {
+            case Constants.DOC_TYPE_TD1:
+                return TD1;
+            case Constants.DOC_TYPE_TD2:
+                return TD2;
+            case Constants.DOC_TYPE_TD3:
+                return TD3;
+            case Constants.DOC_TYPE_EEP_CHINA:
+                return EEP;
+            default:
+                return null;
+        }
+    }
+
+    private boolean split(String mrz, Layout layout) {
+        lines = new char[layout.lineCount][];
+        int line = 0;
+        int start = 0;
+        for (int i = 0; i <= mrz.length(); i++) {
+            if (i == mrz.length() || mrz.charAt(i) == '\n') {
+                if (line >= layout.lineCount || i - start != layout.lineLength) {
+                    return false;
+                }
+                lines[line] = new char[layout.lineLength];
+                mrz.getChars(start, i, lines[line], 0);
+                line++;
+                start = i + 1;
+            }
+        }
+        return line == layout.lineCount;
+    }
+
+    /**
+     * Positions that only admit letters (issuer, nationality) or M/F/&lt; (sex) are
+     * fixed directly; they carry no check digit to weigh alternatives against
+     */
+    private void fixClassOnlyPositions(Layout layout) {
+        for (int[] range : layout.letterRanges) {
+            char[] line = lines[range[0]];
+            for (int i = range[1]; i < range[2]; i++) {
+                char c = line[i];
+                if (c < 128 && DIGIT_TO_LETTER[c] != 0) {
+                    line[i] = DIGIT_TO_LETTER[c];
+                }
+            }
+        }
+        if (layout.sexLine >= 0) {
+            char[] line = lines[layout.sexLine];
+            char sex = line[layout.sexPos];
+            if (sex != 'M' && sex != 'F' && sex != '<') {
+                line[layout.sexPos] = sex == 'H' || sex == 'N' ? 'M' : sex == 'E' || sex == 'P' ? 'F' : '<';
+            }
+        }
+    }
+
+    /**
+     * Depth-first over the confusion alternatives of each position, within budget,
+     * keeping readings whose check digit (and date) holds, cheapest first. The caller
+     * truncates the list and accounts for what it dropped.
+     */
+    private List<Reading> enumerate(Field field, float budget) {
+        char[] line = lines[field.line];
+        int count = field.length + 1;
+        char[] original = new char[count];
+        System.arraycopy(line, field.start, original, 0, field.length);
+        original[field.length] = line[field.check];
+
+        List<Reading> readings = new ArrayList<>();
+        search(field, original, new char[count], 0, 0f, budget, readings);
+        readings.sort((a, b) -> Float.compare(a.cost, b.cost));
+        return readings;
+    }
+
+    private void search(Field field, char[] original, char[] current, int index, float cost,
+                        float budget, List<Reading> out) {
+        if (index == current.length) {
+            if (isConsistent(field, current)) {
+                out.add(new Reading(current.clone(), cost));
+            }
+            return;
+        }
+
+        char c = original[index];
+        boolean numeric = field.numeric || index == field.length;
+
+        if (numeric) {
+            if (c >= '0' && c <= '9') {
+                current[index] = c;
+                search(field, original, current, index + 1, cost, budget, out);
+                tryAlternatives(field, original, current, index, cost, budget, out,
+                        c < 128 ? DIGIT_TWINS[c] : null, DIGIT_COST);
+            } else if (c == '<' && field.optional && index == field.length) {
+                current[index] = c;
+                search(field, original, current, index + 1, cost, budget, out);
+            } else {
+                // A letter in a digit position must be replaced
+                char digit = c < 128 ? LETTER_TO_DIGIT[c] : 0;
+                if (digit != 0 && cost + SHAPE_COST <= budget) {
+                    current[index] = digit;
+                    search(field, original, current, index + 1, cost + SHAPE_COST, budget, out);
+                }
+            }
+        } else {
+            current[index] = c;
+            search(field, original, current, index + 1, cost, budget, out);
+            tryAlternatives(field, original, current, index, cost, budget, out,
+                    c < 128 ? SHAPE_TWINS[c] : null, SHAPE_COST);
+        }
+    }
+
+    private void tryAlternatives(Field field, char[] original, char[] current, int index, float cost,
+                                 float budget, List<Reading> out, String alternatives, float weight) {
+        if (alternatives == null || cost + weight > budget) {
+            return;
+        }
+        for (int i = 0; i < alternatives.length(); i++) {
+            current[index] = alternatives.charAt(i);
+            search(field, original, current, index + 1, cost + weight, budget, out);
+        }
+    }
+
+    private static boolean isConsistent(Field field, char[] reading) {
+        char check = reading[field.length];
+        int expected = check == '<' ? 0 : check - '0';
+        if (checkDigit(reading, 0, field.length) != expected) {
+            return false;
+        }
+        if (check == '<') {
+            // Filler check digit only for an empty optional field
+            for (int i = 0; i < field.length; i++) {
+                if (reading[i] != '<') return false;
+            }
+        }
+        return !field.date || isValidDate(reading);
+    }
+
+    /**
+     * @param droppedCost per field, the cost of the cheapest reading cut by the
+     *                    truncation (Float.MAX_VALUE when nothing was cut)
+     */
+    private Result chooseCombination(Layout layout, List<List<Reading>> perField,
+                                     float[] droppedCost, float budget) {
+        int fields = perField.size();
+        int[] choice = new int[fields];
+        int[] best = null;
+        float bestCost = Float.MAX_VALUE;
+        boolean tie = false;
+
+        char[] compositeLine = lines[layout.compositeLine];
+        char composite = compositeLine[layout.compositePos];
+        char compositeDigit = composite >= '0' && composite <= '9' ? composite
+                : composite < 128 ? LETTER_TO_DIGIT[composite] : 0;
+        float compositeCost = composite == compositeDigit ? 0f : SHAPE_COST;
+
+        while (true) {
+            float cost = compositeCost;
+            for (int f = 0; f < fields; f++) {
+                Reading reading = perField.get(f).get(choice[f]);
+                apply(layout.fields[f], reading);
+                cost += reading.cost;
+            }
+
+            if (compositeDigit != 0 && cost <= budget + SHAPE_COST
+                    && compositeCheckDigit(layout) == compositeDigit - '0') {
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = choice.clone();
+                    tie = false;
+                } else if (cost == bestCost) {
+                    tie = true;
+                }
+            }
+
+            // Next combination
+            int f = fields - 1;
+            while (f >= 0 && ++choice[f] == perField.get(f).size()) {
+                choice[f] = 0;
+                f--;
+            }
+            if (f < 0) {
+                break;
+            }
+        }
+
+        if (best == null) {
+            return new Result(join(), false, Float.MAX_VALUE);
+        }
+
+        for (int f = 0; f < fields; f++) {
+            apply(layout.fields[f], perField.get(f).get(best[f]));
+        }
+        compositeLine[layout.compositePos] = compositeDigit;
+
+        if (!tie) {
+            tie = droppedCouldTie(perField, droppedCost, compositeCost, bestCost);
+        }
+        if (tie) {
+            CoreLog.d(TAG, "Ambiguous: more than one reading at cost " + bestCost);
+        }
+        return new Result(join(), !tie, bestCost);
+    }
+
+    /**
+     * Whether a combination using a reading cut from some field could cost no more
+     * than the best one: its cost is at least that reading plus the cheapest kept
+     * reading of every other field
+     */
+    private static boolean droppedCouldTie(List<List<Reading>> perField, float[] droppedCost,
+                                           float compositeCost, float bestCost) {
+        float cheapest = compositeCost;
+        for (List<Reading> readings : perField) {
+            cheapest += readings.get(0).cost;
+        }
+        for (int f = 0; f < perField.size(); f++) {
+            if (droppedCost[f] == Float.MAX_VALUE) {
+                continue;
+            }
+            if (cheapest - perField.get(f).get(0).cost + droppedCost[f] <= bestCost) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void apply(Field field, Reading reading) {
+        char[] line = lines[field.line];
+        System.arraycopy(reading.chars, 0, line, field.start, field.length);
+        line[field.check] = reading.chars[field.length];
+    }
+
+    private int compositeCheckDigit(Layout layout) {
+        int sum = 0;
+        int position = 0;
+        for (int[] range : layout.compositeRanges) {
+            char[] line = lines[range[0]];
+            for (int i = range[1]; i < range[2]; i++) {
+                sum += charValue(line[i]) * WEIGHTS[position++ % 3];
+            }
+        }
+        return sum % 10;
+    }
+
+    private String join() {
+        StringBuilder sb = new StringBuilder(lines.length * (lines[0].length + 1));
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(lines[i]);
+        }
+        return sb.toString();
+    }
+
+    private static final int[] WEIGHTS = {7, 3, 1};
+
+    private static int checkDigit(char[] chars, int start, int end) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += charValue(chars[i]) * WEIGHTS[(i - start) % 3];
+        }
+        return sum % 10;
+    }
+
+    private static int charValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 10;
+        return 0;
+    }
+
+    private static boolean isValidDate(char[] yymmdd) {
+        int month = (yymmdd[2] - '0') * 10 + (yymmdd[3] - '0');
+        int day = (yymmdd[4] - '0') * 10 + (yymmdd[5] - '0');
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return false;
+        }
+        if ((month == 4 || month == 6 || month == 9 || month == 11) && day > 30) {
+            return false;
+        }
+        return month != 2 || day <= 29;
+    }
+}
@@ -1,12 +1,7 @@
 package com.example.reader.mrz;
 
-import android.content.Intent;
-import android.util.Log;
-
-import com.example.reader.models.DocumentData;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.example.reader.utils.CoreLog;
+import com.example.reader.utils.MrzLineLexer;
 
 public class EepMrzParser extends BaseMrzParser {
 
@@ -23,20 +18,14 @@ public class EepMrzParser extends BaseMrzParser {
         }
 
         // Should contain date patterns (6 consecutive digits appear twice: expiry and DOB)
-        Pattern datePattern = Pattern.compile("\\d{6}");
-        Matcher matcher = datePattern.matcher(line);
-
-        int dateCount = 0;
-        while (matcher.find()) {
-            dateCount++;
-        }
+        int dateCount = MrzLineLexer.countSixDigitGroups(line);
 
         // Should have at least 2 date patterns (DOB and Expiry)
         return dateCount >= 2;
     }
 
     @Override
-    public Intent parse(String line) {
+    public boolean parse(String line, MrzFields out) {
         try {
             // Clean up common OCR errors for "CS"
             if (line.startsWith("C5")) {
@@ -47,8 +36,8 @@ public class EepMrzParser extends BaseMrzParser {
 
             // Ensure line is exactly 30 characters
             if (line.length() < 30) {
-                Log.d(TAG, "EEP: Line too short: " + line.length());
-                return null;
+                CoreLog.d(TAG, "EEP: Line too short: " + line.length());
+                return false;
             }
 
             // Truncate if slightly longer
@@ -76,32 +65,32 @@ public class EepMrzParser extends BaseMrzParser {
             char dobCheck = line.charAt(27);
             char finalCheck = line.charAt(29);
 
-            Log.d(TAG, "EEP: Parsing - DocType: " + docType + ", DocNum: " + docNum + ", DOB: " + dob + ", Expiry: " + expiry);
+            CoreLog.d(TAG, "EEP: Parsing - DocType: " + docType + ", DocNum: " + docNum + ", DOB: " + dob + ", Expiry: " + expiry);
 
             // Validate document type
             if (!docType.equals("CS")) {
-                Log.d(TAG, "EEP: Invalid document type: " + docType);
-                return null;
+                CoreLog.d(TAG, "EEP: Invalid document type: " + docType);
+                return false;
             }
 
             // Validate check digits
             if (!validateCheckDigit(docNum, docNumCheck)) {
-                Log.d(TAG, "EEP: Invalid document number check digit");
+                CoreLog.d(TAG, "EEP: Invalid document number check digit");
                 // Continue - might still be valid with OCR errors
             }
 
             if (!validateCheckDigit(expiry, expiryCheck)) {
-                Log.d(TAG, "EEP: Invalid expiry check digit");
+                CoreLog.d(TAG, "EEP: Invalid expiry check digit");
             }
 
             if (!validateCheckDigit(dob, dobCheck)) {
-                Log.d(TAG, "EEP: Invalid DOB check digit");
+                CoreLog.d(TAG, "EEP: Invalid DOB check digit");
             }
 
             // Validate final composite check digit
             String compositeData = line.substring(2, 12) + line.substring(13, 20) + line.substring(21, 28);
             if (!validateCheckDigit(compositeData, finalCheck)) {
-                Log.d(TAG, "EEP: Invalid final composite check digit");
+                CoreLog.d(TAG, "EEP: Invalid final composite check digit");
             }
 
             // Clean the extracted data
@@ -111,34 +100,33 @@ public class EepMrzParser extends BaseMrzParser {
 
             // Validate dates
             if (!isValidDate(dob)) {
-                Log.d(TAG, "EEP: Invalid DOB date: " + dob);
+                CoreLog.d(TAG, "EEP: Invalid DOB date: " + dob);
                 dob = fixDateOcrErrors(dob);
                 if (!isValidDate(dob)) {
-                    return null;
+                    return false;
                 }
             }
 
             if (!isValidDate(expiry)) {
-                Log.d(TAG, "EEP: Invalid expiry date: " + expiry);
+                CoreLog.d(TAG, "EEP: Invalid expiry date: " + expiry);
                 expiry = fixDateOcrErrors(expiry);
                 if (!isValidDate(expiry)) {
-                    return null;
+                    return false;
                 }
             }
 
-            // Success! Create result intent
-            Intent resultIntent = new Intent();
-            resultIntent.putExtra("DOC_NUM", docNum);
-            resultIntent.putExtra("DOB", dob);
-            resultIntent.putExtra("EXPIRY", expiry);
-            resultIntent.putExtra("DOC_TYPE", DocumentData.DocumentType.EEP.name());
+            // Success! Fill result
+            out.setDocumentNumber(docNum);
+            out.setDateOfBirth(dob);
+            out.setDateOfExpiry(expiry);
+            out.setDocumentType(MrzFields.DOC_TYPE_EEP);
 
-            Log.d(TAG, "EEP: Successfully parsed MRZ!");
-            return resultIntent;
+            CoreLog.d(TAG, "EEP: Successfully parsed MRZ!");
+            return true;
 
         } catch (Exception e) {
-            Log.e(TAG, "EEP: Error parsing MRZ line", e);
-            return null;
+            CoreLog.e(TAG, "EEP: Error parsing MRZ line", e);
+            return false;
         }
     }
 
@@ -0,0 +1,288 @@
+package com.example.reader.mrz;
+
+import com.example.reader.utils.CoreLog;
+
+import java.util.Arrays;
+
+/**
+ * Multi-frame MRZ consensus by per-character voting.
+ *
+ * Every cleaned MRZ is aligned line by line to the running consensus (a banded
+ * edit-distance alignment, so a dropped or doubled character shifts only the
+ * characters after it) and each aligned character votes for its position with
+ * the frame's ML Kit confidence. The consensus is the top-voted character at
+ * every position; it is emitted as soon as all its check digits hold. Frames
+ * that disagree still contribute, so glare on a different part of the MRZ in
+ * each frame converges where requiring identical reads would not.
+ *
+ * The first frame fixes the geometry, so the alignment also collects evidence
+ * against it: once most of the frame weight says a character is missing from
+ * (or extra in) the consensus at some position, the line is shifted there.
+ *
+ * Not thread-safe; keep one per analyzer thread.
+ */
+public class MrzConsensus {
+
+    private static final String TAG = "MrzConsensus";
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ<";
+    private static final int SYMBOLS = ALPHABET.length();
+    // Largest shift between a frame and the consensus the alignment considers
+    private static final int BAND = 2;
+    private static final float MIN_WEIGHT = 0.05f;
+
+    private final CheckDigitCorrector verifier = new CheckDigitCorrector();
+
+    private String documentType;
+    private float[][][] votes;
+    private char[][] consensus;
+    // Per line: weight of frames with an extra character before position j, and what it was
+    private float[][] insertions;
+    private float[][][] insertedVotes;
+    // Per line: weight of frames with nothing aligned to position j
+    private float[][] deletions;
+    private float totalWeight;
+    private int frameCount;
+
+    // Alignment scratch, sized for the longest line
+    private int[][] cost = new int[0][0];
+    private int[] mapping = new int[0];
+
+    /**
+     * Add one frame
+     *
+     * @param mrz        cleaned MRZ, lines joined by '\n'
+     * @param confidence ML Kit confidence of the frame, 0..1
+     * @return the consensus MRZ once every check digit validates, otherwise null
+     */
+    public String add(String mrz, String docType, float confidence) {
+        if (mrz == null || docType == null) {
+            return null;
+        }
+
+        String[] lines = mrz.split("\n");
+        if (!docType.equals(documentType) || !sameShape(lines)) {
+            start(docType, lines);
+        }
+
+        float weight = Math.max(MIN_WEIGHT, confidence);
+        totalWeight += weight;
+        for (int l = 0; l < lines.length; l++) {
+            vote(l, lines[l], weight);
+            repairGeometry(l);
+        }
+        frameCount++;
+
+        String text = getConsensus();
+        CheckDigitCorrector.Result verified = verifier.verify(text, docType);
+        if (verified == null) {
+            return null;
+        }
+        CoreLog.d(TAG, "Consensus validated after " + frameCount + " frame(s)");
+        return verified.mrz;
+    }
+
+    /**
+     * Current top-voted MRZ, or null before the first frame
+     */
+    public String getConsensus() {
+        if (consensus == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int l = 0; l < consensus.length; l++) {
+            if (l > 0) {
+                sb.append('\n');
+            }
+            sb.append(consensus[l]);
+        }
+        return sb.toString();
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public void reset() {
+        documentType = null;
+        votes = null;
+        consensus = null;
+        insertions = null;
+        insertedVotes = null;
+        deletions = null;
+        totalWeight = 0f;
+        frameCount = 0;
+    }
+
+    private boolean sameShape(String[] lines) {
+        if (consensus == null || consensus.length != lines.length) {
+            return false;
+        }
+        for (int l = 0; l < lines.length; l++) {
+            if (Math.abs(consensus[l].length - lines[l].length()) > BAND) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void start(String docType, String[] lines) {
+        if (documentType != null) {
+            CoreLog.d(TAG, "Document changed, restarting consensus after " + frameCount + " frame(s)");
+        }
+        documentType = docType;
+        frameCount = 0;
+        totalWeight = 0f;
+        votes = new float[lines.length][][];
+        consensus = new char[lines.length][];
+        insertions = new float[lines.length][];
+        insertedVotes = new float[lines.length][][];
+        deletions = new float[lines.length][];
+        for (int l = 0; l < lines.length; l++) {
+            int length = lines[l].length();
+            votes[l] = new float[length][SYMBOLS];
+            consensus[l] = new char[length];
+            // Lines start out aligned to themselves
+            lines[l].getChars(0, length, consensus[l], 0);
+            insertions[l] = new float[length + 1];
+            insertedVotes[l] = new float[length + 1][SYMBOLS];
+            deletions[l] = new float[length];
+        }
+    }
+
+    private void vote(int line, String text, float weight) {
+        char[] current = consensus[line];
+        float[][] lineVotes = votes[line];
+        align(text, current);
+
+        int next = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int position = mapping[i];
+            int symbol = ALPHABET.indexOf(text.charAt(i));
+            if (position < 0) {
+                // Extra character in the gap before the next consensus position
+                insertions[line][next] += weight;
+                if (symbol >= 0) {
+                    insertedVotes[line][next][symbol] += weight;
+                }
+                continue;
+            }
+            while (next < position) {
+                deletions[line][next++] += weight;
+            }
+            next = position + 1;
+            if (symbol < 0) {
+                continue;
+            }
+            float[] histogram = lineVotes[position];
+            histogram[symbol] += weight;
+            if (histogram[symbol] > histogram[symbolOf(current[position])]) {
+                current[position] = ALPHABET.charAt(symbol);
+            }
+        }
+        while (next < current.length) {
+            deletions[line][next++] += weight;
+        }
+    }
+
+    /**
+     * Shift the line where most of the frame weight disagrees with its geometry.
+     * The line keeps its length: an insertion drops the last position, a deletion
+     * appends an empty filler.
+     */
+    private void repairGeometry(int line) {
+        char[] current = consensus[line];
+        float[][] lineVotes = votes[line];
+        int length = current.length;
+        float majority = totalWeight / 2f;
+
+        for (int j = 0; j < length; j++) {
+            if (insertions[line][j] > majority) {
+                System.arraycopy(current, j, current, j + 1, length - j - 1);
+                System.arraycopy(lineVotes, j, lineVotes, j + 1, length - j - 1);
+                float[] histogram = insertedVotes[line][j].clone();
+                lineVotes[j] = histogram;
+                current[j] = ALPHABET.charAt(argmax(histogram));
+                clearEvidence(line);
+                return;
+            }
+            if (deletions[line][j] > majority) {
+                System.arraycopy(current, j + 1, current, j, length - j - 1);
+                System.arraycopy(lineVotes, j + 1, lineVotes, j, length - j - 1);
+                lineVotes[length - 1] = new float[SYMBOLS];
+                current[length - 1] = '<';
+                clearEvidence(line);
+                return;
+            }
+        }
+    }
+
+    private void clearEvidence(int line) {
+        Arrays.fill(insertions[line], 0f);
+        Arrays.fill(deletions[line], 0f);
+        for (float[] histogram : insertedVotes[line]) {
+            Arrays.fill(histogram, 0f);
+        }
+    }
+
+    private static int argmax(float[] histogram) {
+        int best = 0;
+        for (int i = 1; i < histogram.length; i++) {
+            if (histogram[i] > histogram[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int symbolOf(char c) {
+        int symbol = ALPHABET.indexOf(c);
+        return symbol >= 0 ? symbol : SYMBOLS - 1;
+    }
+
+    /**
+     * Banded edit-distance alignment of text to the consensus line; fills
+     * mapping[i] with the consensus position of text character i, or -1 when
+     * the character is an insertion
+     */
+    private void align(String text, char[] target) {
+        int n = text.length();
+        int m = target.length;
+        if (cost.length < n + 1 || cost[0].length < m + 1) {
+            cost = new int[n + 1 + BAND][m + 1 + BAND];
+        }
+        if (mapping.length < n) {
+            mapping = new int[n + BAND];
+        }
+
+        int outside = Integer.MAX_VALUE / 2;
+        for (int i = 0; i <= n; i++) {
+            for (int j = 0; j <= m; j++) {
+                if (Math.abs(i - j) > BAND) {
+                    cost[i][j] = outside;
+                } else if (i == 0 || j == 0) {
+                    cost[i][j] = i + j;
+                } else {
+                    int diagonal = cost[i - 1][j - 1] + (text.charAt(i - 1) == target[j - 1] ? 0 : 1);
+                    int skipText = cost[i - 1][j] + 1;
+                    int skipTarget = cost[i][j - 1] + 1;
+                    cost[i][j] = Math.min(diagonal, Math.min(skipText, skipTarget));
+                }
+            }
+        }
+
+        // Walk back, preferring the diagonal so plain substitutions stay in place
+        int i = n;
+        int j = m;
+        while (i > 0) {
+            int here = cost[i][j];
+            if (j > 0 && here == cost[i - 1][j - 1] + (text.charAt(i - 1) == target[j - 1] ? 0 : 1)) {
+                mapping[--i] = --j;
+            } else if (here == cost[i - 1][j] + 1) {
+                mapping[--i] = -1;
+            } else {
+                j--;
+            }
+        }
+    }
+}
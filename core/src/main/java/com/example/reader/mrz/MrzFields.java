@@ -0,0 +1,150 @@
+package com.example.reader.mrz;
+
+/**
+ * Fields extracted from an MRZ by a {@link MrzParser}
+ *
+ * Parsers fill a scratch instance that {@link MrzParserManager} reuses across
+ * failed attempts, so scanning frames that do not parse allocates nothing for
+ * the result. A successful parse is published: from then on the instance is
+ * read-only and the manager starts a new scratch for the next frame.
+ */
+public final class MrzFields {
+
+    // Document type values, matching DocumentData.DocumentType names in the app
+    public static final String DOC_TYPE_PASSPORT = "PASSPORT";
+    public static final String DOC_TYPE_EEP = "EEP";
+
+    private String documentNumber;
+    private String dateOfBirth;
+    private String dateOfExpiry;
+    private String nationality;
+    private String issuingCountry;
+    private String sex;
+    private String surname;
+    private String givenNames;
+    private String documentType;
+    private boolean published;
+
+    public String getDocumentNumber() {
+        return documentNumber;
+    }
+
+    public String getDateOfBirth() {
+        return dateOfBirth;
+    }
+
+    public String getDateOfExpiry() {
+        return dateOfExpiry;
+    }
+
+    public String getNationality() {
+        return nationality;
+    }
+
+    public String getIssuingCountry() {
+        return issuingCountry;
+    }
+
+    public String getSex() {
+        return sex;
+    }
+
+    public String getSurname() {
+        return surname;
+    }
+
+    public String getGivenNames() {
+        return givenNames;
+    }
+
+    /**
+     * DocumentData.DocumentType name of the parsed document
+     */
+    public String getDocumentType() {
+        return documentType;
+    }
+
+    public boolean isPublished() {
+        return published;
+    }
+
+    void setDocumentNumber(String documentNumber) {
+        checkWritable();
+        this.documentNumber = documentNumber;
+    }
+
+    void setDateOfBirth(String dateOfBirth) {
+        checkWritable();
+        this.dateOfBirth = dateOfBirth;
+    }
+
+    void setDateOfExpiry(String dateOfExpiry) {
+        checkWritable();
+        this.dateOfExpiry = dateOfExpiry;
+    }
+
+    void setNationality(String nationality) {
+        checkWritable();
+        this.nationality = nationality;
+    }
+
+    void setIssuingCountry(String issuingCountry) {
+        checkWritable();
+        this.issuingCountry = issuingCountry;
+    }
+
+    void setSex(String sex) {
+        checkWritable();
+        this.sex = sex;
+    }
+
+    void setSurname(String surname) {
+        checkWritable();
+        this.surname = surname;
+    }
+
+    void setGivenNames(String givenNames) {
+        checkWritable();
+        this.givenNames = givenNames;
+    }
+
+    void setDocumentType(String documentType) {
+        checkWritable();
+        this.documentType = documentType;
+    }
+
+    /**
+     * Clear a scratch instance before the next parse attempt
+     */
+    void reset() {
+        checkWritable();
+        documentNumber = null;
+        dateOfBirth = null;
+        dateOfExpiry = null;
+        nationality = null;
+        issuingCountry = null;
+        sex = null;
+        surname = null;
+        givenNames = null;
+        documentType = null;
+    }
+
+    /**
+     * Freeze the instance; it may now be handed to other threads
+     */
+    void publish() {
+        published = true;
+    }
+
+    private void checkWritable() {
+        if (published) {
+            throw new IllegalStateException("MrzFields already published");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MrzFields{docNum='" + documentNumber + "', dob='" + dateOfBirth
+                + "', expiry='" + dateOfExpiry + "', type='" + documentType + "'}";
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.reader.mrz;
 
-import android.content.Intent;
-
 public interface MrzParser {
     /**
      * Check if this parser can handle the given line
@@ -9,10 +7,10 @@ public interface MrzParser {
     boolean canParse(String line);
 
     /**
-     * Parse the MRZ line and return the extracted data
-     * @return Intent with extracted data, or null if parsing failed
+     * Parse the MRZ line into the given fields
+     * @return true if parsing succeeded; on false the fields hold no meaningful data
      */
-    Intent parse(String line);
+    boolean parse(String line, MrzFields out);
 
     /**
      * Get the document type this parser handles
@@ -1,7 +1,6 @@
 package com.example.reader.mrz;
 
-import android.content.Intent;
-import android.util.Log;
+import com.example.reader.utils.CoreLog;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -11,6 +10,10 @@ public class MrzParserManager {
 
     private final List<MrzParser> parsers = new ArrayList<>();
 
+    // Filled by every parse attempt and replaced only once a result is published,
+    // so a manager belongs to one analyzer thread
+    private MrzFields scratch = new MrzFields();
+
     public MrzParserManager() {
         // Add parsers in priority order
         parsers.add(new EepMrzParser());
@@ -22,9 +25,9 @@ public class MrzParserManager {
      * Try to parse MRZ text with all available parsers
      * @param mrzText Full MRZ text (may be multiple lines)
      * @param docType Detected document type hint
-     * @return Intent with parsed data, or null if parsing failed
+     * @return Published (read-only) fields, or null if parsing failed
      */
-    public Intent parseMrz(String mrzText, String docType) {
+    public MrzFields parseMrz(String mrzText, String docType) {
         if (mrzText == null || mrzText.isEmpty()) {
             return null;
         }
@@ -38,11 +41,10 @@ public class MrzParserManager {
 
             for (MrzParser parser : parsers) {
                 if (parser.canParse(cleanLine)) {
-                    Log.d(TAG, "Trying parser: " + parser.getDocumentType() + " for line: " + cleanLine);
-                    Intent result = parser.parse(cleanLine);
-                    if (result != null) {
-                        Log.d(TAG, "Successfully parsed with: " + parser.getDocumentType());
-                        return result;
+                    CoreLog.d(TAG, "Trying parser: " + parser.getDocumentType() + " for line: " + cleanLine);
+                    if (tryParse(parser, cleanLine)) {
+                        CoreLog.d(TAG, "Successfully parsed with: " + parser.getDocumentType());
+                        return publish();
                     }
                 }
             }
@@ -52,16 +54,27 @@ public class MrzParserManager {
         for (MrzParser parser : parsers) {
             String fullMrz = mrzText.replace("\n", "");
             if (parser.canParse(fullMrz)) {
-                Log.d(TAG, "Trying parser with full MRZ: " + parser.getDocumentType());
-                Intent result = parser.parse(fullMrz);
-                if (result != null) {
-                    Log.d(TAG, "Successfully parsed full MRZ with: " + parser.getDocumentType());
-                    return result;
+                CoreLog.d(TAG, "Trying parser with full MRZ: " + parser.getDocumentType());
+                if (tryParse(parser, fullMrz)) {
+                    CoreLog.d(TAG, "Successfully parsed full MRZ with: " + parser.getDocumentType());
+                    return publish();
                 }
             }
         }
 
-        Log.w(TAG, "No parser could handle the MRZ text");
+        CoreLog.w(TAG, "No parser could handle the MRZ text");
         return null;
     }
-}
\ No newline at end of file
+
+    private boolean tryParse(MrzParser parser, String line) {
+        scratch.reset();
+        return parser.parse(line, scratch);
+    }
+
+    private MrzFields publish() {
+        MrzFields result = scratch;
+        result.publish();
+        scratch = new MrzFields();
+        return result;
+    }
+}
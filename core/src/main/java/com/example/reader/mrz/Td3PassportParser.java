@@ -1,12 +1,7 @@
 package com.example.reader.mrz;
 
-import android.content.Intent;
-import android.util.Log;
-
-import com.example.reader.models.DocumentData;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.example.reader.utils.CoreLog;
+import com.example.reader.utils.MrzLineLexer;
 
 public class Td3PassportParser extends BaseMrzParser {
 
@@ -18,25 +13,19 @@ public class Td3PassportParser extends BaseMrzParser {
         }
 
         // Check for date patterns (YYMMDD appears at least twice)
-        Pattern datePattern = Pattern.compile("\\d{6}");
-        Matcher matcher = datePattern.matcher(line);
-
-        int dateCount = 0;
-        while (matcher.find()) {
-            dateCount++;
-        }
+        int dateCount = MrzLineLexer.countSixDigitGroups(line);
 
         // Should have at least 2 date patterns (DOB and Expiry)
         return dateCount >= 1;
     }
 
     @Override
-    public Intent parse(String line) {
+    public boolean parse(String line, MrzFields out) {
         try {
             // Ensure line is exactly 44 characters
             if (line.length() < 44) {
-                Log.d(TAG, "TD3: Line too short: " + line.length());
-                return null;
+                CoreLog.d(TAG, "TD3: Line too short: " + line.length());
+                return false;
             }
 
             // Truncate if slightly longer
@@ -61,22 +50,22 @@ public class Td3PassportParser extends BaseMrzParser {
             String expiry = line.substring(21, 27);
             char expiryCheck = line.charAt(27);
 
-            Log.d(TAG, "TD3: Parsing - DocNum: " + docNum + ", DOB: " + dob + ", Expiry: " + expiry);
+            CoreLog.d(TAG, "TD3: Parsing - DocNum: " + docNum + ", DOB: " + dob + ", Expiry: " + expiry);
 
             // Validate check digits
             if (!validateCheckDigit(docNum, docNumCheck)) {
-                Log.d(TAG, "TD3: Invalid document number check digit");
-                return null;
+                CoreLog.d(TAG, "TD3: Invalid document number check digit");
+                return false;
             }
 
             if (!validateCheckDigit(dob, dobCheck)) {
-                Log.d(TAG, "TD3: Invalid DOB check digit");
-                return null;
+                CoreLog.d(TAG, "TD3: Invalid DOB check digit");
+                return false;
             }
 
             if (!validateCheckDigit(expiry, expiryCheck)) {
-                Log.d(TAG, "TD3: Invalid expiry check digit");
-                return null;
+                CoreLog.d(TAG, "TD3: Invalid expiry check digit");
+                return false;
             }
 
             // Clean the extracted data
@@ -86,36 +75,35 @@ public class Td3PassportParser extends BaseMrzParser {
 
             // Validate dates
             if (!isValidDate(dob)) {
-                Log.d(TAG, "TD3: Invalid DOB date: " + dob);
+                CoreLog.d(TAG, "TD3: Invalid DOB date: " + dob);
                 dob = fixDateOcrErrors(dob);
                 if (!isValidDate(dob)) {
-                    return null;
+                    return false;
                 }
             }
 
             if (!isValidDate(expiry)) {
-                Log.d(TAG, "TD3: Invalid expiry date: " + expiry);
+                CoreLog.d(TAG, "TD3: Invalid expiry date: " + expiry);
                 expiry = fixDateOcrErrors(expiry);
                 if (!isValidDate(expiry)) {
-                    return null;
+                    return false;
                 }
             }
 
-            // Success! Create result intent
-            Intent resultIntent = new Intent();
-            resultIntent.putExtra("DOC_NUM", docNum);
-            resultIntent.putExtra("DOB", dob);
-            resultIntent.putExtra("EXPIRY", expiry);
-            resultIntent.putExtra("NATIONALITY", nationality);
-            resultIntent.putExtra("SEX", String.valueOf(sex));
-            resultIntent.putExtra("DOC_TYPE", DocumentData.DocumentType.PASSPORT.name());
+            // Success! Fill result
+            out.setDocumentNumber(docNum);
+            out.setDateOfBirth(dob);
+            out.setDateOfExpiry(expiry);
+            out.setNationality(nationality);
+            out.setSex(String.valueOf(sex));
+            out.setDocumentType(MrzFields.DOC_TYPE_PASSPORT);
 
-            Log.d(TAG, "TD3: Successfully parsed MRZ!");
-            return resultIntent;
+            CoreLog.d(TAG, "TD3: Successfully parsed MRZ!");
+            return true;
 
         } catch (Exception e) {
-            Log.e(TAG, "TD3: Error parsing MRZ line", e);
-            return null;
+            CoreLog.e(TAG, "TD3: Error parsing MRZ line", e);
+            return false;
         }
     }
 
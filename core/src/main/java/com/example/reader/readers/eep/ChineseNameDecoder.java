@@ -1,6 +1,6 @@
 package com.example.reader.readers.eep;
 
-import android.util.Log;
+import com.example.reader.utils.CoreLog;
 import java.io.UnsupportedEncodingException;
 
 /**
@@ -42,7 +42,7 @@ public class ChineseNameDecoder {
             return "";
         }
         if (validLength != cleaned.length()) {
-            Log.w(TAG, String.format("Truncating encoded name from %d to %d chars",
+            CoreLog.w(TAG, String.format("Truncating encoded name from %d to %d chars",
                     cleaned.length(), validLength));
             cleaned = cleaned.substring(0, validLength);
         }
@@ -76,7 +76,7 @@ public class ChineseNameDecoder {
         } else if (c >= 'K' && c <= 'P') {
             return c - 'K' + 10; // K=10, L=11, ..., P=15
         } else {
-            Log.w(TAG, "Unknown encoded character: " + c);
+            CoreLog.w(TAG, "Unknown encoded character: " + c);
             return 0;
         }
     }
@@ -86,14 +86,14 @@ public class ChineseNameDecoder {
         try {
             return new String(bytes, CHARSET_GBK);
         } catch (UnsupportedEncodingException e) {
-            Log.w(TAG, "GBK not supported, trying GB2312");
+            CoreLog.w(TAG, "GBK not supported, trying GB2312");
         }
 
         // Fallback to GB2312
         try {
             return new String(bytes, CHARSET_GB2312);
         } catch (UnsupportedEncodingException e) {
-            Log.e(TAG, "Neither GBK nor GB2312 supported");
+            CoreLog.e(TAG, "Neither GBK nor GB2312 supported");
         }
 
         return fallback;
@@ -1,6 +1,6 @@
 package com.example.reader.readers.eep;
 
-import android.util.Log;
+import com.example.reader.utils.CoreLog;
 
 /**
  * Parser for Chinese Exit-Entry Permit MRZ (Machine Readable Zone)
@@ -64,7 +64,7 @@ public class EepMrzParser {
         }
 
         String docCode = cleaned.substring(0, 2).toUpperCase();
-        Log.d(TAG, "Document code: " + docCode);
+        CoreLog.d(TAG, "Document code: " + docCode);
 
         return "CS".equals(docCode) || "CD".equals(docCode);
     }
@@ -78,13 +78,13 @@ public class EepMrzParser {
 
         String normalized = normalizeMrz(mrz);
         if (normalized.length() < 90) {
-            Log.w(TAG, "MRZ too short: " + normalized.length());
+            CoreLog.w(TAG, "MRZ too short: " + normalized.length());
             result.isValid = false;
             return result;
         }
 
-        Log.d(TAG, "Parsing normalized MRZ (90 chars):");
-        Log.d(TAG, "  Full: " + normalized);
+        CoreLog.d(TAG, "Parsing normalized MRZ (90 chars):");
+        CoreLog.d(TAG, "  Full: " + normalized);
 
         // Parse using field-length based extraction (iOS style)
         parseFieldBased(normalized, result);
@@ -105,12 +105,12 @@ public class EepMrzParser {
 
         // Extract: document number (9)
         result.cardNumber = substring(mrz, idx, EepConstants.DOCUMENT_NUMBER).trim();
-        Log.d(TAG, "Card number: " + result.cardNumber);
+        CoreLog.d(TAG, "Card number: " + result.cardNumber);
 
         // Verify check digit
         char cardCheckDigit = mrz.charAt(idx + EepConstants.DOCUMENT_NUMBER);
         if (!checkDigitValidator.verify(result.cardNumber, cardCheckDigit)) {
-            Log.w(TAG, "Card number check digit failed");
+            CoreLog.w(TAG, "Card number check digit failed");
             result.checksumValid = false;
         }
         idx += EepConstants.DOCUMENT_NUMBER_BLOCK;
@@ -118,11 +118,11 @@ public class EepMrzParser {
         // Extract: expiry date (skip filler, read 6 digits)
         String expiry = substring(mrz, idx + EepConstants.FILLER, EepConstants.DATE).trim();
         result.dateOfExpiry = expiry;
-        Log.d(TAG, "Expiry date: " + result.dateOfExpiry);
+        CoreLog.d(TAG, "Expiry date: " + result.dateOfExpiry);
 
         char expiryCheckDigit = mrz.charAt(idx + EepConstants.FILLER + EepConstants.DATE);
         if (!checkDigitValidator.verify(expiry, expiryCheckDigit)) {
-            Log.w(TAG, "Expiry date check digit failed");
+            CoreLog.w(TAG, "Expiry date check digit failed");
             result.checksumValid = false;
         }
         idx += EepConstants.EXPIRY_BLOCK;
@@ -130,11 +130,11 @@ public class EepMrzParser {
         // Extract: date of birth (6) with century calculation
         String dob = substring(mrz, idx, EepConstants.DATE).trim();
         result.dateOfBirth = calculateDOB(dob);
-        Log.d(TAG, "Date of birth: " + result.dateOfBirth);
+        CoreLog.d(TAG, "Date of birth: " + result.dateOfBirth);
 
         char dobCheckDigit = mrz.charAt(idx + EepConstants.DATE);
         if (!checkDigitValidator.verify(dob, dobCheckDigit)) {
-            Log.w(TAG, "DOB check digit failed");
+            CoreLog.w(TAG, "DOB check digit failed");
             result.checksumValid = false;
         }
         idx += EepConstants.DOB_BLOCK;
@@ -145,13 +145,13 @@ public class EepMrzParser {
         // Extract: Chinese name (12 chars, GBK encoded)
         String chineseEncoded = substring(mrz, idx, EepConstants.CHINESE_NAME);
         result.chineseName = nameDecoder.decode(chineseEncoded);
-        Log.d(TAG, "Chinese name: " + result.chineseName);
+        CoreLog.d(TAG, "Chinese name: " + result.chineseName);
         idx += EepConstants.CHINESE_NAME;
 
         // Extract: English name (18 chars)
         String englishName = substring(mrz, idx, EepConstants.ENGLISH_NAME);
         parseEnglishName(englishName, result);
-        Log.d(TAG, "English name: " + result.firstName + " " + result.lastName);
+        CoreLog.d(TAG, "English name: " + result.firstName + " " + result.lastName);
         idx += EepConstants.ENGLISH_NAME;
 
         // Extract: Gender (1)
@@ -159,7 +159,7 @@ public class EepMrzParser {
         if (result.gender.isEmpty()) {
             result.gender = "UNKNOWN";
         }
-        Log.d(TAG, "Gender: " + result.gender);
+        CoreLog.d(TAG, "Gender: " + result.gender);
         idx += EepConstants.GENDER;
 
         // Skip: obsolete fields (5)
@@ -174,7 +174,7 @@ public class EepMrzParser {
                 .replace("<", " ")
                 .trim();
         result.placeOfBirth = pob.isEmpty() ? null : pob;
-        Log.d(TAG, "Place of birth: " + result.placeOfBirth);
+        CoreLog.d(TAG, "Place of birth: " + result.placeOfBirth);
 
         // Set fixed values
         result.issuingState = EepConstants.ISSUING_COUNTRY_CHINA;
@@ -206,7 +206,7 @@ public class EepMrzParser {
 
             return fullDate;
         } catch (Exception e) {
-            Log.w(TAG, "Error calculating DOB: " + e.getMessage());
+            CoreLog.w(TAG, "Error calculating DOB: " + e.getMessage());
             return yymmdd;
         }
     }
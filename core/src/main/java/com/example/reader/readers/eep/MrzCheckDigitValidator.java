@@ -1,6 +1,6 @@
 package com.example.reader.readers.eep;
 
-import android.util.Log;
+import com.example.reader.utils.CoreLog;
 
 /**
  * Validates MRZ check digits according to ICAO Doc 9303 standard
@@ -25,13 +25,13 @@ public class MrzCheckDigitValidator {
         int actual = parseCheckDigit(checkDigit);
 
         if (actual < 0) {
-            Log.w(TAG, "Invalid check digit character: " + checkDigit);
+            CoreLog.w(TAG, "Invalid check digit character: " + checkDigit);
             return false;
         }
 
         boolean valid = (expected == actual);
         if (!valid) {
-            Log.d(TAG, "Check digit mismatch: expected"+
+            CoreLog.d(TAG, "Check digit mismatch: expected"+
                     expected +" "+ actual +" "+ data);
         }
 
@@ -61,7 +61,7 @@ public class MrzCheckDigitValidator {
         } else if (c == '<') {
             return 0;
         } else {
-            Log.w(TAG, "Unknown MRZ character: " + c);
+            CoreLog.w(TAG, "Unknown MRZ character: " + c);
             return 0;
         }
     }
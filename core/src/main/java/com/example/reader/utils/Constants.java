@@ -6,6 +6,7 @@ public class Constants {
     public static final String EXTRA_EXPIRY = "EXPIRY";
     public static final String EXTRA_MRZ_LINES = "MRZ_LINES";
     public static final String EXTRA_DOC_TYPE = "DOC_TYPE";
+    public static final String EXTRA_ISSUING_COUNTRY = "ISSUING_COUNTRY";
     public static final String EXTRA_MRZ_TEXT = "MRZ_TEXT";
     public static final String EXTRA_CAPTURED_IMAGE_PATH = "CAPTURED_IMAGE_PATH";
 
@@ -0,0 +1,65 @@
+package com.example.reader.utils;
+
+/**
+ * Logging for the core module, which cannot use android.util.Log
+ *
+ * Messages go to the installed sink; the app installs one that forwards to
+ * logcat, a server JVM gets stdout/stderr unless it installs its own.
+ */
+public final class CoreLog {
+
+    public interface Sink {
+        void log(int level, String tag, String message, Throwable throwable);
+    }
+
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    private static final Sink CONSOLE = (level, tag, message, throwable) -> {
+        if (level < INFO) {
+            return;
+        }
+        java.io.PrintStream out = level >= WARN ? System.err : System.out;
+        out.println(tag + ": " + message);
+        if (throwable != null) {
+            throwable.printStackTrace(out);
+        }
+    };
+
+    private static volatile Sink sink = CONSOLE;
+
+    private CoreLog() {}
+
+    /**
+     * Route core log output (null restores the console sink)
+     */
+    public static void setSink(Sink newSink) {
+        sink = newSink != null ? newSink : CONSOLE;
+    }
+
+    public static void d(String tag, String message) {
+        sink.log(DEBUG, tag, message, null);
+    }
+
+    public static void i(String tag, String message) {
+        sink.log(INFO, tag, message, null);
+    }
+
+    public static void w(String tag, String message) {
+        sink.log(WARN, tag, message, null);
+    }
+
+    public static void w(String tag, String message, Throwable throwable) {
+        sink.log(WARN, tag, message, throwable);
+    }
+
+    public static void e(String tag, String message) {
+        sink.log(ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable throwable) {
+        sink.log(ERROR, tag, message, throwable);
+    }
+}
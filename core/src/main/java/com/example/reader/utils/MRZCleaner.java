@@ -1,10 +1,6 @@
 package com.example.reader.utils;
 
-import android.util.Log;
-
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Utility class for cleaning and normalizing MRZ text.
@@ -13,23 +9,8 @@ import java.util.Map;
 public class MRZCleaner {
     private static final String TAG = "MRZCleaner";
 
-    // OCR common misrecognition corrections
-    private static final Map<Character, Character> OCR_CORRECTIONS = new HashMap<>();
-    static {
-        OCR_CORRECTIONS.put('|', 'I');
-        OCR_CORRECTIONS.put('!', 'I');
-        OCR_CORRECTIONS.put('l', 'I');
-        OCR_CORRECTIONS.put('}', 'J');
-        OCR_CORRECTIONS.put('{', 'C');
-        OCR_CORRECTIONS.put('$', 'S');
-        OCR_CORRECTIONS.put('@', '0');
-        OCR_CORRECTIONS.put('°', '0');
-        OCR_CORRECTIONS.put('(', 'C');
-        OCR_CORRECTIONS.put(')', '0');
-        OCR_CORRECTIONS.put('o', 'O');
-        OCR_CORRECTIONS.put('Q', 'O');  // Common in dates
-        OCR_CORRECTIONS.put('D', '0');  // Common in numbers
-    }
+    // One lexer per analyzer thread; cleaning reuses its buffer across lines
+    private static final ThreadLocal<MrzLineLexer> LEXER = ThreadLocal.withInitial(MrzLineLexer::new);
 
     /**
      * Cleans a single MRZ line by removing invalid characters and applying corrections.
@@ -39,99 +20,41 @@ public class MRZCleaner {
             return "";
         }
 
-        char[] chars = text.toUpperCase().toCharArray();
-        StringBuilder result = new StringBuilder(chars.length);
-
-        for (char c : chars) {
-            // Skip whitespace and tabs
-            if (c == ' ' || c == '\t') {
-                continue;
-            }
-
-            // Apply OCR corrections
-            Character corrected = OCR_CORRECTIONS.get(c);
-            if (corrected != null) {
-                c = corrected;
-            }
-
-            // Only keep valid MRZ characters
-            if (MRZUtils.isValidMRZChar(c)) {
-                result.append(c);
-            }
-        }
-
-        String cleaned = result.toString();
-        return correctOAndZero(cleaned);
+        MrzLineLexer lexer = LEXER.get();
+        lexer.scan(text, MrzLineLexer.MODE_CLEAN);
+        return lexer.toString();
     }
 
     /**
      * Cleans an EEP (Exit-Entry Permit) line with specific corrections.
      */
     public static String cleanEEPLine(String text) {
-        String result = cleanMRZLine(text);
-
-        // Correct common EEP prefix errors
-        if (result.length() >= 2) {
-            String prefix = result.substring(0, 2);
-            if (prefix.equals("C5") || prefix.equals("C8") ||
-                    prefix.equals("C$") || prefix.equals("CO")) {
-                result = "CS" + result.substring(2);
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * Corrects O and 0 based on context.
-     * In MRZ, context determines whether a character should be O or 0.
-     */
-    private static String correctOAndZero(String text) {
-        if (text.length() < 2) {
-            return text;
-        }
-
-        char[] chars = text.toCharArray();
-
-        // Special handling for EEP documents (CS prefix)
-        if (chars[0] == 'C' && (chars[1] == 'S' || chars[1] == '5' || chars[1] == '8')) {
-            // After CS prefix, everything should be digits (0) not letters (O)
-            for (int i = 2; i < chars.length; i++) {
-                if (chars[i] == 'O') {
-                    chars[i] = '0';
-                }
-            }
-            return new String(chars);
+        if (text == null || text.isEmpty()) {
+            return "";
         }
 
-        // Context-based O/0 correction
-        for (int i = 0; i < chars.length; i++) {
-            if (chars[i] == 'O' || chars[i] == '0') {
-                boolean prevIsDigit = i > 0 && Character.isDigit(chars[i - 1]);
-                boolean nextIsDigit = i < chars.length - 1 && Character.isDigit(chars[i + 1]);
+        MrzLineLexer lexer = LEXER.get();
+        lexer.scan(text, MrzLineLexer.MODE_CLEAN);
 
-                // If surrounded by digits, it's likely a zero
-                if (prevIsDigit || nextIsDigit) {
-                    chars[i] = '0';
-                } else {
-                    chars[i] = 'O';
-                }
-            }
+        // Correct common EEP prefix errors
+        if (lexer.startsWith('C', '5') || lexer.startsWith('C', '8') ||
+                lexer.startsWith('C', '$') || lexer.startsWith('C', 'O')) {
+            lexer.setCharAt(1, 'S');
         }
 
-        return new String(chars);
+        return lexer.toString();
     }
 
     public static String extractAndClean(List<String> mrzLines, String documentType) {
         if (mrzLines == null || mrzLines.isEmpty()) {
-            Log.d(TAG, "extractAndClean: null or empty input");
+            CoreLog.d(TAG, "extractAndClean: null or empty input");
             return null;
         }
 
-        Log.d(TAG, "━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
-        Log.d(TAG, "extractAndClean: " + mrzLines.size() + " candidates, docType=" + documentType);
+        CoreLog.d(TAG, "━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
+        CoreLog.d(TAG, "extractAndClean: " + mrzLines.size() + " candidates, docType=" + documentType);
         for (int i = 0; i < mrzLines.size(); i++) {
-            Log.d(TAG, "  Raw line " + i + ": [" + mrzLines.get(i) + "] len=" + mrzLines.get(i).length());
+            CoreLog.d(TAG, "  Raw line " + i + ": [" + mrzLines.get(i) + "] len=" + mrzLines.get(i).length());
         }
 
         String docType = documentType != null ? documentType :
@@ -153,7 +76,7 @@ public class MRZCleaner {
         int requiredCount = DocumentTypeDetector.getRequiredLineCount(docType);
         int minAcceptableLength = (int) (targetLength * 0.85);
 
-        Log.d(TAG, "Target: " + targetLength + " chars, required: " + requiredCount + " lines, minLen: " + minAcceptableLength);
+        CoreLog.d(TAG, "Target: " + targetLength + " chars, required: " + requiredCount + " lines, minLen: " + minAcceptableLength);
 
         StringBuilder result = new StringBuilder();
         int validCount = 0;
@@ -162,11 +85,11 @@ public class MRZCleaner {
             if (validCount >= requiredCount) break;
 
             String cleaned = cleanMRZLine(line);
-            Log.d(TAG, "  Cleaned: [" + cleaned + "] len=" + cleaned.length());
+            CoreLog.d(TAG, "  Cleaned: [" + cleaned + "] len=" + cleaned.length());
 
             // Check length
             if (cleaned.length() < minAcceptableLength) {
-                Log.d(TAG, "  ❌ REJECTED: too short (" + cleaned.length() + " < " + minAcceptableLength + ")");
+                CoreLog.d(TAG, "  ❌ REJECTED: too short (" + cleaned.length() + " < " + minAcceptableLength + ")");
                 continue;
             }
 
@@ -175,17 +98,17 @@ public class MRZCleaner {
                 char firstChar = cleaned.charAt(0);
                 // Accept P, V (visa), or common OCR errors for P
                 if (firstChar != 'P' && firstChar != 'V') {
-                    Log.d(TAG, "  ❌ REJECTED: TD3 first line doesn't start with P/V: '" + firstChar + "'");
+                    CoreLog.d(TAG, "  ❌ REJECTED: TD3 first line doesn't start with P/V: '" + firstChar + "'");
                     // BUT don't reject if it looks like MRZ (has << pattern)
                     if (!cleaned.contains("<<")) {
                         continue;
                     }
-                    Log.d(TAG, "  ✅ RECOVERED: contains << pattern, accepting anyway");
+                    CoreLog.d(TAG, "  ✅ RECOVERED: contains << pattern, accepting anyway");
                 }
             }
 
             String normalized = normalizeMRZLineLength(cleaned, targetLength);
-            Log.d(TAG, "  ✅ ACCEPTED: " + normalized.substring(0, Math.min(20, normalized.length())) + "...");
+            CoreLog.d(TAG, "  ✅ ACCEPTED: " + normalized.substring(0, Math.min(20, normalized.length())) + "...");
 
             if (validCount > 0) {
                 result.append("\n");
@@ -194,16 +117,16 @@ public class MRZCleaner {
             validCount++;
         }
 
-        Log.d(TAG, "Valid lines found: " + validCount + "/" + requiredCount);
+        CoreLog.d(TAG, "Valid lines found: " + validCount + "/" + requiredCount);
 
         if (validCount < 2) {
-            Log.d(TAG, "❌ FAILED: Not enough valid lines");
+            CoreLog.d(TAG, "❌ FAILED: Not enough valid lines");
             return null;
         }
 
         String finalResult = result.toString();
-        Log.d(TAG, "✅ SUCCESS: Extracted MRZ:\n" + finalResult);
-        Log.d(TAG, "━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
+        CoreLog.d(TAG, "✅ SUCCESS: Extracted MRZ:\n" + finalResult);
+        CoreLog.d(TAG, "━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
         return finalResult;
     }
     /**
@@ -412,7 +335,7 @@ public class MRZCleaner {
 
             return String.format("%04d-%s-%s", fullYear, month, day);
         } catch (Exception e) {
-            Log.e(TAG, "Error formatting MRZ date: " + mrzDate, e);
+            CoreLog.e(TAG, "Error formatting MRZ date: " + mrzDate, e);
             return mrzDate;
         }
     }
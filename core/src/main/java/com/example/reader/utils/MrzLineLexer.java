@@ -0,0 +1,266 @@
+package com.example.reader.utils;
+
+/**
+ * Single-pass lexer for OCR text lines on the per-frame MRZ path.
+ *
+ * One scan strips whitespace, upper-cases, optionally applies the OCR confusion
+ * fixes and the O/0 context rule, and gathers the statistics the candidate
+ * filters need (fillers, letter runs, the TD data-line pattern), all
+ * into a reusable char buffer. Nothing is allocated unless the caller asks for
+ * the text with {@link #toString()}. The statistics describe the line before
+ * O/0 resolution, so they are meant for {@link #MODE_COMPACT} scans.
+ *
+ * Instances are not thread-safe; keep one per analyzer thread.
+ */
+public final class MrzLineLexer {
+
+    /**
+     * Keep every non-whitespace character (upper-cased)
+     */
+    public static final int MODE_COMPACT = 0;
+
+    /**
+     * Also apply OCR confusion fixes, drop non-MRZ characters and resolve O/0 by context
+     */
+    public static final int MODE_CLEAN = 1;
+
+    // Looked up after upper-casing, like MRZCleaner always did
+    private static final char[] OCR_CORRECTIONS = new char[128];
+
+    static {
+        OCR_CORRECTIONS['|'] = 'I';
+        OCR_CORRECTIONS['!'] = 'I';
+        OCR_CORRECTIONS['}'] = 'J';
+        OCR_CORRECTIONS['{'] = 'C';
+        OCR_CORRECTIONS['$'] = 'S';
+        OCR_CORRECTIONS['@'] = '0';
+        OCR_CORRECTIONS['('] = 'C';
+        OCR_CORRECTIONS[')'] = '0';
+        OCR_CORRECTIONS['Q'] = 'O';  // Common in dates
+        OCR_CORRECTIONS['D'] = '0';  // Common in numbers
+    }
+
+    private char[] buffer = new char[64];
+    private int length;
+
+    private int fillerCount;
+    private int letterRun;
+    private int longestLetterRun;
+    private int digitRun;
+    private boolean dataLinePattern;
+    private boolean eepPrefix;
+
+    /**
+     * Scan one OCR line into the buffer
+     *
+     * @return number of characters kept
+     */
+    public int scan(CharSequence text, int mode) {
+        reset();
+        if (text == null) {
+            return 0;
+        }
+
+        boolean clean = mode == MODE_CLEAN;
+        int n = text.length();
+        ensureCapacity(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            c = Character.toUpperCase(c);
+            if (clean) {
+                char corrected = c < 128 ? OCR_CORRECTIONS[c] : (c == '°' ? '0' : 0);
+                if (corrected != 0) {
+                    c = corrected;
+                }
+                if (!MRZUtils.isValidMRZChar(c)) {
+                    continue;
+                }
+            }
+
+            buffer[length] = c;
+            if (clean && length > 0) {
+                resolveOAndZero(length - 1, length + 1);
+            }
+            length++;
+            track(c);
+        }
+
+        if (clean && length >= 2) {
+            resolveOAndZero(length - 1, length);
+        }
+        return length;
+    }
+
+    private void reset() {
+        length = 0;
+        fillerCount = 0;
+        letterRun = 0;
+        longestLetterRun = 0;
+        digitRun = 0;
+        dataLinePattern = false;
+        eepPrefix = false;
+    }
+
+    private void ensureCapacity(int n) {
+        if (buffer.length < n) {
+            buffer = new char[Math.max(n, buffer.length * 2)];
+        }
+    }
+
+    private void track(char c) {
+        int index = length - 1;
+
+        if (c == '<') {
+            fillerCount++;
+        }
+
+        if (c >= 'A' && c <= 'Z') {
+            letterRun++;
+            if (letterRun > longestLetterRun) {
+                longestLetterRun = letterRun;
+            }
+        } else {
+            letterRun = 0;
+        }
+
+        if (c >= '0' && c <= '9') {
+            digitRun++;
+            if (digitRun >= 6 && !dataLinePattern) {
+                dataLinePattern = matchesDataLine(index);
+            }
+        } else {
+            digitRun = 0;
+        }
+
+        if (index == 1) {
+            char first = buffer[0];
+            eepPrefix = first == 'C' && (c == 'S' || c == '5' || c == '$' || c == '8');
+        }
+    }
+
+    /**
+     * TD data line: [A-Z]{3} \d{6} [MF<] \d{6}, ending at the given index
+     */
+    private boolean matchesDataLine(int end) {
+        int start = end - 15;
+        if (start < 0) {
+            return false;
+        }
+        for (int i = start; i < start + 3; i++) {
+            if (buffer[i] < 'A' || buffer[i] > 'Z') return false;
+        }
+        for (int i = start + 3; i < start + 9; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') return false;
+        }
+        char sex = buffer[start + 9];
+        if (sex != 'M' && sex != 'F' && sex != '<') {
+            return false;
+        }
+        for (int i = start + 10; i <= end; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * MRZ O/0 rule for the character at index, once its right neighbour (if any
+     * below limit) is known. After an EEP "CS" prefix every O is a zero; elsewhere
+     * an O or 0 next to a digit is a zero and otherwise the letter O.
+     */
+    private void resolveOAndZero(int index, int limit) {
+        char c = buffer[index];
+        if (c != 'O' && c != '0') {
+            return;
+        }
+        if (buffer[0] == 'C' && (buffer[1] == 'S' || buffer[1] == '5' || buffer[1] == '8')) {
+            if (index >= 2 && c == 'O') {
+                buffer[index] = '0';
+            }
+            return;
+        }
+        boolean prevIsDigit = index > 0 && Character.isDigit(buffer[index - 1]);
+        boolean nextIsDigit = index + 1 < limit && Character.isDigit(buffer[index + 1]);
+        buffer[index] = prevIsDigit || nextIsDigit ? '0' : 'O';
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        return buffer[index];
+    }
+
+    void setCharAt(int index, char c) {
+        buffer[index] = c;
+    }
+
+    public int getFillerCount() {
+        return fillerCount;
+    }
+
+    public int getLongestLetterRun() {
+        return longestLetterRun;
+    }
+
+    /**
+     * Filler present, or a TD data line (nationality, birth date, sex, expiry)
+     */
+    public boolean looksLikeMrz() {
+        return fillerCount > 0 || dataLinePattern;
+    }
+
+    /**
+     * Line format the scanned line could belong to, judged from its length and
+     * first characters (Constants.DOC_TYPE_*), or null
+     */
+    public String classify() {
+        char first = length > 0 ? buffer[0] : ' ';
+
+        if (length >= 28 && length <= 32 && (eepPrefix || (first == 'C' && fillerCount > 0))) {
+            return Constants.DOC_TYPE_EEP_CHINA;
+        }
+        if ((first == 'P' && length >= 2 && buffer[1] == '<') || (length >= 42 && length <= 46)) {
+            return first == 'V' ? Constants.DOC_TYPE_MRVA : Constants.DOC_TYPE_TD3;
+        }
+        if (length >= 34 && length <= 38) {
+            return first == 'V' ? Constants.DOC_TYPE_MRVB : Constants.DOC_TYPE_TD2;
+        }
+        if (length >= 28 && length <= 32) {
+            return Constants.DOC_TYPE_TD1;
+        }
+        return null;
+    }
+
+    public boolean startsWith(char first, char second) {
+        return length >= 2 && buffer[0] == first && buffer[1] == second;
+    }
+
+    /**
+     * Groups of six consecutive digits in text, without a regex
+     */
+    public static int countSixDigitGroups(CharSequence text) {
+        int groups = 0;
+        int run = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++run % 6 == 0) {
+                    groups++;
+                }
+            } else {
+                run = 0;
+            }
+        }
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.reader.lds;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ActiveAuthentication against responses signed here the way a chip signs them
+ */
+public class ActiveAuthenticationTest {
+
+    private static final byte[] CHALLENGE = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Test
+    public void rsaSha1_verifies() throws Exception {
+        KeyPair keyPair = rsaKeyPair();
+        byte[] response = signIso9796(keyPair, "SHA-1", CHALLENGE, false);
+        assertTrue(ActiveAuthentication.verify(keyPair.getPublic(), null, CHALLENGE, response));
+    }
+
+    @Test
+    public void rsaSha256_verifies() throws Exception {
+        KeyPair keyPair = rsaKeyPair();
+        byte[] response = signIso9796(keyPair, "SHA-256", CHALLENGE, false);
+        assertTrue(ActiveAuthentication.verify(keyPair.getPublic(), null, CHALLENGE, response));
+    }
+
+    @Test
+    public void rsaComplementedSignature_verifies() throws Exception {
+        KeyPair keyPair = rsaKeyPair();
+        byte[] response = signIso9796(keyPair, "SHA-1", CHALLENGE, true);
+        assertTrue(ActiveAuthentication.verify(keyPair.getPublic(), null, CHALLENGE, response));
+    }
+
+    @Test
+    public void rsaOtherChallenge_fails() throws Exception {
+        KeyPair keyPair = rsaKeyPair();
+        byte[] response = signIso9796(keyPair, "SHA-1", CHALLENGE, false);
+        byte[] other = CHALLENGE.clone();
+        other[0] ^= 1;
+        assertFalse(ActiveAuthentication.verify(keyPair.getPublic(), null, other, response));
+    }
+
+    @Test
+    public void rsaOtherKey_fails() throws Exception {
+        byte[] response = signIso9796(rsaKeyPair(), "SHA-1", CHALLENGE, false);
+        assertFalse(ActiveAuthentication.verify(rsaKeyPair().getPublic(), null, CHALLENGE, response));
+    }
+
+    @Test
+    public void ecdsa_verifies() throws Exception {
+        KeyPair keyPair = ecKeyPair();
+        byte[] response = signPlainEcdsa(keyPair, CHALLENGE);
+        assertTrue(ActiveAuthentication.verify(keyPair.getPublic(), "SHA-256", CHALLENGE, response));
+        assertTrue(ActiveAuthentication.verify(keyPair.getPublic(), null, CHALLENGE, response));
+    }
+
+    @Test
+    public void ecdsaOtherChallenge_fails() throws Exception {
+        KeyPair keyPair = ecKeyPair();
+        byte[] response = signPlainEcdsa(keyPair, CHALLENGE);
+        byte[] other = CHALLENGE.clone();
+        other[7] ^= 1;
+        assertFalse(ActiveAuthentication.verify(keyPair.getPublic(), null, other, response));
+    }
+
+    @Test
+    public void missingResponse_fails() throws Exception {
+        assertFalse(ActiveAuthentication.verify(rsaKeyPair().getPublic(), null, CHALLENGE, null));
+        assertFalse(ActiveAuthentication.verify(rsaKeyPair().getPublic(), null, CHALLENGE, new byte[0]));
+    }
+
+    private static KeyPair rsaKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        return generator.generateKeyPair();
+    }
+
+    private static KeyPair ecKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * ISO/IEC 9796-2 scheme 1 with partial recovery: 6A || M1 || H(M1 || challenge) || trailer
+     */
+    private static byte[] signIso9796(KeyPair keyPair, String digestAlgorithm, byte[] challenge,
+                                      boolean complement) throws Exception {
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+        BigInteger n = publicKey.getModulus();
+        int k = (n.bitLength() + 7) / 8;
+
+        MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
+        byte[] trailer = "SHA-1".equals(digestAlgorithm) ? new byte[]{(byte) 0xBC} : new byte[]{0x34, (byte) 0xCC};
+        byte[] m1 = new byte[k - 1 - digest.getDigestLength() - trailer.length];
+        new Random(k).nextBytes(m1);
+
+        digest.update(m1);
+        digest.update(challenge);
+        byte[] f = new byte[k];
+        f[0] = 0x6A;
+        System.arraycopy(m1, 0, f, 1, m1.length);
+        System.arraycopy(digest.digest(), 0, f, 1 + m1.length, digest.getDigestLength());
+        System.arraycopy(trailer, 0, f, k - trailer.length, trailer.length);
+
+        BigInteger s = new BigInteger(1, f).modPow(privateKey.getPrivateExponent(), n);
+        if (complement) {
+            s = n.subtract(s);
+        }
+        byte[] bytes = s.toByteArray();
+        return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    private static byte[] signPlainEcdsa(KeyPair keyPair, byte[] challenge) throws Exception {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(challenge);
+        byte[] der = signature.sign();
+
+        // SEQUENCE { INTEGER r, INTEGER s } to 32-byte r || s
+        int offset = 2;
+        int rLength = der[offset + 1];
+        BigInteger r = new BigInteger(Arrays.copyOfRange(der, offset + 2, offset + 2 + rLength));
+        offset += 2 + rLength;
+        int sLength = der[offset + 1];
+        BigInteger s = new BigInteger(Arrays.copyOfRange(der, offset + 2, offset + 2 + sLength));
+
+        byte[] plain = new byte[64];
+        copyUnsigned(r, plain, 0);
+        copyUnsigned(s, plain, 32);
+        return plain;
+    }
+
+    private static void copyUnsigned(BigInteger value, byte[] out, int offset) {
+        byte[] bytes = value.toByteArray();
+        int copy = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - copy, out, offset + 32 - copy, copy);
+    }
+}
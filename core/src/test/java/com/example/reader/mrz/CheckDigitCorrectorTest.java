@@ -0,0 +1,103 @@
+package com.example.reader.mrz;
+
+import com.example.reader.utils.Constants;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CheckDigitCorrector on the ICAO 9303 specimens, with OCR confusions injected
+ * into check-digit protected positions.
+ */
+public class CheckDigitCorrectorTest {
+
+    static final String TD3 = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\n" +
+            "L898902C36UTO7408122F1204159ZE184226B<<<<<10";
+    static final String TD2 = "I<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<\n" +
+            "D231458907UTO7408122F1204159<<<<<<<6";
+    static final String TD1 = "I<UTOD231458907<<<<<<<<<<<<<<<\n" +
+            "7408122F1204159UTO<<<<<<<<<<<6\n" +
+            "ERIKSSON<<ANNA<MARIA<<<<<<<<<<";
+
+    private final CheckDigitCorrector corrector = new CheckDigitCorrector();
+
+    @Test
+    public void specimens_verifyAsRead() {
+        assertVerified(TD3, corrector.verify(TD3, Constants.DOC_TYPE_TD3));
+        assertVerified(TD2, corrector.verify(TD2, Constants.DOC_TYPE_TD2));
+        assertVerified(TD1, corrector.verify(TD1, Constants.DOC_TYPE_TD1));
+    }
+
+    @Test
+    public void specimens_needNoCorrection() {
+        CheckDigitCorrector.Result result = corrector.correct(TD1, Constants.DOC_TYPE_TD1, 0.9f);
+        assertVerified(TD1, result);
+        assertEquals(0f, result.cost, 0f);
+    }
+
+    @Test
+    public void noisyMrz_failsVerify() {
+        String noisy = TD3.replace("7408122F1204159", "74O8122F12O4159");
+        assertNull(corrector.verify(noisy, Constants.DOC_TYPE_TD3));
+    }
+
+    @Test
+    public void lettersInDates_areRestored() {
+        // O for 0 in the birth date and the expiry date
+        String noisy = TD3.replace("7408122F1204159", "74O8122F12O4159");
+        assertVerified(TD3, corrector.correct(noisy, Constants.DOC_TYPE_TD3, 0.5f));
+    }
+
+    @Test
+    public void letterInTd1BirthDate_isRestored() {
+        String noisy = TD1.replace("7408122F", "7408I22F");
+        assertVerified(TD1, corrector.correct(noisy, Constants.DOC_TYPE_TD1, 0.5f));
+    }
+
+    @Test
+    public void letterInExpiryAndCompositeCheckDigit_areRestored() {
+        String noisy = TD2.replace("F1204159<<<<<<<6", "F12O4159<<<<<<<G");
+        assertVerified(TD2, corrector.correct(noisy, Constants.DOC_TYPE_TD2, 0.5f));
+    }
+
+    @Test
+    public void confidentFrame_doesNotStretchToTwoErrorsInOneField() {
+        // Two substitutions in the birth date exceed the budget of a confident frame
+        String noisy = TD3.replace("7408122F", "74O8I22F");
+        CheckDigitCorrector.Result result = corrector.correct(noisy, Constants.DOC_TYPE_TD3, 1f);
+        assertNotNull(result);
+        assertFalse(result.verified);
+    }
+
+    @Test
+    public void ambiguousDocumentNumber_staysUnverified() {
+        // Enough look-alikes in the document number that more readings tie on cost
+        // than the combination search keeps; the dropped ones must not be ignored
+        String noisy = "I<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<\n" +
+                "D2314T8Q07UTO7408122F1204159<<<<<<<B";
+        CheckDigitCorrector.Result result = corrector.correct(noisy, Constants.DOC_TYPE_TD2, 0.2f);
+        assertNotNull(result);
+        assertFalse(result.verified);
+    }
+
+    @Test
+    public void unknownDocumentType_isNotCorrected() {
+        assertNull(corrector.correct(TD3, "UNKNOWN", 0.5f));
+    }
+
+    @Test
+    public void wrongShape_isNotCorrected() {
+        assertNull(corrector.correct(TD3.substring(0, TD3.length() - 1), Constants.DOC_TYPE_TD3, 0.5f));
+    }
+
+    private static void assertVerified(String expected, CheckDigitCorrector.Result result) {
+        assertNotNull(result);
+        assertTrue(result.verified);
+        assertEquals(expected, result.mrz);
+    }
+}
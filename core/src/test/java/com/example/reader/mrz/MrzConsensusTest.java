@@ -0,0 +1,72 @@
+package com.example.reader.mrz;
+
+import com.example.reader.utils.Constants;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * MrzConsensus on the ICAO 9303 TD3 specimen, with each frame wrong somewhere
+ * else so that no single frame validates.
+ */
+public class MrzConsensusTest {
+
+    private static final String TD3 = CheckDigitCorrectorTest.TD3;
+    private static final String NAME_LINE = "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\n";
+
+    private final MrzConsensus consensus = new MrzConsensus();
+
+    @Test
+    public void singleCleanFrame_validates() {
+        assertEquals(TD3, consensus.add(TD3, Constants.DOC_TYPE_TD3, 0.9f));
+        assertEquals(1, consensus.getFrameCount());
+    }
+
+    @Test
+    public void singleNoisyFrame_doesNotValidate() {
+        assertNull(consensus.add(NAME_LINE + "L898902C36UTO7408722F1204159ZE184226B<<<<<10",
+                Constants.DOC_TYPE_TD3, 0.9f));
+    }
+
+    @Test
+    public void framesWrongInDifferentPlaces_converge() {
+        // Birth date, expiry date and composite check digit each misread in one frame
+        assertNull(consensus.add(NAME_LINE + "L898902C36UTO7408722F1204159ZE184226B<<<<<10",
+                Constants.DOC_TYPE_TD3, 0.8f));
+        assertNull(consensus.add(NAME_LINE + "L898902C36UTO7408122F1204759ZE184226B<<<<<10",
+                Constants.DOC_TYPE_TD3, 0.8f));
+        assertEquals(TD3, consensus.add(NAME_LINE + "L898902C36UTO7408122F1204159ZE184226B<<<<<18",
+                Constants.DOC_TYPE_TD3, 0.8f));
+        assertEquals(3, consensus.getFrameCount());
+    }
+
+    @Test
+    public void droppedAndDoubledCharacters_stillVote() {
+        assertNull(consensus.add(NAME_LINE + "L898902C36UTO7408722F1204159ZE184226B<<<<<10",
+                Constants.DOC_TYPE_TD3, 0.8f));
+        // A filler dropped, expiry date misread
+        assertNull(consensus.add(NAME_LINE + "L898902C36UTO7408122F1204759ZE184226B<<<<10",
+                Constants.DOC_TYPE_TD3, 0.7f));
+        // A document number digit doubled, composite check digit misread
+        assertEquals(TD3, consensus.add(NAME_LINE + "L8989902C36UTO7408122F1204159ZE184226B<<<<<18",
+                Constants.DOC_TYPE_TD3, 0.6f));
+    }
+
+    @Test
+    public void documentChange_restarts() {
+        consensus.add(NAME_LINE + "L898902C36UTO7408722F1204159ZE184226B<<<<<10", Constants.DOC_TYPE_TD3, 0.8f);
+        String td1 = CheckDigitCorrectorTest.TD1;
+        assertEquals(td1, consensus.add(td1, Constants.DOC_TYPE_TD1, 0.9f));
+        assertEquals(1, consensus.getFrameCount());
+    }
+
+    @Test
+    public void reset_forgetsFrames() {
+        consensus.add(TD3, Constants.DOC_TYPE_TD3, 0.9f);
+        consensus.reset();
+        assertNull(consensus.getConsensus());
+        assertEquals(0, consensus.getFrameCount());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.reader.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * MRZCleaner after the move to {@link MrzLineLexer}: golden outputs recorded from
+ * the regex/replace implementation it replaced, and a randomized comparison
+ * against a copy of that implementation.
+ */
+public class MRZCleanerTest {
+
+    // Input, cleanMRZLine, cleanEEPLine; outputs recorded from the previous implementation
+    private static final String[][] GOLDEN = {
+            {"P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<",
+                    "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<",
+                    "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<"},
+            {"L898902C36UTO7408122F1204159ZE184226B<<<<<10",
+                    "L898902C36UT07408122F1204159ZE184226B<<<<<10",
+                    "L898902C36UT07408122F1204159ZE184226B<<<<<10"},
+            {"p<uto eriksson<<anna<maria<<<<<<<<<<<<<<<<<<<",
+                    "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<",
+                    "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<"},
+            {"L8989O2C36UTO74O8122F12O4159ZE184226B<<<<<1O",
+                    "L898902C36UT07408122F1204159ZE184226B<<<<<10",
+                    "L898902C36UT07408122F1204159ZE184226B<<<<<10"},
+            {"I<UTOD231458907<<<<<<<<<<<<<<<",
+                    "I<UT00231458907<<<<<<<<<<<<<<<",
+                    "I<UT00231458907<<<<<<<<<<<<<<<"},
+            {"7408122F1204159UTO<<<<<<<<<<<6",
+                    "7408122F1204159UTO<<<<<<<<<<<6",
+                    "7408122F1204159UTO<<<<<<<<<<<6"},
+            {"I<UTO|ERIKSSON<<ANNA<MAR!A<<<",
+                    "I<UTOIERIKSSON<<ANNA<MARIA<<<",
+                    "I<UTOIERIKSSON<<ANNA<MARIA<<<"},
+            {"D23145890 7UTO7408122F1204159<<<<<<<6",
+                    "0231458907UT07408122F1204159<<<<<<<6",
+                    "0231458907UT07408122F1204159<<<<<<<6"},
+            {"C5E123456782<3001019<2803159<6",
+                    "C5E123456782<3001019<2803159<6",
+                    "CSE123456782<3001019<2803159<6"},
+            {"C$E12345678 2<3001019<2803159<6",
+                    "CSE123456782<3001019<2803159<6",
+                    "CSE123456782<3001019<2803159<6"},
+            {"COE12345678", "COE12345678", "CSE12345678"},
+            {"CSE1234O678Q", "CSE123406780", "CSE123406780"},
+            {"$@()}{°o|!", "SOCOJCOOII", "SOCOJCOOII"},
+            {"OO0O", "O000", "O000"},
+            {"O", "O", "O"},
+            {"0O", "OO", "OO"},
+            {"A0B", "AOB", "AOB"},
+            {"12O34", "12034", "12034"},
+            {"\tP<UTO  ERIKSSON\t<<ANNA", "P<UTOERIKSSON<<ANNA", "P<UTOERIKSSON<<ANNA"},
+            {"L898902C3<6UT07408122F120415 9ZE184226B<<<<<1 0",
+                    "L898902C3<6UT07408122F1204159ZE184226B<<<<<10",
+                    "L898902C3<6UT07408122F1204159ZE184226B<<<<<10"},
+            {"", "", ""},
+    };
+
+    // OCR-ish noise; the previous implementation only skipped spaces and tabs, so no other whitespace
+    private static final String NOISE_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789<<<<<< \t|!}{$@()°.,-";
+
+    @Test
+    public void cleanMRZLine_matchesGoldenOutput() {
+        for (String[] golden : GOLDEN) {
+            assertEquals("cleanMRZLine(" + golden[0] + ")", golden[1], MRZCleaner.cleanMRZLine(golden[0]));
+        }
+    }
+
+    @Test
+    public void cleanEEPLine_matchesGoldenOutput() {
+        for (String[] golden : GOLDEN) {
+            assertEquals("cleanEEPLine(" + golden[0] + ")", golden[2], MRZCleaner.cleanEEPLine(golden[0]));
+        }
+    }
+
+    @Test
+    public void nullInput_givesEmptyLine() {
+        assertEquals("", MRZCleaner.cleanMRZLine(null));
+        assertEquals("", MRZCleaner.cleanEEPLine(null));
+    }
+
+    @Test
+    public void randomLines_matchPreviousImplementation() {
+        Random random = new Random(20240611L);
+        String[] prefixes = {"", "C", "CS", "C5", "C8", "C$", "CO", "P<", "I<", "0", "O"};
+
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder(prefixes[random.nextInt(prefixes.length)]);
+            int length = random.nextInt(48);
+            for (int j = 0; j < length; j++) {
+                sb.append(NOISE_ALPHABET.charAt(random.nextInt(NOISE_ALPHABET.length())));
+            }
+            String line = sb.toString();
+
+            assertEquals("cleanMRZLine(" + line + ")",
+                    PreviousCleaner.cleanMRZLine(line), MRZCleaner.cleanMRZLine(line));
+            assertEquals("cleanEEPLine(" + line + ")",
+                    PreviousCleaner.cleanEEPLine(line), MRZCleaner.cleanEEPLine(line));
+        }
+    }
+
+    /**
+     * The cleaning code MrzLineLexer replaced, kept as the reference
+     */
+    private static final class PreviousCleaner {
+
+        private static final Map<Character, Character> OCR_CORRECTIONS = new HashMap<>();
+
+        static {
+            OCR_CORRECTIONS.put('|', 'I');
+            OCR_CORRECTIONS.put('!', 'I');
+            OCR_CORRECTIONS.put('l', 'I');
+            OCR_CORRECTIONS.put('}', 'J');
+            OCR_CORRECTIONS.put('{', 'C');
+            OCR_CORRECTIONS.put('$', 'S');
+            OCR_CORRECTIONS.put('@', '0');
+            OCR_CORRECTIONS.put('°', '0');
+            OCR_CORRECTIONS.put('(', 'C');
+            OCR_CORRECTIONS.put(')', '0');
+            OCR_CORRECTIONS.put('o', 'O');
+            OCR_CORRECTIONS.put('Q', 'O');
+            OCR_CORRECTIONS.put('D', '0');
+        }
+
+        static String cleanMRZLine(String text) {
+            if (text == null || text.isEmpty()) {
+                return "";
+            }
+
+            StringBuilder result = new StringBuilder(text.length());
+            for (char c : text.toUpperCase(Locale.ROOT).toCharArray()) {
+                if (c == ' ' || c == '\t') {
+                    continue;
+                }
+                Character corrected = OCR_CORRECTIONS.get(c);
+                if (corrected != null) {
+                    c = corrected;
+                }
+                if (MRZUtils.isValidMRZChar(c)) {
+                    result.append(c);
+                }
+            }
+            return correctOAndZero(result.toString());
+        }
+
+        static String cleanEEPLine(String text) {
+            String result = cleanMRZLine(text);
+            if (result.length() >= 2) {
+                String prefix = result.substring(0, 2);
+                if (prefix.equals("C5") || prefix.equals("C8") ||
+                        prefix.equals("C$") || prefix.equals("CO")) {
+                    result = "CS" + result.substring(2);
+                }
+            }
+            return result;
+        }
+
+        private static String correctOAndZero(String text) {
+            if (text.length() < 2) {
+                return text;
+            }
+
+            char[] chars = text.toCharArray();
+            if (chars[0] == 'C' && (chars[1] == 'S' || chars[1] == '5' || chars[1] == '8')) {
+                for (int i = 2; i < chars.length; i++) {
+                    if (chars[i] == 'O') {
+                        chars[i] = '0';
+                    }
+                }
+                return new String(chars);
+            }
+
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == 'O' || chars[i] == '0') {
+                    boolean prevIsDigit = i > 0 && Character.isDigit(chars[i - 1]);
+                    boolean nextIsDigit = i < chars.length - 1 && Character.isDigit(chars[i + 1]);
+                    chars[i] = prevIsDigit || nextIsDigit ? '0' : 'O';
+                }
+            }
+            return new String(chars);
+        }
+    }
+}